@@ -21,6 +21,7 @@ import miml.data.MIMLInstances;
 import mulan.classifier.MultiLabelLearner;
 import mulan.classifier.MultiLabelOutput;
 import weka.core.Instance;
+import weka.core.Instances;
 
 /**
  * Common interface for MIML classifiers.
@@ -40,6 +41,37 @@ public interface IMIMLClassifier extends MultiLabelLearner, Serializable {
 	@Override
 	public MultiLabelOutput makePrediction(Instance instance) throws Exception;
 
+	/**
+	 * Makes the predictions of all the bags of a data set. By default, each bag is
+	 * predicted with {@link #makePrediction(Instance)}, but classifiers can
+	 * override it to avoid the overhead of predicting one bag at a time.
+	 *
+	 * @param data The bags to predict.
+	 * @return The predictions, in the same order as the bags of the data set.
+	 * @throws Exception If an error occurs while making the predictions.
+	 */
+	default MultiLabelOutput[] makePredictions(MIMLInstances data) throws Exception {
+		Instances bags = data.getDataSet();
+		MultiLabelOutput[] predictions = new MultiLabelOutput[bags.numInstances()];
+		for (int i = 0; i < predictions.length; i++)
+			predictions[i] = makePrediction(bags.instance(i));
+		return predictions;
+	}
+
+	/**
+	 * Gets a predictor of the trained model that can be used by several threads
+	 * at the same time. By default, the calls to this classifier are serialized,
+	 * but classifiers whose model is not modified when predicting can return a
+	 * predictor that runs concurrently. The classifier must not be built again
+	 * while the predictor is in use.
+	 *
+	 * @return The predictor.
+	 * @throws Exception If the model has not been trained.
+	 */
+	default IMIMLPredictor freeze() throws Exception {
+		return new SynchronizedPredictor(this);
+	}
+
 	/**
 	 * Builds the learner model from specified {@link MIMLInstances} data.
 	 *
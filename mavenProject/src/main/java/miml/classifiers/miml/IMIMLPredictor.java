@@ -0,0 +1,61 @@
+/*    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package miml.classifiers.miml;
+
+import miml.data.MIMLInstances;
+import mulan.classifier.MultiLabelOutput;
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * Predictor of a trained MIML model, obtained with
+ * {@link IMIMLClassifier#freeze()}. A predictor can be used by several threads
+ * at the same time without copying the model. It does not modify the bags it
+ * predicts, and the model is not modified by the predictions, so a prediction
+ * does not depend on the previous ones.
+ * <p>
+ * The classifier a predictor was obtained from must not be built again while
+ * the predictor is in use.
+ *
+ * @author agent
+ * @version 20261018
+ */
+public interface IMIMLPredictor {
+
+	/**
+	 * Makes the prediction of a bag.
+	 *
+	 * @param instance The bag to predict.
+	 * @return The prediction.
+	 * @throws Exception If an error occurs while making the prediction.
+	 */
+	public MultiLabelOutput makePrediction(Instance instance) throws Exception;
+
+	/**
+	 * Makes the predictions of all the bags of a data set.
+	 *
+	 * @param data The bags to predict.
+	 * @return The predictions, in the same order as the bags of the data set.
+	 * @throws Exception If an error occurs while making the predictions.
+	 */
+	default MultiLabelOutput[] makePredictions(MIMLInstances data) throws Exception {
+		Instances bags = data.getDataSet();
+		MultiLabelOutput[] predictions = new MultiLabelOutput[bags.numInstances()];
+		for (int i = 0; i < predictions.length; i++)
+			predictions[i] = makePrediction(bags.instance(i));
+		return predictions;
+	}
+}
@@ -151,9 +151,35 @@ public abstract class MIMLClassifier implements IConfiguration, IMIMLClassifier
 			throw new ModelInitializationException("The model has not been trained.");
 		}
 
-		instance.setValue(labelIndices[labelIndices.length - 1], 1);
+		// The label is set in a copy so that the given instance is not modified
+		MIMLBag bag = new MIMLBag(instance);
+		bag.setValue(labelIndices[labelIndices.length - 1], 1);
 
-		return makePredictionInternal(new MIMLBag(instance));
+		return makePredictionInternal(bag);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see miml.classifiers.miml.IMIMLClassifier#makePredictions(miml.data.
+	 * MIMLInstances)
+	 */
+	@Override
+	public final MultiLabelOutput[] makePredictions(MIMLInstances data)
+			throws Exception, InvalidDataException, ModelInitializationException {
+		if (data == null) {
+			throw new ArgumentNullException("data");
+		}
+		if (!isModelInitialized()) {
+			throw new ModelInitializationException("The model has not been trained.");
+		}
+
+		// The label is set in copies so that the given data are not modified
+		Instances bags = new Instances(data.getDataSet());
+		for (int i = 0; i < bags.numInstances(); i++)
+			bags.instance(i).setValue(labelIndices[labelIndices.length - 1], 1);
+
+		return makePredictionsInternal(new MIMLInstances(bags, data.getLabelsMetaData()));
 	}
 
 	/*
@@ -234,4 +260,23 @@ public abstract class MIMLClassifier implements IConfiguration, IMIMLClassifier
 	 */
 	protected abstract MultiLabelOutput makePredictionInternal(MIMLBag instance) throws Exception, InvalidDataException;
 
+	/**
+	 * Learner specific implementation for predicting all the bags of a data set.
+	 * This method is called from {@link #makePredictions(MIMLInstances)} once the
+	 * model initialization is checked. By default, it calls
+	 * {@link #makePredictionInternal(MIMLBag)} for each bag, so learners only
+	 * override it when the bags can be predicted together more efficiently.
+	 *
+	 * @param data The bags to predict.
+	 * @return The predictions, in the same order as the bags of the data set.
+	 * @throws Exception If an error occurs while making the predictions.
+	 */
+	protected MultiLabelOutput[] makePredictionsInternal(MIMLInstances data) throws Exception {
+		Instances bags = data.getDataSet();
+		MultiLabelOutput[] predictions = new MultiLabelOutput[bags.numInstances()];
+		for (int i = 0; i < predictions.length; i++)
+			predictions[i] = makePredictionInternal(new MIMLBag(bags.instance(i)));
+		return predictions;
+	}
+
 }
\ No newline at end of file
@@ -69,16 +69,57 @@ public abstract class MWClassifier extends MIMLClassifier {
 
 		Object[] prediction = predictMWClassifier(train_bags, train_targets, test_bag);
 
-		double pre_labels[] = null;
-		if (prediction[1] instanceof MWNumericArray) {
-			pre_labels = ((MWNumericArray) prediction[1]).getDoubleData();
-		}
-
 		// Dispose of native MW resources
 		train_bags.dispose();
 		train_targets.dispose();
 		test_bag.dispose();
 
+		return toMultiLabelOutput(prediction);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see miml.classifiers.miml.MIMLClassifier#makePredictionsInternal(miml.data.
+	 * MIMLInstances)
+	 */
+	@Override
+	protected MultiLabelOutput[] makePredictionsInternal(MIMLInstances data) throws Exception {
+		// Training data are translated once for all the bags
+		MWCellArray train_bags = wrapper.getBags();
+		MWNumericArray train_targets = wrapper.getLabels();
+
+		MultiLabelOutput[] predictions = new MultiLabelOutput[data.getNumBags()];
+		try {
+			for (int i = 0; i < predictions.length; i++) {
+				MWNumericArray test_bag = wrapper.getBagAsArray(new MIMLBag(data.getDataSet().instance(i)));
+				try {
+					predictions[i] = toMultiLabelOutput(predictMWClassifier(train_bags, train_targets, test_bag));
+				} finally {
+					test_bag.dispose();
+				}
+			}
+		} finally {
+			// Dispose of native MW resources
+			train_bags.dispose();
+			train_targets.dispose();
+		}
+		return predictions;
+	}
+
+	/**
+	 * Converts the output of a Matlab classifier into a prediction.
+	 * 
+	 * @param prediction The output of
+	 *                   {@link #predictMWClassifier(MWCellArray, MWNumericArray, MWNumericArray)}.
+	 * @return The prediction.
+	 */
+	protected MultiLabelOutput toMultiLabelOutput(Object[] prediction) {
+		double pre_labels[] = null;
+		if (prediction[1] instanceof MWNumericArray) {
+			pre_labels = ((MWNumericArray) prediction[1]).getDoubleData();
+		}
+
 		boolean bipartition[] = new boolean[numLabels];
 		double confidences[] = new double[numLabels];
 		for (int l = 0; l < numLabels; l++) {
@@ -0,0 +1,81 @@
+/*    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package miml.classifiers.miml;
+
+import miml.data.MIMLInstances;
+import mulan.classifier.MultiLabelOutput;
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * Predictor that serializes the calls to a classifier, used by default by
+ * {@link IMIMLClassifier#freeze()}. Bags are copied before being predicted, so
+ * they are not modified. Classifiers that update their model when predicting
+ * keep doing it, so their predictions may depend on the previous ones.
+ *
+ * @author agent
+ * @version 20261018
+ */
+public class SynchronizedPredictor implements IMIMLPredictor {
+
+	/** The classifier, also used as lock. */
+	protected IMIMLClassifier classifier;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param classifier A trained classifier.
+	 */
+	public SynchronizedPredictor(IMIMLClassifier classifier) {
+		this.classifier = classifier;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see miml.classifiers.miml.IMIMLPredictor#makePrediction(weka.core.Instance)
+	 */
+	@Override
+	public MultiLabelOutput makePrediction(Instance instance) throws Exception {
+		Instance copy = (Instance) instance.copy();
+		synchronized (classifier) {
+			return classifier.makePrediction(copy);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * miml.classifiers.miml.IMIMLPredictor#makePredictions(miml.data.MIMLInstances)
+	 */
+	@Override
+	public MultiLabelOutput[] makePredictions(MIMLInstances data) throws Exception {
+		MIMLInstances copy = new MIMLInstances(new Instances(data.getDataSet()), data.getLabelsMetaData());
+		synchronized (classifier) {
+			return classifier.makePredictions(copy);
+		}
+	}
+
+	/**
+	 * Gets the classifier used to make the predictions.
+	 *
+	 * @return The classifier.
+	 */
+	public IMIMLClassifier getClassifier() {
+		return classifier;
+	}
+}
@@ -18,6 +18,7 @@ package miml.classifiers.miml.lazy;
 import org.apache.commons.configuration2.Configuration;
 
 import mulan.classifier.lazy.DMLkNN;
+import mulan.data.MultiLabelInstances;
 
 /**
  * DMIMLkNN is the adaptation to the MIML framework of the DMLkNN[1] multi-label
@@ -50,7 +51,7 @@ public class DMIMLkNN extends MultiInstanceMultiLabelKNN {
 	public DMIMLkNN(MIMLDistanceFunction metric) {
 		super(metric, 10);
 		this.smooth = 1.0;
-		this.classifier = new DMLkNN(10, smooth);
+		this.classifier = new MetricIndexDMLkNN(10, smooth);
 	}
 
 	/**
@@ -63,7 +64,7 @@ public class DMIMLkNN extends MultiInstanceMultiLabelKNN {
 	public DMIMLkNN(int numOfNeighbours, MIMLDistanceFunction metric) {
 		super(metric, numOfNeighbours);
 		this.smooth = 1.0;
-		this.classifier = new DMLkNN(numOfNeighbours, smooth);
+		this.classifier = new MetricIndexDMLkNN(numOfNeighbours, smooth);
 	}
 
 	/**
@@ -77,7 +78,7 @@ public class DMIMLkNN extends MultiInstanceMultiLabelKNN {
 	public DMIMLkNN(int numOfNeighbours, double smooth, MIMLDistanceFunction metric) {
 		super(metric, numOfNeighbours);
 		this.smooth = smooth;
-		this.classifier = new DMLkNN(numOfNeighbours, smooth);
+		this.classifier = new MetricIndexDMLkNN(numOfNeighbours, smooth);
 	}
 
 	/**
@@ -97,7 +98,7 @@ public class DMIMLkNN extends MultiInstanceMultiLabelKNN {
 	public void configure(Configuration configuration) {
 		super.configure(configuration);
 		this.smooth = configuration.getDouble("smooth", 1.0);
-		this.classifier = new DMLkNN(numOfNeighbours, smooth);
+		this.classifier = new MetricIndexDMLkNN(numOfNeighbours, smooth);
 	}
 
 	/**
@@ -117,4 +118,38 @@ public class DMIMLkNN extends MultiInstanceMultiLabelKNN {
 	public void setSmooth(double smooth) {
 		this.smooth = smooth;
 	}
+
+	/**
+	 * DMLkNN whose neighbour search can be replaced by a metric index.
+	 */
+	protected static class MetricIndexDMLkNN extends DMLkNN implements IMetricIndexedKNN {
+
+		/** For serialization. */
+		private static final long serialVersionUID = -5160911460284962377L;
+
+		/** Whether the neighbour search is replaced by a metric index. */
+		protected boolean metricIndex = false;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param numOfNeighbors The number of neighbours.
+		 * @param smooth         The smooth factor.
+		 */
+		public MetricIndexDMLkNN(int numOfNeighbors, double smooth) {
+			super(numOfNeighbors, smooth);
+		}
+
+		@Override
+		public void setMetricIndex(boolean metricIndex) {
+			this.metricIndex = metricIndex;
+		}
+
+		@Override
+		protected void buildInternal(MultiLabelInstances train) throws Exception {
+			super.buildInternal(train);
+			if (metricIndex)
+				lnn = buildMetricIndex(lnn);
+		}
+	}
 }
@@ -0,0 +1,36 @@
+/*    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package miml.classifiers.miml.lazy;
+
+/**
+ * Mulan k-nearest neighbours classifier whose linear neighbour search can be
+ * replaced, once built, by a {@link VPTreeNNSearch} over the same training
+ * bags. It is implemented by subclasses of the Mulan classifiers, which can
+ * access their search.
+ *
+ * @author agent
+ * @version 20261018
+ * @see MultiInstanceMultiLabelKNN#setMetricIndex(boolean)
+ */
+public interface IMetricIndexedKNN {
+
+	/**
+	 * Sets whether the neighbour search used to predict is replaced by a
+	 * {@link VPTreeNNSearch} when the classifier is built.
+	 *
+	 * @param metricIndex True to use the metric index.
+	 */
+	void setMetricIndex(boolean metricIndex);
+}
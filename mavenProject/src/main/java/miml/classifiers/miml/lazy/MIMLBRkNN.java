@@ -17,6 +17,7 @@ package miml.classifiers.miml.lazy;
 import org.apache.commons.configuration2.Configuration;
 
 import mulan.classifier.lazy.BRkNN;
+import mulan.data.MultiLabelInstances;
 import mulan.classifier.lazy.BRkNN.ExtensionType;
 
 /**
@@ -61,7 +62,7 @@ public class MIMLBRkNN extends MultiInstanceMultiLabelKNN {
 
 	public MIMLBRkNN(MIMLDistanceFunction metric) {
 		super(metric, 10);
-		this.classifier = new BRkNN(10);
+		this.classifier = new MetricIndexBRkNN(10, ExtensionType.NONE);
 		classifier.setDfunc(metric);
 	}
 
@@ -74,7 +75,7 @@ public class MIMLBRkNN extends MultiInstanceMultiLabelKNN {
 	 */
 	public MIMLBRkNN(MIMLDistanceFunction metric, int numOfNeighbours) {
 		super(metric, numOfNeighbours);
-		this.classifier = new BRkNN(numOfNeighbours);
+		this.classifier = new MetricIndexBRkNN(numOfNeighbours, ExtensionType.NONE);
 	}
 
 	/**
@@ -88,7 +89,7 @@ public class MIMLBRkNN extends MultiInstanceMultiLabelKNN {
 	public MIMLBRkNN(MIMLDistanceFunction metric, int numOfNeighbours, ExtensionType ext) {
 		super(metric, numOfNeighbours);
 		this.extension = ext;
-		this.classifier = new BRkNN(numOfNeighbours, ext);
+		this.classifier = new MetricIndexBRkNN(numOfNeighbours, ext);
 	}
 
 	/*
@@ -107,7 +108,7 @@ public class MIMLBRkNN extends MultiInstanceMultiLabelKNN {
 			this.extension = ExtensionType.EXTB;
 		else
 			this.extension = ExtensionType.NONE;
-		this.classifier = new BRkNN(numOfNeighbours, extension);
+		this.classifier = new MetricIndexBRkNN(numOfNeighbours, extension);
 	}
 
 	/***/
@@ -128,4 +129,38 @@ public class MIMLBRkNN extends MultiInstanceMultiLabelKNN {
 	public void setExtension(ExtensionType extension) {
 		this.extension = extension;
 	}
+
+	/**
+	 * BRkNN whose neighbour search can be replaced by a metric index.
+	 */
+	protected static class MetricIndexBRkNN extends BRkNN implements IMetricIndexedKNN {
+
+		/** For serialization. */
+		private static final long serialVersionUID = 6981043255167303128L;
+
+		/** Whether the neighbour search is replaced by a metric index. */
+		protected boolean metricIndex = false;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param numOfNeighbors The number of neighbours.
+		 * @param ext            The extension.
+		 */
+		public MetricIndexBRkNN(int numOfNeighbors, ExtensionType ext) {
+			super(numOfNeighbors, ext);
+		}
+
+		@Override
+		public void setMetricIndex(boolean metricIndex) {
+			this.metricIndex = metricIndex;
+		}
+
+		@Override
+		protected void buildInternal(MultiLabelInstances train) throws Exception {
+			super.buildInternal(train);
+			if (metricIndex)
+				lnn = buildMetricIndex(lnn);
+		}
+	}
 }
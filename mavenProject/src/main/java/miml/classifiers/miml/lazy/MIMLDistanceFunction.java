@@ -15,9 +15,12 @@
 package miml.classifiers.miml.lazy;
 
 import java.util.Enumeration;
+import java.util.IdentityHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
+import miml.core.distance.DistanceMatrix;
+import miml.core.distance.IBoundedDistance;
 import miml.core.distance.IDistance;
-import miml.data.MIMLBag;
 import weka.core.Instance;
 import weka.core.Instances;
 import weka.core.NormalizableDistance;
@@ -25,7 +28,16 @@ import weka.core.neighboursearch.PerformanceStats;
 
 /**
  * Wrapper for using IDistance metrics of MIML package with Mulan Lazy
- * algorithms.
+ * algorithms. When the metric implements {@link IBoundedDistance}, the cut off
+ * value given by the nearest neighbour search is used to stop the computation
+ * of distances that cannot improve the current neighbours. When a
+ * {@link DistanceMatrix} of the training bags is set, the distances between
+ * training bags are read from it.
+ * <p>
+ * Bags are passed to the metric as they are, without copying them, so that the
+ * metric can resolve the bags of the training set by identity (e.g. the packed
+ * Hausdorff distances). The number of distances computed by the metric and read
+ * from the matrix are counted.
  */
 public class MIMLDistanceFunction extends NormalizableDistance {
 
@@ -34,6 +46,18 @@ public class MIMLDistanceFunction extends NormalizableDistance {
 	/** Metric to measure distance between bags. */
 	protected IDistance metric;
 
+	/** Distances between the training bags, or null. */
+	protected transient DistanceMatrix distanceMatrix;
+
+	/** Index of each training bag in the distance matrix given its relational value. */
+	protected transient IdentityHashMap<Instances, Integer> matrixIndex;
+
+	/** Number of distances computed by the metric. */
+	protected LongAdder numEvaluations = new LongAdder();
+
+	/** Number of distances read from the distance matrix. */
+	protected LongAdder numLookups = new LongAdder();
+
 	/**
 	 * Sets the metric to be used.
 	 * 
@@ -47,6 +71,59 @@ public class MIMLDistanceFunction extends NormalizableDistance {
 		return metric;
 	}
 
+	/**
+	 * Sets the distances between the training bags, which are used instead of
+	 * the metric when both bags belong to the training set.
+	 * 
+	 * @param bags   The training bags, as a dataset of {@link Instances} with
+	 *               relational information.
+	 * @param matrix The distance matrix of the bags, or null to always use the
+	 *               metric.
+	 */
+	public void setDistanceMatrix(Instances bags, DistanceMatrix matrix) {
+		if (matrix == null) {
+			distanceMatrix = null;
+			matrixIndex = null;
+			return;
+		}
+		IdentityHashMap<Instances, Integer> index = new IdentityHashMap<Instances, Integer>(2 * bags.numInstances());
+		for (int i = 0; i < bags.numInstances(); i++)
+			index.put(bags.instance(i).relationalValue(1), i);
+		matrixIndex = index;
+		distanceMatrix = matrix;
+	}
+
+	public DistanceMatrix getDistanceMatrix() {
+		return distanceMatrix;
+	}
+
+	/**
+	 * Gets the number of distances computed by the metric since the last reset.
+	 * 
+	 * @return The number of distance evaluations.
+	 */
+	public long getNumEvaluations() {
+		return numEvaluations.sum();
+	}
+
+	/**
+	 * Gets the number of distances read from the distance matrix since the last
+	 * reset.
+	 * 
+	 * @return The number of distances read.
+	 */
+	public long getNumLookups() {
+		return numLookups.sum();
+	}
+
+	/**
+	 * Resets the counters of distances.
+	 */
+	public void resetCounters() {
+		numEvaluations.reset();
+		numLookups.reset();
+	}
+
 	/**
 	 * Constructor that sets the metric to be used.
 	 * 
@@ -70,9 +147,23 @@ public class MIMLDistanceFunction extends NormalizableDistance {
 
 		try {
 
-			MIMLBag first = new MIMLBag(arg0);
-			MIMLBag second = new MIMLBag(arg1);
-			finalDistance = metric.distance(first, second);
+			if (distanceMatrix != null) {
+				Integer first = matrixIndex.get(arg0.relationalValue(1));
+				Integer second = first == null ? null : matrixIndex.get(arg1.relationalValue(1));
+				// The matrix stores distance(i, j) for i < j
+				if (second != null && (first < second || metric.isSymmetric())) {
+					numLookups.increment();
+					finalDistance = distanceMatrix.get(first, second);
+					return finalDistance > arg2 ? Double.POSITIVE_INFINITY : finalDistance;
+				}
+			}
+
+			numEvaluations.increment();
+
+			if (metric instanceof IBoundedDistance)
+				return ((IBoundedDistance) metric).distance(arg0, arg1, arg2);
+
+			finalDistance = metric.distance(arg0, arg1);
 
 		} catch (Exception e) {
 			throw new RuntimeException(e);
@@ -17,6 +17,7 @@ package miml.classifiers.miml.lazy;
 import org.apache.commons.configuration2.Configuration;
 
 import mulan.classifier.lazy.IBLR_ML;
+import mulan.data.MultiLabelInstances;
 
 /**
  * MIMLIBLR is the adaptation to the MIML framework of the IBLR_ML[1]
@@ -48,7 +49,7 @@ public class MIMLIBLR extends MultiInstanceMultiLabelKNN {
 	public MIMLIBLR(MIMLDistanceFunction metric) {
 		super(metric, 10);
 		this.addFeatures = false;
-		this.classifier = new IBLR_ML(10, addFeatures);
+		this.classifier = new MetricIndexIBLR_ML(10, addFeatures);
 	}
 
 	/**
@@ -61,7 +62,7 @@ public class MIMLIBLR extends MultiInstanceMultiLabelKNN {
 	public MIMLIBLR(int numOfNeighbours, MIMLDistanceFunction metric) {
 		super(metric, numOfNeighbours);
 		this.addFeatures = false;
-		this.classifier = new IBLR_ML(numOfNeighbours, addFeatures);
+		this.classifier = new MetricIndexIBLR_ML(numOfNeighbours, addFeatures);
 	}
 
 	/**
@@ -76,7 +77,7 @@ public class MIMLIBLR extends MultiInstanceMultiLabelKNN {
 	public MIMLIBLR(int numOfNeighbours, boolean addFeatures, MIMLDistanceFunction metric) {
 		super(metric, numOfNeighbours);
 		this.addFeatures = addFeatures;
-		this.classifier = new IBLR_ML(numOfNeighbours, addFeatures);
+		this.classifier = new MetricIndexIBLR_ML(numOfNeighbours, addFeatures);
 	}
 
 	/**
@@ -95,7 +96,7 @@ public class MIMLIBLR extends MultiInstanceMultiLabelKNN {
 	public void configure(Configuration configuration) {
 		super.configure(configuration);
 		this.addFeatures = configuration.getBoolean("addFeatures", false);
-		this.classifier = new IBLR_ML(numOfNeighbours, addFeatures);
+		this.classifier = new MetricIndexIBLR_ML(numOfNeighbours, addFeatures);
 	}
 
 	/**
@@ -118,4 +119,37 @@ public class MIMLIBLR extends MultiInstanceMultiLabelKNN {
 		this.addFeatures = addFeatures;
 	}
 
+	/**
+	 * IBLR_ML whose neighbour search can be replaced by a metric index.
+	 */
+	protected static class MetricIndexIBLR_ML extends IBLR_ML implements IMetricIndexedKNN {
+
+		/** For serialization. */
+		private static final long serialVersionUID = -2714591860725730429L;
+
+		/** Whether the neighbour search is replaced by a metric index. */
+		protected boolean metricIndex = false;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param numNeighbors The number of neighbours.
+		 * @param addFeatures  Whether IBLR-ML+ is used.
+		 */
+		public MetricIndexIBLR_ML(int numNeighbors, boolean addFeatures) {
+			super(numNeighbors, addFeatures);
+		}
+
+		@Override
+		public void setMetricIndex(boolean metricIndex) {
+			this.metricIndex = metricIndex;
+		}
+
+		@Override
+		protected void buildInternal(MultiLabelInstances train) throws Exception {
+			super.buildInternal(train);
+			if (metricIndex)
+				lnn = buildMetricIndex(lnn);
+		}
+	}
 }
@@ -17,6 +17,7 @@ package miml.classifiers.miml.lazy;
 import org.apache.commons.configuration2.Configuration;
 
 import mulan.classifier.lazy.MLkNN;
+import mulan.data.MultiLabelInstances;
 
 /**
  * MIMLMAPkNN is the adaptation to the MIML framework of the MLkNN[1]
@@ -43,7 +44,7 @@ public class MIMLMAPkNN extends MultiInstanceMultiLabelKNN {
 	 */
 	public MIMLMAPkNN(MIMLDistanceFunction metric) {
 		super(metric, 10);
-        this.classifier = new MLkNN(10, smooth);
+        this.classifier = new MetricIndexMLkNN(10, smooth);
 	}
 
 	/**
@@ -55,7 +56,7 @@ public class MIMLMAPkNN extends MultiInstanceMultiLabelKNN {
 	 */
 	public MIMLMAPkNN(int numOfNeighbours, MIMLDistanceFunction metric) {
 		super(metric, numOfNeighbours);
-        this.classifier = new MLkNN(numOfNeighbours, smooth);
+        this.classifier = new MetricIndexMLkNN(numOfNeighbours, smooth);
 	}
 
 	/**
@@ -69,7 +70,7 @@ public class MIMLMAPkNN extends MultiInstanceMultiLabelKNN {
 	public MIMLMAPkNN(int numOfNeighbours, double smooth, MIMLDistanceFunction metric) {
 		super(metric, numOfNeighbours);
 		this.smooth = smooth;
-		this.classifier = new MLkNN(numOfNeighbours, smooth);
+		this.classifier = new MetricIndexMLkNN(numOfNeighbours, smooth);
 	}
 
 	/**
@@ -88,7 +89,7 @@ public class MIMLMAPkNN extends MultiInstanceMultiLabelKNN {
 	public void configure(Configuration configuration) {
 		super.configure(configuration);
 		this.smooth = configuration.getDouble("smooth", 1.0);
-		this.classifier = new MLkNN(numOfNeighbours, smooth);
+		this.classifier = new MetricIndexMLkNN(numOfNeighbours, smooth);
 	}
 
 	/**
@@ -108,4 +109,38 @@ public class MIMLMAPkNN extends MultiInstanceMultiLabelKNN {
 	public void setSmooth(double smooth) {
 		this.smooth = smooth;
 	}
+
+	/**
+	 * MLkNN whose neighbour search can be replaced by a metric index.
+	 */
+	protected static class MetricIndexMLkNN extends MLkNN implements IMetricIndexedKNN {
+
+		/** For serialization. */
+		private static final long serialVersionUID = 3141475201823396110L;
+
+		/** Whether the neighbour search is replaced by a metric index. */
+		protected boolean metricIndex = false;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param numOfNeighbors The number of neighbours.
+		 * @param smooth         The smooth factor.
+		 */
+		public MetricIndexMLkNN(int numOfNeighbors, double smooth) {
+			super(numOfNeighbors, smooth);
+		}
+
+		@Override
+		public void setMetricIndex(boolean metricIndex) {
+			this.metricIndex = metricIndex;
+		}
+
+		@Override
+		protected void buildInternal(MultiLabelInstances train) throws Exception {
+			super.buildInternal(train);
+			if (metricIndex)
+				lnn = buildMetricIndex(lnn);
+		}
+	}
 }
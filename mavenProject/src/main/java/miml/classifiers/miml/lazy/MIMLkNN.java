@@ -15,20 +15,26 @@
 
 package miml.classifiers.miml.lazy;
 
-import java.util.HashSet;
-import java.util.PriorityQueue;
-import java.util.Set;
+import java.util.Arrays;
 
 import org.apache.commons.configuration2.Configuration;
 
+import miml.classifiers.miml.IMIMLPredictor;
 import miml.classifiers.miml.MIMLClassifier;
+import miml.core.TopKSelector;
+import miml.core.distance.DistanceMatrix;
+import miml.core.distance.DistanceMatrixBuilder;
+import miml.core.distance.DistanceMatrixCache;
 import miml.core.distance.HausdorffDistance;
 import miml.core.distance.IDistance;
 import miml.data.MIMLBag;
 import miml.data.MIMLInstances;
 import mulan.classifier.InvalidDataException;
+import mulan.classifier.ModelInitializationException;
 import mulan.classifier.MultiLabelOutput;
 import mulan.core.ArgumentNullException;
+import weka.core.Instance;
+import weka.core.Instances;
 import weka.core.matrix.Matrix;
 import weka.core.matrix.SingularValueDecomposition;
 
@@ -65,10 +71,22 @@ public class MIMLkNN extends MIMLClassifier {
 	int d_size;
 
 	/** Distance matrix between dataset's instances. */
-	protected double[][] distance_matrix;
+	protected DistanceMatrix distance_matrix;
 
-	/** Instances' references matrix. */
-	protected int[][] ref_matrix;
+	/** Number of threads used to compute the distance matrix. */
+	protected int numThreads = 1;
+
+	/** Whether the distance matrix is stored with single precision. */
+	protected boolean singlePrecision = false;
+
+	/** Directory where distance matrices are cached, or null to disable it. */
+	protected String cacheDirectory = null;
+
+	/** References and citers of the dataset's instances. */
+	protected ReferenceGraph ref_graph;
+
+	/** Distance of each bag to its furthest reference. */
+	protected double[] ref_radius;
 
 	/** Weights matrix. */
 	protected double[][] weights_matrix;
@@ -133,11 +151,14 @@ public class MIMLkNN extends MIMLClassifier {
 		calculateDatasetDistances();
 		calculateReferenceMatrix();
 
+		// Labels are stored first, they are used to count the labels of neighbours
+		for (int i = 0; i < d_size; ++i)
+			t_matrix[i] = getBagLabels(i);
+
 		for (int i = 0; i < d_size; ++i) {
-			Integer[] neighbours = getUnionNeighbours(i);
+			int[] neighbours = getUnionNeighbours(i);
 			// Update matrices
-			phi_matrix[i] = calculateRecordLabel(neighbours).clone();
-			t_matrix[i] = getBagLabels(i).clone();
+			phi_matrix[i] = calculateRecordLabel(neighbours);
 		}
 
 		weights_matrix = getWeightsMatrix();
@@ -155,34 +176,75 @@ public class MIMLkNN extends MIMLClassifier {
 
 		((HausdorffDistance) metric).update(instance);
 
-		// Create a new distances matrix
-		double[][] distanceMatrixCopy = distance_matrix.clone();
-		distance_matrix = new double[d_size + 1][d_size + 1];
+		return predict(instance, new double[d_size]);
+	}
 
-		for (int i = 0; i < d_size; ++i) {
-			// Fill distance matrix with previous values
-			System.arraycopy(distanceMatrixCopy[i], 0, distance_matrix[i], 0, d_size);
-			// Update distance matrix with the new bag's distances
-			double distance = metric.distance(instance, dataset.getBag(i));
-			distance_matrix[i][d_size] = distance;
-			distance_matrix[d_size][i] = distance;
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see miml.classifiers.miml.MIMLClassifier#makePredictionsInternal(miml.data.
+	 * MIMLInstances)
+	 */
+	@Override
+	protected MultiLabelOutput[] makePredictionsInternal(MIMLInstances data) throws Exception {
+
+		// Bags are predicted in order without copies, reusing the same distances
+		// array
+		Instances bags = data.getDataSet();
+		double[] distances = new double[d_size];
+		MultiLabelOutput[] predictions = new MultiLabelOutput[bags.numInstances()];
+		for (int i = 0; i < predictions.length; ++i) {
+			((HausdorffDistance) metric).update(bags.instance(i));
+			predictions[i] = predict(bags.instance(i), distances);
 		}
 
-		// Update d_size to calculate references matrix
-		d_size++;
-		calculateReferenceMatrix();
-		// Restore d_size value
-		d_size--;
+		return predictions;
+	}
 
-		Integer[] neighbours = getUnionNeighbours(d_size);
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see miml.classifiers.miml.IMIMLClassifier#freeze()
+	 */
+	@Override
+	public IMIMLPredictor freeze() throws Exception {
+		if (!isModelInitialized()) {
+			throw new ModelInitializationException("The model has not been trained.");
+		}
+
+		// The ranges of the metric are initialized before sharing it, and they are
+		// not updated with the predicted bags
+		((HausdorffDistance) metric).getRanges();
+
+		return instance -> predict(instance, new double[d_size]);
+	}
+
+	/**
+	 * Predicts the labels of a bag without modifying the model, so it can be
+	 * called by several threads at the same time.
+	 *
+	 * @param instance  The bag to predict.
+	 * @param distances Array of d_size elements where the distances of the bag to
+	 *                  the training bags are stored.
+	 * @return The prediction.
+	 * @throws Exception To be handled in an upper level.
+	 */
+	protected MultiLabelOutput predict(Instance instance, double[] distances) throws Exception {
+
+		for (int i = 0; i < d_size; ++i)
+			distances[i] = metric.distance(instance, dataset.getDataSet().instance(i));
+
+		// Only the references and citers of the new bag are needed, the ones of the
+		// training bags are not recalculated
+		int[] neighbours = getUnionNeighbours(getNewBagReferences(distances), getNewBagCiters(distances));
 		double[] recordLabel = calculateRecordLabel(neighbours);
 
 		double[] confidences = new double[numLabels];
 		boolean[] predictions = new boolean[numLabels];
 
 		// Apply linear classifier to each label
+		double[] column = new double[numLabels];
 		for (int i = 0; i < numLabels; ++i) {
-			double[] column = new double[numLabels];
 
 			// Get column of weights
 			for (int j = 0; j < numLabels; ++j)
@@ -193,11 +255,7 @@ public class MIMLkNN extends MIMLClassifier {
 			confidences[i] = (decision) ? 1.0 : 0.0;
 		}
 
-		MultiLabelOutput finalDecision = new MultiLabelOutput(predictions, confidences);
-		// Restore original distance matrix
-		distance_matrix = distanceMatrixCopy.clone();
-
-		return finalDecision;
+		return new MultiLabelOutput(predictions, confidences);
 	}
 
 	/**
@@ -207,37 +265,43 @@ public class MIMLkNN extends MIMLClassifier {
 	 */
 	protected void calculateDatasetDistances() throws Exception {
 
-		distance_matrix = new double[d_size][d_size];
-		double distance;
-
-		for (int i = 0; i < d_size; ++i) {
+		DistanceMatrixBuilder builder = new DistanceMatrixBuilder(numThreads, singlePrecision);
+		if (cacheDirectory != null)
+			distance_matrix = new DistanceMatrixCache(cacheDirectory).get(metric, dataset.getDataSet(), builder);
+		else
+			distance_matrix = builder.compute(metric, dataset.getDataSet());
+	}
 
-			MIMLBag first = dataset.getBag(i);
-			for (int j = i; j < d_size; ++j) {
-				MIMLBag second = dataset.getBag(j);
-				distance = metric.distance(first, second);
-				distance_matrix[i][j] = distance;
-				distance_matrix[j][i] = distance;
-			}
-		}
+	/**
+	 * Gets the distance between two training bags.
+	 *
+	 * @param i Index of the first bag.
+	 * @param j Index of the second bag.
+	 * @return The distance.
+	 */
+	protected double getDistance(int i, int j) {
+		return distance_matrix.get(i, j);
 	}
 
 	/**
-	 * Calculate the references matrix.
+	 * Calculate the references of all bags.
 	 *
 	 * @throws Exception the exception
 	 */
 	protected void calculateReferenceMatrix() throws Exception {
 
-		ref_matrix = new int[d_size][d_size];
+		ref_graph = new ReferenceGraph(d_size, num_references);
+		ref_radius = new double[d_size];
 
 		for (int i = 0; i < d_size; ++i) {
-
 			int[] references = calculateBagReferences(i);
-
-			for (int j = 0; j < references.length; ++j)
-				ref_matrix[i][references[j]] = 1;
+			ref_graph.setReferences(i, references);
+			// References are sorted by distance
+			ref_radius[i] = num_references > 0 ? getDistance(i, references[num_references - 1])
+					: Double.NEGATIVE_INFINITY;
 		}
+
+		ref_graph.computeCiters();
 	}
 
 	/**
@@ -249,21 +313,15 @@ public class MIMLkNN extends MIMLClassifier {
 	 * @throws Exception A exception.
 	 */
 	protected int[] calculateBagReferences(int indexBag) throws Exception {
-		// Nearest neighbours of the selected bag
-		int[] nearestNeighbours = new int[num_references];
-		// Store indices in priority queue, sorted by distance to selected bag
-		PriorityQueue<Integer> pq = new PriorityQueue<>(d_size,
-                (a, b) -> Double.compare(distance_matrix[indexBag][a], distance_matrix[indexBag][b]));
+		// Keep the R (num_references) nearest neighbours of the selected bag
+		TopKSelector nearest = new TopKSelector(num_references);
 
 		for (int i = 0; i < d_size; ++i) {
 			if (i != indexBag)
-				pq.add(i);
+				nearest.offer(i, getDistance(indexBag, i));
 		}
-		// Get the R (num_references) nearest neighbours
-		for (int i = 0; i < num_references; ++i)
-			nearestNeighbours[i] = pq.poll();
 
-		return nearestNeighbours;
+		return nearest.sortedIndices();
 	}
 
 	/**
@@ -275,16 +333,7 @@ public class MIMLkNN extends MIMLClassifier {
 	 */
 	protected int[] getReferences(int indexBag) {
 
-		int[] references = new int[num_references];
-		int idx = 0;
-
-		for (int i = 0; i < d_size; ++i) {
-			if (ref_matrix[indexBag][i] == 1) {
-				references[idx] = i;
-				idx++;
-			}
-		}
-		return references;
+		return ref_graph.getReferences(indexBag);
 	}
 
 	/**
@@ -297,21 +346,45 @@ public class MIMLkNN extends MIMLClassifier {
 	 */
 	protected int[] getCiters(int indexBag) {
 
-		PriorityQueue<Integer> pq = new PriorityQueue<Integer>(num_references,
-				(a, b) -> Double.compare(distance_matrix[indexBag][a], distance_matrix[indexBag][b]));
+		// Keep the C (num_citers) nearest citers of the selected bag
+		TopKSelector nearest = new TopKSelector(num_citers);
 
-		for (int i = 0; i < d_size; ++i)
-			if (ref_matrix[i][indexBag] == 1)
-				pq.add(i);
+		for (int citer : ref_graph.getCiters(indexBag))
+			nearest.offer(citer, getDistance(indexBag, citer));
+
+		return nearest.sortedIndices();
+	}
+
+	/**
+	 * Calculate the references of the bag being predicted.
+	 *
+	 * @param distances The distances of the new bag to the training bags.
+	 * @return The new bag's references.
+	 */
+	protected int[] getNewBagReferences(double[] distances) {
 
-		int citers = Math.min(num_citers, pq.size());
-		// Nearest citers of the selected bag
-		int[] nearestCiters = new int[citers];
-		// Get the C (num_citers or pq.size()) nearest citers
-		for (int i = 0; i < citers; ++i)
-			nearestCiters[i] = pq.poll();
+		// Keep the R (num_references) nearest neighbours of the new bag
+		return TopKSelector.smallest(distances, num_references);
+	}
 
-		return nearestCiters;
+	/**
+	 * Calculate the citers of the bag being predicted. A training bag cites the
+	 * new bag if it is closer to it than its furthest reference, so only the
+	 * distances of the new bag are needed.
+	 *
+	 * @param distances The distances of the new bag to the training bags.
+	 * @return The new bag's citers.
+	 */
+	protected int[] getNewBagCiters(double[] distances) {
+
+		// Keep the C (num_citers) nearest citers of the new bag
+		TopKSelector nearest = new TopKSelector(num_citers);
+
+		for (int i = 0; i < d_size; ++i)
+			if (distances[i] < ref_radius[i])
+				nearest.offer(i, distances[i]);
+
+		return nearest.sortedIndices();
 	}
 
 	/**
@@ -322,18 +395,35 @@ public class MIMLkNN extends MIMLClassifier {
 	 * 
 	 * @return Ihe union of references and citers.
 	 */
-	protected Integer[] getUnionNeighbours(int indexBag) {
-
-		int[] references = getReferences(indexBag);
-		int[] citers = getCiters(indexBag);
+	protected int[] getUnionNeighbours(int indexBag) {
 
-		// Union references and citers sets
-		Set<Integer> set = new HashSet<Integer>();
+		return getUnionNeighbours(getReferences(indexBag), getCiters(indexBag));
+	}
 
-        for (int reference : references) set.add(reference);
-        for (int citer : citers) set.add(citer);
+	/**
+	 * Gets the union of references and citers (without repetitions).
+	 *
+	 * @param references The references of a bag.
+	 * @param citers     The citers of a bag.
+	 * 
+	 * @return Ihe union of references and citers.
+	 */
+	protected int[] getUnionNeighbours(int[] references, int[] citers) {
+
+		// Union references and citers sets, which are small
+		int[] union = new int[references.length + citers.length];
+		int size = references.length;
+		System.arraycopy(references, 0, union, 0, size);
+
+		for (int citer : citers) {
+			boolean found = false;
+			for (int i = 0; i < references.length && !found; ++i)
+				found = references[i] == citer;
+			if (!found)
+				union[size++] = citer;
+		}
 
-        return set.toArray(new Integer[set.size()]);
+		return size == union.length ? union : Arrays.copyOf(union, size);
 	}
 
 	/**
@@ -343,16 +433,17 @@ public class MIMLkNN extends MIMLClassifier {
 	 * 
 	 * @return The labels' record.
 	 */
-	protected double[] calculateRecordLabel(Integer[] indices) {
+	protected double[] calculateRecordLabel(int[] indices) {
 
 		double[] labelCount = new double[numLabels];
 
-        for (Integer index : indices) {
-            for (int j = 0; j < numLabels; ++j) {
-                if (dataset.getDataSet().instance(index).stringValue(labelIndices[j]).equals("1"))
-                    labelCount[j]++;
-            }
-        }
+		// Labels of the training bags are in t_matrix as 1 or -1
+		for (int index : indices) {
+			for (int j = 0; j < numLabels; ++j) {
+				if (t_matrix[index][j] > 0)
+					labelCount[j]++;
+			}
+		}
 		return labelCount;
 	}
 
@@ -438,6 +529,63 @@ public class MIMLkNN extends MIMLClassifier {
 		return decision > 0.3;
 	}
 
+	/**
+	 * Returns the number of threads used to compute the distance matrix.
+	 *
+	 * @return The number of threads.
+	 */
+	public int getNumThreads() {
+		return numThreads;
+	}
+
+	/**
+	 * Sets the number of threads used to compute the distance matrix. If it is not
+	 * positive, the number of available processors is used.
+	 *
+	 * @param numThreads The number of threads.
+	 */
+	public void setNumThreads(int numThreads) {
+		this.numThreads = numThreads;
+	}
+
+	/**
+	 * Returns whether the distance matrix is stored with single precision.
+	 *
+	 * @return True if the distances are stored as float.
+	 */
+	public boolean isSinglePrecision() {
+		return singlePrecision;
+	}
+
+	/**
+	 * Sets whether the distance matrix is stored with single precision, which
+	 * halves the memory needed at the cost of rounding the distances to float.
+	 *
+	 * @param singlePrecision True to store the distances as float.
+	 */
+	public void setSinglePrecision(boolean singlePrecision) {
+		this.singlePrecision = singlePrecision;
+	}
+
+	/**
+	 * Returns the directory where distance matrices are cached.
+	 *
+	 * @return The directory or null if the cache is disabled.
+	 */
+	public String getCacheDirectory() {
+		return cacheDirectory;
+	}
+
+	/**
+	 * Sets the directory where distance matrices are cached, so that runs on the
+	 * same data with the same metric reuse the matrix.
+	 *
+	 * @param cacheDirectory The directory or null to disable the cache.
+	 */
+	public void setCacheDirectory(String cacheDirectory) {
+		this.cacheDirectory = cacheDirectory;
+	}
+
 	/**
 	 * Returns the number of citers considered to estimate the class prediction of
 	 * tests bags.
@@ -490,6 +638,9 @@ public class MIMLkNN extends MIMLClassifier {
 
 		this.num_references = configuration.getInt("nReferences", 1);
 		this.num_citers = configuration.getInt("nCiters", 1);
+		this.numThreads = configuration.getInt("numThreads", 1);
+		this.singlePrecision = configuration.getBoolean("singlePrecision", false);
+		this.cacheDirectory = configuration.getString("cacheDirectory", null);
 
 		try {
 			// Get the name of the metric class
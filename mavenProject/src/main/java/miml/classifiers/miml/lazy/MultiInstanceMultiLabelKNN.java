@@ -16,15 +16,21 @@ package miml.classifiers.miml.lazy;
 
 import org.apache.commons.configuration2.Configuration;
 
+import miml.classifiers.miml.IMIMLPredictor;
 import miml.classifiers.miml.MIMLClassifier;
+import miml.core.distance.DistanceMatrixBuilder;
+import miml.core.distance.DistanceMatrixCache;
 import miml.core.distance.HausdorffDistance;
 import miml.core.distance.IDistance;
 import miml.data.MIMLBag;
 import miml.data.MIMLInstances;
 import mulan.classifier.InvalidDataException;
+import mulan.classifier.ModelInitializationException;
+import mulan.classifier.MultiLabelLearner;
 import mulan.classifier.MultiLabelOutput;
 import mulan.classifier.lazy.MultiLabelKNN;
 import weka.core.DistanceFunction;
+import weka.core.neighboursearch.LinearNNSearch;
 
 /** Wrapper for class MultiLabelKNN of Mulan to work with MIML data */
 public abstract class MultiInstanceMultiLabelKNN extends MIMLClassifier {
@@ -40,6 +46,22 @@ public abstract class MultiInstanceMultiLabelKNN extends MIMLClassifier {
 	/** Metric for measure the distance between bags. */
 	protected MIMLDistanceFunction metric;
 
+	/**
+	 * Directory where the distance matrix of the training bags is cached, or null
+	 * to compute the distances on demand.
+	 */
+	protected String cacheDirectory = null;
+
+	/** Number of threads used to compute the distance matrix. */
+	protected int numThreads = 1;
+
+	/**
+	 * Whether predictions search the neighbours with a {@link VPTreeNNSearch}
+	 * instead of a linear scan. It is only exact for metric distances, and the
+	 * metric is not updated with the predicted bags.
+	 */
+	protected boolean metricIndex = false;
+
 	/** Mulan MultiLabelKNN classifier. */
 	protected MultiLabelKNN classifier;
 
@@ -79,6 +101,9 @@ public abstract class MultiInstanceMultiLabelKNN extends MIMLClassifier {
 	public void configure(Configuration configuration) {
 
 		this.numOfNeighbours = configuration.getInt("numOfNeighbours", 10);
+		this.cacheDirectory = configuration.getString("cacheDirectory", null);
+		this.numThreads = configuration.getInt("numThreads", 1);
+		this.metricIndex = configuration.getBoolean("metricIndex", false);
 		try {
 			// Get the name of the metric class
 			String metricName = configuration.getString("metric[@name]");
@@ -102,19 +127,79 @@ public abstract class MultiInstanceMultiLabelKNN extends MIMLClassifier {
 		IDistance m = metric.getMetric();
 		((HausdorffDistance) m).setInstances(trainingSet);
 
+		if (cacheDirectory != null) {
+			DistanceMatrixBuilder builder = new DistanceMatrixBuilder(numThreads);
+			metric.setDistanceMatrix(trainingSet.getDataSet(),
+					new DistanceMatrixCache(cacheDirectory).get(m, trainingSet.getDataSet(), builder));
+		} else {
+			metric.setDistanceMatrix(null, null);
+		}
+
 		classifier.setDfunc(metric);
+		if (classifier instanceof IMetricIndexedKNN)
+			((IMetricIndexedKNN) classifier).setMetricIndex(metricIndex);
 		classifier.build(trainingSet.getMLDataSet());
 	}
 
+	/**
+	 * Builds a {@link VPTreeNNSearch} over the training bags of a linear neighbour
+	 * search, to be used in place of it by the classifiers that implement
+	 * {@link IMetricIndexedKNN}.
+	 *
+	 * @param linear The linear search of the Mulan classifier, once built.
+	 * @return The metric index.
+	 * @throws Exception To be handled in an upper level.
+	 */
+	protected static LinearNNSearch buildMetricIndex(LinearNNSearch linear) throws Exception {
+		VPTreeNNSearch index = new VPTreeNNSearch();
+		index.setDistanceFunction(linear.getDistanceFunction());
+		index.setMeasurePerformance(false);
+		index.setInstances(linear.getInstances());
+		return index;
+	}
+
 	@Override
 	protected MultiLabelOutput makePredictionInternal(MIMLBag instance) throws Exception, InvalidDataException {
 
-		IDistance m = metric.getMetric();
-		m.update(instance);
+		// Updating the ranges of the metric would build the index again
+		if (!metricIndex) {
+			IDistance m = metric.getMetric();
+			m.update(instance);
+		}
 
         return classifier.makePrediction(instance);
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see miml.classifiers.miml.IMIMLClassifier#freeze()
+	 */
+	@Override
+	public IMIMLPredictor freeze() throws Exception {
+		if (!isModelInitialized()) {
+			throw new ModelInitializationException("The model has not been trained.");
+		}
+
+		// The metric is not updated with the predicted bags. Mulan's neighbour
+		// search keeps the distances of the last query, so each thread predicts
+		// with its own copy of the classifier
+		ThreadLocal<MultiLabelLearner> copies = ThreadLocal.withInitial(() -> {
+			try {
+				synchronized (classifier) {
+					return classifier.makeCopy();
+				}
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		});
+		return instance -> {
+			MIMLBag copy = new MIMLBag(instance);
+			copy.setValue(labelIndices[labelIndices.length - 1], 1);
+			return copies.get().makePrediction(copy);
+		};
+	}
+
 	/**
 	 * Gets the distance metric considered by the classifier.
 	 *
@@ -158,4 +243,68 @@ public abstract class MultiInstanceMultiLabelKNN extends MIMLClassifier {
 	public void setnumOfNeighbours(int numOfNeighbours) {
 		this.numOfNeighbours = numOfNeighbours;
 	}
+
+	/**
+	 * Gets the directory where the distance matrix of the training bags is
+	 * cached.
+	 *
+	 * @return The directory or null if the cache is disabled.
+	 */
+	public String getCacheDirectory() {
+		return cacheDirectory;
+	}
+
+	/**
+	 * Sets the directory where the distance matrix of the training bags is cached.
+	 * When it is set, the matrix is computed once (or loaded from the cache) and
+	 * the distances between training bags are read from it.
+	 *
+	 * @param cacheDirectory The directory or null to disable the cache.
+	 */
+	public void setCacheDirectory(String cacheDirectory) {
+		this.cacheDirectory = cacheDirectory;
+	}
+
+	/**
+	 * Returns whether predictions search the neighbours with a vantage-point tree.
+	 *
+	 * @return True if the metric index is used.
+	 */
+	public boolean getMetricIndex() {
+		return metricIndex;
+	}
+
+	/**
+	 * Sets whether predictions search the neighbours with a vantage-point tree
+	 * built over the training bags, which needs much less distance evaluations
+	 * than a linear scan. The neighbours are only guaranteed to be the same for
+	 * distances that satisfy the triangle inequality, such as MaximalHausdorff.
+	 * As the bounds of the tree depend on the ranges of the metric, the metric is
+	 * not updated with the predicted bags, as in {@link #freeze()}. It is only
+	 * used by the Mulan classifiers that implement {@link IMetricIndexedKNN}.
+	 *
+	 * @param metricIndex True to use the metric index.
+	 */
+	public void setMetricIndex(boolean metricIndex) {
+		this.metricIndex = metricIndex;
+	}
+
+	/**
+	 * Returns the number of threads used to compute the distance matrix.
+	 *
+	 * @return The number of threads.
+	 */
+	public int getNumThreads() {
+		return numThreads;
+	}
+
+	/**
+	 * Sets the number of threads used to compute the distance matrix. If it is not
+	 * positive, the number of available processors is used.
+	 *
+	 * @param numThreads The number of threads.
+	 */
+	public void setNumThreads(int numThreads) {
+		this.numThreads = numThreads;
+	}
 }
@@ -0,0 +1,158 @@
+/*    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package miml.classifiers.miml.lazy;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Adjacency lists of the references and citers of the bags of a data set, as
+ * used by {@link MIMLkNN}. Each bag has a fixed number of references, stored in
+ * a single array, and the citers of each bag (the bags that have it as
+ * reference) are stored in compressed form once all the references are set.
+ * It replaces a N x N matrix of flags with O(N x R) memory.
+ *
+ * @author agent
+ * @version 20261018
+ */
+public class ReferenceGraph implements Serializable {
+
+	/** For serialization */
+	private static final long serialVersionUID = -8468335180317389102L;
+
+	/** Number of bags. */
+	protected int numBags;
+
+	/** Number of references of each bag. */
+	protected int numReferences;
+
+	/** References of all bags, numReferences per bag. */
+	protected int[] references;
+
+	/** Offsets of the citers of each bag, with numBags+1 elements. */
+	protected int[] citerOffsets;
+
+	/** Citers of all bags. */
+	protected int[] citers;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param numBags       Number of bags.
+	 * @param numReferences Number of references of each bag.
+	 */
+	public ReferenceGraph(int numBags, int numReferences) {
+		this.numBags = numBags;
+		this.numReferences = numReferences;
+		this.references = new int[numBags * numReferences];
+	}
+
+	/**
+	 * Gets the number of bags.
+	 *
+	 * @return The number of bags.
+	 */
+	public int getNumBags() {
+		return numBags;
+	}
+
+	/**
+	 * Gets the number of references of each bag.
+	 *
+	 * @return The number of references.
+	 */
+	public int getNumReferences() {
+		return numReferences;
+	}
+
+	/**
+	 * Sets the references of a bag. The citers have to be computed again with
+	 * {@link #computeCiters()}.
+	 *
+	 * @param bag        Index of the bag.
+	 * @param references The indices of the references, with numReferences
+	 *                   elements.
+	 */
+	public void setReferences(int bag, int[] references) {
+		System.arraycopy(references, 0, this.references, bag * numReferences, numReferences);
+		citers = null;
+		citerOffsets = null;
+	}
+
+	/**
+	 * Gets the references of a bag.
+	 *
+	 * @param bag Index of the bag.
+	 * @return A copy of the indices of the references.
+	 */
+	public int[] getReferences(int bag) {
+		return Arrays.copyOfRange(references, bag * numReferences, (bag + 1) * numReferences);
+	}
+
+	/**
+	 * Gets a reference of a bag.
+	 *
+	 * @param bag       Index of the bag.
+	 * @param reference Position of the reference.
+	 * @return The index of the reference.
+	 */
+	public int getReference(int bag, int reference) {
+		return references[bag * numReferences + reference];
+	}
+
+	/**
+	 * Checks whether a bag is reference of another one.
+	 *
+	 * @param bag   Index of the bag.
+	 * @param other Index of the other bag.
+	 * @return True if other is a reference of bag.
+	 */
+	public boolean isReference(int bag, int other) {
+		for (int r = bag * numReferences, end = r + numReferences; r < end; r++)
+			if (references[r] == other)
+				return true;
+		return false;
+	}
+
+	/**
+	 * Computes the citers of all bags from the references.
+	 */
+	public void computeCiters() {
+		citerOffsets = new int[numBags + 1];
+		for (int r : references)
+			citerOffsets[r + 1]++;
+		for (int i = 0; i < numBags; i++)
+			citerOffsets[i + 1] += citerOffsets[i];
+
+		citers = new int[references.length];
+		int[] next = Arrays.copyOf(citerOffsets, numBags);
+		for (int i = 0; i < numBags; i++)
+			for (int r = i * numReferences, end = r + numReferences; r < end; r++)
+				citers[next[references[r]]++] = i;
+	}
+
+	/**
+	 * Gets the citers of a bag, i.e. the bags that have it as reference, in
+	 * ascending order of index.
+	 *
+	 * @param bag Index of the bag.
+	 * @return A copy of the indices of the citers.
+	 */
+	public int[] getCiters(int bag) {
+		if (citers == null)
+			computeCiters();
+		return Arrays.copyOfRange(citers, citerOffsets[bag], citerOffsets[bag + 1]);
+	}
+}
@@ -0,0 +1,524 @@
+/*    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package miml.classifiers.miml.lazy;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import miml.core.TopKSelector;
+import miml.core.distance.HausdorffDistance;
+import miml.core.distance.IDistance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.neighboursearch.LinearNNSearch;
+
+/**
+ * Nearest neighbour search over bags with a vantage-point tree. Each node of
+ * the tree chooses a bag (the vantage point) and splits the rest of bags by the
+ * median of their distances to it. A query computes the distance to the
+ * vantage point and discards the subtrees that, by the triangle inequality,
+ * cannot contain bags closer than the current k-th neighbour. Leaves are
+ * scanned with the current k-th distance as cut off value. Directed distances
+ * (see {@link IDistance#isSymmetric()}) are supported by keeping the bounds of
+ * the distances in both directions, at the cost of one more distance per
+ * vantage point.
+ * <p>
+ * It extends {@link LinearNNSearch} to be used in place of it by the Mulan
+ * MultiLabelKNN classifiers and returns the same neighbours: the k nearest bags
+ * plus those at the same distance as the k-th one, sorted by distance. Results
+ * are only exact when the distance satisfies the triangle inequality, such as
+ * the maximal Hausdorff distance. For other distances (e.g. minimal and
+ * average Hausdorff distances), some neighbours may be missed.
+ * <p>
+ * The bounds of the nodes depend on the ranges used by the metric to normalize
+ * the instances. If they change (e.g. the metric is updated with a bag out of
+ * the ranges), the tree is built again before the next query, so queries
+ * should not update the metric.
+ *
+ * @author agent
+ * @version 20261018
+ */
+public class VPTreeNNSearch extends LinearNNSearch {
+
+	/** For serialization */
+	private static final long serialVersionUID = -2967416046134508723L;
+
+	/** Maximum number of bags in a leaf. */
+	public static final int DEFAULT_LEAF_SIZE = 8;
+
+	/** Maximum number of bags in a leaf. */
+	protected int leafSize = DEFAULT_LEAF_SIZE;
+
+	/** Relative tolerance of the bounds to rounding errors. */
+	protected static final double TOLERANCE = 1e-9;
+
+	/** Seed used to choose the vantage points. */
+	protected long seed = 1;
+
+	/** Indices of the bags, ordered so that each node covers a range. */
+	protected int[] order;
+
+	/** First position of the range of each node. */
+	protected int[] nodeStart;
+
+	/** Last position (exclusive) of the range of each node. */
+	protected int[] nodeEnd;
+
+	/**
+	 * Inside child of each node (bags closer to the vantage point), or -1 for
+	 * leaves.
+	 */
+	protected int[] nodeInside;
+
+	/** Outside child of each node, or -1 if it has none. */
+	protected int[] nodeOutside;
+
+	/**
+	 * Bounds of the bags of the children of each node, 4 values per node: the
+	 * minimum distance from the vantage point to the bags of the inside child,
+	 * the maximum distance from these bags to the vantage point, and the same
+	 * for the outside child. For symmetric distances, they are the range of
+	 * distances to the vantage point.
+	 */
+	protected double[] nodeBounds;
+
+	/** Whether the distance is symmetric. */
+	protected boolean symmetric = true;
+
+	/** Number of nodes. */
+	protected int numNodes;
+
+	/**
+	 * Ranges of the metric when the tree was built, or null if the metric does
+	 * not normalize.
+	 */
+	protected double[][] ranges;
+
+	/** Number of distances computed by the last query. */
+	protected int numDistances;
+
+	/**
+	 * No-argument constructor.
+	 */
+	public VPTreeNNSearch() {
+		super();
+	}
+
+	/**
+	 * Constructor that builds the tree over a data set.
+	 *
+	 * @param insts The bags.
+	 * @throws Exception To be handled in an upper level.
+	 */
+	public VPTreeNNSearch(Instances insts) throws Exception {
+		super(insts);
+	}
+
+	@Override
+	public String globalInfo() {
+		return "Class implementing a vantage-point tree for nearest neighbour search over bags.";
+	}
+
+	@Override
+	public void setInstances(Instances insts) throws Exception {
+		super.setInstances(insts);
+		if (m_DistanceFunction instanceof MIMLDistanceFunction)
+			symmetric = ((MIMLDistanceFunction) m_DistanceFunction).getMetric().isSymmetric();
+		buildTree();
+	}
+
+	/**
+	 * Builds the tree over the current instances.
+	 *
+	 * @throws Exception if occurred an error during distance calculation.
+	 */
+	protected void buildTree() throws Exception {
+		int n = m_Instances.numInstances();
+		order = new int[n];
+		for (int i = 0; i < n; ++i)
+			order[i] = i;
+
+		int maxNodes = Math.max(1, 2 * ((n + leafSize - 1) / Math.max(1, leafSize)) + 1);
+		nodeStart = new int[maxNodes];
+		nodeEnd = new int[maxNodes];
+		nodeInside = new int[maxNodes];
+		nodeOutside = new int[maxNodes];
+		nodeBounds = new double[4 * maxNodes];
+		numNodes = 0;
+		ranges = metricRanges();
+
+		if (n > 0)
+			buildNode(0, n, new double[n], symmetric ? null : new double[n], new Random(seed));
+	}
+
+	/**
+	 * Gets a copy of the ranges used by the metric to normalize the instances.
+	 *
+	 * @return The ranges, or null if the metric does not normalize.
+	 * @throws Exception To be handled in an upper level.
+	 */
+	protected double[][] metricRanges() throws Exception {
+		if (!(m_DistanceFunction instanceof MIMLDistanceFunction))
+			return null;
+		IDistance metric = ((MIMLDistanceFunction) m_DistanceFunction).getMetric();
+		double[][] current = metric instanceof HausdorffDistance ? ((HausdorffDistance) metric).getRanges() : null;
+		if (current == null)
+			return null;
+		double[][] copy = new double[current.length][];
+		for (int k = 0; k < current.length; ++k)
+			copy[k] = current[k].clone();
+		return copy;
+	}
+
+	/**
+	 * Builds the node of a range of bags.
+	 *
+	 * @param start     First position of the range.
+	 * @param end       Last position of the range (exclusive).
+	 * @param distances Buffer for the distances from the vantage point.
+	 * @param reverse   Buffer for the distances to the vantage point, or null if
+	 *                  the distance is symmetric.
+	 * @param random    Random number generator to choose the vantage point.
+	 * @return The index of the node.
+	 * @throws Exception if occurred an error during distance calculation.
+	 */
+	protected int buildNode(int start, int end, double[] distances, double[] reverse, Random random)
+			throws Exception {
+		int node = newNode(start, end);
+		if (end - start <= leafSize)
+			return node;
+
+		// Choose the vantage point and move it to the start of the range
+		swap(start, start + random.nextInt(end - start));
+		Instance vantage = m_Instances.instance(order[start]);
+
+		int first = start + 1;
+		for (int i = first; i < end; ++i)
+			distances[i] = m_DistanceFunction.distance(vantage, m_Instances.instance(order[i]));
+
+		// Sort the rest of the range by distance from the vantage point
+		sortByDistance(distances, first, end);
+
+		int middle = first + (end - first) / 2;
+		if (reverse == null) {
+			nodeBounds[4 * node] = distances[first];
+			nodeBounds[4 * node + 1] = distances[middle - 1];
+			nodeBounds[4 * node + 2] = distances[middle];
+			nodeBounds[4 * node + 3] = distances[end - 1];
+		} else {
+			double insideMax = Double.NEGATIVE_INFINITY, outsideMax = Double.NEGATIVE_INFINITY;
+			for (int i = first; i < end; ++i) {
+				reverse[i] = m_DistanceFunction.distance(m_Instances.instance(order[i]), vantage);
+				if (i < middle)
+					insideMax = Math.max(insideMax, reverse[i]);
+				else
+					outsideMax = Math.max(outsideMax, reverse[i]);
+			}
+			nodeBounds[4 * node] = distances[first];
+			nodeBounds[4 * node + 1] = insideMax;
+			nodeBounds[4 * node + 2] = distances[middle];
+			nodeBounds[4 * node + 3] = outsideMax;
+		}
+
+		int inside = middle > first ? buildNode(first, middle, distances, reverse, random) : -1;
+		int outside = buildNode(middle, end, distances, reverse, random);
+		nodeInside[node] = inside;
+		nodeOutside[node] = outside;
+		return node;
+	}
+
+	/**
+	 * Creates a node, initially a leaf.
+	 *
+	 * @param start First position of the range.
+	 * @param end   Last position of the range (exclusive).
+	 * @return The index of the node.
+	 */
+	protected int newNode(int start, int end) {
+		if (numNodes == nodeStart.length) {
+			int capacity = 2 * numNodes;
+			nodeStart = Arrays.copyOf(nodeStart, capacity);
+			nodeEnd = Arrays.copyOf(nodeEnd, capacity);
+			nodeInside = Arrays.copyOf(nodeInside, capacity);
+			nodeOutside = Arrays.copyOf(nodeOutside, capacity);
+			nodeBounds = Arrays.copyOf(nodeBounds, 4 * capacity);
+		}
+		int node = numNodes++;
+		nodeStart[node] = start;
+		nodeEnd[node] = end;
+		nodeInside[node] = -1;
+		nodeOutside[node] = -1;
+		return node;
+	}
+
+	/**
+	 * Sorts a range of bags by their distances to the vantage point.
+	 *
+	 * @param distances The distances, in the same positions as order.
+	 * @param start     First position of the range.
+	 * @param end       Last position of the range (exclusive).
+	 */
+	protected void sortByDistance(double[] distances, int start, int end) {
+		TopKSelector sorter = new TopKSelector(end - start);
+		for (int i = start; i < end; ++i)
+			sorter.offer(order[i], distances[i]);
+		int[] indices = new int[end - start];
+		double[] sorted = new double[end - start];
+		sorter.sorted(indices, sorted);
+		System.arraycopy(indices, 0, order, start, indices.length);
+		System.arraycopy(sorted, 0, distances, start, sorted.length);
+	}
+
+	/**
+	 * Swaps two positions of the order.
+	 *
+	 * @param i First position.
+	 * @param j Second position.
+	 */
+	protected void swap(int i, int j) {
+		int tmp = order[i];
+		order[i] = order[j];
+		order[j] = tmp;
+	}
+
+	@Override
+	public Instance nearestNeighbour(Instance target) throws Exception {
+		return kNearestNeighbours(target, 1).instance(0);
+	}
+
+	@Override
+	public Instances kNearestNeighbours(Instance target, int kNN) throws Exception {
+
+		// The bounds are not valid if the ranges of the metric have changed
+		if (!Arrays.deepEquals(ranges, metricRanges()))
+			buildTree();
+
+		if (m_Stats != null)
+			m_Stats.searchStart();
+
+		Query query = new Query(target, kNN);
+		numDistances = 0;
+		if (numNodes > 0)
+			search(0, query);
+
+		// The k nearest bags plus the ties with the k-th one
+		int[] indices = query.result();
+		m_Distances = query.candidateDistances;
+		Instances neighbours = new Instances(m_Instances, indices.length);
+		for (int index : indices)
+			neighbours.add(m_Instances.instance(index));
+		m_DistanceFunction.postProcessDistances(m_Distances);
+
+		if (m_Stats != null)
+			m_Stats.searchFinish();
+
+		return neighbours;
+	}
+
+	/**
+	 * Searches the neighbours in a node.
+	 *
+	 * @param node  The node.
+	 * @param query The query.
+	 * @throws Exception if occurred an error during distance calculation.
+	 */
+	protected void search(int node, Query query) throws Exception {
+		int start = nodeStart[node];
+		int end = nodeEnd[node];
+
+		if (nodeInside[node] < 0 && nodeOutside[node] < 0) {
+			for (int i = start; i < end; ++i) {
+				Instance instance = m_Instances.instance(order[i]);
+				if (instance == query.target)
+					continue;
+				query.consider(order[i], distance(query.target, instance, query.threshold()));
+			}
+			return;
+		}
+
+		// The exact distances to the vantage point are needed to prune
+		Instance vantage = m_Instances.instance(order[start]);
+		double toVantage = distance(query.target, vantage, Double.POSITIVE_INFINITY);
+		double fromVantage = symmetric ? toVantage : distance(vantage, query.target, Double.POSITIVE_INFINITY);
+		if (vantage != query.target)
+			query.consider(order[start], toVantage);
+
+		int base = 4 * node;
+		boolean insideFirst = fromVantage <= nodeBounds[base + 2];
+		for (int c = 0; c < 2; ++c) {
+			boolean inside = (c == 0) == insideFirst;
+			int child = inside ? nodeInside[node] : nodeOutside[node];
+			if (child < 0)
+				continue;
+			double low = nodeBounds[base + (inside ? 0 : 2)];
+			double high = nodeBounds[base + (inside ? 1 : 3)];
+			// By the triangle inequality, d(q,x) >= d(v,x) - d(v,q) and
+			// d(q,x) >= d(q,v) - d(x,v)
+			double bound = Math.max(low - fromVantage, toVantage - high);
+			double threshold = query.threshold();
+			if (bound <= threshold + TOLERANCE * (threshold + toVantage + fromVantage))
+				search(child, query);
+		}
+	}
+
+	/**
+	 * Computes the distance between the target and a bag.
+	 *
+	 * @param target   The target bag.
+	 * @param instance A bag of the data set.
+	 * @param cutOff   The cut off value.
+	 * @return The distance.
+	 */
+	protected double distance(Instance target, Instance instance, double cutOff) {
+		numDistances++;
+		if (m_Stats != null)
+			m_Stats.incrPointCount();
+		return m_DistanceFunction.distance(target, instance, cutOff, m_Stats);
+	}
+
+	/**
+	 * Gets the number of distances computed by the last query.
+	 *
+	 * @return The number of distances.
+	 */
+	public int getNumDistances() {
+		return numDistances;
+	}
+
+	/**
+	 * Gets the maximum number of bags in a leaf.
+	 *
+	 * @return The leaf size.
+	 */
+	public int getLeafSize() {
+		return leafSize;
+	}
+
+	/**
+	 * Sets the maximum number of bags in a leaf. It must be set before the
+	 * instances.
+	 *
+	 * @param leafSize The leaf size.
+	 */
+	public void setLeafSize(int leafSize) {
+		this.leafSize = Math.max(1, leafSize);
+	}
+
+	/**
+	 * Gets the seed used to choose the vantage points.
+	 *
+	 * @return The seed.
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Sets the seed used to choose the vantage points. It must be set before the
+	 * instances.
+	 *
+	 * @param seed The seed.
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	@Override
+	public String getRevision() {
+		return "20261018";
+	}
+
+	/**
+	 * State of a k-nearest neighbours query.
+	 */
+	protected static class Query {
+
+		/** The target bag. */
+		protected Instance target;
+
+		/** The k nearest bags found so far. */
+		protected TopKSelector nearest;
+
+		/** Bags whose distance did not exceed the k-th distance when found. */
+		protected int[] candidates = new int[16];
+
+		/** Distances of the candidates. */
+		protected double[] candidateDistances = new double[16];
+
+		/** Number of candidates. */
+		protected int numCandidates;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param target The target bag.
+		 * @param kNN    The number of neighbours.
+		 */
+		protected Query(Instance target, int kNN) {
+			this.target = target;
+			this.nearest = new TopKSelector(kNN);
+		}
+
+		/**
+		 * Gets the current distance of the k-th neighbour.
+		 *
+		 * @return The distance, or Double.POSITIVE_INFINITY if there are less than
+		 *         k neighbours.
+		 */
+		protected double threshold() {
+			return nearest.threshold();
+		}
+
+		/**
+		 * Considers a bag as neighbour.
+		 *
+		 * @param index    Index of the bag.
+		 * @param distance Distance to the target.
+		 */
+		protected void consider(int index, double distance) {
+			if (distance > nearest.threshold())
+				return;
+			nearest.offer(index, distance);
+			if (numCandidates == candidates.length) {
+				candidates = Arrays.copyOf(candidates, 2 * numCandidates);
+				candidateDistances = Arrays.copyOf(candidateDistances, 2 * numCandidates);
+			}
+			candidates[numCandidates] = index;
+			candidateDistances[numCandidates++] = distance;
+		}
+
+		/**
+		 * Gets the neighbours: the k nearest bags plus those at the same distance
+		 * as the k-th one, sorted by distance. The candidates are replaced by the
+		 * neighbours and their distances.
+		 *
+		 * @return The indices of the neighbours.
+		 */
+		protected int[] result() {
+			double threshold = nearest.threshold();
+			TopKSelector sorted = new TopKSelector(numCandidates);
+			for (int i = 0; i < numCandidates; ++i)
+				if (candidateDistances[i] <= threshold)
+					sorted.offer(candidates[i], candidateDistances[i]);
+			int[] indices = new int[sorted.size()];
+			double[] distances = new double[sorted.size()];
+			sorted.sorted(indices, distances);
+			candidates = indices;
+			candidateDistances = distances;
+			numCandidates = indices.length;
+			return indices;
+		}
+	}
+}
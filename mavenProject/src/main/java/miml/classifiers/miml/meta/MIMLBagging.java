@@ -22,12 +22,12 @@ import org.apache.commons.configuration2.Configuration;
 import miml.classifiers.miml.IMIMLClassifier;
 import miml.classifiers.miml.MIMLClassifier;
 import miml.core.IConfiguration;
-import miml.core.Utils;
+import miml.core.ParallelLoop;
+import miml.data.BagSample;
 import miml.data.MIMLBag;
 import miml.data.MIMLInstances;
 import mulan.classifier.InvalidDataException;
 import mulan.classifier.MultiLabelOutput;
-import weka.core.Instances;
 
 /**
  * MIMLBagging is the adaptation of the traditional bagging strategy of the
@@ -36,6 +36,11 @@ import weka.core.Instances;
  * 
  * <em>[1]Breiman, L. (1996). Bagging predictors. Machine learning, 24(2),
  * 123-140.</em>
+ * <p>
+ * The members of the ensemble can be built and queried in parallel with a
+ * fixed number of threads. Each member is built on its own sample, drawn with
+ * the seed seed + i, so the ensemble does not depend on the number of threads.
+ * Samples share the bags of the training set instead of copying them.
  * 
  * @author Alvaro A. Belmonte
  * @author Eva Gibaja
@@ -65,6 +70,13 @@ public class MIMLBagging extends MIMLClassifier {
 	 */
 	boolean useConfidences = false;
 
+	/**
+	 * Determines whether each base classifier is built with the distinct bags of
+	 * its sample, weighted by the number of times they were drawn, instead of a
+	 * copy of each bag drawn. Only useful if the base classifier uses weights.
+	 */
+	boolean weightedSamples = false;
+
 	/** The size of the sample to build each base classifier. */
 	double samplePercentage = 100;
 
@@ -73,6 +85,9 @@ public class MIMLBagging extends MIMLClassifier {
 	 */
 	protected int numClassifiers = 5;
 
+	/** Number of members built or queried in parallel. */
+	protected int numThreads = 1;
+
 	/** Base learner. */
 	protected IMIMLClassifier baseLearner;
 
@@ -123,15 +138,19 @@ public class MIMLBagging extends MIMLClassifier {
 		// Prepares the ensemble
 		ensemble = new MIMLClassifier[numClassifiers];
 
-		for (int i = 0; i < numClassifiers; i++) {
+		for (int i = 0; i < numClassifiers; i++)
 			ensemble[i] = baseLearner.makeCopy();
-			Instances sample = Utils.resample(trainingSet.getDataSet(), samplePercentage, sampleWithReplacement,
+
+		ParallelLoop.run(numThreads, ensemble.length, i -> {
+			// The sample only stores the indices of the bags, and the dataset built
+			// with it shares the bags with the training set
+			BagSample sample = BagSample.resample(trainingSet.getNumBags(), samplePercentage, sampleWithReplacement,
 					seed + i);
 
-			System.out.println("\t\tBase Classifier " + i + ": " + sample.numInstances() + "/"
-					+ trainingSet.getNumBags() + " bags");
-			ensemble[i].build(new MIMLInstances(sample, trainingSet.getLabelsMetaData()));
-		}
+			System.out.println("\t\tBase Classifier " + i + ": " + sample.size() + "/" + trainingSet.getNumBags()
+					+ " bags");
+			ensemble[i].build(sample.toMIMLInstances(trainingSet, weightedSamples));
+		});
 	}
 
 	/*
@@ -142,9 +161,11 @@ public class MIMLBagging extends MIMLClassifier {
 	@Override
 	protected MultiLabelOutput makePredictionInternal(MIMLBag instance) throws Exception, InvalidDataException {
 
+		// A single bag is predicted serially, as starting threads would take longer
+		// than the predictions of the members
 		boolean bipartitions[][] = new boolean[ensemble.length][];
 		double confidences[][] = new double[ensemble.length][];
-		for (int i = 0; i < this.ensemble.length; i++) {
+		for (int i = 0; i < ensemble.length; i++) {
 
 			MultiLabelOutput prediction = ensemble[i].makePrediction(instance);
 
@@ -152,6 +173,44 @@ public class MIMLBagging extends MIMLClassifier {
 			confidences[i] = prediction.getConfidences();
 		}
 
+		return combine(bipartitions, confidences);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see mimlclassifier.MIMLClassifier#makePredictionsInternal(data.
+	 * MIMLInstances)
+	 */
+	@Override
+	protected MultiLabelOutput[] makePredictionsInternal(MIMLInstances data) throws Exception {
+
+		// Each base classifier predicts all the bags at once
+		MultiLabelOutput[][] memberPredictions = new MultiLabelOutput[ensemble.length][];
+		ParallelLoop.run(numThreads, ensemble.length, i -> memberPredictions[i] = ensemble[i].makePredictions(data));
+
+		MultiLabelOutput[] predictions = new MultiLabelOutput[data.getNumBags()];
+		boolean bipartitions[][] = new boolean[ensemble.length][];
+		double confidences[][] = new double[ensemble.length][];
+		for (int b = 0; b < predictions.length; b++) {
+			for (int i = 0; i < ensemble.length; i++) {
+				bipartitions[i] = memberPredictions[i][b].getBipartition();
+				confidences[i] = memberPredictions[i][b].getConfidences();
+			}
+			predictions[b] = combine(bipartitions, confidences);
+		}
+		return predictions;
+	}
+
+	/**
+	 * Combines the predictions of the base classifiers for a bag.
+	 *
+	 * @param bipartitions The bipartition predicted by each base classifier.
+	 * @param confidences  The confidences predicted by each base classifier.
+	 * @return The prediction of the ensemble.
+	 */
+	protected MultiLabelOutput combine(boolean[][] bipartitions, double[][] confidences) {
+
 		double[] sumVotes = new double[numLabels]; // double to consider weights
 		double[] sumConf = new double[numLabels];
 
@@ -193,9 +252,11 @@ public class MIMLBagging extends MIMLClassifier {
 
 		this.sampleWithReplacement = configuration.getBoolean("sampleWithReplacement", true);
 		this.useConfidences = configuration.getBoolean("useConfidences", false);
+		this.weightedSamples = configuration.getBoolean("weightedSamples", false);
 
 		this.samplePercentage = configuration.getDouble("samplePercentage", 100);
 		this.numClassifiers = configuration.getInt("numClassifiers", 10);
+		this.numThreads = configuration.getInt("numThreads", 1);
 
 		try {
 			// Get the base classifier name
@@ -234,6 +295,45 @@ public class MIMLBagging extends MIMLClassifier {
 		return numClassifiers;
 	}
 
+	/**
+	 * Returns whether base classifiers are built with the distinct bags of their
+	 * samples weighted by their multiplicity.
+	 *
+	 * @return True if weighted samples are used.
+	 */
+	public boolean isWeightedSamples() {
+		return weightedSamples;
+	}
+
+	/**
+	 * Sets whether base classifiers are built with the distinct bags of their
+	 * samples weighted by their multiplicity.
+	 *
+	 * @param weightedSamples True to use weighted samples.
+	 */
+	public void setWeightedSamples(boolean weightedSamples) {
+		this.weightedSamples = weightedSamples;
+	}
+
+	/**
+	 * Returns the number of members built or queried in parallel.
+	 *
+	 * @return The number of threads.
+	 */
+	public int getNumThreads() {
+		return numThreads;
+	}
+
+	/**
+	 * Sets the number of members built or queried in parallel. If it is not
+	 * positive, the number of available processors is used.
+	 *
+	 * @param numThreads The number of threads.
+	 */
+	public void setNumThreads(int numThreads) {
+		this.numThreads = numThreads;
+	}
+
 	/**
 	 * Returns the percentage of instances used for sampling with replacement.
 	 *
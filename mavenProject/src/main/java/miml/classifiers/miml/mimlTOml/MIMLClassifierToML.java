@@ -140,6 +140,28 @@ public class MIMLClassifierToML extends MIMLClassifier {
 		return baseClassifier.makePrediction(newData.get(0));
 	}
 
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see mimlclassifier.MIMLClassifier#makePredictionsInternal(data.
+	 * MIMLInstances)
+	 */
+	@Override
+	protected MultiLabelOutput[] makePredictionsInternal(MIMLInstances data) throws Exception {
+
+		// Transforms all bags and deletes bagIdAttribute with a single filter pass
+		Instances bags = data.getDataSet();
+		Instances newData = new Instances(this.mlDataSetWithBagId.getDataSet(), bags.numInstances());
+		for (int i = 0; i < bags.numInstances(); i++)
+			newData.add(transformationMethod.transformInstance(new MIMLBag(bags.instance(i))));
+		newData = Filter.useFilter(newData, removeFilter);
+
+		MultiLabelOutput[] predictions = new MultiLabelOutput[newData.numInstances()];
+		for (int i = 0; i < predictions.length; i++)
+			predictions[i] = baseClassifier.makePrediction(newData.get(i));
+		return predictions;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 *
@@ -0,0 +1,406 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package miml.classifiers.miml.neural;
+
+import org.apache.commons.configuration2.Configuration;
+
+import miml.classifiers.miml.IMIMLPredictor;
+import miml.classifiers.miml.MIMLClassifier;
+import miml.core.ParallelLoop;
+import miml.core.distance.DistanceMatrix;
+import miml.core.distance.DistanceMatrixCache;
+import miml.core.distance.HausdorffDistance;
+import miml.core.distance.HausdorffMatrixBuilder;
+import miml.core.distance.PackedAverageHausdorff;
+import miml.core.distance.PackedMaximalHausdorff;
+import miml.core.distance.PackedMinimalHausdorff;
+import miml.data.MIMLBag;
+import miml.data.MIMLInstances;
+import mulan.classifier.InvalidDataException;
+import mulan.classifier.ModelInitializationException;
+import mulan.classifier.MultiLabelOutput;
+import mulan.core.ArgumentNullException;
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * <p>
+ * Java implementation of the EnMIMLNNmetric algorithm for MIML data, which does
+ * not need the MATLAB runtime used by {@link EnMIMLNNmetric}. It is an ensemble
+ * of three MIML RBF neural networks, built as in {@link MIMLRBFJava}, that use
+ * the maximal, average and minimal Hausdorff distances respectively. The output
+ * of the ensemble is the average of the outputs of its members. For more
+ * information, see <em>Wu, J. S., Huang, S. J., &amp; Zhou, Z. H. (2014).
+ * Genome-wide protein function prediction through multi-instance multi-label
+ * learning. IEEE/ACM Transactions on Computational Biology and Bioinformatics,
+ * 11(5), 891-902.</em>.
+ * </p>
+ * <p>
+ * The three distance matrices of the training bags are computed in a single
+ * pass with {@link HausdorffMatrixBuilder}, so the distances between instances
+ * are computed once for all the members, and they can be stored in a
+ * {@link DistanceMatrixCache}. The members are then trained concurrently. The
+ * predictions of a data set are computed in parallel, and predictions do not
+ * modify the model, so {@link #freeze()} returns a predictor that can be used
+ * by several threads at the same time.
+ * </p>
+ *
+ * @author agent
+ * @version 20261018
+ */
+public class EnMIMLNNmetricJava extends MIMLClassifier {
+
+	/** For serialization. */
+	private static final long serialVersionUID = 3197763436361466102L;
+
+	/**
+	 * The number of centroids of the i-th label is set to be ratio*Ti, where Ti is
+	 * the number of train bags with label i.
+	 */
+	protected double ratio = 0.1;
+
+	/**
+	 * The ratio used to determine the standard deviation of the Gaussian activation
+	 * function.
+	 */
+	protected double mu = 0.8;
+
+	/** Seed for kmedoids clustering. */
+	protected int seed = 1;
+
+	/** Maximum number of iterations of kmedoids clustering. */
+	protected int maxIterations = 1000;
+
+	/** Number of threads used to train and to predict data sets. */
+	protected int numThreads = 1;
+
+	/** Whether the distance matrices are stored with single precision. */
+	protected boolean singlePrecision = false;
+
+	/** Directory of the distance matrix cache, or null to disable it. */
+	protected String cacheDirectory = null;
+
+	/**
+	 * The members of the ensemble, in the order of
+	 * {@link HausdorffMatrixBuilder#MAXIMAL}, {@link HausdorffMatrixBuilder#AVERAGE}
+	 * and {@link HausdorffMatrixBuilder#MINIMAL}.
+	 */
+	protected MIMLRBFJava[] members;
+
+	/**
+	 * No-argument constructor for xml configuration.
+	 */
+	public EnMIMLNNmetricJava() {
+	}
+
+	/**
+	 * Basic constructor to initialize the classifier.
+	 *
+	 * @param ratio The fraction parameter of EnMIMLNNmetric.
+	 * @param mu    The scaling factor of EnMIMLNNmetric.
+	 */
+	public EnMIMLNNmetricJava(double ratio, double mu) {
+		this.ratio = ratio;
+		this.mu = mu;
+	}
+
+	/**
+	 * Constructor to initialize the classifier.
+	 *
+	 * @param ratio The fraction parameter of EnMIMLNNmetric.
+	 * @param mu    The scaling factor of EnMIMLNNmetric.
+	 * @param seed  Seed for kmedoids clustering.
+	 */
+	public EnMIMLNNmetricJava(double ratio, double mu, int seed) {
+		this(ratio, mu);
+		this.seed = seed;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see miml.classifiers.miml.MIMLClassifier#buildInternal(miml.data.
+	 * MIMLInstances)
+	 */
+	@Override
+	protected void buildInternal(MIMLInstances trainingSet) throws Exception {
+		if (trainingSet == null) {
+			throw new ArgumentNullException("trainingSet");
+		}
+
+		Instances bags = trainingSet.getDataSet();
+
+		HausdorffDistance[] metrics = new HausdorffDistance[3];
+		metrics[HausdorffMatrixBuilder.MAXIMAL] = new PackedMaximalHausdorff();
+		metrics[HausdorffMatrixBuilder.AVERAGE] = new PackedAverageHausdorff();
+		metrics[HausdorffMatrixBuilder.MINIMAL] = new PackedMinimalHausdorff();
+		for (HausdorffDistance metric : metrics)
+			metric.setInstances(bags);
+
+		HausdorffMatrixBuilder builder = new HausdorffMatrixBuilder(numThreads, singlePrecision);
+		DistanceMatrix[] distances = cacheDirectory != null
+				? new DistanceMatrixCache(cacheDirectory).get(metrics, bags, singlePrecision, true,
+						matrices -> builder.compute(metrics, bags, matrices))
+				: builder.compute(metrics, bags);
+
+		// The threads are shared between the members trained at the same time
+		int memberThreads = Math.max(1, ParallelLoop.numThreads(numThreads) / metrics.length);
+		members = new MIMLRBFJava[metrics.length];
+		for (int m = 0; m < members.length; m++) {
+			members[m] = new MIMLRBFJava(ratio, mu, seed);
+			members[m].setMetric(metrics[m]);
+			members[m].setMaxIterations(maxIterations);
+			members[m].setNumThreads(memberThreads);
+		}
+		ParallelLoop.run(numThreads, members.length, m -> members[m].buildNetwork(trainingSet, distances[m]));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see miml.classifiers.miml.MIMLClassifier#makePredictionInternal(miml.data.
+	 * MIMLBag)
+	 */
+	@Override
+	protected MultiLabelOutput makePredictionInternal(MIMLBag instance) throws Exception, InvalidDataException {
+		return predict(instance);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see miml.classifiers.miml.MIMLClassifier#makePredictionsInternal(miml.data.
+	 * MIMLInstances)
+	 */
+	@Override
+	protected MultiLabelOutput[] makePredictionsInternal(MIMLInstances data) throws Exception {
+		Instances bags = data.getDataSet();
+		MultiLabelOutput[] predictions = new MultiLabelOutput[bags.numInstances()];
+		ParallelLoop.run(numThreads, predictions.length, i -> predictions[i] = predict(bags.instance(i)));
+		return predictions;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see miml.classifiers.miml.IMIMLClassifier#freeze()
+	 */
+	@Override
+	public IMIMLPredictor freeze() throws Exception {
+		if (!isModelInitialized()) {
+			throw new ModelInitializationException("The model has not been trained.");
+		}
+		return new IMIMLPredictor() {
+
+			@Override
+			public MultiLabelOutput makePrediction(Instance instance) throws Exception {
+				return predict(instance);
+			}
+
+			@Override
+			public MultiLabelOutput[] makePredictions(MIMLInstances data) throws Exception {
+				return makePredictionsInternal(data);
+			}
+		};
+	}
+
+	/**
+	 * Predicts the labels of a bag without modifying the model, so it can be
+	 * called by several threads at the same time.
+	 *
+	 * @param instance The bag to predict.
+	 * @return The prediction, whose confidences are the average outputs of the
+	 *         members.
+	 * @throws Exception To be handled in an upper level.
+	 */
+	protected MultiLabelOutput predict(Instance instance) throws Exception {
+
+		int numCentroids = 0;
+		for (MIMLRBFJava member : members)
+			numCentroids = Math.max(numCentroids, member.getNumCentroids());
+		double[] hidden = new double[numCentroids];
+		double[] memberOutputs = new double[numLabels];
+
+		double[] confidences = new double[numLabels];
+		for (MIMLRBFJava member : members) {
+			member.computeOutputs(instance, hidden, memberOutputs);
+			for (int j = 0; j < numLabels; j++)
+				confidences[j] += memberOutputs[j];
+		}
+
+		boolean[] bipartition = new boolean[numLabels];
+		for (int j = 0; j < numLabels; j++) {
+			confidences[j] /= members.length;
+			bipartition[j] = confidences[j] > 0;
+		}
+
+		return new MultiLabelOutput(bipartition, confidences);
+	}
+
+	/**
+	 * Gets the members of the ensemble.
+	 *
+	 * @return The members, or null if the classifier has not been trained.
+	 */
+	public MIMLRBFJava[] getMembers() {
+		return members;
+	}
+
+	/**
+	 * Returns the fraction parameter considered to build the classifier.
+	 *
+	 * @return The fraction parameter considered to build the classifier.
+	 */
+	public double getRatio() {
+		return ratio;
+	}
+
+	/**
+	 * Sets the fraction parameter to build the classifier.
+	 *
+	 * @param ratio The fraction parameter of EnMIMLNNmetric.
+	 */
+	public void setRatio(double ratio) {
+		this.ratio = ratio;
+	}
+
+	/**
+	 * Returns the scaling factor parameter considered to build the classifier.
+	 *
+	 * @return The scaling factor parameter considered to build the classifier.
+	 */
+	public double getMu() {
+		return mu;
+	}
+
+	/**
+	 * Sets the scaling factor parameter to build the classifier.
+	 *
+	 * @param mu The scaling factor of EnMIMLNNmetric.
+	 */
+	public void setMu(double mu) {
+		this.mu = mu;
+	}
+
+	/**
+	 * Returns the seed for kmedoids clustering considered to build the classifier.
+	 *
+	 * @return The seed for kmedoids clustering considered to build the classifier.
+	 */
+	public int getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Sets the seed for kmedoids clustering considered to build the classifier.
+	 *
+	 * @param seed The seed.
+	 */
+	public void setSeed(int seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Returns the maximum number of iterations of kmedoids clustering.
+	 *
+	 * @return The maximum number of iterations.
+	 */
+	public int getMaxIterations() {
+		return maxIterations;
+	}
+
+	/**
+	 * Sets the maximum number of iterations of kmedoids clustering.
+	 *
+	 * @param maxIterations The maximum number of iterations.
+	 */
+	public void setMaxIterations(int maxIterations) {
+		this.maxIterations = maxIterations;
+	}
+
+	/**
+	 * Gets the number of threads used to train and to predict data sets.
+	 *
+	 * @return The number of threads.
+	 */
+	public int getNumThreads() {
+		return numThreads;
+	}
+
+	/**
+	 * Sets the number of threads used to train and to predict data sets.
+	 *
+	 * @param numThreads The number of threads. If it is not positive, the number
+	 *                   of available processors is used.
+	 */
+	public void setNumThreads(int numThreads) {
+		this.numThreads = numThreads;
+	}
+
+	/**
+	 * Gets whether the distance matrices are stored with single precision.
+	 *
+	 * @return True if the distances are stored as float.
+	 */
+	public boolean getSinglePrecision() {
+		return singlePrecision;
+	}
+
+	/**
+	 * Sets whether the distance matrices are stored with single precision.
+	 *
+	 * @param singlePrecision True to store the distances as float.
+	 */
+	public void setSinglePrecision(boolean singlePrecision) {
+		this.singlePrecision = singlePrecision;
+	}
+
+	/**
+	 * Gets the directory of the distance matrix cache.
+	 *
+	 * @return The directory, or null if the cache is disabled.
+	 */
+	public String getCacheDirectory() {
+		return cacheDirectory;
+	}
+
+	/**
+	 * Sets the directory of the distance matrix cache, so that classifiers trained
+	 * on the same data with the same metrics reuse the matrices.
+	 *
+	 * @param cacheDirectory The directory, or null to disable the cache.
+	 */
+	public void setCacheDirectory(String cacheDirectory) {
+		this.cacheDirectory = cacheDirectory;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * core.IConfiguration#configure(org.apache.commons.configuration.Configuration)
+	 */
+	@Override
+	public void configure(Configuration configuration) {
+		this.ratio = configuration.getDouble("ratio", 0.1);
+		this.mu = configuration.getDouble("mu", 0.8);
+		this.seed = configuration.getInt("seed", 1);
+		this.maxIterations = configuration.getInt("maxIterations", 1000);
+		this.numThreads = configuration.getInt("numThreads", 1);
+		this.singlePrecision = configuration.getBoolean("singlePrecision", false);
+		this.cacheDirectory = configuration.getString("cacheDirectory", null);
+	}
+}
@@ -0,0 +1,466 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package miml.classifiers.miml.neural;
+
+import org.apache.commons.configuration2.Configuration;
+
+import miml.classifiers.miml.IMIMLPredictor;
+import miml.classifiers.miml.MIMLClassifier;
+import miml.clusterers.KMedoids;
+import miml.core.LeastSquares;
+import miml.core.ParallelLoop;
+import miml.core.distance.HausdorffDistance;
+import miml.core.distance.IDistance;
+import miml.core.distance.PackedMaximalHausdorff;
+import miml.data.MIMLBag;
+import miml.data.MIMLInstances;
+import mulan.classifier.InvalidDataException;
+import mulan.classifier.ModelInitializationException;
+import mulan.classifier.MultiLabelOutput;
+import mulan.core.ArgumentNullException;
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * <p>
+ * Java implementation of the MIMLNN algorithm for MIML data, which does not
+ * need the MATLAB runtime used by {@link MIMLNN}. The training bags are grouped
+ * with {@link KMedoids} in ratio*numberOfTrainingBags clusters, each bag is
+ * represented by its distances to the medoids, and the labels are predicted by
+ * a linear layer trained by regularized least squares. The distances are
+ * symmetric, i.e. the maximum of both directions for metrics that are not
+ * symmetric, so the Hausdorff distance is used by default. For more information,
+ * see <em>Zhou, Z. H., Zhang, M. L., Huang, S. J., &amp; Li, Y. F. (2012).
+ * Multi-instance multi-label learning. Artificial Intelligence, 176(1),
+ * 2291-2320.</em>.
+ * </p>
+ * <p>
+ * The distance matrix of the clustering and the system of the linear layer are
+ * computed with numThreads threads, as well as the predictions of a data set.
+ * Predictions do not modify the model, so {@link #freeze()} returns a predictor
+ * that can be used by several threads at the same time.
+ * </p>
+ *
+ * @author agent
+ * @version 20261018
+ */
+public class MIMLNNJava extends MIMLClassifier {
+
+	/** For serialization. */
+	private static final long serialVersionUID = -2413092867409283105L;
+
+	/** The number of clusters is set to ratio*numberOfTrainingBags, default=0.4. */
+	protected double ratio = 0.4;
+
+	/** The regularization parameter used to compute matrix inverse, default=1. */
+	protected double lambda = 1;
+
+	/** The seed for kmedoids clustering. */
+	protected int seed = 1;
+
+	/** Maximum number of iterations of kmedoids clustering. */
+	protected int maxIterations = 1000;
+
+	/** Metric for measure the distance between bags. */
+	protected IDistance metric = new PackedMaximalHausdorff();
+
+	/** Number of threads used to train and to predict data sets. */
+	protected int numThreads = 1;
+
+	/** Whether the distance matrix is stored with single precision. */
+	protected boolean singlePrecision = false;
+
+	/** Directory of the distance matrix cache, or null to disable it. */
+	protected String cacheDirectory = null;
+
+	/** The medoids, as the relational values of the training bags. */
+	protected Instances[] medoids;
+
+	/** Weights of the linear layer, one row per label with the bias at the end. */
+	protected double[][] weights;
+
+	/**
+	 * No-argument constructor for xml configuration.
+	 */
+	public MIMLNNJava() {
+	}
+
+	/**
+	 * Basic constructor to initialize the classifier.
+	 *
+	 * @param ratio  The number of clusters is set to ratio*numberOfTrainingBags.
+	 * @param lambda The regularization parameter used to compute matrix inverse.
+	 */
+	public MIMLNNJava(double ratio, double lambda) {
+		this.ratio = ratio;
+		this.lambda = lambda;
+	}
+
+	/**
+	 * Constructor to initialize the classifier.
+	 *
+	 * @param ratio  The number of clusters is set to ratio*numberOfTrainingBags.
+	 * @param lambda The regularization parameter used to compute matrix inverse.
+	 * @param seed   Seed for kmedoids clustering.
+	 */
+	public MIMLNNJava(double ratio, double lambda, int seed) {
+		this(ratio, lambda);
+		this.seed = seed;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see miml.classifiers.miml.MIMLClassifier#buildInternal(miml.data.
+	 * MIMLInstances)
+	 */
+	@Override
+	protected void buildInternal(MIMLInstances trainingSet) throws Exception {
+		if (trainingSet == null) {
+			throw new ArgumentNullException("trainingSet");
+		}
+
+		Instances bags = trainingSet.getDataSet();
+		int numBags = bags.numInstances();
+
+		KMedoids kmedoids = cluster(bags);
+
+		int numClusters = kmedoids.numberOfClusters();
+		Instance[] medoidInstances = kmedoids.getMedoidInstances();
+		medoids = new Instances[numClusters];
+		for (int k = 0; k < numClusters; k++)
+			medoids[k] = medoidInstances[k].relationalValue(1);
+
+		// The hidden layer of the training bags is read from the distance matrix
+		// of the clustering
+		double[][] phi = new double[numBags][];
+		double[][] targets = new double[numBags][numLabels];
+		for (int i = 0; i < numBags; i++) {
+			phi[i] = new double[numClusters + 1];
+			System.arraycopy(kmedoids.distanceToMedoids(i), 0, phi[i], 0, numClusters);
+			phi[i][numClusters] = 1;
+			for (int j = 0; j < numLabels; j++)
+				targets[i][j] = bags.instance(i).stringValue(labelIndices[j]).equals("1") ? 1 : -1;
+		}
+
+		weights = LeastSquares.solve(phi, targets, lambda, numThreads);
+
+		// The ranges of the metric are initialized before sharing it, and they are
+		// not updated with the predicted bags
+		if (metric instanceof HausdorffDistance)
+			((HausdorffDistance) metric).getRanges();
+	}
+
+	/**
+	 * Groups the training bags with {@link KMedoids}. The matrix of the clustering
+	 * holds the symmetric distances, so that the hidden layer of a bag is the
+	 * same in training and in prediction.
+	 *
+	 * @param bags The training bags.
+	 * @return The clusterer, whose distances to the medoids are the hidden layer
+	 *         of the training bags.
+	 * @throws Exception To be handled in an upper level.
+	 */
+	protected KMedoids cluster(Instances bags) throws Exception {
+
+		KMedoids kmedoids = new KMedoids((int) (ratio * bags.numInstances()), maxIterations, metric);
+		kmedoids.setSeed(seed);
+		// Ties between swaps would keep the clustering running until maxIterations
+		kmedoids.setStrictImprovement(true);
+		kmedoids.setSymmetrize(true);
+		kmedoids.setNumThreads(numThreads);
+		kmedoids.setSinglePrecision(singlePrecision);
+		kmedoids.setCacheDirectory(cacheDirectory);
+		kmedoids.buildClusterer(bags);
+		return kmedoids;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see miml.classifiers.miml.MIMLClassifier#makePredictionInternal(miml.data.
+	 * MIMLBag)
+	 */
+	@Override
+	protected MultiLabelOutput makePredictionInternal(MIMLBag instance) throws Exception, InvalidDataException {
+		return predict(instance);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see miml.classifiers.miml.MIMLClassifier#makePredictionsInternal(miml.data.
+	 * MIMLInstances)
+	 */
+	@Override
+	protected MultiLabelOutput[] makePredictionsInternal(MIMLInstances data) throws Exception {
+		Instances bags = data.getDataSet();
+		MultiLabelOutput[] predictions = new MultiLabelOutput[bags.numInstances()];
+		ParallelLoop.run(numThreads, predictions.length, i -> predictions[i] = predict(bags.instance(i)));
+		return predictions;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see miml.classifiers.miml.IMIMLClassifier#freeze()
+	 */
+	@Override
+	public IMIMLPredictor freeze() throws Exception {
+		if (!isModelInitialized()) {
+			throw new ModelInitializationException("The model has not been trained.");
+		}
+		return new IMIMLPredictor() {
+
+			@Override
+			public MultiLabelOutput makePrediction(Instance instance) throws Exception {
+				return predict(instance);
+			}
+
+			@Override
+			public MultiLabelOutput[] makePredictions(MIMLInstances data) throws Exception {
+				return makePredictionsInternal(data);
+			}
+		};
+	}
+
+	/**
+	 * Predicts the labels of a bag without modifying the model, so it can be
+	 * called by several threads at the same time. Besides the prediction, only
+	 * the array of the hidden layer is allocated.
+	 *
+	 * @param instance The bag to predict.
+	 * @return The prediction, whose confidences are the outputs of the network.
+	 * @throws Exception To be handled in an upper level.
+	 */
+	protected MultiLabelOutput predict(Instance instance) throws Exception {
+
+		double[] hidden = computeHidden(instance, new double[medoids.length]);
+
+		boolean[] bipartition = new boolean[numLabels];
+		double[] confidences = new double[numLabels];
+		for (int j = 0; j < numLabels; j++) {
+			double[] w = weights[j];
+			double output = w[medoids.length];
+			for (int k = 0; k < medoids.length; k++)
+				output += w[k] * hidden[k];
+			confidences[j] = output;
+			bipartition[j] = output > 0;
+		}
+
+		return new MultiLabelOutput(bipartition, confidences);
+	}
+
+	/**
+	 * Computes the hidden layer of a bag, i.e. its symmetric distances to the
+	 * medoids, without modifying the model.
+	 *
+	 * @param instance The bag.
+	 * @param hidden   Array of at least as many elements as medoids where the
+	 *                 hidden layer is stored.
+	 * @return The hidden array.
+	 * @throws Exception To be handled in an upper level.
+	 */
+	protected double[] computeHidden(Instance instance, double[] hidden) throws Exception {
+
+		Instances bag = instance.relationalValue(1);
+		for (int k = 0; k < medoids.length; k++)
+			hidden[k] = metric.symmetricDistance(medoids[k], bag);
+		return hidden;
+	}
+
+	/**
+	 * Returns the seed for kmedoids clustering considered to build the classifier.
+	 *
+	 * @return The seed for kmedoids clustering considered to build the classifier.
+	 */
+	public int getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Sets the seed for kmedoids clustering considered to build the classifier.
+	 *
+	 * @param seed The seed.
+	 */
+	public void setSeed(int seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Returns the fraction parameter considered to determine the number of clusters
+	 * to build the classifier.
+	 *
+	 * @return The fraction parameter considered to determine the number of clusters
+	 *         to build the classifier.
+	 */
+	public double getRatio() {
+		return ratio;
+	}
+
+	/**
+	 * Sets the fraction parameter considered to determine the number of clusters to
+	 * build the classifier.
+	 *
+	 * @param ratio The fraction parameter considered to determine the number of
+	 *              clusters to build the classifier.
+	 */
+	public void setRatio(double ratio) {
+		this.ratio = ratio;
+	}
+
+	/**
+	 * Returns the regularization parameter used to compute matrix inverse.
+	 *
+	 * @return The regularization parameter used to compute matrix inverse.
+	 */
+	public double getLambda() {
+		return lambda;
+	}
+
+	/**
+	 * Sets the regularization parameter used to compute matrix inverse.
+	 *
+	 * @param lambda The regularization parameter used to compute matrix inverse.
+	 */
+	public void setLambda(double lambda) {
+		this.lambda = lambda;
+	}
+
+	/**
+	 * Returns the maximum number of iterations of kmedoids clustering.
+	 *
+	 * @return The maximum number of iterations.
+	 */
+	public int getMaxIterations() {
+		return maxIterations;
+	}
+
+	/**
+	 * Sets the maximum number of iterations of kmedoids clustering.
+	 *
+	 * @param maxIterations The maximum number of iterations.
+	 */
+	public void setMaxIterations(int maxIterations) {
+		this.maxIterations = maxIterations;
+	}
+
+	/**
+	 * Returns the metric used to measure the distance between bags.
+	 *
+	 * @return The metric.
+	 */
+	public IDistance getMetric() {
+		return metric;
+	}
+
+	/**
+	 * Sets the metric used to measure the distance between bags. It must support
+	 * concurrent calls to its distance methods when more than one thread is used.
+	 *
+	 * @param metric The metric.
+	 */
+	public void setMetric(IDistance metric) {
+		this.metric = metric;
+	}
+
+	/**
+	 * Gets the number of threads used to train and to predict data sets.
+	 *
+	 * @return The number of threads.
+	 */
+	public int getNumThreads() {
+		return numThreads;
+	}
+
+	/**
+	 * Sets the number of threads used to train and to predict data sets.
+	 *
+	 * @param numThreads The number of threads. If it is not positive, the number
+	 *                   of available processors is used.
+	 */
+	public void setNumThreads(int numThreads) {
+		this.numThreads = numThreads;
+	}
+
+	/**
+	 * Gets whether the distance matrix is stored with single precision.
+	 *
+	 * @return True if the distances are stored as float.
+	 */
+	public boolean getSinglePrecision() {
+		return singlePrecision;
+	}
+
+	/**
+	 * Sets whether the distance matrix is stored with single precision.
+	 *
+	 * @param singlePrecision True to store the distances as float.
+	 */
+	public void setSinglePrecision(boolean singlePrecision) {
+		this.singlePrecision = singlePrecision;
+	}
+
+	/**
+	 * Gets the directory of the distance matrix cache.
+	 *
+	 * @return The directory, or null if the cache is disabled.
+	 */
+	public String getCacheDirectory() {
+		return cacheDirectory;
+	}
+
+	/**
+	 * Sets the directory of the distance matrix cache, so that classifiers trained
+	 * on the same data with the same metric reuse the matrix.
+	 *
+	 * @param cacheDirectory The directory, or null to disable the cache.
+	 */
+	public void setCacheDirectory(String cacheDirectory) {
+		this.cacheDirectory = cacheDirectory;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * core.IConfiguration#configure(org.apache.commons.configuration.Configuration)
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public void configure(Configuration configuration) {
+
+		this.ratio = configuration.getDouble("ratio", 0.4);
+		this.lambda = configuration.getDouble("lambda", 1);
+		this.seed = configuration.getInt("seed", 1);
+		this.maxIterations = configuration.getInt("maxIterations", 1000);
+		this.numThreads = configuration.getInt("numThreads", 1);
+		this.singlePrecision = configuration.getBoolean("singlePrecision", false);
+		this.cacheDirectory = configuration.getString("cacheDirectory", null);
+
+		try {
+			// Get the name of the metric class
+			String metricName = configuration.getString("metric[@name]",
+					"miml.core.distance.PackedMaximalHausdorff");
+			// Instance class
+			Class<? extends IDistance> metricClass = (Class<? extends IDistance>) Class.forName(metricName);
+
+			this.metric = metricClass.getDeclaredConstructor().newInstance();
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
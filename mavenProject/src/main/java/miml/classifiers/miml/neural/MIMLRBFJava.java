@@ -0,0 +1,599 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package miml.classifiers.miml.neural;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.configuration2.Configuration;
+
+import miml.classifiers.miml.IMIMLPredictor;
+import miml.classifiers.miml.MIMLClassifier;
+import miml.clusterers.KMedoids;
+import miml.core.LeastSquares;
+import miml.core.ParallelLoop;
+import miml.core.distance.DistanceMatrix;
+import miml.core.distance.DistanceMatrixBuilder;
+import miml.core.distance.DistanceMatrixCache;
+import miml.core.distance.HausdorffDistance;
+import miml.core.distance.IDistance;
+import miml.core.distance.PackedMaximalHausdorff;
+import miml.core.distance.SubsetDistanceMatrix;
+import miml.data.MIMLBag;
+import miml.data.MIMLInstances;
+import mulan.classifier.InvalidDataException;
+import mulan.classifier.ModelInitializationException;
+import mulan.classifier.MultiLabelOutput;
+import mulan.core.ArgumentNullException;
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * <p>
+ * Java implementation of the MIMLRBF algorithm for MIML data, which does not
+ * need the MATLAB runtime used by {@link MIMLRBF}. The bags of each label are
+ * grouped with {@link KMedoids} in ratio*Ti clusters, where Ti is the number of
+ * training bags with label i, and the medoids of all the labels are the
+ * centroids of a RBF neural network whose Gaussian activations use the
+ * symmetric distance of the metric, i.e. the Hausdorff distance for the
+ * default maximal Hausdorff metric. The weights of the output layer are the least squares
+ * solution computed through the pseudo-inverse. For more information, see
+ * <em>Zhang, M. L., &amp; Wang, Z. J. (2009). MIMLRBF: RBF neural networks for
+ * multi-instance multi-label learning. Neurocomputing, 72(16-18),
+ * 3951-3956.</em>.
+ * </p>
+ * <p>
+ * The distance matrix of the training bags is computed once with numThreads
+ * threads, and the labels are clustered in parallel over views of it. The
+ * predictions of a data set are computed in parallel as well, and predictions
+ * do not modify the model, so {@link #freeze()} returns a predictor that can be
+ * used by several threads at the same time.
+ * </p>
+ *
+ * @author agent
+ * @version 20261018
+ */
+public class MIMLRBFJava extends MIMLClassifier {
+
+	/** For serialization. */
+	private static final long serialVersionUID = 5239137709436130254L;
+
+	/**
+	 * The number of centroids of the i-th label is set to be ratio*Ti, where Ti is
+	 * the number of train bags with label i.
+	 */
+	protected double ratio = 0.1;
+
+	/**
+	 * The ratio used to determine the standard deviation of the Gaussian activation
+	 * function.
+	 */
+	protected double mu = 0.6;
+
+	/** Seed for kmedoids clustering. */
+	protected int seed = 1;
+
+	/** Maximum number of iterations of kmedoids clustering. */
+	protected int maxIterations = 1000;
+
+	/** Metric for measure the distance between bags. */
+	protected IDistance metric = new PackedMaximalHausdorff();
+
+	/** Number of threads used to train and to predict data sets. */
+	protected int numThreads = 1;
+
+	/** Whether the distance matrix is stored with single precision. */
+	protected boolean singlePrecision = false;
+
+	/** Directory of the distance matrix cache, or null to disable it. */
+	protected String cacheDirectory = null;
+
+	/**
+	 * The centroids, as the relational values of the training bags. A bag that is
+	 * a centroid for several labels is stored once.
+	 */
+	protected Instances[] centroids;
+
+	/** The standard deviation of the Gaussian activation function. */
+	protected double sigma;
+
+	/** Weights of the output layer, one row per label with the bias at the end. */
+	protected double[][] weights;
+
+	/**
+	 * No-argument constructor for xml configuration.
+	 */
+	public MIMLRBFJava() {
+	}
+
+	/**
+	 * Basic constructor to initialize the classifier.
+	 *
+	 * @param ratio The fraction parameter of MIMLRBF.
+	 * @param mu    The scaling factor of MIMLRBF.
+	 */
+	public MIMLRBFJava(double ratio, double mu) {
+		this.ratio = ratio;
+		this.mu = mu;
+	}
+
+	/**
+	 * Constructor to initialize the classifier.
+	 *
+	 * @param ratio The fraction parameter of MIMLRBF.
+	 * @param mu    The scaling factor of MIMLRBF.
+	 * @param seed  Seed for kmedoids clustering.
+	 */
+	public MIMLRBFJava(double ratio, double mu, int seed) {
+		this(ratio, mu);
+		this.seed = seed;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see miml.classifiers.miml.MIMLClassifier#buildInternal(miml.data.
+	 * MIMLInstances)
+	 */
+	@Override
+	protected void buildInternal(MIMLInstances trainingSet) throws Exception {
+		if (trainingSet == null) {
+			throw new ArgumentNullException("trainingSet");
+		}
+
+		Instances bags = trainingSet.getDataSet();
+
+		metric.setInstances(bags);
+		DistanceMatrixBuilder builder = new DistanceMatrixBuilder(numThreads, singlePrecision);
+		builder.setSymmetrize(true);
+		DistanceMatrix distances = cacheDirectory != null
+				? new DistanceMatrixCache(cacheDirectory).get(metric, bags, builder)
+				: builder.compute(metric, bags);
+
+		buildNetwork(trainingSet, distances);
+	}
+
+	/**
+	 * Builds the network from the distance matrix of the training bags, e.g. a
+	 * matrix shared by the members of an ensemble. The metric must be already
+	 * initialized with the training bags, and the matrix must hold its symmetric
+	 * distances, which are the ones used to predict.
+	 *
+	 * @param trainingSet The training data set.
+	 * @param distances   The symmetric distance matrix of the training bags with
+	 *                    the metric.
+	 * @throws Exception To be handled in an upper level.
+	 */
+	protected void buildNetwork(MIMLInstances trainingSet, DistanceMatrix distances) throws Exception {
+
+		numLabels = trainingSet.getNumLabels();
+		labelIndices = trainingSet.getLabelIndices();
+		labelNames = trainingSet.getLabelNames();
+		featureIndices = trainingSet.getFeatureIndices();
+
+		Instances bags = trainingSet.getDataSet();
+		int numBags = bags.numInstances();
+
+		double[][] targets = new double[numBags][numLabels];
+		List<List<Integer>> labelBags = new ArrayList<List<Integer>>(numLabels);
+		for (int j = 0; j < numLabels; j++)
+			labelBags.add(new ArrayList<Integer>());
+		for (int i = 0; i < numBags; i++) {
+			for (int j = 0; j < numLabels; j++) {
+				boolean relevant = bags.instance(i).stringValue(labelIndices[j]).equals("1");
+				targets[i][j] = relevant ? 1 : -1;
+				if (relevant)
+					labelBags.get(j).add(i);
+			}
+		}
+
+		// Labels are clustered in parallel, each one over the distances of its bags
+		int[][] labelCentroids = new int[numLabels][];
+		ParallelLoop.run(numThreads, numLabels,
+				j -> labelCentroids[j] = clusterLabel(bags, distances, labelBags.get(j)));
+
+		// Sigma is computed over all the centroids, as they were the hidden units
+		List<Integer> all = new ArrayList<Integer>();
+		for (int[] centroidsOfLabel : labelCentroids)
+			for (int c : centroidsOfLabel)
+				all.add(c);
+		double sum = 0;
+		long pairs = 0;
+		for (int a = 0; a < all.size(); a++) {
+			for (int b = a + 1; b < all.size(); b++) {
+				sum += distances.get(all.get(a), all.get(b));
+				pairs++;
+			}
+		}
+		sigma = pairs > 0 ? mu * sum / pairs : 0;
+		if (sigma <= 0)
+			sigma = 1;
+
+		// Repeated centroids would give the same activations, so their weights
+		// would only be split between them
+		Map<Integer, Integer> unique = new LinkedHashMap<Integer, Integer>();
+		for (int c : all)
+			unique.putIfAbsent(c, unique.size());
+		int[] centroidIndices = new int[unique.size()];
+		for (Map.Entry<Integer, Integer> entry : unique.entrySet())
+			centroidIndices[entry.getValue()] = entry.getKey();
+		centroids = new Instances[centroidIndices.length];
+		for (int k = 0; k < centroids.length; k++)
+			centroids[k] = bags.instance(centroidIndices[k]).relationalValue(1);
+
+		double[][] phi = new double[numBags][];
+		ParallelLoop.run(numThreads, numBags, i -> {
+			double[] row = new double[centroidIndices.length + 1];
+			for (int k = 0; k < centroidIndices.length; k++)
+				row[k] = activation(distances.get(i, centroidIndices[k]));
+			row[centroidIndices.length] = 1;
+			phi[i] = row;
+		});
+
+		weights = LeastSquares.solve(phi, targets, 0, numThreads);
+
+		// The ranges of the metric are initialized before sharing it, and they are
+		// not updated with the predicted bags
+		if (metric instanceof HausdorffDistance)
+			((HausdorffDistance) metric).getRanges();
+		isModelInitialized = true;
+	}
+
+	/**
+	 * Selects the centroids of a label by clustering its bags.
+	 *
+	 * @param bags      The training bags.
+	 * @param distances The distance matrix of the training bags.
+	 * @param indices   Indices of the bags with the label.
+	 * @return Indices of the centroids in the training bags.
+	 * @throws Exception To be handled in an upper level.
+	 */
+	protected int[] clusterLabel(Instances bags, DistanceMatrix distances, List<Integer> indices)
+			throws Exception {
+
+		int size = indices.size();
+		int numClusters = Math.max(1, (int) Math.ceil(ratio * size));
+		int[] subset = new int[size];
+		for (int i = 0; i < size; i++)
+			subset[i] = indices.get(i);
+
+		if (numClusters >= size)
+			return subset;
+
+		SubsetDistanceMatrix subsetDistances = new SubsetDistanceMatrix(distances, subset);
+		if (numClusters == 1) {
+			// The medoid of all the bags, KMedoids needs at least two clusters
+			int best = 0;
+			double bestSum = Double.POSITIVE_INFINITY;
+			for (int i = 0; i < size; i++) {
+				double sum = 0;
+				for (int k = 0; k < size; k++)
+					sum += subsetDistances.get(i, k);
+				if (sum < bestSum) {
+					bestSum = sum;
+					best = i;
+				}
+			}
+			return new int[] { subset[best] };
+		}
+
+		Instances labelBags = new Instances(bags, size);
+		for (int i : subset)
+			labelBags.add(bags.instance(i));
+
+		KMedoids kmedoids = new KMedoids(numClusters, maxIterations, metric);
+		kmedoids.setSeed(seed);
+		kmedoids.buildClusterer(labelBags, subsetDistances);
+
+		int[] medoids = kmedoids.getMedoidIndices().clone();
+		for (int k = 0; k < medoids.length; k++)
+			medoids[k] = subset[medoids[k]];
+		return medoids;
+	}
+
+	/**
+	 * Computes the Gaussian activation of a hidden unit.
+	 *
+	 * @param distance Distance between the bag and the centroid of the unit.
+	 * @return The activation.
+	 */
+	protected double activation(double distance) {
+		return Math.exp(-distance * distance / (2 * sigma * sigma));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see miml.classifiers.miml.MIMLClassifier#makePredictionInternal(miml.data.
+	 * MIMLBag)
+	 */
+	@Override
+	protected MultiLabelOutput makePredictionInternal(MIMLBag instance) throws Exception, InvalidDataException {
+		return predict(instance);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see miml.classifiers.miml.MIMLClassifier#makePredictionsInternal(miml.data.
+	 * MIMLInstances)
+	 */
+	@Override
+	protected MultiLabelOutput[] makePredictionsInternal(MIMLInstances data) throws Exception {
+		Instances bags = data.getDataSet();
+		MultiLabelOutput[] predictions = new MultiLabelOutput[bags.numInstances()];
+		ParallelLoop.run(numThreads, predictions.length, i -> predictions[i] = predict(bags.instance(i)));
+		return predictions;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see miml.classifiers.miml.IMIMLClassifier#freeze()
+	 */
+	@Override
+	public IMIMLPredictor freeze() throws Exception {
+		if (!isModelInitialized()) {
+			throw new ModelInitializationException("The model has not been trained.");
+		}
+		return new IMIMLPredictor() {
+
+			@Override
+			public MultiLabelOutput makePrediction(Instance instance) throws Exception {
+				return predict(instance);
+			}
+
+			@Override
+			public MultiLabelOutput[] makePredictions(MIMLInstances data) throws Exception {
+				return makePredictionsInternal(data);
+			}
+		};
+	}
+
+	/**
+	 * Predicts the labels of a bag without modifying the model, so it can be
+	 * called by several threads at the same time.
+	 *
+	 * @param instance The bag to predict.
+	 * @return The prediction, whose confidences are the outputs of the network.
+	 * @throws Exception To be handled in an upper level.
+	 */
+	protected MultiLabelOutput predict(Instance instance) throws Exception {
+
+		double[] confidences = computeOutputs(instance, new double[centroids.length], new double[numLabels]);
+		boolean[] bipartition = new boolean[numLabels];
+		for (int j = 0; j < numLabels; j++)
+			bipartition[j] = confidences[j] > 0;
+
+		return new MultiLabelOutput(bipartition, confidences);
+	}
+
+	/**
+	 * Computes the outputs of the network for a bag without modifying the model.
+	 *
+	 * @param instance The bag.
+	 * @param hidden   Array of at least as many elements as centroids where the
+	 *                 activations of the hidden layer are stored.
+	 * @param outputs  Array of numLabels elements where the outputs are stored.
+	 * @return The outputs array.
+	 * @throws Exception To be handled in an upper level.
+	 */
+	protected double[] computeOutputs(Instance instance, double[] hidden, double[] outputs) throws Exception {
+
+		Instances bag = instance.relationalValue(1);
+		for (int k = 0; k < centroids.length; k++)
+			hidden[k] = activation(metric.symmetricDistance(centroids[k], bag));
+
+		for (int j = 0; j < numLabels; j++) {
+			double[] w = weights[j];
+			double output = w[centroids.length];
+			for (int k = 0; k < centroids.length; k++)
+				output += w[k] * hidden[k];
+			outputs[j] = output;
+		}
+
+		return outputs;
+	}
+
+	/**
+	 * Gets the number of hidden units of the network.
+	 *
+	 * @return The number of centroids.
+	 */
+	public int getNumCentroids() {
+		return centroids.length;
+	}
+
+	/**
+	 * Returns the seed for kmedoids clustering considered to build the classifier.
+	 *
+	 * @return The seed for kmedoids clustering considered to build the classifier.
+	 */
+	public int getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Sets the seed for kmedoids clustering considered to build the classifier.
+	 *
+	 * @param seed The seed.
+	 */
+	public void setSeed(int seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Returns the fraction parameter of MIMLRBF.
+	 *
+	 * @return The fraction parameter.
+	 */
+	public double getRatio() {
+		return ratio;
+	}
+
+	/**
+	 * Sets the fraction parameter of MIMLRBF.
+	 *
+	 * @param ratio The fraction parameter.
+	 */
+	public void setRatio(double ratio) {
+		this.ratio = ratio;
+	}
+
+	/**
+	 * Returns the scaling factor of MIMLRBF.
+	 *
+	 * @return The scaling factor.
+	 */
+	public double getMu() {
+		return mu;
+	}
+
+	/**
+	 * Sets the scaling factor of MIMLRBF.
+	 *
+	 * @param mu The scaling factor.
+	 */
+	public void setMu(double mu) {
+		this.mu = mu;
+	}
+
+	/**
+	 * Returns the maximum number of iterations of kmedoids clustering.
+	 *
+	 * @return The maximum number of iterations.
+	 */
+	public int getMaxIterations() {
+		return maxIterations;
+	}
+
+	/**
+	 * Sets the maximum number of iterations of kmedoids clustering.
+	 *
+	 * @param maxIterations The maximum number of iterations.
+	 */
+	public void setMaxIterations(int maxIterations) {
+		this.maxIterations = maxIterations;
+	}
+
+	/**
+	 * Returns the metric used to measure the distance between bags.
+	 *
+	 * @return The metric.
+	 */
+	public IDistance getMetric() {
+		return metric;
+	}
+
+	/**
+	 * Sets the metric used to measure the distance between bags. It must support
+	 * concurrent calls to its distance methods when more than one thread is used.
+	 *
+	 * @param metric The metric.
+	 */
+	public void setMetric(IDistance metric) {
+		this.metric = metric;
+	}
+
+	/**
+	 * Gets the number of threads used to train and to predict data sets.
+	 *
+	 * @return The number of threads.
+	 */
+	public int getNumThreads() {
+		return numThreads;
+	}
+
+	/**
+	 * Sets the number of threads used to train and to predict data sets.
+	 *
+	 * @param numThreads The number of threads. If it is not positive, the number
+	 *                   of available processors is used.
+	 */
+	public void setNumThreads(int numThreads) {
+		this.numThreads = numThreads;
+	}
+
+	/**
+	 * Gets whether the distance matrix is stored with single precision.
+	 *
+	 * @return True if the distances are stored as float.
+	 */
+	public boolean getSinglePrecision() {
+		return singlePrecision;
+	}
+
+	/**
+	 * Sets whether the distance matrix is stored with single precision.
+	 *
+	 * @param singlePrecision True to store the distances as float.
+	 */
+	public void setSinglePrecision(boolean singlePrecision) {
+		this.singlePrecision = singlePrecision;
+	}
+
+	/**
+	 * Gets the directory of the distance matrix cache.
+	 *
+	 * @return The directory, or null if the cache is disabled.
+	 */
+	public String getCacheDirectory() {
+		return cacheDirectory;
+	}
+
+	/**
+	 * Sets the directory of the distance matrix cache, so that classifiers trained
+	 * on the same data with the same metric reuse the matrix.
+	 *
+	 * @param cacheDirectory The directory, or null to disable the cache.
+	 */
+	public void setCacheDirectory(String cacheDirectory) {
+		this.cacheDirectory = cacheDirectory;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * core.IConfiguration#configure(org.apache.commons.configuration.Configuration)
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public void configure(Configuration configuration) {
+
+		this.ratio = configuration.getDouble("ratio", 0.1);
+		this.mu = configuration.getDouble("mu", 0.6);
+		this.seed = configuration.getInt("seed", 1);
+		this.maxIterations = configuration.getInt("maxIterations", 1000);
+		this.numThreads = configuration.getInt("numThreads", 1);
+		this.singlePrecision = configuration.getBoolean("singlePrecision", false);
+		this.cacheDirectory = configuration.getString("cacheDirectory", null);
+
+		try {
+			// Get the name of the metric class
+			String metricName = configuration.getString("metric[@name]",
+					"miml.core.distance.PackedMaximalHausdorff");
+			// Instance class
+			Class<? extends IDistance> metricClass = (Class<? extends IDistance>) Class.forName(metricName);
+
+			this.metric = metricClass.getDeclaredConstructor().newInstance();
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
@@ -0,0 +1,880 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package miml.classifiers.miml.optimization;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CyclicBarrier;
+
+import org.apache.commons.configuration2.Configuration;
+
+import miml.classifiers.miml.IMIMLPredictor;
+import miml.classifiers.miml.MIMLClassifier;
+import miml.core.ParallelLoop;
+import miml.data.MIMLBag;
+import miml.data.MIMLInstances;
+import miml.data.PackedBags;
+import mulan.classifier.InvalidDataException;
+import mulan.classifier.ModelInitializationException;
+import mulan.classifier.MultiLabelOutput;
+import mulan.core.ArgumentNullException;
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * <p>
+ * Java implementation of the MIMLFast algorithm for MIML data, which does not
+ * need the MATLAB runtime used by {@link MIMLFast}. The instances are projected
+ * by a linear mapping W0 into a shared space of dimension D, where each label
+ * has num_sub sub-concepts. The output of a label for a bag is the greatest
+ * output of its sub-concepts over the instances of the bag. The model is trained
+ * by stochastic gradient descent on a ranking loss, where a dummy label ranked
+ * between the relevant and the irrelevant labels of each bag is the threshold
+ * of the predictions. See <em>S.-J. Huang W. Gao and Z.-H. Zhou. Fast
+ * multi-instance multi-label learning. In: Proceedings of the 28th AAAI
+ * Conference on Artificial Intelligence (AAAI'14), 2014. </em>
+ * </p>
+ * <p>
+ * Training reads the bags from {@link MIMLInstances#getPackedBags()} and the
+ * model is stored in primitive arrays. With hogwild enabled, numThreads threads
+ * update the shared model without locks, so the result is not deterministic.
+ * {@link #computeOutputs(double[], int, int, double[], double[])} predicts a bag
+ * stored in an array without allocating memory, and predictions do not modify
+ * the model, so {@link #freeze()} returns a predictor that can be used by
+ * several threads at the same time.
+ * </p>
+ *
+ * @author agent
+ * @version 20261018
+ */
+public class MIMLFastJava extends MIMLClassifier {
+
+	/** For serialization. */
+	private static final long serialVersionUID = -4632105687127349061L;
+
+	/** Dimension of the shared space. */
+	protected int D = 100;
+
+	/** Norm of each vector. */
+	protected int norm_up = 10;
+
+	/** Number of iterations. */
+	protected int maxiter = 10;
+
+	/** Step size of SGD (stochastic gradient descent). */
+	protected double step_size = 0.005;
+
+	/** Lambda, the weight decay of the updated vectors. */
+	protected double lambda = 1e-5;
+
+	/** Number of sub concepts. */
+	protected int num_sub = 5;
+
+	/** Whether the norm of the vectors is bounded by norm_up, 0 or 1. */
+	protected int opts_norm = 1;
+
+	/** Number of models averaged per iteration. */
+	protected int opts_average_size = 10;
+
+	/** First iteration (from 0) whose models are averaged. */
+	protected int opts_average_begin = 0;
+
+	/** Seed for the initialization and the sampling of SGD. */
+	protected int seed = 1;
+
+	/** Number of threads used to predict data sets, and to train with hogwild. */
+	protected int numThreads = 1;
+
+	/** Whether SGD is run by numThreads threads without locks. */
+	protected boolean hogwild = false;
+
+	/** Number of attributes of the instances. */
+	protected int numFeatures;
+
+	/**
+	 * The mapping W0 into the shared space, stored by columns: the D values of
+	 * feature c start at c*D.
+	 */
+	protected double[] W;
+
+	/**
+	 * The sub-concepts of the labels followed by the ones of the dummy label: the D
+	 * values of sub-concept k of label l start at (l*num_sub+k)*D.
+	 */
+	protected double[] V;
+
+	/**
+	 * No-argument constructor for xml configuration.
+	 */
+	public MIMLFastJava() {
+	}
+
+	/**
+	 * Constructor setting several properties.
+	 *
+	 * @param d         Value for d.
+	 * @param norm_up   Value for norm_up.
+	 * @param maxiter   Value for maxiter.
+	 * @param step_size Value for step_size.
+	 * @param num_sub   Value for num_sub.
+	 */
+	public MIMLFastJava(int d, int norm_up, int maxiter, double step_size, int num_sub) {
+		D = d;
+		this.norm_up = norm_up;
+		this.maxiter = maxiter;
+		this.step_size = step_size;
+		this.num_sub = num_sub;
+	}
+
+	/**
+	 * Constructor setting several properties.
+	 *
+	 * @param d                  Value for d.
+	 * @param norm_up            Value for norm_up.
+	 * @param maxiter            Value for maxiter.
+	 * @param step_size          Value for step_size.
+	 * @param num_sub            Value for num_sub.
+	 * @param lambda             Value for lambda.
+	 * @param opts_norm          Value for opts_norm.
+	 * @param opts_average_size  Value for opts_average_size.
+	 * @param opts_average_begin Value for opts_average_begin.
+	 */
+	public MIMLFastJava(int d, int norm_up, int maxiter, double step_size, double lambda, int num_sub, int opts_norm,
+			int opts_average_size, int opts_average_begin) {
+		this(d, norm_up, maxiter, step_size, num_sub);
+		this.lambda = lambda;
+		this.opts_norm = opts_norm;
+		this.opts_average_size = opts_average_size;
+		this.opts_average_begin = opts_average_begin;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see miml.classifiers.miml.MIMLClassifier#buildInternal(miml.data.
+	 * MIMLInstances)
+	 */
+	@Override
+	protected void buildInternal(MIMLInstances trainingSet) throws Exception {
+		if (trainingSet == null) {
+			throw new ArgumentNullException("trainingSet");
+		}
+
+		PackedBags packed = trainingSet.getPackedBags();
+		Instances bags = trainingSet.getDataSet();
+		int numBags = packed.getNumBags();
+		numFeatures = packed.getNumAttributes();
+
+		int[][] relevant = new int[numBags][];
+		int[][] irrelevant = new int[numBags][];
+		for (int i = 0; i < numBags; i++) {
+			int numRelevant = 0;
+			for (int j = 0; j < numLabels; j++)
+				if (bags.instance(i).stringValue(labelIndices[j]).equals("1"))
+					numRelevant++;
+			relevant[i] = new int[numRelevant];
+			irrelevant[i] = new int[numLabels - numRelevant];
+			for (int j = 0, r = 0, s = 0; j < numLabels; j++) {
+				if (bags.instance(i).stringValue(labelIndices[j]).equals("1"))
+					relevant[i][r++] = j;
+				else
+					irrelevant[i][s++] = j;
+			}
+		}
+
+		Random random = new Random(seed);
+		W = new double[numFeatures * D];
+		V = new double[(numLabels + 1) * num_sub * D];
+		for (int k = 0; k < W.length; k++)
+			W[k] = random.nextGaussian() / Math.sqrt(numFeatures);
+		for (int k = 0; k < V.length; k++)
+			V[k] = random.nextGaussian() / Math.sqrt(D);
+		if (opts_norm != 0) {
+			for (int offset = 0; offset < W.length; offset += D)
+				bound(W, offset);
+			for (int offset = 0; offset < V.length; offset += D)
+				bound(V, offset);
+		}
+
+		int threads = hogwild ? Math.min(ParallelLoop.numThreads(numThreads), Math.max(1, numBags)) : 1;
+		int maxInstances = 0;
+		for (int i = 0; i < numBags; i++)
+			maxInstances = Math.max(maxInstances, packed.getNumInstances(i));
+		Worker[] workers = new Worker[threads];
+		for (int t = 0; t < threads; t++)
+			workers[t] = new Worker(packed, relevant, irrelevant, maxInstances, seed + t + 1);
+
+		// The models at the end of each chunk of the averaged iterations are summed
+		int numChunks = Math.max(1, opts_average_size);
+		double[] sumW = new double[W.length];
+		double[] sumV = new double[V.length];
+		int[] numAveraged = new int[1];
+		int[] numChunksDone = new int[1];
+
+		int[] order = new int[numBags];
+		for (int i = 0; i < numBags; i++)
+			order[i] = i;
+		shuffle(order, random);
+
+		// Run by a single thread at the end of each chunk
+		Runnable endOfChunk = () -> {
+			if (numChunksDone[0] / numChunks >= opts_average_begin) {
+				for (int k = 0; k < W.length; k++)
+					sumW[k] += W[k];
+				for (int k = 0; k < V.length; k++)
+					sumV[k] += V[k];
+				numAveraged[0]++;
+			}
+			if (++numChunksDone[0] % numChunks == 0)
+				shuffle(order, random);
+		};
+
+		// With hogwild, the threads update the model without locks and only wait
+		// for each other at the end of each chunk
+		CyclicBarrier barrier = new CyclicBarrier(threads, endOfChunk);
+		ParallelLoop.run(threads, threads, t -> {
+			try {
+				for (int iteration = 0; iteration < maxiter; iteration++) {
+					for (int chunk = 0; chunk < numChunks; chunk++) {
+						int begin = (int) ((long) numBags * chunk / numChunks);
+						int end = (int) ((long) numBags * (chunk + 1) / numChunks);
+						for (int p = begin + t; p < end; p += threads)
+							workers[t].step(order[p]);
+						barrier.await();
+					}
+				}
+			} catch (RuntimeException e) {
+				// The other threads are released from the barrier
+				barrier.reset();
+				throw e;
+			}
+		});
+
+		if (numAveraged[0] > 0) {
+			for (int k = 0; k < W.length; k++)
+				W[k] = sumW[k] / numAveraged[0];
+			for (int k = 0; k < V.length; k++)
+				V[k] = sumV[k] / numAveraged[0];
+		}
+	}
+
+	/**
+	 * Shuffles the order of the bags.
+	 *
+	 * @param order  The order.
+	 * @param random The random generator.
+	 */
+	protected static void shuffle(int[] order, Random random) {
+		for (int i = order.length - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int swap = order[i];
+			order[i] = order[j];
+			order[j] = swap;
+		}
+	}
+
+	/**
+	 * Scales a vector of the model so that its norm is at most norm_up.
+	 *
+	 * @param values The array of the vector.
+	 * @param offset Position of the vector in the array.
+	 */
+	protected void bound(double[] values, int offset) {
+		double sum = 0;
+		for (int r = 0; r < D; r++)
+			sum += values[offset + r] * values[offset + r];
+		if (sum > (double) norm_up * norm_up) {
+			double scale = norm_up / Math.sqrt(sum);
+			for (int r = 0; r < D; r++)
+				values[offset + r] *= scale;
+		}
+	}
+
+	/**
+	 * Projects an instance into the shared space.
+	 *
+	 * @param values     Array with the instance.
+	 * @param offset     Position of the instance in the array.
+	 * @param projection Array where the projection is stored.
+	 * @param position   Position of the projection in its array.
+	 */
+	protected void project(double[] values, int offset, double[] projection, int position) {
+		Arrays.fill(projection, position, position + D, 0);
+		for (int c = 0; c < numFeatures; c++) {
+			double x = values[offset + c];
+			// Missing values are ignored
+			if (x == 0 || Double.isNaN(x))
+				continue;
+			for (int r = 0, w = c * D; r < D; r++, w++)
+				projection[position + r] += x * W[w];
+		}
+	}
+
+	/**
+	 * Computes the outputs of a sub-concept of a label for a projected instance.
+	 *
+	 * @param label      The label, numLabels for the dummy label.
+	 * @param concept    The sub-concept.
+	 * @param projection Array with the projection.
+	 * @param position   Position of the projection in its array.
+	 * @return The output.
+	 */
+	protected double output(int label, int concept, double[] projection, int position) {
+		double output = 0;
+		for (int r = 0, v = (label * num_sub + concept) * D; r < D; r++, v++)
+			output += V[v] * projection[position + r];
+		return output;
+	}
+
+	/**
+	 * State of a thread running SGD.
+	 */
+	protected class Worker {
+
+		/** The training bags. */
+		final PackedBags packed;
+
+		/** Relevant labels of each bag. */
+		final int[][] relevant;
+
+		/** Irrelevant labels of each bag. */
+		final int[][] irrelevant;
+
+		/** Random generator of the thread. */
+		final Random random;
+
+		/** Projections of the instances of the current bag. */
+		final double[] projections;
+
+		/** Labels that can be sampled as the irrelevant one. */
+		final int[] candidates;
+
+		/** Sub-concepts of the updated labels before the update. */
+		final double[] oldRelevant, oldIrrelevant;
+
+		/** Value of L(k) = 1 + 1/2 + ... + 1/k for the weight of the loss. */
+		final double[] harmonic;
+
+		/** Instance and sub-concept of the last output computed. */
+		int bestInstance, bestConcept;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param packed       The training bags.
+		 * @param relevant     Relevant labels of each bag.
+		 * @param irrelevant   Irrelevant labels of each bag.
+		 * @param maxInstances Maximum number of instances of a bag.
+		 * @param seed         Seed of the random generator.
+		 */
+		Worker(PackedBags packed, int[][] relevant, int[][] irrelevant, int maxInstances, long seed) {
+			this.packed = packed;
+			this.relevant = relevant;
+			this.irrelevant = irrelevant;
+			this.random = new Random(seed);
+			this.projections = new double[maxInstances * D];
+			this.candidates = new int[numLabels + 1];
+			this.oldRelevant = new double[D];
+			this.oldIrrelevant = new double[D];
+			this.harmonic = new double[numLabels + 2];
+			for (int k = 1; k < harmonic.length; k++)
+				harmonic[k] = harmonic[k - 1] + 1.0 / k;
+		}
+
+		/**
+		 * Computes the output of a label for the current bag.
+		 *
+		 * @param label        The label, numLabels for the dummy label.
+		 * @param numInstances Number of instances of the bag.
+		 * @return The output, whose instance and sub-concept are stored in
+		 *         bestInstance and bestConcept.
+		 */
+		double output(int label, int numInstances) {
+			double best = Double.NEGATIVE_INFINITY;
+			for (int u = 0; u < numInstances; u++) {
+				for (int k = 0; k < num_sub; k++) {
+					double output = MIMLFastJava.this.output(label, k, projections, u * D);
+					if (output > best) {
+						best = output;
+						bestInstance = u;
+						bestConcept = k;
+					}
+				}
+			}
+			return best;
+		}
+
+		/**
+		 * Runs a step of SGD with a relevant and an irrelevant label of a bag. The
+		 * dummy label is irrelevant when it is compared with the relevant labels,
+		 * and relevant when it is compared with the irrelevant ones.
+		 *
+		 * @param bag Index of the bag.
+		 */
+		void step(int bag) {
+			int numInstances = packed.getNumInstances(bag);
+			if (numInstances == 0)
+				return;
+			double[] values = packed.getValues();
+			int offset = packed.getOffset(bag);
+			for (int u = 0; u < numInstances; u++)
+				project(values, offset + u * numFeatures, projections, u * D);
+
+			int[] positives = relevant[bag];
+			int r = random.nextInt(positives.length + 1);
+			int positive = r < positives.length ? positives[r] : numLabels;
+			int numCandidates = irrelevant[bag].length;
+			System.arraycopy(irrelevant[bag], 0, candidates, 0, numCandidates);
+			if (positive != numLabels)
+				candidates[numCandidates++] = numLabels;
+			if (numCandidates == 0)
+				return;
+
+			double positiveOutput = output(positive, numInstances);
+			int positiveInstance = bestInstance, positiveConcept = bestConcept;
+
+			// The irrelevant labels are sampled until one violates the margin, and
+			// the number of trials estimates the rank of the relevant label
+			int negative = -1, trials = 0;
+			while (trials < numCandidates) {
+				int j = trials + random.nextInt(numCandidates - trials);
+				int candidate = candidates[j];
+				candidates[j] = candidates[trials];
+				candidates[trials++] = candidate;
+				if (output(candidate, numInstances) > positiveOutput - 1) {
+					negative = candidate;
+					break;
+				}
+			}
+			if (negative < 0)
+				return;
+			int negativeInstance = bestInstance, negativeConcept = bestConcept;
+
+			double eta = step_size * harmonic[numCandidates / trials];
+			double decay = 1 - step_size * lambda;
+			int positiveV = (positive * num_sub + positiveConcept) * D;
+			int negativeV = (negative * num_sub + negativeConcept) * D;
+			System.arraycopy(V, positiveV, oldRelevant, 0, D);
+			System.arraycopy(V, negativeV, oldIrrelevant, 0, D);
+
+			int positiveP = positiveInstance * D, negativeP = negativeInstance * D;
+			for (int k = 0; k < D; k++) {
+				V[positiveV + k] = decay * V[positiveV + k] + eta * projections[positiveP + k];
+				V[negativeV + k] = decay * V[negativeV + k] - eta * projections[negativeP + k];
+			}
+
+			int positiveX = offset + positiveInstance * numFeatures;
+			int negativeX = offset + negativeInstance * numFeatures;
+			for (int c = 0; c < numFeatures; c++) {
+				double xPositive = values[positiveX + c], xNegative = values[negativeX + c];
+				if (Double.isNaN(xPositive))
+					xPositive = 0;
+				if (Double.isNaN(xNegative))
+					xNegative = 0;
+				// Columns of features that are 0 in both instances are not updated,
+				// so threads rarely write the same columns with sparse data
+				if (xPositive == 0 && xNegative == 0)
+					continue;
+				for (int k = 0, w = c * D; k < D; k++, w++)
+					W[w] = decay * W[w] + eta * (xPositive * oldRelevant[k] - xNegative * oldIrrelevant[k]);
+				if (opts_norm != 0)
+					bound(W, c * D);
+			}
+
+			if (opts_norm != 0) {
+				bound(V, positiveV);
+				bound(V, negativeV);
+			}
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see miml.classifiers.miml.MIMLClassifier#makePredictionInternal(miml.data.
+	 * MIMLBag)
+	 */
+	@Override
+	protected MultiLabelOutput makePredictionInternal(MIMLBag instance) throws Exception, InvalidDataException {
+		return predict(instance);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see miml.classifiers.miml.MIMLClassifier#makePredictionsInternal(miml.data.
+	 * MIMLInstances)
+	 */
+	@Override
+	protected MultiLabelOutput[] makePredictionsInternal(MIMLInstances data) throws Exception {
+		PackedBags packed = data.getPackedBags();
+		MultiLabelOutput[] predictions = new MultiLabelOutput[packed.getNumBags()];
+		ParallelLoop.run(numThreads, predictions.length, i -> {
+			double[] outputs = new double[numLabels + 1];
+			computeOutputs(packed.getValues(), packed.getOffset(i), packed.getNumInstances(i), new double[D], outputs);
+			predictions[i] = toPrediction(outputs);
+		});
+		return predictions;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see miml.classifiers.miml.IMIMLClassifier#freeze()
+	 */
+	@Override
+	public IMIMLPredictor freeze() throws Exception {
+		if (!isModelInitialized()) {
+			throw new ModelInitializationException("The model has not been trained.");
+		}
+		return new IMIMLPredictor() {
+
+			@Override
+			public MultiLabelOutput makePrediction(Instance instance) throws Exception {
+				return predict(instance);
+			}
+
+			@Override
+			public MultiLabelOutput[] makePredictions(MIMLInstances data) throws Exception {
+				return makePredictionsInternal(data);
+			}
+		};
+	}
+
+	/**
+	 * Predicts the labels of a bag without modifying the model, so it can be
+	 * called by several threads at the same time.
+	 *
+	 * @param instance The bag to predict.
+	 * @return The prediction, whose confidences are the outputs of the labels
+	 *         minus the output of the dummy label.
+	 * @throws Exception To be handled in an upper level.
+	 */
+	protected MultiLabelOutput predict(Instance instance) throws Exception {
+		Instances bag = instance.relationalValue(1);
+		int numInstances = bag.numInstances();
+		double[] values = new double[numInstances * numFeatures];
+		PackedBags.copyBag(bag, values, 0);
+
+		double[] outputs = new double[numLabels + 1];
+		computeOutputs(values, 0, numInstances, new double[D], outputs);
+		return toPrediction(outputs);
+	}
+
+	/**
+	 * Builds the prediction from the outputs of the labels.
+	 *
+	 * @param outputs The outputs of the labels followed by the one of the dummy
+	 *                label.
+	 * @return The prediction.
+	 */
+	protected MultiLabelOutput toPrediction(double[] outputs) {
+		boolean[] bipartition = new boolean[numLabels];
+		double[] confidences = new double[numLabels];
+		for (int j = 0; j < numLabels; j++) {
+			confidences[j] = outputs[j] - outputs[numLabels];
+			bipartition[j] = confidences[j] > 0;
+		}
+		return new MultiLabelOutput(bipartition, confidences);
+	}
+
+	/**
+	 * Computes the outputs of a bag without allocating memory or modifying the
+	 * model, so it can be called by several threads at the same time with their
+	 * own arrays. A label is relevant if its output is greater than the output of
+	 * the dummy label.
+	 *
+	 * @param values       Array with the instances of the bag row-major, as in
+	 *                     {@link PackedBags}.
+	 * @param offset       Position of the first value of the bag in the array.
+	 * @param numInstances Number of instances of the bag.
+	 * @param projection   Array of at least D elements used to project the
+	 *                     instances.
+	 * @param outputs      Array of at least numLabels+1 elements where the
+	 *                     outputs of the labels followed by the one of the dummy
+	 *                     label are stored.
+	 * @return The outputs array.
+	 */
+	public double[] computeOutputs(double[] values, int offset, int numInstances, double[] projection,
+			double[] outputs) {
+		// The outputs of an empty bag are 0, so no label is relevant
+		Arrays.fill(outputs, 0, numLabels + 1, numInstances == 0 ? 0 : Double.NEGATIVE_INFINITY);
+		for (int u = 0; u < numInstances; u++) {
+			project(values, offset + u * numFeatures, projection, 0);
+			for (int l = 0; l <= numLabels; l++) {
+				for (int k = 0; k < num_sub; k++) {
+					double output = output(l, k, projection, 0);
+					if (output > outputs[l])
+						outputs[l] = output;
+				}
+			}
+		}
+		return outputs;
+	}
+
+	/**
+	 * Gets the number of attributes of the instances of the bags, which is the
+	 * number of values per instance expected by
+	 * {@link #computeOutputs(double[], int, int, double[], double[])}.
+	 *
+	 * @return The number of attributes.
+	 */
+	public int getNumFeatures() {
+		return numFeatures;
+	}
+
+	/**
+	 * Gets the value of the D property.
+	 *
+	 * @return int
+	 */
+	public int getD() {
+		return D;
+	}
+
+	/**
+	 * Sets the value of the D property.
+	 *
+	 * @param d The new value for the property.
+	 */
+	public void setD(int d) {
+		D = d;
+	}
+
+	/**
+	 * Gets the value of the norm_up property.
+	 *
+	 * @return int
+	 */
+	public int getNorm_up() {
+		return norm_up;
+	}
+
+	/**
+	 * Sets the value of the norm_up property.
+	 *
+	 * @param norm_up The new value for the property.
+	 */
+	public void setNorm_up(int norm_up) {
+		this.norm_up = norm_up;
+	}
+
+	/**
+	 * Gets the value of the maxiter property.
+	 *
+	 * @return int
+	 */
+	public int getMaxiter() {
+		return maxiter;
+	}
+
+	/**
+	 * Sets the value of the maxiter property.
+	 *
+	 * @param maxiter The new value for the property.
+	 */
+	public void setMaxiter(int maxiter) {
+		this.maxiter = maxiter;
+	}
+
+	/**
+	 * Gets the value of the step_size property.
+	 *
+	 * @return double
+	 */
+	public double getStep_size() {
+		return step_size;
+	}
+
+	/**
+	 * Sets the value of the step_size property.
+	 *
+	 * @param step_size The new value for the property.
+	 */
+	public void setStep_size(double step_size) {
+		this.step_size = step_size;
+	}
+
+	/**
+	 * Gets the value of the lambda property.
+	 *
+	 * @return double
+	 */
+	public double getLambda() {
+		return lambda;
+	}
+
+	/**
+	 * Sets the value of the lambda property.
+	 *
+	 * @param lambda The new value for the property.
+	 */
+	public void setLambda(double lambda) {
+		this.lambda = lambda;
+	}
+
+	/**
+	 * Gets the value of the num_sub property.
+	 *
+	 * @return int
+	 */
+	public int getNum_sub() {
+		return num_sub;
+	}
+
+	/**
+	 * Sets the value of the num_sub property.
+	 *
+	 * @param num_sub The new value for the property.
+	 */
+	public void setNum_sub(int num_sub) {
+		this.num_sub = num_sub;
+	}
+
+	/**
+	 * Gets the value of the opts_norm property.
+	 *
+	 * @return int
+	 */
+	public int getOpts_norm() {
+		return opts_norm;
+	}
+
+	/**
+	 * Sets the value of the opts_norm property.
+	 *
+	 * @param opts_norm The new value for the property.
+	 */
+	public void setOpts_norm(int opts_norm) {
+		this.opts_norm = opts_norm;
+	}
+
+	/**
+	 * Gets the value of the opts_average_size property.
+	 *
+	 * @return int
+	 */
+	public int getOpts_average_size() {
+		return opts_average_size;
+	}
+
+	/**
+	 * Sets the value of the opts_average_size property.
+	 *
+	 * @param opts_average_size The new value for the property.
+	 */
+	public void setOpts_average_size(int opts_average_size) {
+		this.opts_average_size = opts_average_size;
+	}
+
+	/**
+	 * Gets the value of the opts_average_begin property.
+	 *
+	 * @return int
+	 */
+	public int getOpts_average_begin() {
+		return opts_average_begin;
+	}
+
+	/**
+	 * Sets the value of the opts_average_begin property.
+	 *
+	 * @param opts_average_begin The new value for the property.
+	 */
+	public void setOpts_average_begin(int opts_average_begin) {
+		this.opts_average_begin = opts_average_begin;
+	}
+
+	/**
+	 * Gets the seed for the initialization and the sampling of SGD.
+	 *
+	 * @return The seed.
+	 */
+	public int getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Sets the seed for the initialization and the sampling of SGD.
+	 *
+	 * @param seed The seed.
+	 */
+	public void setSeed(int seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Gets the number of threads used to predict data sets, and to train with
+	 * hogwild.
+	 *
+	 * @return The number of threads.
+	 */
+	public int getNumThreads() {
+		return numThreads;
+	}
+
+	/**
+	 * Sets the number of threads used to predict data sets, and to train with
+	 * hogwild.
+	 *
+	 * @param numThreads The number of threads. If it is not positive, the number
+	 *                   of available processors is used.
+	 */
+	public void setNumThreads(int numThreads) {
+		this.numThreads = numThreads;
+	}
+
+	/**
+	 * Gets whether SGD is run by several threads without locks.
+	 *
+	 * @return True if hogwild is enabled.
+	 */
+	public boolean getHogwild() {
+		return hogwild;
+	}
+
+	/**
+	 * Sets whether SGD is run by numThreads threads without locks. It is faster,
+	 * but the model is not deterministic.
+	 *
+	 * @param hogwild True to enable hogwild.
+	 */
+	public void setHogwild(boolean hogwild) {
+		this.hogwild = hogwild;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * core.IConfiguration#configure(org.apache.commons.configuration.Configuration)
+	 */
+	@Override
+	public void configure(Configuration configuration) {
+		this.D = configuration.getInt("D", 100);
+		this.norm_up = configuration.getInt("normUp", 10);
+		this.maxiter = configuration.getInt("maxiter", 10);
+		this.step_size = configuration.getDouble("stepSize", 0.005);
+		this.num_sub = configuration.getInt("numSub", 5);
+		this.lambda = configuration.getDouble("lambda", 1e-5);
+		this.opts_norm = configuration.getInt("norm", 1);
+		this.opts_average_size = configuration.getInt("averageSize", 10);
+		this.opts_average_begin = configuration.getInt("averageBegin", 0);
+		this.seed = configuration.getInt("seed", 1);
+		this.numThreads = configuration.getInt("numThreads", 1);
+		this.hogwild = configuration.getBoolean("hogwild", false);
+	}
+}
@@ -0,0 +1,682 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package miml.classifiers.miml.optimization;
+
+import java.util.Arrays;
+
+import org.apache.commons.configuration2.Configuration;
+
+import miml.classifiers.miml.IMIMLPredictor;
+import miml.classifiers.miml.MIMLClassifier;
+import miml.clusterers.KMedoids;
+import miml.core.KernelMatrix;
+import miml.core.ParallelLoop;
+import miml.core.SMOSolver;
+import miml.core.distance.HausdorffDistance;
+import miml.core.distance.IDistance;
+import miml.core.distance.PackedMaximalHausdorff;
+import miml.data.MIMLBag;
+import miml.data.MIMLInstances;
+import mulan.classifier.InvalidDataException;
+import mulan.classifier.ModelInitializationException;
+import mulan.classifier.MultiLabelOutput;
+import mulan.core.ArgumentNullException;
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * <p>
+ * Java implementation of the MIMLSVM algorithm for MIML data, which does not
+ * need the MATLAB runtime used by {@link MIMLSVM}. The training bags are
+ * grouped with {@link KMedoids} in ratio*N clusters, and each bag is
+ * represented by its symmetric distances to the medoids, i.e. the maximum of
+ * both directions for metrics that are not symmetric. Then, a one-vs-rest SVM is
+ * trained for each label with {@link SMOSolver}. If no label gets a positive
+ * output, the label with the greatest output is predicted. For more
+ * information, see <em>Z.-H. Zhou and M.-L. Zhang. Multi-instance multi-label
+ * learning with application to scene classification. In: Advances in Neural
+ * Information Processing Systems 19 (NIPS'06) (Vancouver, Canada) Cambridge,
+ * MA: MIT Press, 2007.</em>
+ * </p>
+ * <p>
+ * The kernel matrix of the training bags is computed once, storing only its
+ * upper triangle, and it is shared by the SVMs of all the labels, which are
+ * trained in parallel. Only the support
+ * vectors are kept, so a prediction computes the distances to the medoids and
+ * the kernel with each support vector once for all the labels. Predictions do
+ * not modify the model, so {@link #freeze()} returns a predictor that can be
+ * used by several threads at the same time.
+ * </p>
+ *
+ * @author agent
+ * @version 20261018
+ */
+public class MIMLSVMJava extends MIMLClassifier {
+
+	/** For serialization. */
+	private static final long serialVersionUID = -2850468101838711390L;
+
+	/**
+	 * The type of svm used in training, which can take the value of "RBF", "Poly"
+	 * or "Linear".
+	 */
+	protected String type = "RBF";
+
+	/**
+	 * A string that gives the corresponding parameters used for the svm:
+	 * <ul>
+	 * <li>If type is "RBF", para gives the value of gamma (i.e. para="1") where the
+	 * kernel is exp(-Gamma*|x(i)-x(j)|^2).</li>
+	 * <li>If type is "Poly", then para gives the value of gamma, coefficient, and
+	 * degree respectively, where the kernel is
+	 * (gamma*&lt;x(i),x(j)&gt;+coefficient)^degree. Values in the string are
+	 * delimited by blank spaces or commas (i.e. para="1, 0, 1").</li>
+	 * <li>If type is "Linear", then para is an empty string, where the kernel is
+	 * &lt;x(i),x(j)&gt; (i.e. para ="").</li>
+	 * </ul>
+	 */
+	protected String para = "0.2";
+
+	/** The cost parameter used for the base svm classifier. */
+	protected double cost = 1;
+
+	/** Whether to use the shrinking heuristics, 0 or 1 (default 1). */
+	protected double h = 1;
+
+	/** Parameter k is set to be 20% of the number of training bags. */
+	protected double ratio = 0.2;
+
+	/** Seed for kmedoids clustering. */
+	protected int seed = 1;
+
+	/** Maximum number of iterations of kmedoids clustering. */
+	protected int maxIterations = 1000;
+
+	/** Metric for measure the distance between bags. */
+	protected IDistance metric = new PackedMaximalHausdorff();
+
+	/** Number of threads used to train and to predict data sets. */
+	protected int numThreads = 1;
+
+	/** Whether the distance matrix is stored with single precision. */
+	protected boolean singlePrecision = false;
+
+	/** Directory of the distance matrix cache, or null to disable it. */
+	protected String cacheDirectory = null;
+
+	/** The medoids, as the relational values of the training bags. */
+	protected Instances[] medoids;
+
+	/** The parameters of the kernel parsed from para. */
+	protected double[] kernelParameters;
+
+	/**
+	 * The support vectors of all the labels, as the distances of their bags to the
+	 * medoids. A bag that is a support vector for several labels is stored once.
+	 */
+	protected double[][] supportVectors;
+
+	/** For each label, the positions of its support vectors in supportVectors. */
+	protected int[][] labelSupportVectors;
+
+	/** For each label, the coefficients of its support vectors. */
+	protected double[][] coefficients;
+
+	/** For each label, the bias of its SVM. */
+	protected double[] rho;
+
+	/**
+	 * No-argument constructor for xml configuration.
+	 */
+	public MIMLSVMJava() {
+	}
+
+	/**
+	 * Constructor initializing fields of MIMLSVMJava.
+	 *
+	 * @param type  Value for type field.
+	 * @param para  Value for para field.
+	 * @param cost  Value for cost field.
+	 * @param h     Value for h field.
+	 * @param ratio Value for ratio field.
+	 * @param seed  Value for seed field.
+	 */
+	public MIMLSVMJava(String type, String para, double cost, double h, double ratio, int seed) {
+		this.type = type;
+		this.para = para;
+		this.cost = cost;
+		this.h = h;
+		this.ratio = ratio;
+		this.seed = seed;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see miml.classifiers.miml.MIMLClassifier#buildInternal(miml.data.
+	 * MIMLInstances)
+	 */
+	@Override
+	protected void buildInternal(MIMLInstances trainingSet) throws Exception {
+		if (trainingSet == null) {
+			throw new ArgumentNullException("trainingSet");
+		}
+
+		kernelParameters = parseKernelParameters();
+
+		Instances bags = trainingSet.getDataSet();
+		int numBags = bags.numInstances();
+
+		KMedoids kmedoids = cluster(bags);
+
+		int numClusters = kmedoids.numberOfClusters();
+		Instance[] medoidInstances = kmedoids.getMedoidInstances();
+		medoids = new Instances[numClusters];
+		for (int k = 0; k < numClusters; k++)
+			medoids[k] = medoidInstances[k].relationalValue(1);
+
+		// The embedding of the training bags is read from the distance matrix of the
+		// clustering
+		double[][] embedding = new double[numBags][];
+		for (int i = 0; i < numBags; i++)
+			embedding[i] = kmedoids.distanceToMedoids(i).clone();
+
+		// Only the upper triangle of the kernel matrix is stored, each thread
+		// computes a row of it
+		KernelMatrix kernelMatrix = new KernelMatrix(numBags);
+		ParallelLoop.run(numThreads, numBags, i -> {
+			for (int j = i; j < numBags; j++)
+				kernelMatrix.set(i, j, kernel(embedding[i], embedding[j]));
+		});
+
+		boolean[][] positive = new boolean[numLabels][numBags];
+		for (int i = 0; i < numBags; i++)
+			for (int j = 0; j < numLabels; j++)
+				positive[j][i] = bags.instance(i).stringValue(labelIndices[j]).equals("1");
+
+		SMOSolver.Solution[] solutions = new SMOSolver.Solution[numLabels];
+		ParallelLoop.run(numThreads, numLabels,
+				j -> solutions[j] = SMOSolver.solve(kernelMatrix, positive[j], cost, h != 0));
+
+		// Support vectors shared by several labels are stored once
+		int[] position = new int[numBags];
+		Arrays.fill(position, -1);
+		int numSupportVectors = 0;
+		for (SMOSolver.Solution solution : solutions)
+			for (int i : solution.indices)
+				if (position[i] < 0)
+					position[i] = numSupportVectors++;
+		supportVectors = new double[numSupportVectors][];
+		for (int i = 0; i < numBags; i++)
+			if (position[i] >= 0)
+				supportVectors[position[i]] = embedding[i];
+
+		labelSupportVectors = new int[numLabels][];
+		coefficients = new double[numLabels][];
+		rho = new double[numLabels];
+		for (int j = 0; j < numLabels; j++) {
+			int[] indices = solutions[j].indices;
+			labelSupportVectors[j] = new int[indices.length];
+			for (int k = 0; k < indices.length; k++)
+				labelSupportVectors[j][k] = position[indices[k]];
+			coefficients[j] = solutions[j].coefficients;
+			rho[j] = solutions[j].rho;
+		}
+
+		// The ranges of the metric are initialized before sharing it, and they are
+		// not updated with the predicted bags
+		if (metric instanceof HausdorffDistance)
+			((HausdorffDistance) metric).getRanges();
+	}
+
+	/**
+	 * Parses the kernel parameters of para according to the type of svm.
+	 *
+	 * @return gamma for RBF; gamma, coefficient and degree for Poly; nothing for
+	 *         Linear.
+	 * @throws IllegalArgumentException If the type is unknown or para does not
+	 *                                  have the expected values.
+	 */
+	protected double[] parseKernelParameters() {
+		String trimmed = para == null ? "" : para.trim();
+		String[] tokens = trimmed.isEmpty() ? new String[0] : trimmed.split("[,\\s]+");
+		double[] values = new double[tokens.length];
+		for (int i = 0; i < tokens.length; i++)
+			values[i] = Double.parseDouble(tokens[i]);
+
+		int expected;
+		if (type.equalsIgnoreCase("RBF"))
+			expected = 1;
+		else if (type.equalsIgnoreCase("Poly"))
+			expected = 3;
+		else if (type.equalsIgnoreCase("Linear"))
+			expected = 0;
+		else
+			throw new IllegalArgumentException("Unknown svm type: " + type);
+
+		if (values.length != expected)
+			throw new IllegalArgumentException(
+					"The " + type + " svm expects " + expected + " parameters in para: \"" + para + "\"");
+		return values;
+	}
+
+	/**
+	 * Computes the kernel between two embedded bags.
+	 *
+	 * @param a The first bag.
+	 * @param b The second bag.
+	 * @return The kernel value.
+	 */
+	protected double kernel(double[] a, double[] b) {
+		switch (kernelParameters.length) {
+		case 1: {
+			double sum = 0;
+			for (int k = 0; k < a.length; k++) {
+				double diff = a[k] - b[k];
+				sum += diff * diff;
+			}
+			return Math.exp(-kernelParameters[0] * sum);
+		}
+		case 3: {
+			double dot = 0;
+			for (int k = 0; k < a.length; k++)
+				dot += a[k] * b[k];
+			return Math.pow(kernelParameters[0] * dot + kernelParameters[1], kernelParameters[2]);
+		}
+		default: {
+			double dot = 0;
+			for (int k = 0; k < a.length; k++)
+				dot += a[k] * b[k];
+			return dot;
+		}
+		}
+	}
+
+	/**
+	 * Groups the training bags with {@link KMedoids}. The matrix of the clustering
+	 * holds the symmetric distances, so that the embedding of a bag is the same
+	 * in training and in prediction.
+	 *
+	 * @param bags The training bags.
+	 * @return The clusterer, whose distances to the medoids are the embedding of
+	 *         the training bags.
+	 * @throws Exception To be handled in an upper level.
+	 */
+	protected KMedoids cluster(Instances bags) throws Exception {
+
+		KMedoids kmedoids = new KMedoids((int) (ratio * bags.numInstances()), maxIterations, metric);
+		kmedoids.setSeed(seed);
+		kmedoids.setSymmetrize(true);
+		kmedoids.setNumThreads(numThreads);
+		kmedoids.setSinglePrecision(singlePrecision);
+		kmedoids.setCacheDirectory(cacheDirectory);
+		kmedoids.buildClusterer(bags);
+		return kmedoids;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see miml.classifiers.miml.MIMLClassifier#makePredictionInternal(miml.data.
+	 * MIMLBag)
+	 */
+	@Override
+	protected MultiLabelOutput makePredictionInternal(MIMLBag instance) throws Exception, InvalidDataException {
+		return predict(instance);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see miml.classifiers.miml.MIMLClassifier#makePredictionsInternal(miml.data.
+	 * MIMLInstances)
+	 */
+	@Override
+	protected MultiLabelOutput[] makePredictionsInternal(MIMLInstances data) throws Exception {
+		Instances bags = data.getDataSet();
+		MultiLabelOutput[] predictions = new MultiLabelOutput[bags.numInstances()];
+		ParallelLoop.run(numThreads, predictions.length, i -> predictions[i] = predict(bags.instance(i)));
+		return predictions;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see miml.classifiers.miml.IMIMLClassifier#freeze()
+	 */
+	@Override
+	public IMIMLPredictor freeze() throws Exception {
+		if (!isModelInitialized()) {
+			throw new ModelInitializationException("The model has not been trained.");
+		}
+		return new IMIMLPredictor() {
+
+			@Override
+			public MultiLabelOutput makePrediction(Instance instance) throws Exception {
+				return predict(instance);
+			}
+
+			@Override
+			public MultiLabelOutput[] makePredictions(MIMLInstances data) throws Exception {
+				return makePredictionsInternal(data);
+			}
+		};
+	}
+
+	/**
+	 * Computes the embedding of a bag, i.e. its symmetric distances to the
+	 * medoids, without modifying the model.
+	 *
+	 * @param instance The bag.
+	 * @param embedded Array of at least as many elements as medoids where the
+	 *                 embedding is stored.
+	 * @return The embedded array.
+	 * @throws Exception To be handled in an upper level.
+	 */
+	protected double[] embed(Instance instance, double[] embedded) throws Exception {
+
+		Instances bag = instance.relationalValue(1);
+		for (int k = 0; k < medoids.length; k++)
+			embedded[k] = metric.symmetricDistance(medoids[k], bag);
+		return embedded;
+	}
+
+	/**
+	 * Predicts the labels of a bag without modifying the model, so it can be
+	 * called by several threads at the same time.
+	 *
+	 * @param instance The bag to predict.
+	 * @return The prediction, whose confidences are the decision values of the
+	 *         SVMs.
+	 * @throws Exception To be handled in an upper level.
+	 */
+	protected MultiLabelOutput predict(Instance instance) throws Exception {
+
+		double[] embedded = embed(instance, new double[medoids.length]);
+
+		double[] kernelValues = new double[supportVectors.length];
+		for (int s = 0; s < supportVectors.length; s++)
+			kernelValues[s] = kernel(supportVectors[s], embedded);
+
+		boolean[] bipartition = new boolean[numLabels];
+		double[] confidences = new double[numLabels];
+		int best = 0;
+		boolean any = false;
+		for (int j = 0; j < numLabels; j++) {
+			int[] indices = labelSupportVectors[j];
+			double[] coefficient = coefficients[j];
+			double output = -rho[j];
+			for (int k = 0; k < indices.length; k++)
+				output += coefficient[k] * kernelValues[indices[k]];
+			confidences[j] = output;
+			bipartition[j] = output > 0;
+			any |= bipartition[j];
+			if (output > confidences[best])
+				best = j;
+		}
+
+		// At least one label is predicted for each bag
+		if (!any && numLabels > 0)
+			bipartition[best] = true;
+
+		return new MultiLabelOutput(bipartition, confidences);
+	}
+
+	/**
+	 * Gets the number of support vectors of all the labels, counting once the
+	 * ones shared by several labels.
+	 *
+	 * @return The number of support vectors.
+	 */
+	public int getNumSupportVectors() {
+		return supportVectors.length;
+	}
+
+	/**
+	 * Gets the value of the type property.
+	 *
+	 * @return String
+	 */
+	public String getType() {
+		return type;
+	}
+
+	/**
+	 * Sets the value of the type property.
+	 *
+	 * @param type The new value for the property.
+	 */
+	public void setType(String type) {
+		this.type = type;
+	}
+
+	/**
+	 * Gets the value of the para property.
+	 *
+	 * @return String
+	 */
+	public String getPara() {
+		return para;
+	}
+
+	/**
+	 * Sets the value of the para property.
+	 *
+	 * @param para The new value for the property.
+	 */
+	public void setPara(String para) {
+		this.para = para;
+	}
+
+	/**
+	 * Gets the value of the cost property.
+	 *
+	 * @return double
+	 */
+	public double getCost() {
+		return cost;
+	}
+
+	/**
+	 * Sets the value of the cost property.
+	 *
+	 * @param cost The new value for the property.
+	 */
+	public void setCost(double cost) {
+		this.cost = cost;
+	}
+
+	/**
+	 * Gets the value of the h property.
+	 *
+	 * @return double
+	 */
+	public double getH() {
+		return h;
+	}
+
+	/**
+	 * Sets the value of the h property.
+	 *
+	 * @param h The new value for the property.
+	 */
+	public void setH(double h) {
+		this.h = h;
+	}
+
+	/**
+	 * Gets the value of the ratio property.
+	 *
+	 * @return double
+	 */
+	public double getRatio() {
+		return ratio;
+	}
+
+	/**
+	 * Sets the value of the ratio property.
+	 *
+	 * @param ratio The new value for the property.
+	 */
+	public void setRatio(double ratio) {
+		this.ratio = ratio;
+	}
+
+	/**
+	 * Gets the value of the seed property.
+	 *
+	 * @return int
+	 */
+	public int getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Sets the value of the seed property.
+	 *
+	 * @param seed The new value for the property.
+	 */
+	public void setSeed(int seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Returns the maximum number of iterations of kmedoids clustering.
+	 *
+	 * @return The maximum number of iterations.
+	 */
+	public int getMaxIterations() {
+		return maxIterations;
+	}
+
+	/**
+	 * Sets the maximum number of iterations of kmedoids clustering.
+	 *
+	 * @param maxIterations The maximum number of iterations.
+	 */
+	public void setMaxIterations(int maxIterations) {
+		this.maxIterations = maxIterations;
+	}
+
+	/**
+	 * Returns the metric used to measure the distance between bags.
+	 *
+	 * @return The metric.
+	 */
+	public IDistance getMetric() {
+		return metric;
+	}
+
+	/**
+	 * Sets the metric used to measure the distance between bags. It must support
+	 * concurrent calls to its distance methods when more than one thread is used.
+	 *
+	 * @param metric The metric.
+	 */
+	public void setMetric(IDistance metric) {
+		this.metric = metric;
+	}
+
+	/**
+	 * Gets the number of threads used to train and to predict data sets.
+	 *
+	 * @return The number of threads.
+	 */
+	public int getNumThreads() {
+		return numThreads;
+	}
+
+	/**
+	 * Sets the number of threads used to train and to predict data sets.
+	 *
+	 * @param numThreads The number of threads. If it is not positive, the number
+	 *                   of available processors is used.
+	 */
+	public void setNumThreads(int numThreads) {
+		this.numThreads = numThreads;
+	}
+
+	/**
+	 * Gets whether the distance matrix is stored with single precision.
+	 *
+	 * @return True if the distances are stored as float.
+	 */
+	public boolean getSinglePrecision() {
+		return singlePrecision;
+	}
+
+	/**
+	 * Sets whether the distance matrix is stored with single precision.
+	 *
+	 * @param singlePrecision True to store the distances as float.
+	 */
+	public void setSinglePrecision(boolean singlePrecision) {
+		this.singlePrecision = singlePrecision;
+	}
+
+	/**
+	 * Gets the directory of the distance matrix cache.
+	 *
+	 * @return The directory, or null if the cache is disabled.
+	 */
+	public String getCacheDirectory() {
+		return cacheDirectory;
+	}
+
+	/**
+	 * Sets the directory of the distance matrix cache, so that classifiers trained
+	 * on the same data with the same metric reuse the matrix.
+	 *
+	 * @param cacheDirectory The directory, or null to disable the cache.
+	 */
+	public void setCacheDirectory(String cacheDirectory) {
+		this.cacheDirectory = cacheDirectory;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * core.IConfiguration#configure(org.apache.commons.configuration.Configuration)
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public void configure(Configuration configuration) {
+
+		this.type = configuration.getString("type", "RBF");
+		this.para = configuration.getString("para", "0.2");
+		this.cost = configuration.getDouble("cost", 1);
+		this.h = configuration.getDouble("h", 1);
+		this.ratio = configuration.getDouble("ratio", 0.2);
+		this.seed = configuration.getInt("seed", 1);
+		this.maxIterations = configuration.getInt("maxIterations", 1000);
+		this.numThreads = configuration.getInt("numThreads", 1);
+		this.singlePrecision = configuration.getBoolean("singlePrecision", false);
+		this.cacheDirectory = configuration.getString("cacheDirectory", null);
+
+		try {
+			// Get the name of the metric class
+			String metricName = configuration.getString("metric[@name]",
+					"miml.core.distance.PackedMaximalHausdorff");
+			// Instance class
+			Class<? extends IDistance> metricClass = (Class<? extends IDistance>) Class.forName(metricName);
+
+			this.metric = metricClass.getDeclaredConstructor().newInstance();
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
@@ -8,6 +8,9 @@ package miml.clusterers;
 import java.util.Arrays;
 import java.util.Random;
 import miml.core.distance.AverageHausdorff;
+import miml.core.distance.DistanceMatrix;
+import miml.core.distance.DistanceMatrixBuilder;
+import miml.core.distance.DistanceMatrixCache;
 import miml.core.distance.IDistance;
 import weka.clusterers.Clusterer;
 import weka.clusterers.RandomizableClusterer;
@@ -18,6 +21,10 @@ import weka.core.Utils;
 
 public class KMedoids extends RandomizableClusterer implements Clusterer {
     private static final long serialVersionUID = -6814942755920034118L;
+
+    /** Relative improvement of the cost needed to accept a swap with strict improvement. */
+    public static final double SWAP_TOLERANCE = 1e-9;
+
     protected IDistance metric;
     protected int numClusters;
     protected int numInstances;
@@ -25,9 +32,14 @@ public class KMedoids extends RandomizableClusterer implements Clusterer {
     protected int[] medoidIndices;
     protected Instance[] medoidInstances;
     protected int[] clusterAssignment;
-    protected double[][] distances;
+    protected DistanceMatrix distances;
+    protected int numThreads = 1;
+    protected boolean singlePrecision = false;
+    protected String cacheDirectory = null;
     protected boolean minimize;
     protected boolean randomInitialization;
+    protected boolean strictImprovement = false;
+    protected boolean symmetrize = false;
     protected double configurationCost;
     protected double numIterations;
 
@@ -84,7 +96,7 @@ public class KMedoids extends RandomizableClusterer implements Clusterer {
 
             for(int j = 0; j < this.numInstances; ++j) {
                 if (j != k) {
-                    sumDistances[k] += this.distances[k][j];
+                    sumDistances[k] += this.distances.get(k, j);
                 }
             }
 
@@ -105,16 +117,16 @@ public class KMedoids extends RandomizableClusterer implements Clusterer {
                 if (!this.isMedoid(i)) {
                     for(int j = 0; j < this.numInstances; ++j) {
                         if (!this.isMedoid(j) && j != i) {
-                            double Dj = this.distances[j][this.medoidIndices[0]];
+                            double Dj = this.distances.get(j, this.medoidIndices[0]);
 
                             for(int c = 1; c < k; ++c) {
-                                if (this.compare(Dj, this.distances[j][c])) {
-                                    Dj = this.distances[j][c];
+                                if (this.compare(Dj, this.distances.get(j, c))) {
+                                    Dj = this.distances.get(j, c);
                                 }
                             }
 
-                            if (!this.compare(Dj, this.distances[i][j])) {
-                                gain[i] += Math.abs(Dj - this.distances[i][j]);
+                            if (!this.compare(Dj, this.distances.get(i, j))) {
+                                gain[i] += Math.abs(Dj - this.distances.get(i, j));
                             }
                         }
                     }
@@ -135,6 +147,26 @@ public class KMedoids extends RandomizableClusterer implements Clusterer {
     }
 
     public void buildClusterer(Instances data) throws Exception {
+        this.metric.setInstances(data);
+        this.computeDistances(data);
+        this.buildClusterer(data, this.distances);
+    }
+
+    /**
+     * Builds the clusterer from a distance matrix already computed, e.g. a
+     * {@link miml.core.distance.SubsetDistanceMatrix} of a larger data set. The
+     * metric is not initialized with the data, so it must be done by the caller
+     * before using {@link #distanceToMedoids(Instance)}.
+     *
+     * @param data      The data set.
+     * @param distances The distance matrix of the data set.
+     * @throws Exception To be handled in an upper level.
+     */
+    public void buildClusterer(Instances data, DistanceMatrix distances) throws Exception {
+        if (distances.size() != data.numInstances()) {
+            throw new IllegalArgumentException("The size of the matrix does not match the number of instances");
+        }
+
         this.numInstances = data.numInstances();
         if (this.numClusters > this.numInstances) {
             System.out.println("The number of clusters must be less or equal to the number of bags. Setting nClusters=" + this.numInstances);
@@ -146,9 +178,7 @@ public class KMedoids extends RandomizableClusterer implements Clusterer {
             this.numClusters = 2;
         }
 
-        this.metric.setInstances(data);
-        this.distances = new double[this.numInstances][this.numInstances];
-        this.computeDistances(data);
+        this.distances = distances;
         this.medoidIndices = new int[this.numClusters];
 
         for(int k = 0; k < this.numClusters; ++k) {
@@ -161,9 +191,21 @@ public class KMedoids extends RandomizableClusterer implements Clusterer {
             this.buildInitialization();
         }
 
-        this.clusterAssignment = this.assignInstancesToMedoids(this.medoidIndices);
-        double cost = this.computeCost(this.clusterAssignment);
+        // Each candidate swap is evaluated in O(n) from the distances of every
+        // instance to its nearest and second nearest medoids, which give the same
+        // cost as assigning all the instances again
+        boolean[] medoid = new boolean[this.numInstances];
+        for(int k = 0; k < this.numClusters; ++k) {
+            medoid[this.medoidIndices[k]] = true;
+        }
+
+        double[] nearest = new double[this.numInstances];
+        double[] second = new double[this.numInstances];
+        int[] nearestMedoid = new int[this.numInstances];
+        double cost = this.computeNearestMedoids(nearest, second, nearestMedoid);
         boolean change = true;
+        int lastPosition = -1;
+        int lastCandidate = -1;
 
         int count;
         int k;
@@ -174,22 +216,35 @@ public class KMedoids extends RandomizableClusterer implements Clusterer {
                 int oldMedoid = this.medoidIndices[k];
 
                 for(int i = 0; i < data.numInstances(); ++i) {
-                    if (!this.isMedoid(i)) {
-                        this.medoidIndices[k] = i;
-                        int[] candidateAsignment = this.assignInstancesToMedoids(this.medoidIndices);
-                        double candidateCost = this.computeCost(candidateAsignment);
-                        if (this.compare(candidateCost, cost)) {
-                            this.clusterAssignment = candidateAsignment.clone();
-                            cost = candidateCost;
+                    if (!medoid[i]) {
+                        double candidateCost = this.computeSwapCost(k, i, nearest, second, nearestMedoid);
+                        lastPosition = k;
+                        lastCandidate = i;
+                        if (this.acceptSwap(candidateCost, cost)) {
+                            this.setMedoid(k, i, medoid);
+                            cost = this.computeNearestMedoids(nearest, second, nearestMedoid);
                             change = true;
-                        } else {
-                            this.medoidIndices[k] = oldMedoid;
+                        } else if (!this.strictImprovement && this.medoidIndices[k] != oldMedoid) {
+                            // The original algorithm restores the medoid of the position at the
+                            // start of the pass, and keeps the cost of the last swap accepted
+                            this.setMedoid(k, oldMedoid, medoid);
+                            this.computeNearestMedoids(nearest, second, nearestMedoid);
                         }
                     }
                 }
             }
         }
 
+        if (this.strictImprovement || lastPosition < 0) {
+            this.clusterAssignment = this.assignInstancesToMedoids(this.medoidIndices);
+        } else {
+            // The original algorithm keeps the assignment of the last candidate evaluated
+            int current = this.medoidIndices[lastPosition];
+            this.medoidIndices[lastPosition] = lastCandidate;
+            this.clusterAssignment = this.assignInstancesToMedoids(this.medoidIndices);
+            this.medoidIndices[lastPosition] = current;
+        }
+
         this.medoidInstances = new Instance[this.numClusters];
 
         for(k = 0; k < this.numClusters; ++k) {
@@ -201,18 +256,105 @@ public class KMedoids extends RandomizableClusterer implements Clusterer {
     }
 
     protected void computeDistances(Instances data) throws Exception {
-        for(int i = 0; i < data.numInstances(); ++i) {
-            this.distances[i][i] = 0.0;
-            Instance instanceA = data.instance(i);
-
-            for(int j = i + 1; j < data.numInstances(); ++j) {
-                Instance instanceB = data.instance(j);
-                double dist = this.metric.distance(instanceA, instanceB);
-                this.distances[i][j] = dist;
-                this.distances[j][i] = dist;
+        DistanceMatrixBuilder builder = new DistanceMatrixBuilder(this.numThreads, this.singlePrecision);
+        builder.setSymmetrize(this.symmetrize);
+        if (this.cacheDirectory != null) {
+            this.distances = new DistanceMatrixCache(this.cacheDirectory).get(this.metric, data, builder);
+        } else {
+            this.distances = builder.compute(this.metric, data);
+        }
+    }
+
+    /**
+     * Checks whether a candidate swap is accepted. By default, a candidate whose
+     * cost is not worse than the current one is accepted. With strict improvement,
+     * the cost must improve by more than a relative tolerance, since both costs
+     * are sums of the same distances added in different orders.
+     *
+     * @param candidateCost Cost of the medoids with the candidate.
+     * @param cost          Cost of the current medoids.
+     * @return True if the swap is accepted.
+     */
+    protected boolean acceptSwap(double candidateCost, double cost) {
+        if (!this.strictImprovement) {
+            return this.compare(candidateCost, cost);
+        }
+        double improvement = this.minimize ? cost - candidateCost : candidateCost - cost;
+        return improvement > SWAP_TOLERANCE * Math.abs(cost);
+    }
+
+    /**
+     * Replaces a medoid.
+     *
+     * @param k         Position in medoidIndices of the medoid replaced.
+     * @param candidate Index of the instance that replaces it.
+     * @param medoid    Whether each instance is a medoid, which is updated.
+     */
+    protected void setMedoid(int k, int candidate, boolean[] medoid) {
+        medoid[this.medoidIndices[k]] = false;
+        medoid[candidate] = true;
+        this.medoidIndices[k] = candidate;
+    }
+
+    /**
+     * Computes the distance of each instance to its nearest and second nearest
+     * medoids.
+     *
+     * @param nearest       Array where the distances to the nearest medoids are
+     *                      stored.
+     * @param second        Array where the distances to the second nearest
+     *                      medoids are stored.
+     * @param nearestMedoid Array where the positions in medoidIndices of the
+     *                      nearest medoids are stored.
+     * @return The cost of the current medoids.
+     */
+    protected double computeNearestMedoids(double[] nearest, double[] second, int[] nearestMedoid) {
+        double cost = 0.0;
+        double worst = this.minimize ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
+
+        for(int j = 0; j < this.numInstances; ++j) {
+            nearest[j] = worst;
+            second[j] = worst;
+
+            for(int k = 0; k < this.medoidIndices.length; ++k) {
+                double distance = this.distances.get(j, this.medoidIndices[k]);
+                if (this.compare(distance, nearest[j])) {
+                    second[j] = nearest[j];
+                    nearest[j] = distance;
+                    nearestMedoid[j] = k;
+                } else if (this.compare(distance, second[j])) {
+                    second[j] = distance;
+                }
             }
+
+            cost += nearest[j];
+        }
+
+        return cost;
+    }
+
+    /**
+     * Computes the cost of the medoids if the k-th medoid were replaced by an
+     * instance.
+     *
+     * @param k             Position in medoidIndices of the medoid replaced.
+     * @param candidate     Index of the instance that replaces it.
+     * @param nearest       Distances of the instances to their nearest medoids.
+     * @param second        Distances of the instances to their second nearest
+     *                      medoids.
+     * @param nearestMedoid Positions in medoidIndices of the nearest medoids.
+     * @return The cost.
+     */
+    protected double computeSwapCost(int k, int candidate, double[] nearest, double[] second, int[] nearestMedoid) {
+        double cost = 0.0;
+
+        for(int j = 0; j < this.numInstances; ++j) {
+            double current = nearestMedoid[j] == k ? second[j] : nearest[j];
+            double distance = this.distances.get(j, candidate);
+            cost += this.compare(distance, current) ? distance : current;
         }
 
+        return cost;
     }
 
     protected int[] assignInstancesToMedoids(int[] medoidIndices) {
@@ -223,11 +365,11 @@ public class KMedoids extends RandomizableClusterer implements Clusterer {
             if (index >= 0) {
                 this.clusterAssignment[i] = index;
             } else {
-                double bestDistance = this.distances[i][medoidIndices[0]];
+                double bestDistance = this.distances.get(i, medoidIndices[0]);
                 int bestMedoidIndex = 0;
 
                 for(int k = 1; k < medoidIndices.length; ++k) {
-                    double auxDistance = this.distances[i][medoidIndices[k]];
+                    double auxDistance = this.distances.get(i, medoidIndices[k]);
                     if (this.compare(auxDistance, bestDistance)) {
                         bestDistance = auxDistance;
                         bestMedoidIndex = k;
@@ -245,7 +387,7 @@ public class KMedoids extends RandomizableClusterer implements Clusterer {
         double cost = 0.0;
 
         for(int i = 0; i < assignment.length; ++i) {
-            cost += this.distances[i][this.medoidIndices[assignment[i]]];
+            cost += this.distances.get(i, this.medoidIndices[assignment[i]]);
         }
 
         return cost;
@@ -274,7 +416,8 @@ public class KMedoids extends RandomizableClusterer implements Clusterer {
         this.metric.update(instance);
         double[] distances = new double[this.numClusters];
         for(int k = 0; k < this.numClusters; ++k) {
-            distances[k] = this.metric.distance(this.medoidInstances[k], instance);
+            distances[k] = this.symmetrize ? this.metric.symmetricDistance(this.medoidInstances[k], instance)
+                    : this.metric.distance(this.medoidInstances[k], instance);
         }
         return distances;
     }
@@ -285,7 +428,7 @@ public class KMedoids extends RandomizableClusterer implements Clusterer {
         }
         double[] distances = new double[this.numClusters];
         for(int k = 0; k < this.numClusters; ++k) {
-            distances[k] = this.distances[index][this.medoidIndices[k]];
+            distances[k] = this.distances.get(index, this.medoidIndices[k]);
         }
         return distances;
     }
@@ -338,6 +481,15 @@ public class KMedoids extends RandomizableClusterer implements Clusterer {
         return this.medoidInstances;
     }
 
+    /**
+     * Gets the indices of the medoids in the data set.
+     *
+     * @return The indices, in the same order as {@link #getMedoidInstances()}.
+     */
+    public int[] getMedoidIndices() {
+        return this.medoidIndices;
+    }
+
     public IDistance getDistanceFunction() {
         return this.metric;
     }
@@ -350,6 +502,30 @@ public class KMedoids extends RandomizableClusterer implements Clusterer {
         this.numClusters = numberOfClusters;
     }
 
+    public int getNumThreads() {
+        return this.numThreads;
+    }
+
+    public void setNumThreads(int numThreads) {
+        this.numThreads = numThreads;
+    }
+
+    public boolean getSinglePrecision() {
+        return this.singlePrecision;
+    }
+
+    public void setSinglePrecision(boolean singlePrecision) {
+        this.singlePrecision = singlePrecision;
+    }
+
+    public String getCacheDirectory() {
+        return this.cacheDirectory;
+    }
+
+    public void setCacheDirectory(String cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+    }
+
     public int getMaxIterations() {
         return this.maxIterations;
     }
@@ -366,6 +542,40 @@ public class KMedoids extends RandomizableClusterer implements Clusterer {
         this.randomInitialization = randomInitialization;
     }
 
+    public boolean getStrictImprovement() {
+        return this.strictImprovement;
+    }
+
+    /**
+     * Sets whether a swap is only accepted if it improves the cost. By default,
+     * the original algorithm is followed: swaps that do not worsen the cost are
+     * accepted, so ties keep the loop running until maxIterations, and a rejected
+     * candidate restores the medoid that its position had at the start of the
+     * pass. With strict improvement, the loop ends at the first pass without
+     * improvements and accepted swaps are kept.
+     *
+     * @param strictImprovement True to only accept swaps that improve the cost.
+     */
+    public void setStrictImprovement(boolean strictImprovement) {
+        this.strictImprovement = strictImprovement;
+    }
+
+    public boolean getSymmetrize() {
+        return this.symmetrize;
+    }
+
+    /**
+     * Sets whether the distances are computed in both directions, see
+     * {@link IDistance#symmetricDistance(Instance, Instance)}. By default, the
+     * distance between two instances is only computed from the one with the lowest
+     * index, as in the original algorithm, and from the medoid to a new instance.
+     *
+     * @param symmetrize True to use the symmetric distances of the metric.
+     */
+    public void setSymmetrize(boolean symmetrize) {
+        this.symmetrize = symmetrize;
+    }
+
     public int[] getAssignment() {
         return this.clusterAssignment;
     }
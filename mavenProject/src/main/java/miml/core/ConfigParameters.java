@@ -16,7 +16,9 @@
 package miml.core;
 
 /**
- * Class used to save configuration parameters to be used in reports.
+ * Class used to save configuration parameters to be used in reports. Values
+ * are kept per thread, so that experiments run in parallel threads do not mix
+ * their parameters. Threads created by a thread start with its values.
  * 
  * @author Alvaro A. Belmonte
  * @author Amelia Zafra
@@ -26,27 +28,27 @@ package miml.core;
 public final class ConfigParameters {
 
 	/** The algorithm used in the experimentation. */
-	protected static String algorithmName = "";
+	protected static final ThreadLocal<String> algorithmName = inheritable("");
 
 	/** The configuration filename used in the experimentation. */
-	protected static String configFileName = "";
+	protected static final ThreadLocal<String> configFileName = inheritable("");
 
 	/** The name of data file used in the experimentation. */
-	protected static String dataFileName = "";
+	protected static final ThreadLocal<String> dataFileName = inheritable("");
 
 	/** The classifier used in the experimentation. */
-	protected static String classifierName = "";
+	protected static final ThreadLocal<String> classifierName = inheritable("");
 
 	/**
 	 * The name of the method used in the experiment if this is a transformation
 	 * method.
 	 */
-	protected static String transformationMethod = "";
+	protected static final ThreadLocal<String> transformationMethod = inheritable("");
 
 	/**
 	 * If the classifier configured in the experiment uses a method transformation.
 	 */
-	protected static Boolean isTransformation = false;
+	protected static final ThreadLocal<Boolean> isTransformation = inheritable(false);
 
 	/**
 	 * Gets the algorithm name.
@@ -54,7 +56,7 @@ public final class ConfigParameters {
 	 * @return The algorithm name.
 	 */
 	public static String getAlgorithmName() {
-		return algorithmName;
+		return algorithmName.get();
 	}
 
 	/**
@@ -63,7 +65,7 @@ public final class ConfigParameters {
 	 * @param algorithmName The new algorithm name.
 	 */
 	public static void setAlgorithmName(String algorithmName) {
-		ConfigParameters.algorithmName = algorithmName;
+		ConfigParameters.algorithmName.set(algorithmName);
 	}
 
 	/**
@@ -72,7 +74,7 @@ public final class ConfigParameters {
 	 * @return The configuration file name.
 	 */
 	public static String getConfigFileName() {
-		return configFileName;
+		return configFileName.get();
 	}
 
 	/**
@@ -81,7 +83,7 @@ public final class ConfigParameters {
 	 * @param configFileName The new configuration file name.
 	 */
 	public static void setConfigFileName(String configFileName) {
-		ConfigParameters.configFileName = configFileName;
+		ConfigParameters.configFileName.set(configFileName);
 	}
 
 	/**
@@ -90,7 +92,7 @@ public final class ConfigParameters {
 	 * @return The name of data file.
 	 */
 	public static String getDataFileName() {
-		return dataFileName;
+		return dataFileName.get();
 	}
 
 	/**
@@ -99,7 +101,7 @@ public final class ConfigParameters {
 	 * @param dataFileName the new data file name
 	 */
 	public static void setDataFileName(String dataFileName) {
-		ConfigParameters.dataFileName = dataFileName;
+		ConfigParameters.dataFileName.set(dataFileName);
 	}
 
 	/**
@@ -108,7 +110,7 @@ public final class ConfigParameters {
 	 * @return The classifier name.
 	 */
 	public static String getClassifierName() {
-		return classifierName;
+		return classifierName.get();
 	}
 
 	/**
@@ -117,7 +119,7 @@ public final class ConfigParameters {
 	 * @param classifierName The classifier name.
 	 */
 	public static void setClassifierName(String classifierName) {
-		ConfigParameters.classifierName = classifierName;
+		ConfigParameters.classifierName.set(classifierName);
 	}
 
 	/**
@@ -126,7 +128,7 @@ public final class ConfigParameters {
 	 * @return The transformation method used in the experiment.
 	 */
 	public static String getTransformationMethod() {
-		return transformationMethod;
+		return transformationMethod.get();
 	}
 
 	/**
@@ -135,7 +137,7 @@ public final class ConfigParameters {
 	 * @param transformationMethod The transformation method used in the experiment.
 	 */
 	public static void setTransformationMethod(String transformationMethod) {
-		ConfigParameters.transformationMethod = transformationMethod;
+		ConfigParameters.transformationMethod.set(transformationMethod);
 	}
 
 	/**
@@ -144,7 +146,7 @@ public final class ConfigParameters {
 	 * @return True if the method used is transformation.
 	 */
 	public static Boolean getIsTransformation() {
-		return isTransformation;
+		return isTransformation.get();
 	}
 
 	/**
@@ -153,7 +155,34 @@ public final class ConfigParameters {
 	 * @param isTransformation If the method used is transformation.
 	 */
 	public static void setIsTransformation(Boolean isTransformation) {
-		ConfigParameters.isTransformation = isTransformation;
+		ConfigParameters.isTransformation.set(isTransformation);
 	}
 
+	/**
+	 * Restores the default values of the parameters in the current thread.
+	 */
+	public static void reset() {
+		algorithmName.remove();
+		configFileName.remove();
+		dataFileName.remove();
+		classifierName.remove();
+		transformationMethod.remove();
+		isTransformation.remove();
+	}
+
+	/**
+	 * Creates a thread local value that is inherited by the threads created.
+	 *
+	 * @param <T>          The type of the value.
+	 * @param initialValue The initial value.
+	 * @return The thread local value.
+	 */
+	private static <T> ThreadLocal<T> inheritable(T initialValue) {
+		return new InheritableThreadLocal<T>() {
+			@Override
+			protected T initialValue() {
+				return initialValue;
+			}
+		};
+	}
 }
@@ -0,0 +1,111 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package miml.core;
+
+/**
+ * Symmetric kernel matrix of a set of examples. Only the upper triangle with the
+ * diagonal is stored, row-major, which needs about half the memory of the full
+ * matrix.
+ *
+ * @author agent
+ * @version 20261018
+ * @see SMOSolver
+ */
+public class KernelMatrix {
+
+	/** Number of examples. */
+	protected final int size;
+
+	/** The values of the upper triangle with the diagonal. */
+	protected final double[] values;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param size Number of examples.
+	 */
+	public KernelMatrix(int size) {
+		long length = (long) size * (size + 1) / 2;
+		if (length > Integer.MAX_VALUE - 8)
+			throw new IllegalArgumentException("Too many examples for a kernel matrix: " + size);
+		this.size = size;
+		this.values = new double[(int) length];
+	}
+
+	/**
+	 * Gets the number of examples.
+	 *
+	 * @return The number of examples.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the position of a pair of examples in the upper triangle.
+	 *
+	 * @param i Index of the first example.
+	 * @param j Index of the second example, greater or equal than i.
+	 * @return The position.
+	 */
+	protected int index(int i, int j) {
+		return (int) ((long) i * (2L * size - i + 1) / 2) + (j - i);
+	}
+
+	/**
+	 * Gets the kernel of two examples.
+	 *
+	 * @param i Index of the first example.
+	 * @param j Index of the second example.
+	 * @return The kernel value.
+	 */
+	public double get(int i, int j) {
+		return i <= j ? values[index(i, j)] : values[index(j, i)];
+	}
+
+	/**
+	 * Sets the kernel of two examples.
+	 *
+	 * @param i     Index of the first example.
+	 * @param j     Index of the second example.
+	 * @param value The kernel value.
+	 */
+	public void set(int i, int j, double value) {
+		if (i <= j)
+			values[index(i, j)] = value;
+		else
+			values[index(j, i)] = value;
+	}
+
+	/**
+	 * Copies the kernel of an example with all the examples.
+	 *
+	 * @param i    Index of the example.
+	 * @param dest Array of at least size elements.
+	 * @return The destination array.
+	 */
+	public double[] getRow(int i, double[] dest) {
+		// Column i of the previous rows
+		int index = i;
+		for (int j = 0; j < i; j++) {
+			dest[j] = values[index];
+			index += size - j - 1;
+		}
+		// Row i from the diagonal, which is contiguous
+		System.arraycopy(values, index, dest, i, size - i);
+		return dest;
+	}
+}
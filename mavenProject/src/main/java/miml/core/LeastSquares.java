@@ -0,0 +1,151 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package miml.core;
+
+import weka.core.matrix.CholeskyDecomposition;
+import weka.core.matrix.Matrix;
+import weka.core.matrix.SingularValueDecomposition;
+
+/**
+ * Regularized least squares used to train the output layer of the neural
+ * networks for MIML data. Given the outputs of the hidden layer Phi (one row
+ * per example) and the targets T, the weights are W = (Phi'Phi + lambda*I)^-1
+ * Phi'T. Without regularization the weights are pinv(Phi)*T, the least
+ * squares solution of minimum norm. The pseudo-inverse is computed from the
+ * singular value decomposition of Phi itself, as the condition number of
+ * Phi'Phi is the square of the one of Phi.
+ *
+ * @author agent
+ * @version 20261018
+ */
+public class LeastSquares {
+
+	/**
+	 * Computes the weights of a linear layer.
+	 *
+	 * @param phi        Outputs of the hidden layer, one row per example.
+	 * @param targets    Targets, one row per example.
+	 * @param lambda     The regularization parameter, 0 for plain least squares.
+	 * @param numThreads Number of threads used to compute Phi'Phi and Phi'T. If it
+	 *                   is not positive, the number of available processors is
+	 *                   used.
+	 * @return The weights, one row per target, so that the output for target j is
+	 *         the dot product of the hidden layer and row j.
+	 * @throws Exception If the system cannot be solved.
+	 */
+	public static double[][] solve(double[][] phi, double[][] targets, double lambda, int numThreads)
+			throws Exception {
+
+		int n = phi.length;
+		int size = n == 0 ? 0 : phi[0].length;
+		int numTargets = n == 0 ? 0 : targets[0].length;
+
+		if (lambda == 0)
+			return transpose(pseudoInverse(new Matrix(phi, n, size)).times(new Matrix(targets, n, numTargets)),
+					size, numTargets);
+
+		// Each row of Phi'Phi and Phi'T is computed by a thread, Phi'Phi is
+		// symmetric so only its upper triangle is summed
+		double[][] a = new double[size][size];
+		double[][] b = new double[size][numTargets];
+		ParallelLoop.run(numThreads, size, r -> {
+			double[] aRow = a[r];
+			double[] bRow = b[r];
+			for (int i = 0; i < n; i++) {
+				double[] row = phi[i];
+				double value = row[r];
+				if (value == 0)
+					continue;
+				for (int c = r; c < size; c++)
+					aRow[c] += value * row[c];
+				double[] target = targets[i];
+				for (int j = 0; j < numTargets; j++)
+					bRow[j] += value * target[j];
+			}
+			aRow[r] += lambda;
+		});
+		for (int r = 0; r < size; r++)
+			for (int c = 0; c < r; c++)
+				a[r][c] = a[c][r];
+
+		Matrix matrix = new Matrix(a, size, size);
+		Matrix rhs = new Matrix(b, size, numTargets);
+		Matrix solution;
+		CholeskyDecomposition cholesky = lambda > 0 ? matrix.chol() : null;
+		if (cholesky != null && cholesky.isSPD())
+			solution = cholesky.solve(rhs);
+		else
+			// The regularized system is not expected to be singular, but rounding
+			// may make it fail the Cholesky decomposition
+			solution = pseudoInverse(matrix).times(rhs);
+
+		return transpose(solution, size, numTargets);
+	}
+
+	/**
+	 * Transposes the solution of the system into the weights.
+	 *
+	 * @param solution   The solution, one row per hidden unit.
+	 * @param size       Number of hidden units.
+	 * @param numTargets Number of targets.
+	 * @return The weights, one row per target.
+	 */
+	protected static double[][] transpose(Matrix solution, int size, int numTargets) {
+		double[][] weights = new double[numTargets][size];
+		for (int r = 0; r < size; r++)
+			for (int j = 0; j < numTargets; j++)
+				weights[j][r] = solution.get(r, j);
+		return weights;
+	}
+
+	/**
+	 * Computes the pseudo-inverse of a matrix through its singular value
+	 * decomposition. Singular values smaller than max(rows,
+	 * columns)*max(singular values)*eps are considered 0, as in MATLAB's pinv.
+	 *
+	 * @param matrix The matrix.
+	 * @return The pseudo-inverse, with as many rows as columns has the matrix.
+	 */
+	protected static Matrix pseudoInverse(Matrix matrix) {
+		int rows = matrix.getRowDimension();
+		int columns = matrix.getColumnDimension();
+		if (rows < columns)
+			// The decomposition needs at least as many rows as columns, and
+			// pinv(A) = pinv(A')'
+			return pseudoInverse(matrix.transpose()).transpose();
+
+		SingularValueDecomposition svd = matrix.svd();
+		double[] s = svd.getSingularValues();
+		double tolerance = rows * (s.length == 0 ? 0 : s[0]) * Math.ulp(1.0);
+
+		double[][] u = svd.getU().getArray();
+		double[][] v = svd.getV().getArray();
+		double[][] inverse = new double[columns][rows];
+		for (int k = 0; k < s.length; k++) {
+			if (s[k] <= tolerance)
+				continue;
+			double inv = 1 / s[k];
+			for (int r = 0; r < columns; r++) {
+				double vr = v[r][k] * inv;
+				if (vr == 0)
+					continue;
+				for (int c = 0; c < rows; c++)
+					inverse[r][c] += vr * u[c][k];
+			}
+		}
+		return new Matrix(inverse, columns, rows);
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package miml.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the iterations of a loop over a range of indices in a fixed thread pool.
+ * Each thread takes the next index not run yet, so iterations of different cost
+ * are balanced, and the first error is thrown once all the threads have
+ * finished.
+ *
+ * @author agent
+ * @version 20261018
+ */
+public class ParallelLoop {
+
+	/**
+	 * Runs a task for the indices 0, ..., size-1.
+	 *
+	 * @param numThreads Number of threads. If it is not positive, the number of
+	 *                   available processors is used.
+	 * @param size       Number of iterations.
+	 * @param task       The task, which must support concurrent calls when more
+	 *                   than one thread is used.
+	 * @throws Exception If a task fails.
+	 */
+	public static void run(int numThreads, int size, Task task) throws Exception {
+
+		int threads = Math.min(numThreads(numThreads), size);
+
+		if (threads <= 1) {
+			for (int i = 0; i < size; i++)
+				task.run(i);
+			return;
+		}
+
+		AtomicInteger next = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>(threads);
+			for (int t = 0; t < threads; t++) {
+				futures.add(executor.submit(() -> {
+					try {
+						for (int i = next.getAndIncrement(); i < size; i = next.getAndIncrement())
+							task.run(i);
+					} catch (Exception e) {
+						// The remaining iterations are not started
+						next.set(size);
+						throw e;
+					}
+					return null;
+				}));
+			}
+
+			Exception error = null;
+			for (Future<?> future : futures) {
+				try {
+					future.get();
+				} catch (ExecutionException e) {
+					if (error == null)
+						error = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+				}
+			}
+			if (error != null)
+				throw error;
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Gets the number of threads actually used for a number of threads
+	 * configured.
+	 *
+	 * @param numThreads Number of threads. If it is not positive, the number of
+	 *                   available processors is used.
+	 * @return The number of threads.
+	 */
+	public static int numThreads(int numThreads) {
+		return numThreads > 0 ? numThreads : Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * Iteration of a loop.
+	 */
+	public interface Task {
+
+		/**
+		 * Runs the iteration.
+		 *
+		 * @param i The index of the iteration.
+		 * @throws Exception To be handled in an upper level.
+		 */
+		void run(int i) throws Exception;
+	}
+}
@@ -0,0 +1,532 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package miml.core;
+
+/**
+ * Sequential minimal optimization for C-SVC over a precomputed kernel matrix,
+ * following the solver of LIBSVM: working set selection with second order
+ * information and, optionally, the shrinking heuristics. See <em>Fan, R. E.,
+ * Chen, P. H., &amp; Lin, C. J. (2005). Working set selection using second
+ * order information for training support vector machines. Journal of Machine
+ * Learning Research, 6, 1889-1918.</em>
+ * <p>
+ * The kernel matrix is only read, so several binary problems over the same
+ * examples, e.g. the labels of a one-vs-rest decomposition, can be solved at
+ * the same time with a single matrix. It is stored as a {@link KernelMatrix},
+ * and each solver copies the rows it needs into its own buffers.
+ * </p>
+ *
+ * @author agent
+ * @version 20261018
+ */
+public class SMOSolver {
+
+	/** Status of a variable at its lower bound. */
+	protected static final byte LOWER_BOUND = 0;
+
+	/** Status of a variable at its upper bound. */
+	protected static final byte UPPER_BOUND = 1;
+
+	/** Status of a free variable. */
+	protected static final byte FREE = 2;
+
+	/** Tolerance of the stopping criterion, as in LIBSVM. */
+	protected static final double EPS = 1e-3;
+
+	/** Value used for non positive curvatures, as in LIBSVM. */
+	protected static final double TAU = 1e-12;
+
+	/** The kernel matrix. */
+	protected final KernelMatrix kernel;
+
+	/** The diagonal of the kernel matrix. */
+	protected final double[] diagonal;
+
+	/** Buffers for two rows of the kernel matrix. */
+	protected final double[] rowI, rowJ;
+
+	/** Labels of the examples, +1 or -1. */
+	protected final byte[] y;
+
+	/** The cost parameter. */
+	protected final double cost;
+
+	/** Number of examples. */
+	protected final int l;
+
+	/** The dual variables. */
+	protected double[] alpha;
+
+	/** Status of the dual variables. */
+	protected byte[] status;
+
+	/** Gradient of the dual objective. */
+	protected double[] gradient;
+
+	/** Part of the gradient given by the variables at the upper bound. */
+	protected double[] gradientBar;
+
+	/** Permutation of the examples whose first activeSize ones are active. */
+	protected int[] active;
+
+	/** Number of examples not removed by shrinking. */
+	protected int activeSize;
+
+	/** Whether the gradient has been reconstructed by shrinking. */
+	protected boolean unshrink = false;
+
+	/**
+	 * Solution of a binary problem: the decision value of x is the sum of
+	 * coefficients[k]*K(indices[k], x) minus rho.
+	 */
+	public static class Solution {
+
+		/** Indices of the support vectors. */
+		public final int[] indices;
+
+		/** Coefficients of the support vectors, alpha*y. */
+		public final double[] coefficients;
+
+		/** The bias. */
+		public final double rho;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param indices      Indices of the support vectors.
+		 * @param coefficients Coefficients of the support vectors.
+		 * @param rho          The bias.
+		 */
+		public Solution(int[] indices, double[] coefficients, double rho) {
+			this.indices = indices;
+			this.coefficients = coefficients;
+			this.rho = rho;
+		}
+	}
+
+	/**
+	 * Trains a C-SVC.
+	 *
+	 * @param kernel    The kernel matrix of the examples.
+	 * @param positive  Whether each example belongs to the positive class.
+	 * @param cost      The cost parameter.
+	 * @param shrinking Whether to use the shrinking heuristics.
+	 * @return The solution.
+	 */
+	public static Solution solve(KernelMatrix kernel, boolean[] positive, double cost, boolean shrinking) {
+
+		int numPositive = 0;
+		for (boolean p : positive)
+			if (p)
+				numPositive++;
+		// With a single class the decision value is constant
+		if (numPositive == 0 || numPositive == positive.length)
+			return new Solution(new int[0], new double[0], numPositive == 0 ? 1 : -1);
+
+		return new SMOSolver(kernel, positive, cost).solve(shrinking);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param kernel   The kernel matrix of the examples.
+	 * @param positive Whether each example belongs to the positive class.
+	 * @param cost     The cost parameter.
+	 */
+	protected SMOSolver(KernelMatrix kernel, boolean[] positive, double cost) {
+		this.kernel = kernel;
+		this.cost = cost;
+		this.l = positive.length;
+		this.y = new byte[l];
+		this.diagonal = new double[l];
+		for (int i = 0; i < l; i++) {
+			y[i] = (byte) (positive[i] ? 1 : -1);
+			diagonal[i] = kernel.get(i, i);
+		}
+		this.rowI = new double[l];
+		this.rowJ = new double[l];
+	}
+
+	/**
+	 * Gets an element of the matrix Q of the dual problem.
+	 *
+	 * @param i Row.
+	 * @param j Column.
+	 * @return y_i*y_j*K(i,j).
+	 */
+	protected double q(int i, int j) {
+		return y[i] == y[j] ? kernel.get(i, j) : -kernel.get(i, j);
+	}
+
+	/**
+	 * Solves the dual problem starting from alpha = 0.
+	 *
+	 * @param shrinking Whether to use the shrinking heuristics.
+	 * @return The solution.
+	 */
+	protected Solution solve(boolean shrinking) {
+
+		alpha = new double[l];
+		status = new byte[l];
+		gradient = new double[l];
+		gradientBar = new double[l];
+		active = new int[l];
+		for (int i = 0; i < l; i++) {
+			gradient[i] = -1;
+			active[i] = i;
+		}
+		activeSize = l;
+
+		long maxIterations = Math.max(10000000L, 100L * l);
+		int counter = Math.min(l, 1000) + 1;
+		int[] workingSet = new int[2];
+
+		for (long iteration = 0; iteration < maxIterations; iteration++) {
+
+			if (--counter == 0) {
+				counter = Math.min(l, 1000);
+				if (shrinking)
+					shrink();
+			}
+
+			if (!selectWorkingSet(workingSet)) {
+				// Optimal over the active set, check it over all the examples
+				reconstructGradient();
+				activeSize = l;
+				if (!selectWorkingSet(workingSet))
+					break;
+				counter = 1;
+			}
+
+			update(workingSet[0], workingSet[1]);
+		}
+
+		reconstructGradient();
+		activeSize = l;
+
+		int numSupportVectors = 0;
+		for (int i = 0; i < l; i++)
+			if (alpha[i] > 0)
+				numSupportVectors++;
+		int[] indices = new int[numSupportVectors];
+		double[] coefficients = new double[numSupportVectors];
+		for (int i = 0, k = 0; i < l; i++) {
+			if (alpha[i] > 0) {
+				indices[k] = i;
+				coefficients[k++] = y[i] * alpha[i];
+			}
+		}
+
+		return new Solution(indices, coefficients, computeRho());
+	}
+
+	/**
+	 * Optimizes the subproblem of two variables and updates the gradient.
+	 *
+	 * @param i First variable.
+	 * @param j Second variable.
+	 */
+	protected void update(int i, int j) {
+
+		double oldAlphaI = alpha[i];
+		double oldAlphaJ = alpha[j];
+		double alphaI = oldAlphaI;
+		double alphaJ = oldAlphaJ;
+		double qij = q(i, j);
+
+		if (y[i] != y[j]) {
+			double quad = diagonal[i] + diagonal[j] + 2 * qij;
+			if (quad <= 0)
+				quad = TAU;
+			double delta = (-gradient[i] - gradient[j]) / quad;
+			double diff = alphaI - alphaJ;
+			alphaI += delta;
+			alphaJ += delta;
+			if (diff > 0) {
+				if (alphaJ < 0) {
+					alphaJ = 0;
+					alphaI = diff;
+				}
+			} else if (alphaI < 0) {
+				alphaI = 0;
+				alphaJ = -diff;
+			}
+			if (diff > 0) {
+				if (alphaI > cost) {
+					alphaI = cost;
+					alphaJ = cost - diff;
+				}
+			} else if (alphaJ > cost) {
+				alphaJ = cost;
+				alphaI = cost + diff;
+			}
+		} else {
+			double quad = diagonal[i] + diagonal[j] - 2 * qij;
+			if (quad <= 0)
+				quad = TAU;
+			double delta = (gradient[i] - gradient[j]) / quad;
+			double sum = alphaI + alphaJ;
+			alphaI -= delta;
+			alphaJ += delta;
+			if (sum > cost) {
+				if (alphaI > cost) {
+					alphaI = cost;
+					alphaJ = sum - cost;
+				}
+			} else if (alphaJ < 0) {
+				alphaJ = 0;
+				alphaI = sum;
+			}
+			if (sum > cost) {
+				if (alphaJ > cost) {
+					alphaJ = cost;
+					alphaI = sum - cost;
+				}
+			} else if (alphaI < 0) {
+				alphaI = 0;
+				alphaJ = sum;
+			}
+		}
+
+		alpha[i] = alphaI;
+		alpha[j] = alphaJ;
+
+		// Q(i,k)*deltaI + Q(j,k)*deltaJ with the labels factored out
+		double deltaI = y[i] * (alphaI - oldAlphaI);
+		double deltaJ = y[j] * (alphaJ - oldAlphaJ);
+		double[] kernelI = kernel.getRow(i, rowI);
+		double[] kernelJ = kernel.getRow(j, rowJ);
+		for (int a = 0; a < activeSize; a++) {
+			int k = active[a];
+			gradient[k] += y[k] * (kernelI[k] * deltaI + kernelJ[k] * deltaJ);
+		}
+
+		updateStatus(i);
+		updateStatus(j);
+	}
+
+	/**
+	 * Updates the status of a variable and, if it enters or leaves the upper
+	 * bound, the part of the gradient given by the variables at the upper bound.
+	 *
+	 * @param i The variable.
+	 */
+	protected void updateStatus(int i) {
+		boolean wasUpper = status[i] == UPPER_BOUND;
+		if (alpha[i] >= cost)
+			status[i] = UPPER_BOUND;
+		else if (alpha[i] <= 0)
+			status[i] = LOWER_BOUND;
+		else
+			status[i] = FREE;
+
+		boolean isUpper = status[i] == UPPER_BOUND;
+		if (wasUpper != isUpper) {
+			double factor = isUpper ? cost : -cost;
+			double[] kernelI = kernel.getRow(i, rowI);
+			for (int k = 0; k < l; k++)
+				gradientBar[k] += factor * (y[i] == y[k] ? kernelI[k] : -kernelI[k]);
+		}
+	}
+
+	/**
+	 * Selects the maximal violating pair with second order information among the
+	 * active variables.
+	 *
+	 * @param workingSet Array where the pair is stored.
+	 * @return False if the active variables are optimal.
+	 */
+	protected boolean selectWorkingSet(int[] workingSet) {
+
+		double gMax = Double.NEGATIVE_INFINITY;
+		double gMax2 = Double.NEGATIVE_INFINITY;
+		int gMaxIndex = -1;
+		int gMinIndex = -1;
+		double minObjectiveDiff = Double.POSITIVE_INFINITY;
+
+		for (int a = 0; a < activeSize; a++) {
+			int t = active[a];
+			if (y[t] == 1) {
+				if (status[t] != UPPER_BOUND && -gradient[t] >= gMax) {
+					gMax = -gradient[t];
+					gMaxIndex = t;
+				}
+			} else if (status[t] != LOWER_BOUND && gradient[t] >= gMax) {
+				gMax = gradient[t];
+				gMaxIndex = t;
+			}
+		}
+
+		if (gMaxIndex == -1)
+			return false;
+
+		int i = gMaxIndex;
+		double[] kernelI = kernel.getRow(i, rowI);
+		for (int a = 0; a < activeSize; a++) {
+			int j = active[a];
+			double gradientDiff;
+			if (y[j] == 1) {
+				if (status[j] == LOWER_BOUND)
+					continue;
+				gradientDiff = gMax + gradient[j];
+				if (gradient[j] >= gMax2)
+					gMax2 = gradient[j];
+			} else {
+				if (status[j] == UPPER_BOUND)
+					continue;
+				gradientDiff = gMax - gradient[j];
+				if (-gradient[j] >= gMax2)
+					gMax2 = -gradient[j];
+			}
+			if (gradientDiff > 0) {
+				double quad = diagonal[i] + diagonal[j] - 2 * kernelI[j];
+				double objectiveDiff = -(gradientDiff * gradientDiff) / (quad > 0 ? quad : TAU);
+				if (objectiveDiff <= minObjectiveDiff) {
+					gMinIndex = j;
+					minObjectiveDiff = objectiveDiff;
+				}
+			}
+		}
+
+		if (gMax + gMax2 < EPS || gMinIndex == -1)
+			return false;
+
+		workingSet[0] = i;
+		workingSet[1] = gMinIndex;
+		return true;
+	}
+
+	/**
+	 * Removes from the active set the variables that are likely to stay at their
+	 * bounds.
+	 */
+	protected void shrink() {
+
+		double gMax1 = Double.NEGATIVE_INFINITY;
+		double gMax2 = Double.NEGATIVE_INFINITY;
+		for (int a = 0; a < activeSize; a++) {
+			int t = active[a];
+			double g = y[t] * gradient[t];
+			if (isUp(t) && -g >= gMax1)
+				gMax1 = -g;
+			if (isLow(t) && g >= gMax2)
+				gMax2 = g;
+		}
+
+		if (!unshrink && gMax1 + gMax2 <= EPS * 10) {
+			unshrink = true;
+			reconstructGradient();
+			activeSize = l;
+		}
+
+		for (int a = 0; a < activeSize; a++) {
+			if (!isShrunk(active[a], gMax1, gMax2))
+				continue;
+			activeSize--;
+			while (activeSize > a) {
+				if (!isShrunk(active[activeSize], gMax1, gMax2)) {
+					int swap = active[a];
+					active[a] = active[activeSize];
+					active[activeSize] = swap;
+					break;
+				}
+				activeSize--;
+			}
+		}
+	}
+
+	/**
+	 * Whether a variable is in the set I_up, i.e. y*alpha can increase.
+	 *
+	 * @param t The variable.
+	 * @return True if it can increase.
+	 */
+	protected boolean isUp(int t) {
+		return y[t] == 1 ? status[t] != UPPER_BOUND : status[t] != LOWER_BOUND;
+	}
+
+	/**
+	 * Whether a variable is in the set I_low, i.e. y*alpha can decrease.
+	 *
+	 * @param t The variable.
+	 * @return True if it can decrease.
+	 */
+	protected boolean isLow(int t) {
+		return y[t] == 1 ? status[t] != LOWER_BOUND : status[t] != UPPER_BOUND;
+	}
+
+	/**
+	 * Whether a variable at a bound can be removed from the active set.
+	 *
+	 * @param t     The variable.
+	 * @param gMax1 Maximum of -y*G over I_up.
+	 * @param gMax2 Maximum of y*G over I_low.
+	 * @return True if it can be removed.
+	 */
+	protected boolean isShrunk(int t, double gMax1, double gMax2) {
+		if (status[t] == UPPER_BOUND)
+			return y[t] == 1 ? -gradient[t] > gMax1 : -gradient[t] > gMax2;
+		if (status[t] == LOWER_BOUND)
+			return y[t] == 1 ? gradient[t] > gMax2 : gradient[t] > gMax1;
+		return false;
+	}
+
+	/**
+	 * Computes the gradient of the inactive variables, which is not updated
+	 * while they are shrunk.
+	 */
+	protected void reconstructGradient() {
+		if (activeSize == l)
+			return;
+
+		for (int a = activeSize; a < l; a++) {
+			int j = active[a];
+			gradient[j] = gradientBar[j] - 1;
+		}
+		for (int i = 0; i < l; i++) {
+			if (status[i] != FREE)
+				continue;
+			for (int a = activeSize; a < l; a++) {
+				int j = active[a];
+				gradient[j] += alpha[i] * q(i, j);
+			}
+		}
+	}
+
+	/**
+	 * Computes the bias of the solution.
+	 *
+	 * @return The bias.
+	 */
+	protected double computeRho() {
+		double upper = Double.POSITIVE_INFINITY;
+		double lower = Double.NEGATIVE_INFINITY;
+		double sumFree = 0;
+		int numFree = 0;
+		for (int i = 0; i < l; i++) {
+			double g = y[i] * gradient[i];
+			if (status[i] == FREE) {
+				numFree++;
+				sumFree += g;
+			} else if (isUp(i)) {
+				upper = Math.min(upper, g);
+			} else {
+				lower = Math.max(lower, g);
+			}
+		}
+		return numFree > 0 ? sumFree / numFree : (upper + lower) / 2;
+	}
+}
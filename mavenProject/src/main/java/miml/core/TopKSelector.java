@@ -0,0 +1,232 @@
+/*    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package miml.core;
+
+/**
+ * Selection of the k elements with the smallest values, e.g. the k nearest
+ * neighbours of a bag given their distances. It keeps a bounded max-heap over
+ * primitive arrays, so selecting k out of n elements takes O(n log k) time and
+ * O(k) memory without boxing. Ties between values are broken by the lower
+ * index, so the selection is deterministic.
+ * <p>
+ * A selector can be reused for several selections by calling
+ * {@link #clear()}.
+ *
+ * @author agent
+ * @version 20261018
+ */
+public class TopKSelector {
+
+	/** Maximum number of elements selected. */
+	protected int capacity;
+
+	/** Number of elements currently selected. */
+	protected int size;
+
+	/** Indices of the selected elements, as a heap with the worst at the top. */
+	protected int[] indices;
+
+	/** Values of the selected elements, in the same order as indices. */
+	protected double[] values;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param capacity Maximum number of elements selected (k).
+	 */
+	public TopKSelector(int capacity) {
+		this.capacity = Math.max(0, capacity);
+		this.indices = new int[this.capacity];
+		this.values = new double[this.capacity];
+	}
+
+	/**
+	 * Selects the k elements with the smallest values of an array.
+	 *
+	 * @param values The values.
+	 * @param k      Number of elements to select.
+	 * @return The indices of the selected elements, sorted by value.
+	 */
+	public static int[] smallest(double[] values, int k) {
+		TopKSelector selector = new TopKSelector(Math.min(k, values.length));
+		for (int i = 0; i < values.length; ++i)
+			selector.offer(i, values[i]);
+		return selector.sortedIndices();
+	}
+
+	/**
+	 * Removes all the selected elements.
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * Gets the maximum number of elements selected.
+	 *
+	 * @return The capacity.
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Gets the number of elements currently selected.
+	 *
+	 * @return The number of elements.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns whether capacity elements have been selected.
+	 *
+	 * @return True if it is full.
+	 */
+	public boolean isFull() {
+		return size == capacity;
+	}
+
+	/**
+	 * Gets the largest value selected once the selector is full, i.e. the value
+	 * that a new element has to improve to be selected.
+	 *
+	 * @return The largest value selected, or Double.POSITIVE_INFINITY if it is not
+	 *         full.
+	 */
+	public double threshold() {
+		if (size < capacity)
+			return Double.POSITIVE_INFINITY;
+		return capacity == 0 ? Double.NEGATIVE_INFINITY : values[0];
+	}
+
+	/**
+	 * Offers an element to the selection.
+	 *
+	 * @param index Index of the element.
+	 * @param value Value of the element.
+	 * @return True if the element has been selected.
+	 */
+	public boolean offer(int index, double value) {
+		if (size < capacity) {
+			// Sift up
+			int i = size++;
+			while (i > 0) {
+				int parent = (i - 1) >>> 1;
+				if (!worse(index, value, indices[parent], values[parent]))
+					break;
+				indices[i] = indices[parent];
+				values[i] = values[parent];
+				i = parent;
+			}
+			indices[i] = index;
+			values[i] = value;
+			return true;
+		}
+
+		if (capacity == 0 || !worse(indices[0], values[0], index, value))
+			return false;
+
+		siftDown(index, value);
+		return true;
+	}
+
+	/**
+	 * Places an element at the top of the heap and moves it down.
+	 *
+	 * @param index Index of the element.
+	 * @param value Value of the element.
+	 */
+	protected void siftDown(int index, double value) {
+		int i = 0;
+		int half = size >>> 1;
+		while (i < half) {
+			int child = 2 * i + 1;
+			int right = child + 1;
+			if (right < size && worse(indices[right], values[right], indices[child], values[child]))
+				child = right;
+			if (!worse(indices[child], values[child], index, value))
+				break;
+			indices[i] = indices[child];
+			values[i] = values[child];
+			i = child;
+		}
+		indices[i] = index;
+		values[i] = value;
+	}
+
+	/**
+	 * Compares two elements by value and then by index.
+	 *
+	 * @param index1 Index of the first element.
+	 * @param value1 Value of the first element.
+	 * @param index2 Index of the second element.
+	 * @param value2 Value of the second element.
+	 * @return True if the first element goes after the second one.
+	 */
+	protected static boolean worse(int index1, double value1, int index2, double value2) {
+		int cmp = Double.compare(value1, value2);
+		return cmp > 0 || (cmp == 0 && index1 > index2);
+	}
+
+	/**
+	 * Gets the indices of the selected elements sorted by value. The selection is
+	 * not modified.
+	 *
+	 * @return The indices, with size elements.
+	 */
+	public int[] sortedIndices() {
+		int[] sorted = new int[size];
+		sorted(sorted, new double[size]);
+		return sorted;
+	}
+
+	/**
+	 * Copies the selected elements sorted by value. The selection is not
+	 * modified.
+	 *
+	 * @param destIndices Array of at least size elements for the indices.
+	 * @param destValues  Array of at least size elements for the values.
+	 */
+	public void sorted(int[] destIndices, double[] destValues) {
+		System.arraycopy(indices, 0, destIndices, 0, size);
+		System.arraycopy(values, 0, destValues, 0, size);
+		// Heap sort: the worst element is moved to the end of the heap
+		for (int end = size - 1; end > 0; --end) {
+			int index = destIndices[end];
+			double value = destValues[end];
+			destIndices[end] = destIndices[0];
+			destValues[end] = destValues[0];
+
+			int i = 0;
+			int half = end >>> 1;
+			while (i < half) {
+				int child = 2 * i + 1;
+				int right = child + 1;
+				if (right < end && worse(destIndices[right], destValues[right], destIndices[child], destValues[child]))
+					child = right;
+				if (!worse(destIndices[child], destValues[child], index, value))
+					break;
+				destIndices[i] = destIndices[child];
+				destValues[i] = destValues[child];
+				i = child;
+			}
+			destIndices[i] = index;
+			destValues[i] = value;
+		}
+	}
+}
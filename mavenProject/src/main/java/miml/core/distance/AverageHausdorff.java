@@ -19,6 +19,7 @@ import java.util.Arrays;
 import java.util.stream.DoubleStream;
 
 import miml.data.MIMLInstances;
+import weka.core.DistanceFunction;
 import weka.core.Instance;
 import weka.core.Instances;
 
@@ -52,6 +53,19 @@ public class AverageHausdorff extends HausdorffDistance {
 	 */
 	@Override
 	public double distance(Instances first, Instances second) throws Exception {
+		return distance(dfun, first, second);
+	}
+
+	/**
+	 * Computes the average Hausdorff distance between two bags with a distance
+	 * function between instances.
+	 *
+	 * @param dfun   Distance function between instances.
+	 * @param first  First bag as instances.
+	 * @param second Second bag as instances.
+	 * @return Distance between the two bags.
+	 */
+	static double distance(DistanceFunction dfun, Instances first, Instances second) {
 
 		int nInstances = second.size();
 
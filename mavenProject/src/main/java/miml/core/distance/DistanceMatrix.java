@@ -0,0 +1,174 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package miml.core.distance;
+
+import java.io.Serializable;
+
+/**
+ * Symmetric matrix of distances between the bags of a data set. Only the upper
+ * triangle without the diagonal is stored, row-major. The distance of a bag to
+ * itself is considered 0. Subclasses define how the values are stored, e.g.
+ * {@link DoubleDistanceMatrix} and {@link FloatDistanceMatrix}.
+ *
+ * @author agent
+ * @version 20261018
+ * @see DistanceMatrixBuilder
+ */
+public abstract class DistanceMatrix implements Serializable {
+
+	/** For serialization */
+	private static final long serialVersionUID = -5370851718410745618L;
+
+	/** Number of bags. */
+	protected int size;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param size Number of bags.
+	 */
+	protected DistanceMatrix(int size) {
+		this.size = size;
+	}
+
+	/**
+	 * Creates a distance matrix stored in an array.
+	 *
+	 * @param size            Number of bags.
+	 * @param singlePrecision Whether the distances are stored as float instead of
+	 *                        double, which halves the memory needed.
+	 * @return The distance matrix.
+	 */
+	public static DistanceMatrix create(int size, boolean singlePrecision) {
+		return singlePrecision ? new FloatDistanceMatrix(size) : new DoubleDistanceMatrix(size);
+	}
+
+	/**
+	 * Gets the number of values stored for a matrix of a given size.
+	 *
+	 * @param size Number of bags.
+	 * @return The number of values of the upper triangle without the diagonal.
+	 */
+	public static long numValues(int size) {
+		return (long) size * (size - 1) / 2;
+	}
+
+	/**
+	 * Checks that the values of a matrix of a given size fit in an array.
+	 *
+	 * @param size Number of bags.
+	 * @return The number of values.
+	 */
+	protected static int checkedNumValues(int size) {
+		long length = numValues(size);
+		if (length > Integer.MAX_VALUE - 8)
+			throw new IllegalArgumentException("Too many bags for a distance matrix: " + size);
+		return (int) length;
+	}
+
+	/**
+	 * Gets the number of bags.
+	 *
+	 * @return The number of bags.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns whether the distances are stored as float.
+	 *
+	 * @return True if the distances are stored with single precision.
+	 */
+	public abstract boolean isSinglePrecision();
+
+	/**
+	 * Gets the position of a pair of bags in the upper triangle.
+	 *
+	 * @param i Index of the first bag.
+	 * @param j Index of the second bag, greater than i.
+	 * @return The position.
+	 */
+	protected long index(int i, int j) {
+		return (long) i * (2L * size - i - 1) / 2 + (j - i - 1);
+	}
+
+	/**
+	 * Gets a value of the upper triangle.
+	 *
+	 * @param index The position of the value.
+	 * @return The value.
+	 */
+	protected abstract double getValue(long index);
+
+	/**
+	 * Sets a value of the upper triangle.
+	 *
+	 * @param index The position of the value.
+	 * @param value The value.
+	 */
+	protected abstract void setValue(long index, double value);
+
+	/**
+	 * Gets the distance between two bags.
+	 *
+	 * @param i Index of the first bag.
+	 * @param j Index of the second bag.
+	 * @return The distance.
+	 */
+	public double get(int i, int j) {
+		if (i == j)
+			return 0.0;
+		return i < j ? getValue(index(i, j)) : getValue(index(j, i));
+	}
+
+	/**
+	 * Sets the distance between two different bags.
+	 *
+	 * @param i     Index of the first bag.
+	 * @param j     Index of the second bag.
+	 * @param value The distance.
+	 */
+	public void set(int i, int j, double value) {
+		if (i < j)
+			setValue(index(i, j), value);
+		else if (i > j)
+			setValue(index(j, i), value);
+	}
+
+	/**
+	 * Copies the distances of a bag to all the bags.
+	 *
+	 * @param i    Index of the bag.
+	 * @param dest Array of at least size elements.
+	 * @return The destination array.
+	 */
+	public double[] getRow(int i, double[] dest) {
+		// Column i of the previous rows
+		long index = i - 1;
+		for (int j = 0; j < i; j++) {
+			dest[j] = getValue(index);
+			index += size - j - 2;
+		}
+		dest[i] = 0.0;
+		// Row i, which is contiguous
+		index = i < size - 1 ? index(i, i + 1) : 0;
+		for (int j = i + 1; j < size; j++)
+			dest[j] = getValue(index++);
+		return dest;
+	}
+}
@@ -0,0 +1,337 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package miml.core.distance;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import weka.core.Instances;
+
+/**
+ * Service to compute the {@link DistanceMatrix} of the bags of a data set. The
+ * upper triangle of the matrix is divided into square tiles of bags that are
+ * computed in parallel in a fork-join pool. The distance between the ith and
+ * the jth bag (i &lt; j) is computed as metric.distance(bag_i, bag_j), so the
+ * result does not depend on the number of threads. If the matrix is
+ * symmetrized, it is computed as metric.symmetricDistance(bag_i, bag_j)
+ * instead, which is the same for symmetric metrics.
+ * <p>
+ * When more than one thread is used, the metric must support concurrent calls
+ * to its distance methods. This is the case of the Hausdorff distances of this
+ * package.
+ *
+ * @author agent
+ * @version 20261018
+ */
+public class DistanceMatrixBuilder {
+
+	/** Default number of bags per side of a tile. */
+	public static final int DEFAULT_TILE_SIZE = 32;
+
+	/** Number of threads. */
+	protected int numThreads;
+
+	/** Number of bags per side of a tile. */
+	protected int tileSize = DEFAULT_TILE_SIZE;
+
+	/** Whether the distances are stored as float. */
+	protected boolean singlePrecision = false;
+
+	/** Whether the distances are computed in both directions. */
+	protected boolean symmetrize = false;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param numThreads Number of threads. If it is not positive, the number of
+	 *                   available processors is used.
+	 */
+	public DistanceMatrixBuilder(int numThreads) {
+		setNumThreads(numThreads);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param numThreads      Number of threads. If it is not positive, the number
+	 *                        of available processors is used.
+	 * @param singlePrecision Whether the distances are stored as float.
+	 */
+	public DistanceMatrixBuilder(int numThreads, boolean singlePrecision) {
+		setNumThreads(numThreads);
+		this.singlePrecision = singlePrecision;
+	}
+
+	/**
+	 * No-argument constructor that uses a single thread.
+	 */
+	public DistanceMatrixBuilder() {
+		this(1);
+	}
+
+	/**
+	 * Computes the distance matrix of a data set.
+	 *
+	 * @param metric The metric, already initialized with the data set if needed.
+	 * @param bags   A dataset of {@link Instances} with relational information.
+	 * @return The distance matrix.
+	 * @throws Exception if occurred an error during distance calculation.
+	 */
+	public DistanceMatrix compute(IDistance metric, Instances bags) throws Exception {
+
+		return compute(metric, bags, DistanceMatrix.create(bags.numInstances(), singlePrecision));
+	}
+
+	/**
+	 * Computes the distance matrix of a data set in a given matrix, e.g. a
+	 * {@link MappedDistanceMatrix}.
+	 *
+	 * @param metric The metric, already initialized with the data set if needed.
+	 * @param bags   A dataset of {@link Instances} with relational information.
+	 * @param matrix The destination matrix, whose size is the number of bags.
+	 * @return The destination matrix.
+	 * @throws Exception if occurred an error during distance calculation.
+	 */
+	public DistanceMatrix compute(IDistance metric, Instances bags, DistanceMatrix matrix) throws Exception {
+
+		int size = matrix.size();
+		if (size != bags.numInstances())
+			throw new IllegalArgumentException("The size of the matrix does not match the number of bags");
+		if (size < 2)
+			return matrix;
+
+		int numBlocks = (size + tileSize - 1) / tileSize;
+		if (numThreads == 1 || numBlocks == 1) {
+			computeTiles(metric, bags, matrix, 0, numBlocks * (numBlocks + 1) / 2, numBlocks);
+			return matrix;
+		}
+
+		// The first distance initializes any lazy state of the metric
+		matrix.set(0, 1, distance(metric, bags, 0, 1));
+
+		ForkJoinPool pool = new ForkJoinPool(numThreads);
+		try {
+			pool.invoke(new TileTask(metric, bags, matrix, 0, numBlocks * (numBlocks + 1) / 2, numBlocks));
+		} catch (RuntimeException e) {
+			// Exceptions of the metric are wrapped by the tasks
+			Throwable cause = e;
+			while (cause instanceof RuntimeException && cause.getCause() != null)
+				cause = cause.getCause();
+			if (cause instanceof Exception)
+				throw (Exception) cause;
+			throw e;
+		} finally {
+			pool.shutdown();
+		}
+
+		return matrix;
+	}
+
+	/**
+	 * Computes the distances of a range of tiles. Tiles are numbered row by row
+	 * over the upper triangle of blocks, i.e. (0,0), (0,1), ..., (0,numBlocks-1),
+	 * (1,1), ...
+	 *
+	 * @param metric    The metric.
+	 * @param bags      The data set.
+	 * @param matrix    The destination matrix.
+	 * @param from      First tile (inclusive).
+	 * @param to        Last tile (exclusive).
+	 * @param numBlocks Number of blocks per side.
+	 * @throws Exception if occurred an error during distance calculation.
+	 */
+	protected void computeTiles(IDistance metric, Instances bags, DistanceMatrix matrix, int from, int to,
+			int numBlocks) throws Exception {
+
+		int size = matrix.size();
+		int rowBlock = 0, rowStart = 0;
+		// Locates the block row of the first tile
+		while (rowStart + numBlocks - rowBlock <= from) {
+			rowStart += numBlocks - rowBlock;
+			rowBlock++;
+		}
+
+		for (int tile = from; tile < to; tile++) {
+			if (tile - rowStart >= numBlocks - rowBlock) {
+				rowStart += numBlocks - rowBlock;
+				rowBlock++;
+			}
+			int columnBlock = rowBlock + tile - rowStart;
+
+			int iEnd = Math.min(size, (rowBlock + 1) * tileSize);
+			int jEnd = Math.min(size, (columnBlock + 1) * tileSize);
+			for (int i = rowBlock * tileSize; i < iEnd; i++) {
+				for (int j = Math.max(i + 1, columnBlock * tileSize); j < jEnd; j++) {
+					matrix.set(i, j, distance(metric, bags, i, j));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Computes the distance between two bags of the data set.
+	 *
+	 * @param metric The metric.
+	 * @param bags   The data set.
+	 * @param i      Index of the first bag.
+	 * @param j      Index of the second bag.
+	 * @return The distance, in both directions if the matrix is symmetrized.
+	 * @throws Exception if occurred an error during distance calculation.
+	 */
+	protected double distance(IDistance metric, Instances bags, int i, int j) throws Exception {
+		return symmetrize ? metric.symmetricDistance(bags.instance(i), bags.instance(j))
+				: metric.distance(bags.instance(i), bags.instance(j));
+	}
+
+	/**
+	 * Gets the number of threads.
+	 *
+	 * @return The number of threads.
+	 */
+	public int getNumThreads() {
+		return numThreads;
+	}
+
+	/**
+	 * Sets the number of threads.
+	 *
+	 * @param numThreads Number of threads. If it is not positive, the number of
+	 *                   available processors is used.
+	 */
+	public void setNumThreads(int numThreads) {
+		this.numThreads = numThreads > 0 ? numThreads : Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * Returns whether the distances are stored as float.
+	 *
+	 * @return True if the distances are stored with single precision.
+	 */
+	public boolean isSinglePrecision() {
+		return singlePrecision;
+	}
+
+	/**
+	 * Sets whether the distances are stored as float.
+	 *
+	 * @param singlePrecision True to store the distances with single precision.
+	 */
+	public void setSinglePrecision(boolean singlePrecision) {
+		this.singlePrecision = singlePrecision;
+	}
+
+	/**
+	 * Returns whether the distances are computed in both directions.
+	 *
+	 * @return True if the matrix is symmetrized.
+	 */
+	public boolean isSymmetrize() {
+		return symmetrize;
+	}
+
+	/**
+	 * Sets whether the distances are computed in both directions, so that the
+	 * matrix holds the symmetric distances of metrics that are not symmetric, e.g.
+	 * the Hausdorff distance instead of the directed maximal Hausdorff distance.
+	 *
+	 * @param symmetrize True to symmetrize the matrix.
+	 */
+	public void setSymmetrize(boolean symmetrize) {
+		this.symmetrize = symmetrize;
+	}
+
+	/**
+	 * Gets the number of bags per side of a tile.
+	 *
+	 * @return The tile size.
+	 */
+	public int getTileSize() {
+		return tileSize;
+	}
+
+	/**
+	 * Sets the number of bags per side of a tile.
+	 *
+	 * @param tileSize The tile size.
+	 */
+	public void setTileSize(int tileSize) {
+		this.tileSize = Math.max(1, tileSize);
+	}
+
+	/**
+	 * Task that computes a range of tiles, splitting it in halves while it has
+	 * more than one tile.
+	 */
+	protected class TileTask extends RecursiveAction {
+
+		/** For serialization */
+		private static final long serialVersionUID = 3317437408406359428L;
+
+		/** The metric. */
+		protected IDistance metric;
+
+		/** The data set. */
+		protected Instances bags;
+
+		/** The destination matrix. */
+		protected DistanceMatrix matrix;
+
+		/** First tile (inclusive). */
+		protected int from;
+
+		/** Last tile (exclusive). */
+		protected int to;
+
+		/** Number of blocks per side. */
+		protected int numBlocks;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param metric    The metric.
+		 * @param bags      The data set.
+		 * @param matrix    The destination matrix.
+		 * @param from      First tile (inclusive).
+		 * @param to        Last tile (exclusive).
+		 * @param numBlocks Number of blocks per side.
+		 */
+		protected TileTask(IDistance metric, Instances bags, DistanceMatrix matrix, int from, int to,
+				int numBlocks) {
+			this.metric = metric;
+			this.bags = bags;
+			this.matrix = matrix;
+			this.from = from;
+			this.to = to;
+			this.numBlocks = numBlocks;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > 1) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new TileTask(metric, bags, matrix, from, middle, numBlocks),
+						new TileTask(metric, bags, matrix, middle, to, numBlocks));
+			} else {
+				try {
+					computeTiles(metric, bags, matrix, from, to, numBlocks);
+				} catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,324 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package miml.core.distance;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * Cache of distance matrices stored as {@link MappedDistanceMatrix} files in a
+ * directory. A matrix is identified by a hash of the content of the bags, the
+ * class of the metric and, for {@link HausdorffDistance} metrics, the ranges
+ * used to normalize the instances. Thus, the same matrix is reused by any
+ * algorithm that computes the distances between the same bags with the same
+ * metric, e.g. with different hyperparameters or on the same folds. The
+ * symmetrized matrices of metrics that are not symmetric are stored apart from
+ * their directed matrices.
+ * <p>
+ * Matrices are written to a temporary file that is renamed once complete, so
+ * several processes can share the same directory.
+ *
+ * @author agent
+ * @version 20261018
+ */
+public class DistanceMatrixCache {
+
+	/** Extension of the files of the cache. */
+	public static final String EXTENSION = ".dmat";
+
+	/** Directory of the cache. */
+	protected File directory;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param directory Directory of the cache. It is created if it does not
+	 *                  exist.
+	 */
+	public DistanceMatrixCache(File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param directory Path of the directory of the cache.
+	 */
+	public DistanceMatrixCache(String directory) {
+		this(new File(directory));
+	}
+
+	/**
+	 * Gets the distance matrix of a data set, computing and storing it if it is
+	 * not in the cache.
+	 *
+	 * @param metric  The metric, already initialized with the data set if needed.
+	 * @param bags    A dataset of {@link Instances} with relational information.
+	 * @param builder Builder used to compute the matrix. Its precision and
+	 *                whether it symmetrizes the matrix are part of the key.
+	 * @return The distance matrix.
+	 * @throws Exception if occurred an error during distance calculation.
+	 */
+	public DistanceMatrix get(IDistance metric, Instances bags, DistanceMatrixBuilder builder) throws Exception {
+
+		return get(new IDistance[] { metric }, bags, builder.isSinglePrecision(), builder.isSymmetrize(),
+				matrices -> builder.compute(metric, bags, matrices[0]))[0];
+	}
+
+	/**
+	 * Gets the distance matrices of a data set with several metrics. If any of them
+	 * is not in the cache, all of them are computed with a single call, e.g. to
+	 * share the work of metrics that are computed together.
+	 *
+	 * @param metrics         The metrics, already initialized with the data set if
+	 *                        needed.
+	 * @param bags            A dataset of {@link Instances} with relational
+	 *                        information.
+	 * @param singlePrecision Whether the distances are stored as float.
+	 * @param computation     Computes the matrices of all the metrics, in the same
+	 *                        order.
+	 * @return The distance matrices, in the same order as the metrics.
+	 * @throws Exception if occurred an error during distance calculation.
+	 */
+	public DistanceMatrix[] get(IDistance[] metrics, Instances bags, boolean singlePrecision,
+			Computation computation) throws Exception {
+
+		return get(metrics, bags, singlePrecision, false, computation);
+	}
+
+	/**
+	 * Gets the distance matrices of a data set with several metrics. If any of them
+	 * is not in the cache, all of them are computed with a single call.
+	 *
+	 * @param metrics         The metrics, already initialized with the data set if
+	 *                        needed.
+	 * @param bags            A dataset of {@link Instances} with relational
+	 *                        information.
+	 * @param singlePrecision Whether the distances are stored as float.
+	 * @param symmetric       Whether the matrices hold the symmetric distances of
+	 *                        the metrics, see
+	 *                        {@link IDistance#symmetricDistance(Instances, Instances)}.
+	 * @param computation     Computes the matrices of all the metrics, in the same
+	 *                        order.
+	 * @return The distance matrices, in the same order as the metrics.
+	 * @throws Exception if occurred an error during distance calculation.
+	 */
+	public DistanceMatrix[] get(IDistance[] metrics, Instances bags, boolean singlePrecision, boolean symmetric,
+			Computation computation) throws Exception {
+
+		File[] files = new File[metrics.length];
+		DistanceMatrix[] matrices = new DistanceMatrix[metrics.length];
+		boolean complete = true;
+		for (int m = 0; m < metrics.length; m++) {
+			files[m] = getFile(metrics[m], bags, singlePrecision, symmetric);
+			matrices[m] = open(files[m], bags.numInstances(), singlePrecision);
+			complete &= matrices[m] != null;
+		}
+		if (complete)
+			return matrices;
+
+		if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory())
+			throw new IOException("Cannot create the distance matrix cache directory: " + directory);
+
+		File[] temps = new File[metrics.length];
+		try {
+			for (int m = 0; m < metrics.length; m++) {
+				temps[m] = File.createTempFile(files[m].getName(), ".tmp", directory);
+				matrices[m] = MappedDistanceMatrix.create(temps[m], bags.numInstances(), singlePrecision);
+			}
+			computation.compute(matrices);
+			for (int m = 0; m < metrics.length; m++) {
+				((MappedDistanceMatrix) matrices[m]).force();
+				Files.move(temps[m].toPath(), files[m].toPath(), StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			}
+			return matrices;
+		} finally {
+			for (File temp : temps)
+				if (temp != null)
+					Files.deleteIfExists(temp.toPath());
+		}
+	}
+
+	/**
+	 * Opens a matrix of the cache.
+	 *
+	 * @param file            The file of the matrix.
+	 * @param size            The number of bags.
+	 * @param singlePrecision Whether the distances are stored as float.
+	 * @return The matrix, or null if the file does not exist or does not match.
+	 */
+	protected DistanceMatrix open(File file, int size, boolean singlePrecision) {
+		if (file.isFile()) {
+			try {
+				MappedDistanceMatrix matrix = MappedDistanceMatrix.open(file);
+				if (matrix.size() == size && matrix.isSinglePrecision() == singlePrecision)
+					return matrix;
+			} catch (IOException e) {
+				// The file is computed again
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the file of the cache for a data set and a metric.
+	 *
+	 * @param metric          The metric, already initialized with the data set if
+	 *                        needed.
+	 * @param bags            A dataset of {@link Instances} with relational
+	 *                        information.
+	 * @param singlePrecision Whether the distances are stored as float.
+	 * @return The file, which may not exist.
+	 * @throws Exception To be handled in an upper level.
+	 */
+	public File getFile(IDistance metric, Instances bags, boolean singlePrecision) throws Exception {
+		return getFile(metric, bags, singlePrecision, false);
+	}
+
+	/**
+	 * Gets the file of the cache for a data set and a metric. The symmetrized
+	 * matrix of a metric that is not symmetric has its own file.
+	 *
+	 * @param metric          The metric, already initialized with the data set if
+	 *                        needed.
+	 * @param bags            A dataset of {@link Instances} with relational
+	 *                        information.
+	 * @param singlePrecision Whether the distances are stored as float.
+	 * @param symmetric       Whether the matrix holds the symmetric distances of
+	 *                        the metric.
+	 * @return The file, which may not exist.
+	 * @throws Exception To be handled in an upper level.
+	 */
+	public File getFile(IDistance metric, Instances bags, boolean singlePrecision, boolean symmetric)
+			throws Exception {
+		String suffix = symmetric && !metric.isSymmetric() ? "-sym" : "";
+		return new File(directory,
+				getKey(metric, bags) + suffix + (singlePrecision ? "-f32" : "-f64") + EXTENSION);
+	}
+
+	/**
+	 * Computes the key of a data set and a metric: a SHA-256 hash of the class of
+	 * the metric, its normalization ranges and the values of the instances of all
+	 * the bags.
+	 *
+	 * @param metric The metric, already initialized with the data set if needed.
+	 * @param bags   A dataset of {@link Instances} with relational information.
+	 * @return The key as an hexadecimal string.
+	 * @throws Exception To be handled in an upper level.
+	 */
+	public static String getKey(IDistance metric, Instances bags) throws Exception {
+
+		MessageDigest digest = MessageDigest.getInstance("SHA-256");
+		ByteBuffer buffer = ByteBuffer.allocate(8192);
+
+		digest.update(metric.getClass().getName().getBytes(StandardCharsets.UTF_8));
+
+		double[][] ranges = metric instanceof HausdorffDistance ? ((HausdorffDistance) metric).getRanges() : null;
+		if (ranges != null) {
+			putInt(digest, buffer, ranges.length);
+			for (double[] range : ranges)
+				for (double value : range)
+					putDouble(digest, buffer, value);
+		} else {
+			putInt(digest, buffer, -1);
+		}
+
+		putInt(digest, buffer, bags.numInstances());
+		for (int i = 0; i < bags.numInstances(); i++) {
+			Instances bag = bags.instance(i).relationalValue(1);
+			putInt(digest, buffer, bag.numInstances());
+			putInt(digest, buffer, bag.numAttributes());
+			for (int j = 0; j < bag.numInstances(); j++) {
+				Instance instance = bag.instance(j);
+				for (int k = 0; k < bag.numAttributes(); k++)
+					putDouble(digest, buffer, instance.value(k));
+			}
+		}
+		buffer.flip();
+		digest.update(buffer);
+
+		StringBuilder key = new StringBuilder();
+		for (byte b : digest.digest())
+			key.append(String.format("%02x", b));
+		return key.toString();
+	}
+
+	/**
+	 * Adds an int to the hash through a buffer.
+	 *
+	 * @param digest The hash.
+	 * @param buffer The buffer.
+	 * @param value  The value.
+	 */
+	private static void putInt(MessageDigest digest, ByteBuffer buffer, int value) {
+		if (buffer.remaining() < Integer.BYTES) {
+			buffer.flip();
+			digest.update(buffer);
+			buffer.clear();
+		}
+		buffer.putInt(value);
+	}
+
+	/**
+	 * Adds a double to the hash through a buffer.
+	 *
+	 * @param digest The hash.
+	 * @param buffer The buffer.
+	 * @param value  The value.
+	 */
+	private static void putDouble(MessageDigest digest, ByteBuffer buffer, double value) {
+		if (buffer.remaining() < Double.BYTES) {
+			buffer.flip();
+			digest.update(buffer);
+			buffer.clear();
+		}
+		buffer.putLong(Double.doubleToLongBits(value));
+	}
+
+	/**
+	 * Gets the directory of the cache.
+	 *
+	 * @return The directory.
+	 */
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Computation of the distance matrices of several metrics.
+	 */
+	public interface Computation {
+
+		/**
+		 * Computes the distance matrices.
+		 *
+		 * @param matrices The destination matrices, whose size is the number of
+		 *                 bags.
+		 * @throws Exception if occurred an error during distance calculation.
+		 */
+		void compute(DistanceMatrix[] matrices) throws Exception;
+	}
+}
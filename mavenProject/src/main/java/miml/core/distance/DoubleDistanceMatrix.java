@@ -0,0 +1,68 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package miml.core.distance;
+
+import java.io.Serializable;
+
+/**
+ * {@link DistanceMatrix} that stores the distances in an array with double precision.
+ *
+ * @author agent
+ * @version 20261018
+ */
+public class DoubleDistanceMatrix extends DistanceMatrix {
+
+	/** For serialization */
+	private static final long serialVersionUID = -2361807786394624410L;
+
+	/** Distances of the upper triangle. */
+	protected double[] values;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param size Number of bags.
+	 */
+	public DoubleDistanceMatrix(int size) {
+		super(size);
+		this.values = new double[checkedNumValues(size)];
+	}
+
+	@Override
+	public boolean isSinglePrecision() {
+		return false;
+	}
+
+	@Override
+	protected double getValue(long index) {
+		return values[(int) index];
+	}
+
+	@Override
+	protected void setValue(long index, double value) {
+		values[(int) index] = value;
+	}
+
+	/**
+	 * Gets the array with the distances of the upper triangle. It is not copied.
+	 *
+	 * @return The distances.
+	 */
+	public double[] getValues() {
+		return values;
+	}
+}
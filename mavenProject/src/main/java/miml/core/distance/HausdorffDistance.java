@@ -6,6 +6,7 @@ import weka.core.DistanceFunction;
 import weka.core.EuclideanDistance;
 import weka.core.Instance;
 import weka.core.Instances;
+import weka.core.NormalizableDistance;
 
 public abstract class HausdorffDistance implements IDistance {
 
@@ -72,6 +73,19 @@ public abstract class HausdorffDistance implements IDistance {
 		}
 	}
 
+	/**
+	 * Gets the ranges used to normalize the instances.
+	 * 
+	 * @return The minimum, maximum and width of each attribute, or null if the
+	 *         distance function does not normalize.
+	 * @throws Exception To be handled in an upper level.
+	 */
+	public double[][] getRanges() throws Exception {
+		if (dfun instanceof NormalizableDistance && hasInstances())
+			return ((NormalizableDistance) dfun).getRanges();
+		return null;
+	}
+
 	public void update(MIMLBag bag) throws Exception {
 		Instances relational = bag.getBagAsInstances();
 		for (int i = 0; i < relational.numInstances(); i++) {
@@ -0,0 +1,219 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package miml.core.distance;
+
+import java.util.Arrays;
+
+import miml.core.ParallelLoop;
+import weka.core.Instances;
+
+/**
+ * Computes the distance matrices of the maximal, average and minimal Hausdorff
+ * distances of a data set in a single pass. The three distances between two
+ * bags are obtained from the distances of each instance to its nearest
+ * instance of the other bag, so the distances between instances are computed
+ * once instead of once per metric. The values are the symmetric distances of
+ * {@link PackedMaximalHausdorff}, {@link PackedAverageHausdorff} and
+ * {@link PackedMinimalHausdorff}, see
+ * {@link IDistance#symmetricDistance(Instances, Instances)}, so the maximal
+ * matrix holds the Hausdorff distance, i.e. the maximum of the directed maximal
+ * distances of both bags. Thus, the matrices can be stored in a
+ * {@link DistanceMatrixCache} as symmetric matrices and reused by any algorithm
+ * with these metrics.
+ *
+ * @author agent
+ * @version 20261018
+ */
+public class HausdorffMatrixBuilder {
+
+	/** Position of the maximal Hausdorff distance in the arrays of matrices. */
+	public static final int MAXIMAL = 0;
+
+	/** Position of the average Hausdorff distance in the arrays of matrices. */
+	public static final int AVERAGE = 1;
+
+	/** Position of the minimal Hausdorff distance in the arrays of matrices. */
+	public static final int MINIMAL = 2;
+
+	/** Number of threads. */
+	protected int numThreads;
+
+	/** Whether the distances are stored as float. */
+	protected boolean singlePrecision = false;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param numThreads      Number of threads. If it is not positive, the number
+	 *                        of available processors is used.
+	 * @param singlePrecision Whether the distances are stored as float.
+	 */
+	public HausdorffMatrixBuilder(int numThreads, boolean singlePrecision) {
+		this.numThreads = numThreads;
+		this.singlePrecision = singlePrecision;
+	}
+
+	/**
+	 * Computes the distance matrices of a data set.
+	 *
+	 * @param metrics The maximal, average and minimal Hausdorff distances, in the
+	 *                order of {@link #MAXIMAL}, {@link #AVERAGE} and
+	 *                {@link #MINIMAL}, already initialized with the data set.
+	 * @param bags    A dataset of {@link Instances} with relational information.
+	 * @return The distance matrices, in the same order as the metrics.
+	 * @throws Exception if occurred an error during distance calculation.
+	 */
+	public DistanceMatrix[] compute(HausdorffDistance[] metrics, Instances bags) throws Exception {
+
+		DistanceMatrix[] matrices = new DistanceMatrix[3];
+		for (int m = 0; m < matrices.length; m++)
+			matrices[m] = DistanceMatrix.create(bags.numInstances(), singlePrecision);
+		return compute(metrics, bags, matrices);
+	}
+
+	/**
+	 * Computes the distance matrices of a data set in given matrices, e.g.
+	 * {@link MappedDistanceMatrix}.
+	 *
+	 * @param metrics  The maximal, average and minimal Hausdorff distances, in the
+	 *                 order of {@link #MAXIMAL}, {@link #AVERAGE} and
+	 *                 {@link #MINIMAL}, already initialized with the data set.
+	 * @param bags     A dataset of {@link Instances} with relational information.
+	 * @param matrices The destination matrices, whose size is the number of bags.
+	 * @return The destination matrices.
+	 * @throws Exception if occurred an error during distance calculation.
+	 */
+	public DistanceMatrix[] compute(HausdorffDistance[] metrics, Instances bags, DistanceMatrix[] matrices)
+			throws Exception {
+
+		int size = bags.numInstances();
+		for (DistanceMatrix matrix : matrices)
+			if (matrix.size() != size)
+				throw new IllegalArgumentException("The size of the matrix does not match the number of bags");
+
+		// Any of the packed metrics has the normalized values of the bags
+		NormalizedBags normalizedBags = null;
+		for (HausdorffDistance metric : metrics)
+			if (normalizedBags == null && metric instanceof PackedHausdorffDistance)
+				normalizedBags = ((PackedHausdorffDistance) metric).getNormalizedBags();
+		NormalizedBags packed = normalizedBags;
+
+		// The ranges are initialized before the threads use them
+		for (HausdorffDistance metric : metrics)
+			metric.getRanges();
+
+		// Rows are taken in order by the threads, so the long first rows of the
+		// upper triangle are balanced with the short last ones
+		ParallelLoop.run(numThreads, size, i -> {
+			Instances first = bags.instance(i).relationalValue(1);
+			for (int j = i + 1; j < size; j++) {
+				Instances second = bags.instance(j).relationalValue(1);
+				NormalizedBags.Scratch s = packed == null ? null : packed.prepare(first, second);
+				if (s == null) {
+					for (int m = 0; m < matrices.length; m++)
+						matrices[m].set(i, j, metrics[m].symmetricDistance(first, second));
+				} else {
+					distances(s, packed.getNumAttributes(), matrices, i, j);
+				}
+			}
+		});
+
+		return matrices;
+	}
+
+	/**
+	 * Computes the three distances between two non-empty bags located in the
+	 * buffers of the calling thread.
+	 *
+	 * @param s             Buffers of the calling thread, with both slots resolved.
+	 * @param numAttributes Number of attributes per instance.
+	 * @param matrices      The destination matrices.
+	 * @param i             Index of the first bag.
+	 * @param j             Index of the second bag.
+	 */
+	protected void distances(NormalizedBags.Scratch s, int numAttributes, DistanceMatrix[] matrices, int i,
+			int j) {
+
+		double[] a = s.values[0], b = s.values[1];
+		int aOffset = s.offsets[0], bOffset = s.offsets[1];
+		int aSize = s.sizes[0], bSize = s.sizes[1];
+
+		if (s.minDistances.length < bSize)
+			s.minDistances = new double[bSize];
+		double[] minDistancesV = s.minDistances;
+		Arrays.fill(minDistancesV, 0, bSize, Double.POSITIVE_INFINITY);
+
+		double sumU = 0.0;
+		double maxDistance = -1.0;
+		double minDistanceAll = Double.POSITIVE_INFINITY;
+
+		for (int p = 0, u = aOffset; p < aSize; ++p, u += numAttributes) {
+
+			double minDistance = Double.POSITIVE_INFINITY;
+
+			for (int q = 0, v = bOffset; q < bSize; ++q, v += numAttributes) {
+
+				double distance = NormalizedBags.squaredDistance(a, u, b, v, numAttributes);
+
+				if (distance < minDistance)
+					minDistance = distance;
+
+				if (distance < minDistancesV[q])
+					minDistancesV[q] = distance;
+			}
+
+			sumU += NormalizedBags.root(minDistance);
+			if (maxDistance < minDistance)
+				maxDistance = minDistance;
+			if (minDistance < minDistanceAll)
+				minDistanceAll = minDistance;
+		}
+
+		// The directed maximal distance from the second bag, as the Hausdorff
+		// distance is the maximum of both directions
+		for (int q = 0; q < bSize; ++q) {
+			if (maxDistance < minDistancesV[q])
+				maxDistance = minDistancesV[q];
+			minDistancesV[q] = NormalizedBags.root(minDistancesV[q]);
+		}
+
+		// Same summation as AverageHausdorff to obtain identical results
+		double sumV = Arrays.stream(minDistancesV, 0, bSize).sum();
+
+		matrices[MAXIMAL].set(i, j, NormalizedBags.root(maxDistance));
+		matrices[AVERAGE].set(i, j, (sumU + sumV) / (aSize + bSize));
+		matrices[MINIMAL].set(i, j, NormalizedBags.root(minDistanceAll));
+	}
+
+	/**
+	 * Gets the number of threads.
+	 *
+	 * @return The number of threads.
+	 */
+	public int getNumThreads() {
+		return numThreads;
+	}
+
+	/**
+	 * Returns whether the distances are stored as float.
+	 *
+	 * @return True if the distances are stored with single precision.
+	 */
+	public boolean isSinglePrecision() {
+		return singlePrecision;
+	}
+}
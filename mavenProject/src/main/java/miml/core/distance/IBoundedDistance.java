@@ -0,0 +1,69 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package miml.core.distance;
+
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * Interface to implement metrics that can stop the computation of the distance
+ * between two bags once it is known to exceed a cut off value. It follows the
+ * convention of {@link weka.core.DistanceFunction}: when the distance is
+ * greater than the cut off value, Double.POSITIVE_INFINITY is returned,
+ * otherwise the exact distance is returned.
+ *
+ * @author agent
+ * @version 20261018
+ */
+public interface IBoundedDistance extends IDistance {
+
+	/**
+	 * Get the distance between two bags in the form of a set of {@link Instances}
+	 * if it does not exceed a cut off value.
+	 *
+	 * @param first       First bag as instances.
+	 * @param second      Second bag as instances.
+	 * @param cutOffValue The cut off value.
+	 * @return Distance between two bags or Double.POSITIVE_INFINITY if it is
+	 *         greater than the cut off value.
+	 * @throws Exception if occurred an error during distance calculation.
+	 */
+	public double distance(Instances first, Instances second, double cutOffValue) throws Exception;
+
+	/**
+	 * Get the distance between two bags if it does not exceed a cut off value.
+	 *
+	 * @param first       First bag.
+	 * @param second      Second bag.
+	 * @param cutOffValue The cut off value.
+	 * @return Distance between two bags or Double.POSITIVE_INFINITY if it is
+	 *         greater than the cut off value.
+	 * @throws Exception if occurred an error during distance calculation.
+	 */
+	public double distance(Instance first, Instance second, double cutOffValue) throws Exception;
+
+	/**
+	 * Get a lower bound of the distance between two bags that is cheaper to
+	 * compute than the distance.
+	 *
+	 * @param first  First bag as instances.
+	 * @param second Second bag as instances.
+	 * @return A lower bound of the distance.
+	 * @throws Exception if occurred an error during distance calculation.
+	 */
+	public double lowerBound(Instances first, Instances second) throws Exception;
+}
@@ -62,4 +62,43 @@ public interface IDistance extends Serializable {
 	void update(MIMLBag var1) throws Exception;
 
 	void update(Instance var1) throws Exception;
+
+	/**
+	 * Returns whether the distance between two bags does not depend on their
+	 * order, so that a single value can be stored for each pair of bags.
+	 *
+	 * @return True if distance(first, second) equals distance(second, first).
+	 */
+	default boolean isSymmetric() {
+		return true;
+	}
+
+	/**
+	 * Get the symmetric distance between two bags, i.e. the maximum of the
+	 * distances in both directions for metrics that are not symmetric. For the
+	 * maximal Hausdorff distance, it is the Hausdorff distance between the bags.
+	 *
+	 * @param first  First bag as instances.
+	 * @param second Second Bag as Instances.
+	 * @return Symmetric distance between two bags.
+	 * @throws Exception if occurred an error during distance calculation.
+	 */
+	default double symmetricDistance(Instances first, Instances second) throws Exception {
+		double distance = distance(first, second);
+		return isSymmetric() ? distance : Math.max(distance, distance(second, first));
+	}
+
+	/**
+	 * Get the symmetric distance between two bags, i.e. the maximum of the
+	 * distances in both directions for metrics that are not symmetric.
+	 *
+	 * @param first  First bag.
+	 * @param second Second bag.
+	 * @return Symmetric distance between two bags.
+	 * @throws Exception if occurred an error during distance calculation.
+	 */
+	default double symmetricDistance(Instance first, Instance second) throws Exception {
+		double distance = distance(first, second);
+		return isSymmetric() ? distance : Math.max(distance, distance(second, first));
+	}
 }
@@ -0,0 +1,230 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package miml.core.distance;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Distance matrix stored in a memory-mapped file. The file has a header of
+ * {@link #HEADER_SIZE} bytes followed by the values of the upper triangle in
+ * little-endian order, as double or float. Large matrices are mapped in
+ * segments of at most 1 GiB.
+ * <p>
+ * Opening an existing file does not copy the distances to the heap: they are
+ * read from the page cache on demand. When a mapped matrix is serialized, it is
+ * replaced by an in-memory copy.
+ *
+ * @author agent
+ * @version 20261018
+ * @see DistanceMatrixCache
+ */
+public class MappedDistanceMatrix extends DistanceMatrix {
+
+	/** For serialization */
+	private static final long serialVersionUID = 6058230451763302813L;
+
+	/** Identifier of the file format. */
+	public static final long MAGIC = 0x4D494D4C444D4154L; // "MIMLDMAT"
+
+	/** Version of the file format. */
+	public static final int FORMAT_VERSION = 1;
+
+	/** Size of the header in bytes. */
+	public static final int HEADER_SIZE = 32;
+
+	/** Maximum number of bytes mapped per segment. */
+	protected static final long SEGMENT_BYTES = 1L << 30;
+
+	/** Whether the distances are stored as float. */
+	protected boolean singlePrecision;
+
+	/** Number of values per segment. */
+	protected transient long segmentValues;
+
+	/** Mapped segments of the file. */
+	protected transient MappedByteBuffer[] segments;
+
+	/** Segments of the file as double values. */
+	protected transient DoubleBuffer[] doubleSegments;
+
+	/** Segments of the file as float values. */
+	protected transient FloatBuffer[] floatSegments;
+
+	/**
+	 * Constructor. Use {@link #create(File, int, boolean)} or
+	 * {@link #open(File)}.
+	 *
+	 * @param size            Number of bags.
+	 * @param singlePrecision Whether the distances are stored as float.
+	 */
+	protected MappedDistanceMatrix(int size, boolean singlePrecision) {
+		super(size);
+		this.singlePrecision = singlePrecision;
+	}
+
+	/**
+	 * Creates a file for a distance matrix and maps it to write the distances.
+	 * Any existing file is overwritten.
+	 *
+	 * @param file            The file.
+	 * @param size            Number of bags.
+	 * @param singlePrecision Whether the distances are stored as float.
+	 * @return The distance matrix, with all the distances set to 0.
+	 * @throws IOException if the file cannot be created.
+	 */
+	public static MappedDistanceMatrix create(File file, int size, boolean singlePrecision) throws IOException {
+		MappedDistanceMatrix matrix = new MappedDistanceMatrix(size, singlePrecision);
+		int bytes = matrix.bytesPerValue();
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+			raf.setLength(0);
+			raf.setLength(HEADER_SIZE + numValues(size) * bytes);
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			header.putLong(MAGIC).putInt(FORMAT_VERSION).putInt(size).putInt(bytes);
+			header.clear();
+			channel.write(header, 0);
+
+			matrix.map(channel, FileChannel.MapMode.READ_WRITE);
+		}
+		return matrix;
+	}
+
+	/**
+	 * Maps the distance matrix stored in a file for reading.
+	 *
+	 * @param file The file.
+	 * @return The distance matrix.
+	 * @throws IOException if the file cannot be read or it is not a valid
+	 *                     distance matrix.
+	 */
+	public static MappedDistanceMatrix open(File file) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			while (header.hasRemaining() && channel.read(header, header.position()) >= 0)
+				;
+			header.flip();
+			if (header.remaining() < HEADER_SIZE || header.getLong() != MAGIC)
+				throw new IOException("Not a distance matrix file: " + file);
+			if (header.getInt() != FORMAT_VERSION)
+				throw new IOException("Unsupported distance matrix file version: " + file);
+
+			int size = header.getInt();
+			int bytes = header.getInt();
+			if (size < 0 || (bytes != Float.BYTES && bytes != Double.BYTES))
+				throw new IOException("Corrupted distance matrix file: " + file);
+			if (channel.size() != HEADER_SIZE + numValues(size) * bytes)
+				throw new IOException("Truncated distance matrix file: " + file);
+
+			MappedDistanceMatrix matrix = new MappedDistanceMatrix(size, bytes == Float.BYTES);
+			matrix.map(channel, FileChannel.MapMode.READ_ONLY);
+			return matrix;
+		}
+	}
+
+	/**
+	 * Maps the values of the file in segments.
+	 *
+	 * @param channel The channel of the file.
+	 * @param mode    The mapping mode.
+	 * @throws IOException if the file cannot be mapped.
+	 */
+	protected void map(FileChannel channel, FileChannel.MapMode mode) throws IOException {
+		int bytes = bytesPerValue();
+		long numValues = numValues(size);
+		segmentValues = SEGMENT_BYTES / bytes;
+		int numSegments = (int) Math.max(1, (numValues + segmentValues - 1) / segmentValues);
+
+		segments = new MappedByteBuffer[numSegments];
+		if (singlePrecision)
+			floatSegments = new FloatBuffer[numSegments];
+		else
+			doubleSegments = new DoubleBuffer[numSegments];
+
+		for (int s = 0; s < numSegments; s++) {
+			long first = s * segmentValues;
+			long length = Math.min(segmentValues, numValues - first) * bytes;
+			MappedByteBuffer buffer = channel.map(mode, HEADER_SIZE + first * bytes, length);
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+			segments[s] = buffer;
+			if (singlePrecision)
+				floatSegments[s] = buffer.asFloatBuffer();
+			else
+				doubleSegments[s] = buffer.asDoubleBuffer();
+		}
+	}
+
+	/**
+	 * Writes to the file the distances set in a matrix created with
+	 * {@link #create(File, int, boolean)}.
+	 */
+	public void force() {
+		for (MappedByteBuffer segment : segments)
+			segment.force();
+	}
+
+	/**
+	 * Gets the number of bytes used by each value.
+	 *
+	 * @return The number of bytes.
+	 */
+	protected int bytesPerValue() {
+		return singlePrecision ? Float.BYTES : Double.BYTES;
+	}
+
+	@Override
+	public boolean isSinglePrecision() {
+		return singlePrecision;
+	}
+
+	@Override
+	protected double getValue(long index) {
+		int segment = (int) (index / segmentValues);
+		int offset = (int) (index - segment * segmentValues);
+		return singlePrecision ? floatSegments[segment].get(offset) : doubleSegments[segment].get(offset);
+	}
+
+	@Override
+	protected void setValue(long index, double value) {
+		int segment = (int) (index / segmentValues);
+		int offset = (int) (index - segment * segmentValues);
+		if (singlePrecision)
+			floatSegments[segment].put(offset, (float) value);
+		else
+			doubleSegments[segment].put(offset, value);
+	}
+
+	/**
+	 * Replaces the matrix with an in-memory copy when it is serialized.
+	 *
+	 * @return The copy of the matrix.
+	 */
+	protected Object writeReplace() {
+		DistanceMatrix copy = DistanceMatrix.create(size, singlePrecision);
+		long numValues = numValues(size);
+		for (long i = 0; i < numValues; i++)
+			copy.setValue(i, getValue(i));
+		return copy;
+	}
+}
@@ -16,6 +16,7 @@
 package miml.core.distance;
 
 import miml.data.MIMLInstances;
+import weka.core.DistanceFunction;
 import weka.core.Instance;
 import weka.core.Instances;
 
@@ -49,6 +50,19 @@ public class MinimalHausdorff extends HausdorffDistance {
 	 */
 	@Override
 	public double distance(Instances first, Instances second) throws Exception {
+		return distance(dfun, first, second);
+	}
+
+	/**
+	 * Computes the minimal Hausdorff distance between two bags with a distance
+	 * function between instances.
+	 *
+	 * @param dfun   Distance function between instances.
+	 * @param first  First bag as instances.
+	 * @param second Second bag as instances.
+	 * @return Distance between the two bags.
+	 */
+	static double distance(DistanceFunction dfun, Instances first, Instances second) {
 
 		int nInstances = second.size();
 		double finalDistance = Double.MAX_VALUE;
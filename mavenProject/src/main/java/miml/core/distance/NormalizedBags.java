@@ -0,0 +1,485 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package miml.core.distance;
+
+import java.io.Serializable;
+import java.util.IdentityHashMap;
+
+import miml.data.PackedBags;
+import weka.core.Attribute;
+import weka.core.Instances;
+import weka.core.NormalizableDistance;
+
+/**
+ * Bags of a data set packed in a primitive array and normalized with the same
+ * ranges used by the {@link NormalizableDistance} of a
+ * {@link HausdorffDistance}. It is used by the packed implementations of the
+ * Hausdorff distances to compute the euclidean distance between instances
+ * without going through the Weka distance function. Normalization reproduces
+ * the one done by {@link NormalizableDistance} so that the distances obtained
+ * are identical.
+ * <p>
+ * The bags of the data set are identified by the relational {@link Instances}
+ * object of each bag. Any other bag is normalized on demand in a buffer of the
+ * calling thread, which is reused while the same bag is queried.
+ * <p>
+ * Distances can be computed concurrently from several threads as long as the
+ * ranges of the distance function are not updated at the same time.
+ *
+ * @author agent
+ * @version 20261018
+ */
+public class NormalizedBags implements Serializable {
+
+	/** For serialization */
+	private static final long serialVersionUID = 2271383613040519312L;
+
+	/** Distance function whose ranges are used to normalize. */
+	protected NormalizableDistance dfun;
+
+	/** Relational value of each bag of the data set. */
+	protected Instances[] bags;
+
+	/** Index of each bag of the data set given its relational value. */
+	protected IdentityHashMap<Instances, Integer> index;
+
+	/** Normalized values of the bags of the data set. */
+	protected PackedBags packed;
+
+	/**
+	 * Bounding box of each bag in the normalized space. For the ith bag, the
+	 * minimum values of the attributes start at position 2*i*numAttributes and
+	 * are followed by the maximum values.
+	 */
+	protected double[] boxes;
+
+	/** Number of attributes per instance. */
+	protected int numAttributes;
+
+	/** Whether all the attributes of the bags are numeric. */
+	protected boolean numeric;
+
+	/** Minimum value of each attribute used in the last normalization. */
+	protected double[] minValues;
+
+	/** Maximum value of each attribute used in the last normalization. */
+	protected double[] maxValues;
+
+	/** Width of each attribute used in the last normalization. */
+	protected double[] widths;
+
+	/** Number of times the data have been normalized. */
+	protected int version;
+
+	/** Per-thread buffers. */
+	protected transient volatile ThreadLocal<Scratch> scratch;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param dataSet A dataset of {@link Instances} with relational information.
+	 * @param dfun    The distance function whose ranges are used to normalize.
+	 * @throws Exception To be handled in an upper level.
+	 */
+	public NormalizedBags(Instances dataSet, NormalizableDistance dfun) throws Exception {
+		this.dfun = dfun;
+		int numBags = dataSet.numInstances();
+		bags = new Instances[numBags];
+		index = new IdentityHashMap<Instances, Integer>(2 * numBags);
+		for (int i = 0; i < numBags; i++) {
+			bags[i] = dataSet.instance(i).relationalValue(1);
+			index.put(bags[i], i);
+		}
+
+		packed = new PackedBags(dataSet);
+		numAttributes = packed.getNumAttributes();
+
+		numeric = !packed.hasMissingValues();
+		Instances header = bags.length > 0 ? bags[0] : null;
+		for (int k = 0; numeric && k < numAttributes; k++) {
+			numeric = header.attribute(k).type() == Attribute.NUMERIC;
+		}
+
+		minValues = new double[numAttributes];
+		maxValues = new double[numAttributes];
+		widths = new double[numAttributes];
+		boxes = new double[2 * numBags * numAttributes];
+		normalize(dfun.getRanges());
+	}
+
+	/**
+	 * Returns whether the packed distance can be used. It requires all the
+	 * attributes to be numeric and no missing values in the data set.
+	 *
+	 * @return True if the bags can be compared through the packed values.
+	 */
+	public boolean isApplicable() {
+		return numeric;
+	}
+
+	/**
+	 * Gets the index of a bag of the data set.
+	 *
+	 * @param bag The relational value of the bag.
+	 * @return The index of the bag or -1 if it does not belong to the data set.
+	 */
+	public int indexOf(Instances bag) {
+		Integer i = index.get(bag);
+		return i == null ? -1 : i;
+	}
+
+	/**
+	 * Gets the normalized bags of the data set.
+	 *
+	 * @return The normalized bags.
+	 */
+	public PackedBags getPackedBags() {
+		return packed;
+	}
+
+	/**
+	 * Gets the number of attributes per instance.
+	 *
+	 * @return The number of attributes.
+	 */
+	public int getNumAttributes() {
+		return numAttributes;
+	}
+
+	/**
+	 * Checks whether the ranges of the distance function have changed since the
+	 * last normalization, and normalizes the bags again if so.
+	 * 
+	 * @throws Exception To be handled in an upper level.
+	 */
+	public void checkRanges() throws Exception {
+		double[][] ranges = dfun.getRanges();
+		if (!sameRanges(ranges)) {
+			synchronized (this) {
+				if (!sameRanges(ranges))
+					normalize(ranges);
+			}
+		}
+	}
+
+	/**
+	 * Gets the buffers of the calling thread.
+	 *
+	 * @return The buffers.
+	 */
+	public Scratch getScratch() {
+		ThreadLocal<Scratch> local = scratch;
+		if (local == null) {
+			synchronized (this) {
+				local = scratch;
+				if (local == null) {
+					local = new ThreadLocal<Scratch>() {
+						@Override
+						protected Scratch initialValue() {
+							return new Scratch();
+						}
+					};
+					scratch = local;
+				}
+			}
+		}
+		return local.get();
+	}
+
+	/**
+	 * Checks the ranges and locates the normalized values of two bags in the
+	 * slots 0 and 1 of the buffers of the calling thread.
+	 *
+	 * @param first  The relational value of the first bag.
+	 * @param second The relational value of the second bag.
+	 * @return The buffers of the calling thread, or null if the bags cannot be
+	 *         compared through the packed values.
+	 * @throws Exception To be handled in an upper level.
+	 */
+	public Scratch prepare(Instances first, Instances second) throws Exception {
+		if (!numeric || first.isEmpty() || second.isEmpty())
+			return null;
+		checkRanges();
+		Scratch s = getScratch();
+		return resolve(first, 0, s) && resolve(second, 1, s) ? s : null;
+	}
+
+	/**
+	 * Locates the normalized values of a bag and stores them in a slot of the
+	 * buffers. Bags of the data set are read directly from the packed values, any
+	 * other bag is normalized in the buffer of the slot.
+	 *
+	 * @param bag  The relational value of the bag.
+	 * @param slot The slot of the buffers (0 or 1).
+	 * @param s    The buffers of the calling thread.
+	 * @return False if the bag cannot be compared through the packed values.
+	 */
+	public boolean resolve(Instances bag, int slot, Scratch s) {
+		Integer i = index.get(bag);
+		if (i != null) {
+			s.values[slot] = packed.getValues();
+			s.offsets[slot] = packed.getOffset(i);
+			s.sizes[slot] = packed.getNumInstances(i);
+			s.boxes[slot] = boxes;
+			s.boxOffsets[slot] = 2 * i * numAttributes;
+			return true;
+		}
+
+		int size = bag.numInstances();
+		if (s.keys[slot] != bag || s.versions[slot] != version) {
+			s.keys[slot] = null;
+			if (bag.numAttributes() != numAttributes)
+				return false;
+			int length = size * numAttributes;
+			if (s.buffers[slot] == null || s.buffers[slot].length < length)
+				s.buffers[slot] = new double[length];
+			double[] buffer = s.buffers[slot];
+			PackedBags.copyBag(bag, buffer, 0);
+			for (int p = 0; p < length; p++)
+				if (Double.isNaN(buffer[p]))
+					return false;
+			normalize(buffer, length);
+			if (s.queryBoxes[slot] == null || s.queryBoxes[slot].length != 2 * numAttributes)
+				s.queryBoxes[slot] = new double[2 * numAttributes];
+			computeBox(buffer, 0, size, s.queryBoxes[slot], 0);
+			s.keys[slot] = bag;
+			s.versions[slot] = version;
+		}
+		s.values[slot] = s.buffers[slot];
+		s.offsets[slot] = 0;
+		s.sizes[slot] = size;
+		s.boxes[slot] = s.queryBoxes[slot];
+		s.boxOffsets[slot] = 0;
+		return true;
+	}
+
+	/**
+	 * Computes a lower bound of the squared euclidean distance between any
+	 * instance of the bag in slot 0 and any instance of the bag in slot 1, using
+	 * the bounding boxes of the bags. The bound is computed so that it is never
+	 * greater than the value returned by
+	 * {@link #squaredDistance(double[], int, double[], int, int)} for any pair.
+	 *
+	 * @param s The buffers of the calling thread, with both slots resolved.
+	 * @return The lower bound.
+	 */
+	public double squaredLowerBound(Scratch s) {
+		double[] first = s.boxes[0], second = s.boxes[1];
+		int firstMin = s.boxOffsets[0], firstMax = firstMin + numAttributes;
+		int secondMin = s.boxOffsets[1], secondMax = secondMin + numAttributes;
+		double bound = 0.0;
+		for (int k = 0; k < numAttributes; k++) {
+			double gap = second[secondMin + k] - first[firstMax + k];
+			double other = first[firstMin + k] - second[secondMax + k];
+			if (other > gap)
+				gap = other;
+			if (gap > 0)
+				bound = bound + gap * gap;
+		}
+		return bound;
+	}
+
+	/**
+	 * Computes the squared euclidean distance between two instances in the same
+	 * order of operations than {@link weka.core.EuclideanDistance}.
+	 *
+	 * @param a             Array with the first instance.
+	 * @param aOffset       Position of the first instance in a.
+	 * @param b             Array with the second instance.
+	 * @param bOffset       Position of the second instance in b.
+	 * @param numAttributes Number of attributes per instance.
+	 * @return The squared distance.
+	 */
+	public static double squaredDistance(double[] a, int aOffset, double[] b, int bOffset, int numAttributes) {
+		double distance = 0.0;
+		for (int k = 0; k < numAttributes; k++) {
+			double diff = a[aOffset + k] - b[bOffset + k];
+			distance = distance + diff * diff;
+		}
+		return distance;
+	}
+
+	/**
+	 * Computes the squared euclidean distance between two instances, abandoning
+	 * as soon as the partial sum exceeds a bound. If the bound is not exceeded the
+	 * value is the same than the one of
+	 * {@link #squaredDistance(double[], int, double[], int, int)}.
+	 *
+	 * @param a             Array with the first instance.
+	 * @param aOffset       Position of the first instance in a.
+	 * @param b             Array with the second instance.
+	 * @param bOffset       Position of the second instance in b.
+	 * @param numAttributes Number of attributes per instance.
+	 * @param bound         The bound.
+	 * @return The squared distance, or a partial sum greater than the bound.
+	 */
+	public static double squaredDistance(double[] a, int aOffset, double[] b, int bOffset, int numAttributes,
+			double bound) {
+		double distance = 0.0;
+		for (int k = 0; k < numAttributes; k++) {
+			double diff = a[aOffset + k] - b[bOffset + k];
+			distance = distance + diff * diff;
+			if (distance > bound)
+				return distance;
+		}
+		return distance;
+	}
+
+	/**
+	 * Gets a bound for squared distances such that any squared distance greater
+	 * than it corresponds to a distance greater than the cut off value, despite
+	 * of the rounding of the square root.
+	 *
+	 * @param cutOffValue The cut off value.
+	 * @return The bound for squared distances.
+	 */
+	public static double squaredBound(double cutOffValue) {
+		return cutOffValue * cutOffValue * (1 + 1e-9);
+	}
+
+	/**
+	 * Converts a squared distance into the euclidean distance.
+	 * {@link HausdorffDistance} classes keep Double.MAX_VALUE when no finite
+	 * distance is found, so the same value is returned for infinite distances.
+	 *
+	 * @param squaredDistance The squared distance.
+	 * @return The distance.
+	 */
+	public static double root(double squaredDistance) {
+		return squaredDistance == Double.POSITIVE_INFINITY ? Double.MAX_VALUE : Math.sqrt(squaredDistance);
+	}
+
+	/**
+	 * Checks whether some ranges are the ones used in the last normalization.
+	 *
+	 * @param ranges The ranges.
+	 * @return True if they are the same.
+	 */
+	protected boolean sameRanges(double[][] ranges) {
+		for (int k = 0; k < numAttributes; k++) {
+			if (Double.doubleToLongBits(ranges[k][NormalizableDistance.R_MIN]) != Double.doubleToLongBits(minValues[k])
+					|| Double.doubleToLongBits(ranges[k][NormalizableDistance.R_MAX]) != Double
+							.doubleToLongBits(maxValues[k])
+					|| Double.doubleToLongBits(ranges[k][NormalizableDistance.R_WIDTH]) != Double
+							.doubleToLongBits(widths[k]))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Normalizes the bags of the data set with some ranges.
+	 *
+	 * @param ranges The ranges.
+	 */
+	protected void normalize(double[][] ranges) {
+		for (int k = 0; k < numAttributes; k++) {
+			minValues[k] = ranges[k][NormalizableDistance.R_MIN];
+			maxValues[k] = ranges[k][NormalizableDistance.R_MAX];
+			widths[k] = ranges[k][NormalizableDistance.R_WIDTH];
+		}
+		double[] values = packed.getValues();
+		if (version > 0) {
+			for (int i = 0; i < bags.length; i++)
+				PackedBags.copyBag(bags[i], values, packed.getOffset(i));
+		}
+		normalize(values, packed.getNumInstances() * numAttributes);
+		for (int i = 0; i < bags.length; i++)
+			computeBox(values, packed.getOffset(i), packed.getNumInstances(i), boxes, 2 * i * numAttributes);
+		version++;
+	}
+
+	/**
+	 * Normalizes some instances stored row-major as done by
+	 * {@link NormalizableDistance}.
+	 *
+	 * @param values The instances.
+	 * @param length Number of values to normalize.
+	 */
+	protected void normalize(double[] values, int length) {
+		for (int p = 0, k = 0; p < length; p++) {
+			if (Double.isNaN(minValues[k]) || maxValues[k] == minValues[k])
+				values[p] = 0.0;
+			else
+				values[p] = (values[p] - minValues[k]) / widths[k];
+			if (++k == numAttributes)
+				k = 0;
+		}
+	}
+
+	/**
+	 * Computes the bounding box of a bag.
+	 *
+	 * @param values       Array with the bag.
+	 * @param offset       Position of the bag in values.
+	 * @param numInstances Number of instances of the bag.
+	 * @param box          Destination array.
+	 * @param boxOffset    Position in box where the minimum values are written,
+	 *                     followed by the maximum values.
+	 */
+	protected void computeBox(double[] values, int offset, int numInstances, double[] box, int boxOffset) {
+		int maxOffset = boxOffset + numAttributes;
+		for (int k = 0; k < numAttributes; k++) {
+			box[boxOffset + k] = Double.POSITIVE_INFINITY;
+			box[maxOffset + k] = Double.NEGATIVE_INFINITY;
+		}
+		for (int j = 0; j < numInstances; j++, offset += numAttributes) {
+			for (int k = 0; k < numAttributes; k++) {
+				double value = values[offset + k];
+				if (value < box[boxOffset + k])
+					box[boxOffset + k] = value;
+				if (value > box[maxOffset + k])
+					box[maxOffset + k] = value;
+			}
+		}
+	}
+
+	/**
+	 * Buffers used by a thread to compute distances.
+	 */
+	public static class Scratch {
+
+		/** Arrays with the values of the resolved bags. */
+		public double[][] values = new double[2][];
+
+		/** Positions of the resolved bags in their arrays. */
+		public int[] offsets = new int[2];
+
+		/** Number of instances of the resolved bags. */
+		public int[] sizes = new int[2];
+
+		/** Arrays with the bounding boxes of the resolved bags. */
+		public double[][] boxes = new double[2][];
+
+		/** Positions of the bounding boxes of the resolved bags in their arrays. */
+		public int[] boxOffsets = new int[2];
+
+		/** Bounding boxes of the bags not belonging to the data set. */
+		protected double[][] queryBoxes = new double[2][];
+
+		/** Buffers for bags not belonging to the data set. */
+		protected double[][] buffers = new double[2][];
+
+		/** Bags normalized in the buffers. */
+		protected Instances[] keys = new Instances[2];
+
+		/** Normalization version of the buffers. */
+		protected int[] versions = new int[2];
+
+		/** Buffer for the minimum distances. */
+		public double[] minDistances = new double[0];
+	}
+}
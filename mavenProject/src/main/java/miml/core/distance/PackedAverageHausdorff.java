@@ -0,0 +1,109 @@
+/*    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package miml.core.distance;
+
+import java.util.Arrays;
+
+import miml.data.MIMLInstances;
+import weka.core.Instances;
+
+/**
+ * Class that implements Average Hausdorff metric to measure the distance between 2
+ * bags of a data set on packed and normalized arrays. The distances obtained
+ * are identical to the ones of {@link AverageHausdorff}, which is used when the
+ * bags cannot be packed (e.g. nominal attributes or missing values).
+ * <p>
+ * When a cut off value is given, pairs of bags whose bounding boxes are farther
+ * than the cut off value are discarded without comparing their instances, and
+ * the computation is abandoned as soon as the sum of the distances of the
+ * instances of the first bag shows that the average exceeds the cut off value.
+ *
+ * @author agent
+ * @version 20261018
+ * @see NormalizedBags
+ */
+public class PackedAverageHausdorff extends PackedHausdorffDistance {
+
+	/** Generated Serial version UID. */
+	private static final long serialVersionUID = 7733095025916209245L;
+
+	public PackedAverageHausdorff() {
+		super();
+	}
+
+	public PackedAverageHausdorff(MIMLInstances bags) throws Exception {
+		super(bags);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see miml.core.distance.PackedHausdorffDistance#plainDistance(weka.core.Instances,
+	 * weka.core.Instances)
+	 */
+	@Override
+	protected double plainDistance(Instances first, Instances second) throws Exception {
+		return AverageHausdorff.distance(dfun, first, second);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see miml.core.distance.PackedHausdorffDistance#distance(double[], int, int,
+	 * double[], int, int, int, double, miml.core.distance.NormalizedBags.Scratch)
+	 */
+	@Override
+	protected double distance(double[] a, int aOffset, int aSize, double[] b, int bOffset, int bSize,
+			int numAttributes, double cutOffValue, NormalizedBags.Scratch s) {
+
+		if (s.minDistances.length < bSize)
+			s.minDistances = new double[bSize];
+		double[] minDistancesV = s.minDistances;
+		Arrays.fill(minDistancesV, 0, bSize, Double.POSITIVE_INFINITY);
+
+		double sumU = 0.0;
+
+		for (int i = 0, u = aOffset; i < aSize; ++i, u += numAttributes) {
+
+			double minDistance = Double.POSITIVE_INFINITY;
+
+			for (int j = 0, v = bOffset; j < bSize; ++j, v += numAttributes) {
+
+				double distance = NormalizedBags.squaredDistance(a, u, b, v, numAttributes);
+
+				if (distance < minDistance)
+					minDistance = distance;
+
+				if (distance < minDistancesV[j])
+					minDistancesV[j] = distance;
+			}
+
+			sumU += NormalizedBags.root(minDistance);
+
+			// The rest of the terms are not negative
+			if (sumU / (aSize + bSize) > cutOffValue)
+				return Double.POSITIVE_INFINITY;
+		}
+
+		for (int j = 0; j < bSize; ++j)
+			minDistancesV[j] = NormalizedBags.root(minDistancesV[j]);
+
+		// Same summation as AverageHausdorff to obtain identical results
+		double sumV = Arrays.stream(minDistancesV, 0, bSize).sum();
+
+		return (sumU + sumV) / (aSize + bSize);
+	}
+}
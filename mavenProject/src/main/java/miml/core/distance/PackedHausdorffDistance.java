@@ -0,0 +1,165 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package miml.core.distance;
+
+import miml.data.MIMLInstances;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.NormalizableDistance;
+
+/**
+ * Base class of the Hausdorff distances computed on packed and normalized
+ * arrays. It keeps the {@link NormalizedBags} of the data set, locates the two
+ * bags compared in the buffers of the calling thread and discards pairs of bags
+ * whose bounding boxes are farther than the cut off value. Subclasses only give
+ * the reduction of the distances between instances, and the one of the plain
+ * metric used when the bags cannot be packed (e.g. nominal attributes or
+ * missing values).
+ *
+ * @author agent
+ * @version 20261018
+ * @see NormalizedBags
+ */
+public abstract class PackedHausdorffDistance extends HausdorffDistance implements IBoundedDistance {
+
+	/** Generated Serial version UID. */
+	private static final long serialVersionUID = -5319842771245406322L;
+
+	/** Normalized bags of the data set. */
+	protected NormalizedBags normalizedBags;
+
+	public PackedHausdorffDistance() {
+		super();
+	}
+
+	public PackedHausdorffDistance(MIMLInstances bags) throws Exception {
+		super(bags);
+	}
+
+	@Override
+	public void setInstances(MIMLInstances bags) throws Exception {
+		super.setInstances(bags);
+		normalizedBags = new NormalizedBags(bags.getDataSet(), (NormalizableDistance) dfun);
+	}
+
+	@Override
+	public void setInstances(Instances bags) throws Exception {
+		super.setInstances(bags);
+		normalizedBags = new NormalizedBags(bags, (NormalizableDistance) dfun);
+	}
+
+	/**
+	 * Gets the normalized bags of the data set.
+	 * 
+	 * @return The normalized bags or null if no data set has been set.
+	 */
+	public NormalizedBags getNormalizedBags() {
+		return normalizedBags;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see core.distance.IDistance#distance(weka.core.Instances,
+	 * weka.core.Instances)
+	 */
+	@Override
+	public double distance(Instances first, Instances second) throws Exception {
+		return distance(first, second, Double.POSITIVE_INFINITY);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see core.distance.IBoundedDistance#distance(weka.core.Instance,
+	 * weka.core.Instance, double)
+	 */
+	@Override
+	public double distance(Instance first, Instance second, double cutOffValue) throws Exception {
+		return distance(first.relationalValue(1), second.relationalValue(1), cutOffValue);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see core.distance.IBoundedDistance#distance(weka.core.Instances,
+	 * weka.core.Instances, double)
+	 */
+	@Override
+	public double distance(Instances first, Instances second, double cutOffValue) throws Exception {
+
+		double distance;
+		NormalizedBags.Scratch s = normalizedBags == null ? null : normalizedBags.prepare(first, second);
+
+		if (s == null) {
+			distance = plainDistance(first, second);
+		} else {
+			// The tolerance keeps the bound below distances that are reductions of
+			// several rounded values, as the average
+			if (cutOffValue < Double.POSITIVE_INFINITY
+					&& NormalizedBags.root(normalizedBags.squaredLowerBound(s)) > cutOffValue * (1 + 1e-9))
+				return Double.POSITIVE_INFINITY;
+			distance = distance(s.values[0], s.offsets[0], s.sizes[0], s.values[1], s.offsets[1], s.sizes[1],
+					normalizedBags.getNumAttributes(), cutOffValue, s);
+		}
+
+		return distance > cutOffValue ? Double.POSITIVE_INFINITY : distance;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see core.distance.IBoundedDistance#lowerBound(weka.core.Instances,
+	 * weka.core.Instances)
+	 */
+	@Override
+	public double lowerBound(Instances first, Instances second) throws Exception {
+		NormalizedBags.Scratch s = normalizedBags == null ? null : normalizedBags.prepare(first, second);
+		return s == null ? 0.0 : NormalizedBags.root(normalizedBags.squaredLowerBound(s));
+	}
+
+	/**
+	 * Computes the distance between two bags with the Weka distance function,
+	 * when they cannot be compared through the packed values.
+	 * 
+	 * @param first  First bag as instances.
+	 * @param second Second bag as instances.
+	 * @return Distance between the two bags.
+	 * @throws Exception if occurred an error during distance calculation.
+	 */
+	protected abstract double plainDistance(Instances first, Instances second) throws Exception;
+
+	/**
+	 * Computes the distance between two non-empty bags stored row-major in
+	 * arrays of normalized values.
+	 * 
+	 * @param a             Array with the first bag.
+	 * @param aOffset       Position of the first bag in a.
+	 * @param aSize         Number of instances of the first bag.
+	 * @param b             Array with the second bag.
+	 * @param bOffset       Position of the second bag in b.
+	 * @param bSize         Number of instances of the second bag.
+	 * @param numAttributes Number of attributes per instance.
+	 * @param cutOffValue   The computation can be abandoned once the distance is
+	 *                      known to be greater than this value.
+	 * @param s             Buffers of the calling thread.
+	 * @return Distance between the two bags, or Double.POSITIVE_INFINITY if the
+	 *         computation was abandoned.
+	 */
+	protected abstract double distance(double[] a, int aOffset, int aSize, double[] b, int bOffset, int bSize,
+			int numAttributes, double cutOffValue, NormalizedBags.Scratch s);
+}
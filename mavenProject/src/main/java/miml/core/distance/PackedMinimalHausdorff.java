@@ -0,0 +1,90 @@
+/*    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package miml.core.distance;
+
+import miml.data.MIMLInstances;
+import weka.core.Instances;
+
+/**
+ * Class that implements Minimal Hausdorff metric to measure the distance between 2
+ * bags of a data set on packed and normalized arrays. The distances obtained
+ * are identical to the ones of {@link MinimalHausdorff}, which is used when the
+ * bags cannot be packed (e.g. nominal attributes or missing values).
+ * <p>
+ * When a cut off value is given, pairs of bags whose bounding boxes are farther
+ * than the cut off value are discarded without comparing their instances, and
+ * the distance between two instances is abandoned as soon as its partial sum
+ * exceeds the cut off value or the minimum found so far.
+ *
+ * @author agent
+ * @version 20261018
+ * @see NormalizedBags
+ */
+public class PackedMinimalHausdorff extends PackedHausdorffDistance {
+
+	/** Generated Serial version UID. */
+	private static final long serialVersionUID = -3012264858926353510L;
+
+	public PackedMinimalHausdorff() {
+		super();
+	}
+
+	public PackedMinimalHausdorff(MIMLInstances bags) throws Exception {
+		super(bags);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see miml.core.distance.PackedHausdorffDistance#plainDistance(weka.core.Instances,
+	 * weka.core.Instances)
+	 */
+	@Override
+	protected double plainDistance(Instances first, Instances second) throws Exception {
+		return MinimalHausdorff.distance(dfun, first, second);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see miml.core.distance.PackedHausdorffDistance#distance(double[], int, int,
+	 * double[], int, int, int, double, miml.core.distance.NormalizedBags.Scratch)
+	 */
+	@Override
+	protected double distance(double[] a, int aOffset, int aSize, double[] b, int bOffset, int bSize,
+			int numAttributes, double cutOffValue, NormalizedBags.Scratch s) {
+
+		double bound = NormalizedBags.squaredBound(cutOffValue);
+		double finalDistance = Double.POSITIVE_INFINITY;
+
+		for (int i = 0, u = aOffset; i < aSize; ++i, u += numAttributes) {
+
+			for (int j = 0, v = bOffset; j < bSize; ++j, v += numAttributes) {
+
+				double distance = NormalizedBags.squaredDistance(a, u, b, v, numAttributes,
+						finalDistance < bound ? finalDistance : bound);
+
+				if (distance < finalDistance)
+					finalDistance = distance;
+			}
+		}
+
+		if (finalDistance > bound)
+			return Double.POSITIVE_INFINITY;
+
+		return NormalizedBags.root(finalDistance);
+	}
+}
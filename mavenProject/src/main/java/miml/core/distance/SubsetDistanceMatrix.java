@@ -0,0 +1,122 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package miml.core.distance;
+
+/**
+ * {@link DistanceMatrix} of a subset of the bags of another matrix. Distances
+ * are not copied, they are read from the other matrix, so a matrix computed
+ * once for a data set can be used to cluster several subsets of its bags.
+ *
+ * @author agent
+ * @version 20261018
+ */
+public class SubsetDistanceMatrix extends DistanceMatrix {
+
+	/** For serialization */
+	private static final long serialVersionUID = 4404418962386012519L;
+
+	/** The matrix of all the bags. */
+	protected DistanceMatrix matrix;
+
+	/** Indices in the other matrix of the bags of the subset. */
+	protected int[] indices;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param matrix  The matrix of all the bags.
+	 * @param indices Indices in the matrix of the bags of the subset.
+	 */
+	public SubsetDistanceMatrix(DistanceMatrix matrix, int[] indices) {
+		super(indices.length);
+		this.matrix = matrix;
+		this.indices = indices;
+	}
+
+	@Override
+	public boolean isSinglePrecision() {
+		return matrix.isSinglePrecision();
+	}
+
+	@Override
+	public double get(int i, int j) {
+		return matrix.get(indices[i], indices[j]);
+	}
+
+	@Override
+	public void set(int i, int j, double value) {
+		matrix.set(indices[i], indices[j], value);
+	}
+
+	@Override
+	public double[] getRow(int i, double[] dest) {
+		for (int j = 0; j < size; j++)
+			dest[j] = matrix.get(indices[i], indices[j]);
+		return dest;
+	}
+
+	@Override
+	protected double getValue(long index) {
+		int i = row(index);
+		return matrix.get(indices[i], indices[column(index, i)]);
+	}
+
+	@Override
+	protected void setValue(long index, double value) {
+		int i = row(index);
+		matrix.set(indices[i], indices[column(index, i)], value);
+	}
+
+	/**
+	 * Gets the first bag of a position of the upper triangle of the subset, i.e.
+	 * the greatest i such that index(i, i + 1) is not greater than the position.
+	 *
+	 * @param index The position.
+	 * @return Index of the first bag.
+	 */
+	protected int row(long index) {
+		// Root of the quadratic equation of index(i, i + 1), corrected for the
+		// rounding of the square root
+		double b = 2.0 * size - 1;
+		int i = (int) Math.max(0, Math.floor((b - Math.sqrt(Math.max(0, b * b - 8.0 * index))) / 2));
+		while (i > 0 && index(i, i + 1) > index)
+			i--;
+		while (i < size - 2 && index(i + 1, i + 2) <= index)
+			i++;
+		return i;
+	}
+
+	/**
+	 * Gets the second bag of a position of the upper triangle of the subset.
+	 *
+	 * @param index The position.
+	 * @param i     Index of the first bag, see {@link #row(long)}.
+	 * @return Index of the second bag.
+	 */
+	protected int column(long index, int i) {
+		return (int) (index - index(i, i + 1)) + i + 1;
+	}
+
+	/**
+	 * Gets the indices in the other matrix of the bags of the subset.
+	 *
+	 * @return The indices.
+	 */
+	public int[] getIndices() {
+		return indices;
+	}
+}
@@ -0,0 +1,675 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package miml.data;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Utils;
+
+/**
+ *
+ * Streaming reader of MIML datasets in ARFF format. The header is parsed when
+ * the reader is created and the bags are read one at a time with
+ * {@link #next()}: the instances of the current bag are parsed directly into a
+ * row-major array of doubles that is reused for the next bag, so the memory
+ * used does not depend on the number of bags. The bags read can also be packed
+ * with {@link #readPackedBags(List)} without creating Weka objects.
+ * <p>
+ * Data must be in dense format, with the instances of the relational attribute
+ * as a quoted string where instances are separated by "\n", as written by
+ * Weka. Nominal values inside the bags may be quoted, and then contain commas.
+ * The reader is used by {@link MIMLBinaryFile} to convert arff files without
+ * loading them.
+ *
+ * @author agent
+ * @version 20261018
+ *
+ */
+public class ArffBagReader implements Closeable {
+
+	/** The source of the data. */
+	protected BufferedReader reader;
+
+	/** Structure of the dataset, without bags. */
+	protected Instances header;
+
+	/** Index of the relational attribute with the bags. */
+	protected int bagAttribute = -1;
+
+	/** Structure of the instances of the bags. */
+	protected Instances bagHeader;
+
+	/** Number of lines read. */
+	protected int lineNumber;
+
+	/** Index of the current bag, or -1 before the first one. */
+	protected int bagIndex = -1;
+
+	/** Values of the attributes of the current bag, as stored by Weka. */
+	protected double[] attributeValues;
+
+	/** String values of the string attributes of the current bag. */
+	protected String[] stringValues;
+
+	/** Values of the instances of the current bag, stored row-major. */
+	protected double[] values = new double[1024];
+
+	/** Number of instances of the current bag. */
+	protected int numInstances;
+
+	/** Buffer for the current field. */
+	protected StringBuilder field = new StringBuilder();
+
+	/**
+	 * Constructor that reads the header of a file.
+	 *
+	 * @param arffFilePath Path of the .arff file.
+	 * @throws IOException If the file cannot be read or the header is not valid.
+	 */
+	public ArffBagReader(String arffFilePath) throws IOException {
+		this(new InputStreamReader(new FileInputStream(arffFilePath), StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Constructor that reads the header.
+	 *
+	 * @param reader The source of the data.
+	 * @throws IOException If the data cannot be read or the header is not valid.
+	 */
+	public ArffBagReader(Reader reader) throws IOException {
+		this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader, 1 << 16);
+		try {
+			readHeader();
+		} catch (IOException e) {
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Reads the header up to the @data declaration.
+	 *
+	 * @throws IOException If the header is not valid.
+	 */
+	protected void readHeader() throws IOException {
+
+		String relationName = null;
+		ArrayList<Attribute> attributes = new ArrayList<Attribute>();
+		String line;
+
+		while ((line = nextLine()) != null) {
+			String keyword = keyword(line);
+			if (keyword.equals("@relation")) {
+				relationName = Utils.unquote(line.substring(keyword.length()).trim());
+			} else if (keyword.equals("@attribute")) {
+				Attribute attribute = parseAttribute(line);
+				if (attribute.type() == Attribute.RELATIONAL) {
+					if (bagAttribute >= 0)
+						throw error("Only one relational attribute is supported");
+					bagAttribute = attributes.size();
+				}
+				attributes.add(attribute);
+			} else if (keyword.equals("@data")) {
+				break;
+			} else {
+				throw error("Unexpected line in header");
+			}
+		}
+
+		if (line == null)
+			throw error("Missing @data declaration");
+		if (bagAttribute < 0)
+			throw error("Missing relational attribute");
+
+		header = new Instances(relationName == null ? "" : relationName, attributes, 0);
+		bagHeader = header.attribute(bagAttribute).relation();
+		attributeValues = new double[header.numAttributes()];
+		stringValues = new String[header.numAttributes()];
+	}
+
+	/**
+	 * Parses an attribute declaration, reading the declarations of the
+	 * attributes of a relational one.
+	 *
+	 * @param line The line of the declaration.
+	 * @return The attribute.
+	 * @throws IOException If the declaration is not valid.
+	 */
+	protected Attribute parseAttribute(String line) throws IOException {
+
+		String rest = line.trim().substring("@attribute".length()).trim();
+		int end = endOfName(rest);
+		String name = Utils.unquote(rest.substring(0, end));
+		String type = rest.substring(end).trim();
+		String lowerType = type.toLowerCase();
+
+		if (type.startsWith("{")) {
+			int close = type.lastIndexOf('}');
+			if (close < 0)
+				throw error("Unterminated nominal values");
+			List<String> values = new ArrayList<String>();
+			for (String value : splitValues(type.substring(1, close)))
+				values.add(value);
+			return new Attribute(name, values);
+		}
+		if (lowerType.equals("numeric") || lowerType.equals("real") || lowerType.equals("integer"))
+			return new Attribute(name);
+		if (lowerType.equals("string"))
+			return new Attribute(name, (List<String>) null);
+		if (lowerType.equals("relational")) {
+			ArrayList<Attribute> bagAttributes = new ArrayList<Attribute>();
+			String inner;
+			while ((inner = nextLine()) != null && !keyword(inner).equals("@end")) {
+				if (!keyword(inner).equals("@attribute"))
+					throw error("Unexpected line in relational attribute");
+				Attribute attribute = parseAttribute(inner);
+				if (!attribute.isNumeric() && !attribute.isNominal())
+					throw error("Only numeric and nominal attributes are supported in bags");
+				bagAttributes.add(attribute);
+			}
+			if (inner == null)
+				throw error("Missing @end of relational attribute");
+			return new Attribute(name, new Instances(name, bagAttributes, 0));
+		}
+		throw error("Unsupported attribute type: " + type);
+	}
+
+	/**
+	 * Reads the next bag.
+	 *
+	 * @return False if there are no more bags.
+	 * @throws IOException If the data cannot be read or are not valid.
+	 */
+	public boolean next() throws IOException {
+		String line = nextLine();
+		if (line == null)
+			return false;
+		if (line.startsWith("{"))
+			throw error("Sparse format is not supported");
+		parseBag(line);
+		bagIndex++;
+		return true;
+	}
+
+	/**
+	 * Parses a data line into the buffers of the current bag.
+	 *
+	 * @param line The line.
+	 * @throws IOException If the line is not valid.
+	 */
+	protected void parseBag(String line) throws IOException {
+
+		int pos = 0;
+		for (int a = 0; a < header.numAttributes(); a++) {
+			if (a > 0) {
+				pos = skipSpaces(line, pos);
+				if (pos >= line.length() || line.charAt(pos) != ',')
+					throw error("Expected " + header.numAttributes() + " values");
+				pos++;
+			}
+			pos = readField(line, skipSpaces(line, pos));
+			stringValues[a] = null;
+
+			Attribute attribute = header.attribute(a);
+			if (a == bagAttribute) {
+				attributeValues[a] = Utils.missingValue();
+				parseInstances();
+			} else if (isMissing(field)) {
+				attributeValues[a] = Utils.missingValue();
+			} else if (attribute.isString()) {
+				stringValues[a] = field.toString();
+				attributeValues[a] = 0;
+			} else {
+				attributeValues[a] = parseValue(attribute, field.toString());
+				if (attribute.isNominal())
+					stringValues[a] = attribute.value((int) attributeValues[a]);
+			}
+		}
+		if (skipSpaces(line, pos) < line.length())
+			throw error("Too many values");
+	}
+
+	/**
+	 * Parses the instances of the relational value in the field buffer.
+	 *
+	 * @throws IOException If the instances are not valid.
+	 */
+	protected void parseInstances() throws IOException {
+
+		int numAttributes = bagHeader.numAttributes();
+		int length = field.length();
+		numInstances = 0;
+
+		int pos = 0;
+		while (pos < length) {
+			// Each line of the field is an instance
+			int end = pos;
+			while (end < length && field.charAt(end) != '\n')
+				end++;
+			if (skipSpaces(field, pos) < end) {
+				ensureCapacity((numInstances + 1) * numAttributes);
+				int offset = numInstances * numAttributes;
+				int start = pos;
+				for (int k = 0; k < numAttributes; k++) {
+					int comma = endOfValue(start, end);
+					if (comma == end && k < numAttributes - 1)
+						throw error("Expected " + numAttributes + " values in an instance of bag " + (bagIndex + 1));
+					// A quoted question mark is a value, not a missing one
+					String token = field.substring(start, comma).trim();
+					values[offset + k] = token.equals("?") ? Utils.missingValue()
+							: parseValue(bagHeader.attribute(k), Utils.unquote(token));
+					start = comma + 1;
+				}
+				if (start <= end)
+					throw error("Too many values in an instance of bag " + (bagIndex + 1));
+				numInstances++;
+			}
+			pos = end + 1;
+		}
+	}
+
+	/**
+	 * Gets the end of a value of an instance in the field buffer. Quoted values,
+	 * as Weka writes nominal values with spaces or commas, may contain commas.
+	 *
+	 * @param pos Position of the beginning of the value.
+	 * @param end End of the instance.
+	 * @return The position of the comma after the value, or end if it is the last
+	 *         one.
+	 * @throws IOException If a quoted value is not terminated.
+	 */
+	protected int endOfValue(int pos, int end) throws IOException {
+		while (pos < end && Character.isWhitespace(field.charAt(pos)))
+			pos++;
+		if (pos < end && (field.charAt(pos) == '\'' || field.charAt(pos) == '"')) {
+			char quote = field.charAt(pos++);
+			while (pos < end && field.charAt(pos) != quote)
+				pos += field.charAt(pos) == '\\' ? 2 : 1;
+			if (pos >= end)
+				throw error("Unterminated quoted value in an instance of bag " + (bagIndex + 1));
+			pos++;
+		}
+		while (pos < end && field.charAt(pos) != ',')
+			pos++;
+		return pos;
+	}
+
+	/**
+	 * Parses a value of an attribute as stored by Weka.
+	 *
+	 * @param attribute The attribute.
+	 * @param token     The value.
+	 * @return The value as double.
+	 * @throws IOException If the value is not valid.
+	 */
+	protected double parseValue(Attribute attribute, String token) throws IOException {
+		if (attribute.isNominal()) {
+			int index = attribute.indexOfValue(token);
+			if (index < 0)
+				throw error("Nominal value not declared in header: " + token);
+			return index;
+		}
+		try {
+			return Double.parseDouble(token);
+		} catch (NumberFormatException e) {
+			throw error("Number expected: " + token);
+		}
+	}
+
+	/**
+	 * Reads a field, quoted or not, into the field buffer.
+	 *
+	 * @param line The line.
+	 * @param pos  Position of the first character of the field.
+	 * @return The position after the field.
+	 * @throws IOException If the field is not valid.
+	 */
+	protected int readField(String line, int pos) throws IOException {
+		field.setLength(0);
+		if (pos < line.length() && (line.charAt(pos) == '\'' || line.charAt(pos) == '"')) {
+			char quote = line.charAt(pos++);
+			while (pos < line.length() && line.charAt(pos) != quote) {
+				char c = line.charAt(pos++);
+				if (c == '\\' && pos < line.length()) {
+					c = line.charAt(pos++);
+					switch (c) {
+					case 'n':
+						c = '\n';
+						break;
+					case 'r':
+						c = '\r';
+						break;
+					case 't':
+						c = '\t';
+						break;
+					default:
+						break;
+					}
+				}
+				field.append(c);
+			}
+			if (pos >= line.length())
+				throw error("Unterminated quoted value");
+			return pos + 1;
+		}
+		int end = pos;
+		while (end < line.length() && line.charAt(end) != ',')
+			end++;
+		field.append(line, pos, end);
+		while (field.length() > 0 && Character.isWhitespace(field.charAt(field.length() - 1)))
+			field.setLength(field.length() - 1);
+		return end;
+	}
+
+	/**
+	 * Reads the next line that is not empty or a comment.
+	 *
+	 * @return The line, or null at the end of the data.
+	 * @throws IOException If the data cannot be read.
+	 */
+	protected String nextLine() throws IOException {
+		String line;
+		while ((line = reader.readLine()) != null) {
+			lineNumber++;
+			String trimmed = line.trim();
+			if (!trimmed.isEmpty() && !trimmed.startsWith("%"))
+				return trimmed;
+		}
+		return null;
+	}
+
+	/**
+	 * Grows the buffer of values of the current bag if needed.
+	 *
+	 * @param capacity The number of values needed.
+	 */
+	protected void ensureCapacity(int capacity) {
+		if (values.length < capacity)
+			values = Arrays.copyOf(values, Math.max(capacity, values.length * 2));
+	}
+
+	/**
+	 * Gets the structure of the dataset. It has no bags, they have to be read
+	 * with {@link #next()}.
+	 *
+	 * @return The header.
+	 */
+	public Instances getHeader() {
+		return header;
+	}
+
+	/**
+	 * Gets the index of the relational attribute with the bags.
+	 *
+	 * @return The index of the attribute.
+	 */
+	public int getBagAttribute() {
+		return bagAttribute;
+	}
+
+	/**
+	 * Gets the number of attributes of the instances of the bags.
+	 *
+	 * @return The number of attributes.
+	 */
+	public int getNumAttributes() {
+		return bagHeader.numAttributes();
+	}
+
+	/**
+	 * Gets the index of the current bag.
+	 *
+	 * @return The number of bags read minus one.
+	 */
+	public int getBagIndex() {
+		return bagIndex;
+	}
+
+	/**
+	 * Gets the number of instances of the current bag.
+	 *
+	 * @return The number of instances.
+	 */
+	public int getNumInstances() {
+		return numInstances;
+	}
+
+	/**
+	 * Gets the values of the instances of the current bag. The array is reused by
+	 * the next bag and it may be longer than needed.
+	 *
+	 * @return The values stored row-major.
+	 */
+	public double[] getValues() {
+		return values;
+	}
+
+	/**
+	 * Gets a value of an instance of the current bag.
+	 *
+	 * @param instanceIndex  The index of the instance in the bag.
+	 * @param attributeIndex The index of the attribute.
+	 * @return The value.
+	 */
+	public double value(int instanceIndex, int attributeIndex) {
+		return values[instanceIndex * bagHeader.numAttributes() + attributeIndex];
+	}
+
+	/**
+	 * Gets the value of an attribute of the current bag, e.g. a label, as stored
+	 * by Weka. The value of the relational attribute is missing.
+	 *
+	 * @param attributeIndex The index of the attribute.
+	 * @return The value.
+	 */
+	public double getAttributeValue(int attributeIndex) {
+		return attributeValues[attributeIndex];
+	}
+
+	/**
+	 * Gets the value of a nominal or string attribute of the current bag, e.g.
+	 * its identifier.
+	 *
+	 * @param attributeIndex The index of the attribute.
+	 * @return The value, or null if it is missing or the attribute is numeric.
+	 */
+	public String getStringValue(int attributeIndex) {
+		return stringValues[attributeIndex];
+	}
+
+	/**
+	 * Builds a {@link MIMLBag} with the current bag. Each bag has its own copy of
+	 * the header, so the bags built are independent and are not retained by the
+	 * reader.
+	 *
+	 * @return The bag.
+	 * @throws Exception To be handled in an upper level.
+	 */
+	public MIMLBag toMIMLBag() throws Exception {
+
+		int numAttributes = bagHeader.numAttributes();
+		Instances bag = new Instances(bagHeader, numInstances);
+		for (int i = 0; i < numInstances; i++)
+			bag.add(new DenseInstance(1.0, Arrays.copyOfRange(values, i * numAttributes, (i + 1) * numAttributes)));
+
+		Instances dataset = new Instances(header, 0).stringFreeStructure();
+		double[] instanceValues = attributeValues.clone();
+		instanceValues[bagAttribute] = dataset.attribute(bagAttribute).addRelation(bag);
+		for (int a = 0; a < instanceValues.length; a++)
+			if (dataset.attribute(a).isString() && stringValues[a] != null)
+				instanceValues[a] = dataset.attribute(a).addStringValue(stringValues[a]);
+
+		Instance instance = new DenseInstance(1.0, instanceValues);
+		instance.setDataset(dataset);
+		return new MIMLBag(instance);
+	}
+
+	/**
+	 * Reads the remaining bags in packed form, without creating Weka objects.
+	 *
+	 * @param attributeValues If not null, the values of the attributes of each bag
+	 *                        (e.g. the labels), as returned by
+	 *                        {@link #getAttributeValue(int)}, are added to it.
+	 * @return The bags read.
+	 * @throws IOException If the data cannot be read or are not valid.
+	 */
+	public PackedBags readPackedBags(List<double[]> attributeValues) throws IOException {
+
+		int numAttributes = bagHeader.numAttributes();
+		double[] packed = new double[1024];
+		int[] offsets = new int[1024];
+		int numBags = 0;
+		long total = 0;
+
+		while (next()) {
+			if (total + numInstances > Integer.MAX_VALUE
+					|| (total + numInstances) * numAttributes > Integer.MAX_VALUE - 8)
+				throw new IllegalArgumentException("Too many values to be packed");
+
+			int length = (int) total * numAttributes;
+			int bagLength = numInstances * numAttributes;
+			if (packed.length < length + bagLength)
+				packed = Arrays.copyOf(packed,
+						(int) Math.min(Integer.MAX_VALUE - 8, Math.max(length + bagLength, 2L * packed.length)));
+			System.arraycopy(values, 0, packed, length, bagLength);
+
+			if (offsets.length < numBags + 2)
+				offsets = Arrays.copyOf(offsets, offsets.length * 2);
+			offsets[numBags++] = (int) total;
+			total += numInstances;
+
+			if (attributeValues != null)
+				attributeValues.add(this.attributeValues.clone());
+		}
+		offsets[numBags] = (int) total;
+
+		return new PackedBags(Arrays.copyOf(packed, (int) total * numAttributes), Arrays.copyOf(offsets, numBags + 1),
+				numAttributes);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+
+	/**
+	 * Builds an exception for the current line.
+	 *
+	 * @param message The description of the error.
+	 * @return The exception.
+	 */
+	protected IOException error(String message) {
+		return new IOException(message + ", line " + lineNumber);
+	}
+
+	/**
+	 * Gets the keyword of a line of the header in lower case.
+	 *
+	 * @param line The line.
+	 * @return The first word of the line.
+	 */
+	protected static String keyword(String line) {
+		int end = 0;
+		while (end < line.length() && !Character.isWhitespace(line.charAt(end)))
+			end++;
+		return line.substring(0, end).toLowerCase();
+	}
+
+	/**
+	 * Gets the end of a name, quoted or not, at the beginning of a string.
+	 *
+	 * @param s The string.
+	 * @return The position after the name.
+	 */
+	protected static int endOfName(String s) {
+		if (!s.isEmpty() && (s.charAt(0) == '\'' || s.charAt(0) == '"')) {
+			char quote = s.charAt(0);
+			int pos = 1;
+			while (pos < s.length() && s.charAt(pos) != quote)
+				pos += s.charAt(pos) == '\\' ? 2 : 1;
+			return Math.min(pos + 1, s.length());
+		}
+		int end = 0;
+		while (end < s.length() && !Character.isWhitespace(s.charAt(end)) && s.charAt(end) != '{')
+			end++;
+		return end;
+	}
+
+	/**
+	 * Splits the values of a nominal attribute declaration.
+	 *
+	 * @param s The values separated by commas, without braces.
+	 * @return The values, unquoted.
+	 */
+	protected static List<String> splitValues(String s) {
+		List<String> values = new ArrayList<String>();
+		int pos = 0;
+		while (pos < s.length()) {
+			pos = skipSpaces(s, pos);
+			int end = pos;
+			if (end < s.length() && (s.charAt(end) == '\'' || s.charAt(end) == '"'))
+				end = endOfName(s.substring(end)) + end;
+			while (end < s.length() && s.charAt(end) != ',')
+				end++;
+			String value = s.substring(pos, end).trim();
+			if (!value.isEmpty())
+				values.add(Utils.unquote(value));
+			pos = end + 1;
+		}
+		return values;
+	}
+
+	/**
+	 * Skips white spaces.
+	 *
+	 * @param s   The characters.
+	 * @param pos The starting position.
+	 * @return The position of the first character that is not a white space.
+	 */
+	protected static int skipSpaces(CharSequence s, int pos) {
+		while (pos < s.length() && Character.isWhitespace(s.charAt(pos)))
+			pos++;
+		return pos;
+	}
+
+	/**
+	 * Checks whether the field buffer is a missing value.
+	 *
+	 * @param field The field.
+	 * @return True if it is "?".
+	 */
+	protected static boolean isMissing(CharSequence field) {
+		return field.length() == 1 && field.charAt(0) == '?';
+	}
+}
@@ -0,0 +1,219 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package miml.data;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Random;
+
+import mulan.data.InvalidDataFormatException;
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ *
+ * Sample of the bags of a dataset stored as the indices of the bags drawn. The
+ * bags are the same ones that Weka's Resample filter selects with the same
+ * seed, but the sample is only materialized as a dataset whose instances share
+ * the relational values of the original bags, either with a copy of each bag
+ * drawn or with each distinct bag weighted by the number of times it was drawn.
+ *
+ * @author agent
+ * @version 20261018
+ *
+ */
+public class BagSample implements Serializable {
+
+	/** For serialization */
+	private static final long serialVersionUID = 2815146702945123079L;
+
+	/** Number of bags of the sampled dataset. */
+	protected int numBags;
+
+	/** Indices of the bags in the order they are drawn. */
+	protected int[] indices;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param numBags Number of bags of the sampled dataset.
+	 * @param indices Indices of the bags drawn.
+	 */
+	public BagSample(int numBags, int[] indices) {
+		this.numBags = numBags;
+		this.indices = indices;
+	}
+
+	/**
+	 * Draws a sample of the bags of a dataset as Weka's Resample filter does.
+	 *
+	 * @param numBags               Number of bags of the dataset.
+	 * @param percentage            Size of the sample as a percentage of the
+	 *                              number of bags.
+	 * @param sampleWithReplacement Whether a bag can be drawn several times.
+	 * @param seed                  Seed for randomization.
+	 * @return The sample.
+	 */
+	public static BagSample resample(int numBags, double percentage, boolean sampleWithReplacement, int seed) {
+
+		int sampleSize = (int) (numBags * percentage / 100);
+		Random random = new Random(seed);
+
+		if (sampleWithReplacement) {
+			int[] indices = new int[sampleSize];
+			for (int i = 0; i < sampleSize; i++)
+				indices[i] = random.nextInt(numBags);
+			return new BagSample(numBags, indices);
+		}
+
+		if (sampleSize > numBags) {
+			sampleSize = numBags;
+			System.err.println("Resampling with replacement can only use percentage <=100% - Using full dataset!");
+		}
+
+		// The ith draw takes the bag in a random position of the bags not drawn yet,
+		// which is located in a Fenwick tree of the remaining bags
+		int[] tree = new int[numBags + 1];
+		for (int i = 1; i <= numBags; i++) {
+			tree[i]++;
+			int parent = i + (i & -i);
+			if (parent <= numBags)
+				tree[parent] += tree[i];
+		}
+		int highBit = Integer.highestOneBit(Math.max(numBags, 1));
+
+		int[] indices = new int[sampleSize];
+		for (int i = 0; i < sampleSize; i++) {
+			int rank = random.nextInt(numBags - i);
+			int position = 0;
+			for (int step = highBit; step > 0; step >>= 1) {
+				int next = position + step;
+				if (next <= numBags && tree[next] <= rank) {
+					position = next;
+					rank -= tree[next];
+				}
+			}
+			indices[i] = position;
+			for (int j = position + 1; j <= numBags; j += j & -j)
+				tree[j]--;
+		}
+		Arrays.sort(indices);
+
+		return new BagSample(numBags, indices);
+	}
+
+	/**
+	 * Gets the number of bags drawn.
+	 *
+	 * @return The size of the sample.
+	 */
+	public int size() {
+		return indices.length;
+	}
+
+	/**
+	 * Gets the number of bags of the sampled dataset.
+	 *
+	 * @return The number of bags.
+	 */
+	public int getNumBags() {
+		return numBags;
+	}
+
+	/**
+	 * Gets the index of a bag drawn.
+	 *
+	 * @param i The position of the draw.
+	 * @return The index of the bag in the sampled dataset.
+	 */
+	public int getIndex(int i) {
+		return indices[i];
+	}
+
+	/**
+	 * Gets the number of times each bag of the dataset was drawn.
+	 *
+	 * @return An array with the multiplicity of each bag.
+	 */
+	public int[] getCounts() {
+		int[] counts = new int[numBags];
+		for (int index : indices)
+			counts[index]++;
+		return counts;
+	}
+
+	/**
+	 * Gets the number of distinct bags drawn.
+	 *
+	 * @return The number of distinct bags.
+	 */
+	public int getNumDistinct() {
+		int distinct = 0;
+		for (int count : getCounts())
+			if (count > 0)
+				distinct++;
+		return distinct;
+	}
+
+	/**
+	 * Builds a dataset with a bag for each draw, in the order they were drawn. The
+	 * bags share their relational values with the original dataset.
+	 *
+	 * @param data The sampled dataset.
+	 * @return The sample as a dataset.
+	 */
+	public Instances toInstances(Instances data) {
+		Instances sample = new Instances(data, indices.length);
+		for (int index : indices)
+			sample.add(data.instance(index));
+		return sample;
+	}
+
+	/**
+	 * Builds a dataset with each distinct bag drawn once, in the order of the
+	 * original dataset, whose weight is multiplied by the number of times it was
+	 * drawn. The bags share their relational values with the original dataset.
+	 *
+	 * @param data The sampled dataset.
+	 * @return The sample as a weighted dataset.
+	 */
+	public Instances toWeightedInstances(Instances data) {
+		int[] counts = getCounts();
+		Instances sample = new Instances(data, getNumDistinct());
+		for (int i = 0; i < numBags; i++) {
+			if (counts[i] > 0) {
+				Instance bag = data.instance(i);
+				sample.add(bag);
+				sample.lastInstance().setWeight(bag.weight() * counts[i]);
+			}
+		}
+		return sample;
+	}
+
+	/**
+	 * Builds a MIML dataset with the sample.
+	 *
+	 * @param data     The sampled dataset.
+	 * @param weighted Whether each distinct bag is included once with its
+	 *                 multiplicity as weight.
+	 * @return The sample as a MIML dataset.
+	 * @throws InvalidDataFormatException To be handled in an upper level.
+	 */
+	public MIMLInstances toMIMLInstances(MIMLInstances data, boolean weighted) throws InvalidDataFormatException {
+		Instances sample = weighted ? toWeightedInstances(data.getDataSet()) : toInstances(data.getDataSet());
+		return new MIMLInstances(sample, data.getLabelsMetaData());
+	}
+}
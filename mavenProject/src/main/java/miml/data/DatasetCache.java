@@ -0,0 +1,344 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package miml.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import mulan.data.InvalidDataFormatException;
+import weka.core.Instances;
+
+/**
+ *
+ * Cache of the datasets loaded in the process, so that the same files are
+ * parsed only once when several experiments use them. Datasets are identified
+ * by the path and the modification time of their files, and the least recently
+ * used ones are discarded when the estimated size of the datasets cached
+ * exceeds a maximum. The cache is thread-safe and a dataset requested by
+ * several threads at the same time is loaded only once.
+ * <p>
+ * Each request gets its own copy of the dataset, but the bags are shared with
+ * the cached dataset, so they must not be modified.
+ *
+ * @author agent
+ * @version 20261018
+ *
+ */
+public class DatasetCache {
+
+	/** The cache shared in the process. */
+	protected static final DatasetCache INSTANCE = new DatasetCache(Runtime.getRuntime().maxMemory() / 4);
+
+	/** Datasets cached, from the least to the most recently used. */
+	protected LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+
+	/** Maximum estimated size in bytes of the datasets cached. */
+	protected long maxSize;
+
+	/** Estimated size in bytes of the datasets cached. */
+	protected long size;
+
+	/** Number of requests served from the cache. */
+	protected long hits;
+
+	/** Number of requests that loaded the dataset. */
+	protected long misses;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param maxSize Maximum estimated size in bytes of the datasets cached. If it
+	 *                is 0 datasets are not cached.
+	 */
+	public DatasetCache(long maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Gets the cache shared in the process. Its default maximum size is a quarter
+	 * of the maximum memory of the JVM.
+	 *
+	 * @return The cache.
+	 */
+	public static DatasetCache getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Gets a dataset, loading it if it is not cached. The file can be either an
+	 * arff file or a binary file as described in {@link MIMLBinaryFile}.
+	 *
+	 * @param filePath             Path of the file with the dataset.
+	 * @param xmlLabelsDefFilePath Path of .xml file with information about labels.
+	 * @return A copy of the dataset.
+	 * @throws InvalidDataFormatException To be handled in an upper level.
+	 */
+	public MIMLInstances load(String filePath, String xmlLabelsDefFilePath) throws InvalidDataFormatException {
+
+		Key key = new Key(filePath, xmlLabelsDefFilePath);
+		Entry entry;
+		boolean loader = false;
+		synchronized (this) {
+			entry = entries.get(key);
+			if (entry == null && maxSize > 0) {
+				entry = new Entry(
+						new FutureTask<MIMLInstances>(() -> MIMLBinaryFile.load(filePath, xmlLabelsDefFilePath)));
+				entries.put(key, entry);
+				loader = true;
+				misses++;
+			} else if (entry != null) {
+				hits++;
+			}
+		}
+		if (entry == null)
+			return MIMLBinaryFile.load(filePath, xmlLabelsDefFilePath);
+
+		if (loader)
+			entry.task.run();
+		MIMLInstances data;
+		try {
+			data = entry.task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InvalidDataFormatException("Interrupted while loading " + filePath);
+		} catch (ExecutionException e) {
+			synchronized (this) {
+				entries.remove(key, entry);
+			}
+			if (e.getCause() instanceof InvalidDataFormatException)
+				throw (InvalidDataFormatException) e.getCause();
+			throw new RuntimeException(e.getCause());
+		}
+
+		if (loader) {
+			synchronized (this) {
+				entry.size = estimateSize(data);
+				if (entries.get(key) == entry)
+					size += entry.size;
+				evict();
+			}
+		}
+
+		MIMLInstances copy = new MIMLInstances(new Instances(data.getDataSet()), data.getLabelsMetaData());
+		copy.packedBags = data.packedBags;
+		return copy;
+	}
+
+	/**
+	 * Discards the least recently used datasets until the size of the cache does
+	 * not exceed the maximum. Datasets still being loaded are kept.
+	 */
+	protected synchronized void evict() {
+		Iterator<Entry> iterator = entries.values().iterator();
+		while (size > maxSize && iterator.hasNext()) {
+			Entry entry = iterator.next();
+			if (entry.task.isDone()) {
+				size -= entry.size;
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * Discards all the datasets cached.
+	 */
+	public synchronized void clear() {
+		Iterator<Entry> iterator = entries.values().iterator();
+		while (iterator.hasNext()) {
+			Entry entry = iterator.next();
+			if (entry.task.isDone()) {
+				size -= entry.size;
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * Estimates the memory used by a dataset.
+	 *
+	 * @param data The dataset.
+	 * @return The estimated size in bytes.
+	 */
+	protected static long estimateSize(MIMLInstances data) {
+		Instances dataSet = data.getDataSet();
+		long numInstances = 0;
+		for (int i = 0; i < dataSet.numInstances(); i++)
+			numInstances += dataSet.instance(i).relationalValue(1).numInstances();
+		long bagAttributes = data.getNumAttributesInABag();
+		// Each instance is a DenseInstance with its array of values, and the
+		// packed copy of the bags is counted as well
+		return numInstances * (48 + 16 * bagAttributes) + dataSet.numInstances() * (80 + 8L * dataSet.numAttributes());
+	}
+
+	/**
+	 * Gets the maximum estimated size of the datasets cached.
+	 *
+	 * @return The maximum size in bytes.
+	 */
+	public synchronized long getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Sets the maximum estimated size of the datasets cached, discarding datasets
+	 * if needed.
+	 *
+	 * @param maxSize The maximum size in bytes. If it is 0 datasets are not
+	 *                cached.
+	 */
+	public synchronized void setMaxSize(long maxSize) {
+		this.maxSize = maxSize;
+		evict();
+	}
+
+	/**
+	 * Gets the estimated size of the datasets cached.
+	 *
+	 * @return The size in bytes.
+	 */
+	public synchronized long getSize() {
+		return size;
+	}
+
+	/**
+	 * Gets the number of datasets cached.
+	 *
+	 * @return The number of datasets.
+	 */
+	public synchronized int getNumDatasets() {
+		return entries.size();
+	}
+
+	/**
+	 * Gets the number of requests served from the cache.
+	 *
+	 * @return The number of hits.
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Gets the number of requests that loaded the dataset.
+	 *
+	 * @return The number of misses.
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Identifier of a dataset by the path, the modification time and the length
+	 * of its files.
+	 */
+	protected static class Key {
+
+		/** Canonical paths of the files. */
+		protected String filePath, xmlFilePath;
+
+		/** Modification times of the files. */
+		protected long fileTime, xmlFileTime;
+
+		/** Lengths of the files. */
+		protected long fileLength, xmlFileLength;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param filePath    Path of the file with the dataset.
+		 * @param xmlFilePath Path of .xml file with information about labels.
+		 */
+		protected Key(String filePath, String xmlFilePath) {
+			File file = new File(filePath);
+			this.filePath = canonicalPath(file);
+			fileTime = file.lastModified();
+			fileLength = file.length();
+			if (xmlFilePath != null) {
+				File xmlFile = new File(xmlFilePath);
+				this.xmlFilePath = canonicalPath(xmlFile);
+				xmlFileTime = xmlFile.lastModified();
+				xmlFileLength = xmlFile.length();
+			}
+		}
+
+		/**
+		 * Gets the canonical path of a file, or the absolute one if it cannot be
+		 * resolved.
+		 *
+		 * @param file The file.
+		 * @return The path.
+		 */
+		protected static String canonicalPath(File file) {
+			try {
+				return file.getCanonicalPath();
+			} catch (IOException e) {
+				return file.getAbsolutePath();
+			}
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key))
+				return false;
+			Key key = (Key) o;
+			return filePath.equals(key.filePath) && Objects.equals(xmlFilePath, key.xmlFilePath)
+					&& fileTime == key.fileTime && xmlFileTime == key.xmlFileTime && fileLength == key.fileLength
+					&& xmlFileLength == key.xmlFileLength;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(filePath, xmlFilePath, fileTime, xmlFileTime, fileLength, xmlFileLength);
+		}
+	}
+
+	/**
+	 * Dataset cached, which may be still being loaded.
+	 */
+	protected static class Entry {
+
+		/** Task that loads the dataset. */
+		protected FutureTask<MIMLInstances> task;
+
+		/** Estimated size in bytes, set once loaded. */
+		protected long size;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param task Task that loads the dataset.
+		 */
+		protected Entry(FutureTask<MIMLInstances> task) {
+			this.task = task;
+		}
+	}
+
+	/**
+	 * Gets a summary of the use of the cache.
+	 *
+	 * @return The number of datasets, size, hits and misses.
+	 */
+	@Override
+	public synchronized String toString() {
+		return "DatasetCache [datasets=" + entries.size() + ", size=" + size + ", hits=" + hits + ", misses=" + misses
+				+ "]";
+	}
+}
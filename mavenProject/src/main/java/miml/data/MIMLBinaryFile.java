@@ -0,0 +1,718 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package miml.data;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import mulan.data.InvalidDataFormatException;
+import mulan.data.LabelNode;
+import mulan.data.LabelNodeImpl;
+import mulan.data.LabelsMetaData;
+import mulan.data.LabelsMetaDataImpl;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Utils;
+
+/**
+ *
+ * MIML dataset stored in a binary columnar file. The file contains the header
+ * of the dataset, the names and hierarchy of the labels, the values of the
+ * attributes of each bag, the offsets of the bags and a block with the values of all the instances
+ * of the bags stored row-major, in double or single precision. The file is
+ * memory-mapped when it is opened, in segments of at most 1 GiB, so the values
+ * of the bags are read on demand without parsing them.
+ * <p>
+ * Weights of the bags are stored, weights of the instances inside the bags are
+ * not.
+ *
+ * @author agent
+ * @version 20261018
+ *
+ */
+public class MIMLBinaryFile {
+
+	/** Identifier at the beginning of the file ("MIML"). */
+	public static final int MAGIC = 0x4D494D4C;
+
+	/** Version of the format. */
+	public static final int VERSION = 2;
+
+	/** Maximum number of bytes mapped per segment. */
+	protected static final long SEGMENT_BYTES = 1L << 30;
+
+	/** Structure of the dataset, without bags. */
+	protected Instances header;
+
+	/** Information about labels. */
+	protected LabelsMetaData labelsMetaData;
+
+	/** Index of the relational attribute with the bags. */
+	protected int bagAttribute;
+
+	/** Number of bags. */
+	protected int numBags;
+
+	/** Number of attributes of the instances of the bags. */
+	protected int numAttributes;
+
+	/** Offset (in instances) of the first instance of each bag. */
+	protected int[] bagOffsets;
+
+	/** Weight of each bag. */
+	protected double[] weights;
+
+	/** Values of the attributes of the bags, stored row-major. */
+	protected DoubleBuffer attributeValues;
+
+	/** Values of the string attributes, referenced by attributeValues. */
+	protected String[] strings;
+
+	/** Whether the values of the instances are stored as floats. */
+	protected boolean singlePrecision;
+
+	/** Number of values of the instances per segment. */
+	protected long segmentValues;
+
+	/** Segments of the values of the instances in double precision. */
+	protected DoubleBuffer[] doubleSegments;
+
+	/** Segments of the values of the instances in single precision. */
+	protected FloatBuffer[] floatSegments;
+
+	/**
+	 * Constructor that memory-maps a file.
+	 *
+	 * @param filePath Path of the binary file.
+	 * @throws IOException If the file cannot be read or is not valid.
+	 */
+	public MIMLBinaryFile(String filePath) throws IOException {
+
+		// The mappings remain valid once the channel is closed
+		try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+
+			// The part before the values of the instances is mapped at once
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					Math.min(channel.size(), SEGMENT_BYTES));
+			if (buffer.getInt() != MAGIC)
+				throw new IOException("Not a binary MIML file: " + filePath);
+			if (buffer.getInt() != VERSION)
+				throw new IOException("Unsupported version of binary MIML file: " + filePath);
+			int precision = buffer.getInt();
+
+			header = new Instances(new StringReader(readString(buffer)));
+			try {
+				labelsMetaData = readLabels(buffer);
+			} catch (IllegalArgumentException e) {
+				// Repeated names or a label that is its own parent
+				throw new IOException("Not valid labels in binary MIML file: " + filePath, e);
+			}
+			bagAttribute = buffer.getInt();
+			numBags = buffer.getInt();
+			numAttributes = header.attribute(bagAttribute).relation().numAttributes();
+
+			bagOffsets = new int[numBags + 1];
+			buffer.asIntBuffer().get(bagOffsets);
+			buffer.position(buffer.position() + 4 * bagOffsets.length);
+			weights = new double[numBags];
+			buffer.asDoubleBuffer().get(weights);
+			buffer.position(buffer.position() + 8 * numBags);
+
+			long length = (long) numBags * header.numAttributes();
+			attributeValues = slice(buffer, 8 * length).asDoubleBuffer();
+			strings = new String[buffer.getInt()];
+			for (int i = 0; i < strings.length; i++)
+				strings[i] = readString(buffer);
+
+			if (precision != 4 && precision != 8)
+				throw new IOException("Not valid precision in binary MIML file: " + filePath);
+			long start = align(buffer.position());
+			long numValues = (long) bagOffsets[numBags] * numAttributes;
+			if (channel.size() < start + numValues * precision)
+				throw new BufferUnderflowException();
+			map(channel, start, numValues, precision == 4);
+		} catch (BufferUnderflowException | IllegalArgumentException e) {
+			throw new IOException("Truncated binary MIML file: " + filePath, e);
+		}
+	}
+
+	/**
+	 * Maps the values of the instances in segments.
+	 *
+	 * @param channel         The channel of the file.
+	 * @param start           Position of the first value in the file.
+	 * @param numValues       Number of values.
+	 * @param singlePrecision Whether the values are stored as floats.
+	 * @throws IOException If the file cannot be mapped.
+	 */
+	protected void map(FileChannel channel, long start, long numValues, boolean singlePrecision) throws IOException {
+		int bytes = singlePrecision ? Float.BYTES : Double.BYTES;
+		this.singlePrecision = singlePrecision;
+		segmentValues = SEGMENT_BYTES / bytes;
+		int numSegments = (int) Math.max(1, (numValues + segmentValues - 1) / segmentValues);
+
+		if (singlePrecision)
+			floatSegments = new FloatBuffer[numSegments];
+		else
+			doubleSegments = new DoubleBuffer[numSegments];
+
+		for (int s = 0; s < numSegments; s++) {
+			long first = s * segmentValues;
+			long length = Math.min(segmentValues, numValues - first) * bytes;
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start + first * bytes, length);
+			if (singlePrecision)
+				floatSegments[s] = buffer.asFloatBuffer();
+			else
+				doubleSegments[s] = buffer.asDoubleBuffer();
+		}
+	}
+
+	/**
+	 * Gets a value of the instances.
+	 *
+	 * @param index The index of the value, considering the instances of all the
+	 *              bags stored row-major.
+	 * @return The value.
+	 */
+	protected double getValue(long index) {
+		int segment = (int) (index / segmentValues);
+		int offset = (int) (index - segment * segmentValues);
+		return singlePrecision ? floatSegments[segment].get(offset) : doubleSegments[segment].get(offset);
+	}
+
+	/**
+	 * Writes a dataset to a binary file.
+	 *
+	 * @param instances       The dataset.
+	 * @param pathName        Name and path for file to write.
+	 * @param singlePrecision Whether the values of the instances are stored as
+	 *                        floats instead of doubles.
+	 * @throws IOException To be handled in an upper level.
+	 */
+	public static void write(MIMLInstances instances, String pathName, boolean singlePrecision) throws IOException {
+
+		Instances data = instances.getDataSet();
+		int bagAttribute = -1;
+		for (int a = 0; a < data.numAttributes() && bagAttribute < 0; a++)
+			if (data.attribute(a).isRelationValued())
+				bagAttribute = a;
+		if (bagAttribute < 0)
+			throw new IOException("The dataset has no relational attribute");
+
+		int numBags = data.numInstances();
+		int numTopAttributes = data.numAttributes();
+		int[] bagOffsets = new int[numBags + 1];
+		double[] weights = new double[numBags];
+		double[] attributeValues = new double[numBags * numTopAttributes];
+		ArrayList<String> strings = new ArrayList<String>();
+		for (int i = 0; i < numBags; i++) {
+			Instance instance = data.instance(i);
+			bagOffsets[i + 1] = bagOffsets[i] + instance.relationalValue(bagAttribute).numInstances();
+			weights[i] = instance.weight();
+			for (int a = 0; a < numTopAttributes; a++) {
+				double value;
+				if (a == bagAttribute || instance.isMissing(a)) {
+					value = Utils.missingValue();
+				} else if (data.attribute(a).isString()) {
+					value = strings.size();
+					strings.add(instance.stringValue(a));
+				} else {
+					value = instance.value(a);
+				}
+				attributeValues[i * numTopAttributes + a] = value;
+			}
+		}
+
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(pathName), 1 << 16))) {
+			writeHeader(out, new Instances(data, 0), instances.getLabelsMetaData(), bagAttribute, numBags, bagOffsets,
+					weights, attributeValues, strings, singlePrecision);
+			for (int i = 0; i < numBags; i++) {
+				Instances bag = data.instance(i).relationalValue(bagAttribute);
+				for (int j = 0; j < bag.numInstances(); j++) {
+					Instance instance = bag.instance(j);
+					for (int k = 0; k < bag.numAttributes(); k++) {
+						if (singlePrecision)
+							out.writeFloat((float) instance.value(k));
+						else
+							out.writeDouble(instance.value(k));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Converts an arff file to a binary file without loading the dataset. The
+	 * arff file is read twice with an {@link ArffBagReader}: first the attributes
+	 * of the bags and then the values of their instances, so the memory used does
+	 * not depend on the number of instances. Weights of the bags are not read from
+	 * the arff file.
+	 *
+	 * @param arffFilePath    Path of the .arff file.
+	 * @param labelsMetaData  Information about labels.
+	 * @param pathName        Name and path for file to write.
+	 * @param singlePrecision Whether the values of the instances are stored as
+	 *                        floats instead of doubles.
+	 * @throws IOException To be handled in an upper level.
+	 */
+	public static void write(String arffFilePath, LabelsMetaData labelsMetaData, String pathName,
+			boolean singlePrecision) throws IOException {
+
+		Instances header;
+		int bagAttribute;
+		int numBags = 0;
+		int[] bagOffsets = new int[1024];
+		double[] attributeValues = new double[1024];
+		ArrayList<String> strings = new ArrayList<String>();
+
+		try (ArffBagReader reader = new ArffBagReader(arffFilePath)) {
+			header = reader.getHeader();
+			bagAttribute = reader.getBagAttribute();
+			int numTopAttributes = header.numAttributes();
+			while (reader.next()) {
+				if (bagOffsets.length < numBags + 2)
+					bagOffsets = Arrays.copyOf(bagOffsets, 2 * bagOffsets.length);
+				if (attributeValues.length < (numBags + 1) * numTopAttributes)
+					attributeValues = Arrays.copyOf(attributeValues,
+							Math.max((numBags + 1) * numTopAttributes, 2 * attributeValues.length));
+				if ((long) bagOffsets[numBags] + reader.getNumInstances() > Integer.MAX_VALUE)
+					throw new IOException("Too many instances in " + arffFilePath);
+				bagOffsets[numBags + 1] = bagOffsets[numBags] + reader.getNumInstances();
+
+				for (int a = 0; a < numTopAttributes; a++) {
+					double value = reader.getAttributeValue(a);
+					if (header.attribute(a).isString() && reader.getStringValue(a) != null) {
+						value = strings.size();
+						strings.add(reader.getStringValue(a));
+					}
+					attributeValues[numBags * numTopAttributes + a] = value;
+				}
+				numBags++;
+			}
+		}
+
+		double[] weights = new double[numBags];
+		Arrays.fill(weights, 1.0);
+
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(pathName), 1 << 16));
+				ArffBagReader reader = new ArffBagReader(arffFilePath)) {
+			writeHeader(out, header, labelsMetaData, bagAttribute, numBags, bagOffsets, weights, attributeValues,
+					strings, singlePrecision);
+			for (int i = 0; i < numBags; i++) {
+				if (!reader.next() || reader.getNumInstances() != bagOffsets[i + 1] - bagOffsets[i])
+					throw new IOException("The file changed while it was converted: " + arffFilePath);
+				double[] values = reader.getValues();
+				for (int k = 0, length = reader.getNumInstances() * reader.getNumAttributes(); k < length; k++) {
+					if (singlePrecision)
+						out.writeFloat((float) values[k]);
+					else
+						out.writeDouble(values[k]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes everything but the values of the instances, which follow it.
+	 *
+	 * @param out             The stream.
+	 * @param header          Structure of the dataset, without bags.
+	 * @param labelsMetaData  Information about labels.
+	 * @param bagAttribute    Index of the relational attribute with the bags.
+	 * @param numBags         Number of bags.
+	 * @param bagOffsets      Offset (in instances) of the first instance of each
+	 *                        bag, and the total number of instances.
+	 * @param weights         Weight of each bag.
+	 * @param attributeValues Values of the attributes of the bags, stored
+	 *                        row-major, with the string attributes as indices of
+	 *                        strings.
+	 * @param strings         Values of the string attributes.
+	 * @param singlePrecision Whether the values of the instances are stored as
+	 *                        floats instead of doubles.
+	 * @throws IOException To be handled in an upper level.
+	 */
+	protected static void writeHeader(DataOutputStream out, Instances header, LabelsMetaData labelsMetaData,
+			int bagAttribute, int numBags, int[] bagOffsets, double[] weights, double[] attributeValues,
+			List<String> strings, boolean singlePrecision) throws IOException {
+
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(singlePrecision ? 4 : 8);
+		writeString(out, header.toString());
+		writeLabels(out, labelsMetaData);
+		out.writeInt(bagAttribute);
+		out.writeInt(numBags);
+
+		for (int i = 0; i <= numBags; i++)
+			out.writeInt(bagOffsets[i]);
+		for (int i = 0; i < numBags; i++)
+			out.writeDouble(weights[i]);
+		for (int i = 0, length = numBags * header.numAttributes(); i < length; i++)
+			out.writeDouble(attributeValues[i]);
+		out.writeInt(strings.size());
+		for (String s : strings)
+			writeString(out, s);
+
+		while (out.size() != align(out.size()))
+			out.writeByte(0);
+	}
+
+	/**
+	 * Writes the names and hierarchy of the labels: the number of root labels
+	 * followed by each root label, see
+	 * {@link #writeLabelNode(DataOutputStream, LabelNode)}.
+	 *
+	 * @param out            The stream.
+	 * @param labelsMetaData Information about labels.
+	 * @throws IOException To be handled in an upper level.
+	 */
+	protected static void writeLabels(DataOutputStream out, LabelsMetaData labelsMetaData) throws IOException {
+		out.writeInt(labelsMetaData.getRootLabels().size());
+		for (LabelNode root : labelsMetaData.getRootLabels())
+			writeLabelNode(out, root);
+	}
+
+	/**
+	 * Writes a label as its name, the number of its children and each child.
+	 *
+	 * @param out  The stream.
+	 * @param node The label.
+	 * @throws IOException To be handled in an upper level.
+	 */
+	protected static void writeLabelNode(DataOutputStream out, LabelNode node) throws IOException {
+		writeString(out, node.getName());
+		out.writeInt(node.getChildren().size());
+		for (LabelNode child : node.getChildren())
+			writeLabelNode(out, child);
+	}
+
+	/**
+	 * Reads the names and hierarchy of the labels written by
+	 * {@link #writeLabels(DataOutputStream, LabelsMetaData)}.
+	 *
+	 * @param buffer The buffer.
+	 * @return Information about labels.
+	 * @throws IOException If a count is not valid or a name is repeated.
+	 */
+	protected static LabelsMetaData readLabels(ByteBuffer buffer) throws IOException {
+		LabelsMetaDataImpl labelsMetaData = new LabelsMetaDataImpl();
+		Set<String> names = new HashSet<String>();
+		for (int i = 0, numRoots = readCount(buffer); i < numRoots; i++)
+			labelsMetaData.addRootNode(readLabelNode(buffer, names));
+		return labelsMetaData;
+	}
+
+	/**
+	 * Reads a label with its children.
+	 *
+	 * @param buffer The buffer.
+	 * @param names  Names of the labels read so far, the ones of this label and its
+	 *               children are added.
+	 * @return The label.
+	 * @throws IOException If a count is not valid or a name is repeated.
+	 */
+	protected static LabelNode readLabelNode(ByteBuffer buffer, Set<String> names) throws IOException {
+		String name = readString(buffer);
+		if (!names.add(name))
+			throw new IOException("Repeated label in binary MIML file: " + name);
+		LabelNodeImpl node = new LabelNodeImpl(name);
+		for (int i = 0, numChildren = readCount(buffer); i < numChildren; i++)
+			node.addChildNode(readLabelNode(buffer, names));
+		return node;
+	}
+
+	/**
+	 * Reads a number of labels, each of them needs at least 8 bytes.
+	 *
+	 * @param buffer The buffer.
+	 * @return The number of labels.
+	 * @throws IOException If the number is not valid.
+	 */
+	protected static int readCount(ByteBuffer buffer) throws IOException {
+		int count = buffer.getInt();
+		if (count < 0 || count > buffer.remaining() / 8)
+			throw new IOException("Not valid number of labels in binary MIML file: " + count);
+		return count;
+	}
+
+	/**
+	 * Checks whether a file is a binary MIML file.
+	 *
+	 * @param filePath Path of the file.
+	 * @return True if the file begins with the identifier of the format.
+	 */
+	public static boolean isBinaryFile(String filePath) {
+		try (DataInputStream in = new DataInputStream(new FileInputStream(filePath))) {
+			return in.readInt() == MAGIC;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Loads a dataset either from a binary file or from an arff file with the
+	 * information about labels in an xml file.
+	 *
+	 * @param filePath             Path of the binary file or the .arff file.
+	 * @param xmlLabelsDefFilePath Path of .xml file with information about labels,
+	 *                             not used for binary files.
+	 * @return The dataset.
+	 * @throws InvalidDataFormatException To be handled in an upper level.
+	 */
+	public static MIMLInstances load(String filePath, String xmlLabelsDefFilePath) throws InvalidDataFormatException {
+		if (!isBinaryFile(filePath))
+			return new MIMLInstances(filePath, xmlLabelsDefFilePath);
+		try {
+			return new MIMLBinaryFile(filePath).toMIMLInstances();
+		} catch (IOException e) {
+			throw new InvalidDataFormatException(e.getMessage());
+		}
+	}
+
+	/**
+	 * Gets the structure of the dataset, without bags.
+	 *
+	 * @return The header.
+	 */
+	public Instances getHeader() {
+		return header;
+	}
+
+	/**
+	 * Gets the information about labels.
+	 *
+	 * @return The labels meta data.
+	 */
+	public LabelsMetaData getLabelsMetaData() {
+		return labelsMetaData;
+	}
+
+	/**
+	 * Gets the number of bags.
+	 *
+	 * @return The number of bags.
+	 */
+	public int getNumBags() {
+		return numBags;
+	}
+
+	/**
+	 * Gets the number of attributes of the instances of the bags.
+	 *
+	 * @return The number of attributes.
+	 */
+	public int getNumAttributes() {
+		return numAttributes;
+	}
+
+	/**
+	 * Gets the total number of instances of all bags.
+	 *
+	 * @return The number of instances.
+	 */
+	public int getNumInstances() {
+		return bagOffsets[numBags];
+	}
+
+	/**
+	 * Gets the number of instances of a bag.
+	 *
+	 * @param bagIndex The index of the bag.
+	 * @return The number of instances.
+	 */
+	public int getNumInstances(int bagIndex) {
+		return bagOffsets[bagIndex + 1] - bagOffsets[bagIndex];
+	}
+
+	/**
+	 * Gets whether the values of the instances are stored in single precision.
+	 *
+	 * @return True if they are stored as floats.
+	 */
+	public boolean isSinglePrecision() {
+		return singlePrecision;
+	}
+
+	/**
+	 * Gets a value of an instance of a bag.
+	 *
+	 * @param bagIndex       The index of the bag.
+	 * @param instanceIndex  The index of the instance in the bag.
+	 * @param attributeIndex The index of the attribute.
+	 * @return The value.
+	 */
+	public double value(int bagIndex, int instanceIndex, int attributeIndex) {
+		return getValue(((long) bagOffsets[bagIndex] + instanceIndex) * numAttributes + attributeIndex);
+	}
+
+	/**
+	 * Gets the value of an attribute of a bag, e.g. a label, as stored by Weka.
+	 * The value of the relational attribute is missing.
+	 *
+	 * @param bagIndex       The index of the bag.
+	 * @param attributeIndex The index of the attribute.
+	 * @return The value.
+	 */
+	public double getAttributeValue(int bagIndex, int attributeIndex) {
+		return attributeValues.get(bagIndex * header.numAttributes() + attributeIndex);
+	}
+
+	/**
+	 * Copies the values of the instances of a bag, read from the mapping, to an
+	 * array.
+	 *
+	 * @param bagIndex The index of the bag.
+	 * @param dest     The destination array.
+	 * @param offset   The position of the first value in dest.
+	 */
+	public void copyBag(int bagIndex, double[] dest, int offset) {
+		long index = (long) bagOffsets[bagIndex] * numAttributes;
+		int length = getNumInstances(bagIndex) * numAttributes;
+		for (int i = 0; i < length; i++)
+			dest[offset + i] = getValue(index + i);
+	}
+
+	/**
+	 * Gets the bags packed in a contiguous array of doubles. The values are copied
+	 * from the mapping, so they must fit in an array.
+	 *
+	 * @return The packed bags.
+	 */
+	public PackedBags getPackedBags() {
+		long length = (long) getNumInstances() * numAttributes;
+		if (length > Integer.MAX_VALUE - 8)
+			throw new IllegalArgumentException("Too many values to be packed");
+		double[] values = new double[(int) length];
+		for (int i = 0; i < numBags; i++)
+			copyBag(i, values, bagOffsets[i] * numAttributes);
+		return new PackedBags(values, bagOffsets.clone(), numAttributes);
+	}
+
+	/**
+	 * Builds a dataset with all the bags of the file. The values of the instances
+	 * are read from the mapping, so the packed representation of the bags is only
+	 * built if an algorithm requests it (see {@link MIMLInstances#getPackedBags()}).
+	 *
+	 * @return The dataset.
+	 * @throws InvalidDataFormatException To be handled in an upper level.
+	 */
+	public MIMLInstances toMIMLInstances() throws InvalidDataFormatException {
+
+		Instances data = new Instances(header, numBags);
+		Instances bagHeader = header.attribute(bagAttribute).relation();
+		int numTopAttributes = header.numAttributes();
+
+		for (int i = 0; i < numBags; i++) {
+			int numInstances = getNumInstances(i);
+			Instances bag = new Instances(bagHeader, numInstances);
+			long index = (long) bagOffsets[i] * numAttributes;
+			for (int j = 0; j < numInstances; j++) {
+				double[] instanceValues = new double[numAttributes];
+				for (int k = 0; k < numAttributes; k++)
+					instanceValues[k] = getValue(index++);
+				bag.add(new DenseInstance(1.0, instanceValues));
+			}
+
+			double[] bagValues = new double[numTopAttributes];
+			for (int a = 0; a < numTopAttributes; a++) {
+				double value = getAttributeValue(i, a);
+				Attribute attribute = data.attribute(a);
+				if (a == bagAttribute)
+					value = attribute.addRelation(bag);
+				else if (attribute.isString() && !Utils.isMissingValue(value))
+					value = attribute.addStringValue(strings[(int) value]);
+				bagValues[a] = value;
+			}
+			data.add(new DenseInstance(weights[i], bagValues));
+		}
+
+		return new MIMLInstances(data, labelsMetaData);
+	}
+
+	/**
+	 * Reads a string stored as its length followed by its UTF-8 bytes.
+	 *
+	 * @param buffer The buffer.
+	 * @return The string.
+	 */
+	protected static String readString(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Writes a string as its length followed by its UTF-8 bytes.
+	 *
+	 * @param out The stream.
+	 * @param s   The string.
+	 * @throws IOException To be handled in an upper level.
+	 */
+	protected static void writeString(DataOutputStream out, String s) throws IOException {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * Gets a view of the next bytes of a buffer and skips them.
+	 *
+	 * @param buffer The buffer.
+	 * @param length The number of bytes.
+	 * @return The view.
+	 */
+	protected static ByteBuffer slice(ByteBuffer buffer, long length) {
+		if (length < 0 || length > buffer.remaining())
+			throw new BufferUnderflowException();
+		ByteBuffer slice = buffer.slice();
+		slice.limit((int) length);
+		buffer.position(buffer.position() + (int) length);
+		return slice;
+	}
+
+	/**
+	 * Rounds a position up to a multiple of 8 bytes.
+	 *
+	 * @param position The position.
+	 * @return The aligned position.
+	 */
+	protected static int align(int position) {
+		return (position + 7) & ~7;
+	}
+}
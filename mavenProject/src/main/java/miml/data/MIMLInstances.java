@@ -44,6 +44,9 @@ public class MIMLInstances extends MultiLabelInstances {
 	/** Generated Serial version UID. */
 	private static final long serialVersionUID = 1L;
 
+	/** Packed copy of the bags, built on demand. */
+	protected transient PackedBags packedBags;
+
 	/**
 	 * Constructor.
 	 * 
@@ -145,6 +148,7 @@ public class MIMLInstances extends MultiLabelInstances {
 	 */
 	public void addBag(MIMLBag bag) {
 		this.getDataSet().add(bag);
+		packedBags = null;
 	}
 
 	/**
@@ -155,6 +159,7 @@ public class MIMLInstances extends MultiLabelInstances {
 	 */
 	public void addInstance(MIMLBag bag, int index) {
 		this.getDataSet().add(index, bag);
+		packedBags = null;
 	}
 
 	/**
@@ -186,7 +191,21 @@ public class MIMLInstances extends MultiLabelInstances {
 	 * @throws Exception To be handled in an upper level.
 	 */
 	public int getNumInstances(int bagIndex) throws Exception {
-		return this.getBag(bagIndex).relationalValue(1).numInstances();
+		return this.getDataSet().instance(bagIndex).relationalValue(1).numInstances();
+	}
+
+	/**
+	 * Gets the bags of the dataset packed in a contiguous array of doubles. The
+	 * packed representation is built the first time it is requested and reused
+	 * afterwards, so the dataset should not be modified directly through
+	 * {@link #getDataSet()} once it has been built.
+	 * 
+	 * @return The packed bags.
+	 */
+	public PackedBags getPackedBags() {
+		if (packedBags == null)
+			packedBags = new PackedBags(this.getDataSet());
+		return packedBags;
 	}
 
 	/**
@@ -89,6 +89,41 @@ public final class MLSave {
 		System.out.println("Arff dataset written to " + pathName);
 	}
 
+	/**
+	 * Writes a binary file with a MIML dataset, including the label definitions,
+	 * that can be memory-mapped with {@link MIMLBinaryFile}.
+	 *
+	 * @param instances       A MIML dataset.
+	 * @param pathName        Name and path for file to write.
+	 * @param singlePrecision Whether the values of the instances are stored as
+	 *                        floats instead of doubles.
+	 * @throws java.io.IOException To be handled in an upper level.
+	 */
+	public static void saveBinary(MIMLInstances instances, String pathName, boolean singlePrecision)
+			throws IOException {
+		MIMLBinaryFile.write(instances, pathName, singlePrecision);
+		System.out.println("Binary dataset written to " + pathName);
+	}
+
+	/**
+	 * Converts a MIML dataset in an arff file to a binary file that can be
+	 * memory-mapped with {@link MIMLBinaryFile}. The bags are read one at a time,
+	 * so the dataset does not need to fit in memory.
+	 *
+	 * @param arffFilePath         Path of the .arff file.
+	 * @param xmlLabelsDefFilePath Path of .xml file with information about labels.
+	 * @param pathName             Name and path for file to write.
+	 * @param singlePrecision      Whether the values of the instances are stored
+	 *                             as floats instead of doubles.
+	 * @throws java.io.IOException               To be handled in an upper level.
+	 * @throws mulan.data.LabelsBuilderException To be handled in an upper level.
+	 */
+	public static void saveBinary(String arffFilePath, String xmlLabelsDefFilePath, String pathName,
+			boolean singlePrecision) throws IOException, LabelsBuilderException {
+		MIMLBinaryFile.write(arffFilePath, LabelsBuilder.createLabels(xmlLabelsDefFilePath), pathName, singlePrecision);
+		System.out.println("Binary dataset written to " + pathName);
+	}
+
 	/**
 	 * Writes an xml file with label definitions of a multi-label dataset. MIML
 	 * format is also supported.
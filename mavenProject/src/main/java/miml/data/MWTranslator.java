@@ -70,18 +70,17 @@ public class MWTranslator {
 	public MWCellArray getBags() throws Exception {
 
 		MWCellArray aCellArrayIn = new MWCellArray(nBags, 1);
+		PackedBags packed = mimlDataSet.getPackedBags();
+		double[] packedValues = packed.getValues();
 
 		for (int i = 0; i < nBags; i++) {
 
-			MIMLBag bag = mimlDataSet.getBag(i);
-			int nInst = bag.getNumInstances();
+			int nInst = packed.getNumInstances(i);
+			int offset = packed.getOffset(i);
 
 			double[][] values = new double[nInst][attributesPerBag];
-			for (int j = 0; j < nInst; j++) {
-				Instance instance = bag.getInstance(j);
-				for (int k = 0; k < attributesPerBag; k++)
-					values[j][k] = instance.value(k);
-			}
+			for (int j = 0; j < nInst; j++, offset += attributesPerBag)
+				System.arraycopy(packedValues, offset, values[j], 0, attributesPerBag);
 
 			int index[] = new int[2];
 			index[0] = (i + 1);
@@ -109,7 +108,7 @@ public class MWTranslator {
 		double[][] labelValues = new double[nLabels][nBags];
 
 		for (int i = 0; i < nBags; i++) {
-			MIMLBag bag = mimlDataSet.getBag(i);
+			Instance bag = mimlDataSet.getDataSet().instance(i);
 			for (int k = 0; k < nLabels; k++) {
 				if (bag.stringValue(labelIndices[k]).equals("1"))
 					labelValues[k][i] = 1;
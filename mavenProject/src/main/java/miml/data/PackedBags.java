@@ -0,0 +1,326 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package miml.data;
+
+import java.io.Serializable;
+
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ *
+ * Packed representation of the bags of a MIML dataset. The values of all the
+ * instances of all the bags are stored row-major in a single contiguous array
+ * of doubles, and an index with the offset of the first instance of each bag
+ * allows to access any bag without creating intermediate objects.
+ *
+ * @author agent
+ * @version 20261018
+ *
+ */
+public class PackedBags implements Serializable {
+
+	/** For serialization */
+	private static final long serialVersionUID = -4113851829436275401L;
+
+	/** Number of attributes per instance. */
+	protected int numAttributes;
+
+	/**
+	 * Offset (in instances) of the first instance of each bag. It has numBags+1
+	 * elements, so the instances of the ith bag are in the range
+	 * [bagOffsets[i], bagOffsets[i+1]).
+	 */
+	protected int[] bagOffsets;
+
+	/** Values of all instances stored row-major. */
+	protected double[] values;
+
+	/** Whether the packed values contain missing values. */
+	protected boolean missingValues;
+
+	/**
+	 * Constructor that packs the relational attribute (index 1) of a dataset of
+	 * bags.
+	 *
+	 * @param dataSet A dataset of {@link Instances} with relational information.
+	 */
+	public PackedBags(Instances dataSet) {
+		int numBags = dataSet.numInstances();
+		bagOffsets = new int[numBags + 1];
+
+		long total = 0;
+		for (int i = 0; i < numBags; i++) {
+			bagOffsets[i] = (int) total;
+			total += dataSet.instance(i).relationalValue(1).numInstances();
+			if (total > Integer.MAX_VALUE)
+				throw new IllegalArgumentException("Too many instances to be packed: " + total);
+		}
+		bagOffsets[numBags] = (int) total;
+
+		if (numBags > 0)
+			numAttributes = dataSet.instance(0).relationalValue(1).numAttributes();
+
+		if (total * numAttributes > Integer.MAX_VALUE - 8)
+			throw new IllegalArgumentException("Too many values to be packed: " + total * numAttributes);
+		values = new double[(int) total * numAttributes];
+
+		for (int i = 0; i < numBags; i++) {
+			copyBag(dataSet.instance(i).relationalValue(1), values, bagOffsets[i] * numAttributes);
+		}
+		missingValues = checkMissingValues(values, values.length);
+	}
+
+	/**
+	 * Constructor that wraps already packed values. Arrays are not copied.
+	 *
+	 * @param values        Values of all instances stored row-major.
+	 * @param bagOffsets    Offset (in instances) of the first instance of each
+	 *                      bag, with numBags+1 elements.
+	 * @param numAttributes Number of attributes per instance.
+	 */
+	public PackedBags(double[] values, int[] bagOffsets, int numAttributes) {
+		if ((long) bagOffsets[bagOffsets.length - 1] * numAttributes > values.length)
+			throw new IllegalArgumentException("Offsets exceed the length of the packed values");
+		this.values = values;
+		this.bagOffsets = bagOffsets;
+		this.numAttributes = numAttributes;
+		this.missingValues = checkMissingValues(values, bagOffsets[bagOffsets.length - 1] * numAttributes);
+	}
+
+	/**
+	 * Copies the instances of a bag row-major into an array.
+	 *
+	 * @param bag    A bag as a set of {@link Instances}.
+	 * @param dest   The destination array.
+	 * @param offset The position in dest where the first value is written.
+	 */
+	public static void copyBag(Instances bag, double[] dest, int offset) {
+		int nAttributes = bag.numAttributes();
+		for (int j = 0, nInstances = bag.numInstances(); j < nInstances; j++) {
+			Instance instance = bag.instance(j);
+			for (int k = 0; k < nAttributes; k++)
+				dest[offset++] = instance.value(k);
+		}
+	}
+
+	/**
+	 * Checks whether an array has missing values.
+	 *
+	 * @param values The array.
+	 * @param length Number of values to check.
+	 * @return True if any of the values is missing.
+	 */
+	protected static boolean checkMissingValues(double[] values, int length) {
+		for (int i = 0; i < length; i++)
+			if (Double.isNaN(values[i]))
+				return true;
+		return false;
+	}
+
+	/**
+	 * Gets the number of bags.
+	 *
+	 * @return The number of bags.
+	 */
+	public int getNumBags() {
+		return bagOffsets.length - 1;
+	}
+
+	/**
+	 * Gets the number of attributes per instance.
+	 *
+	 * @return The number of attributes per instance.
+	 */
+	public int getNumAttributes() {
+		return numAttributes;
+	}
+
+	/**
+	 * Gets the total number of instances in all bags.
+	 *
+	 * @return The total number of instances.
+	 */
+	public int getNumInstances() {
+		return bagOffsets[bagOffsets.length - 1];
+	}
+
+	/**
+	 * Gets the number of instances of a bag.
+	 *
+	 * @param bagIndex The index of the bag.
+	 * @return The number of instances of the bag.
+	 */
+	public int getNumInstances(int bagIndex) {
+		return bagOffsets[bagIndex + 1] - bagOffsets[bagIndex];
+	}
+
+	/**
+	 * Gets the position in the packed array of the first value of a bag.
+	 *
+	 * @param bagIndex The index of the bag.
+	 * @return The position of the first value of the bag.
+	 */
+	public int getOffset(int bagIndex) {
+		return bagOffsets[bagIndex] * numAttributes;
+	}
+
+	/**
+	 * Gets a value of an instance of a bag.
+	 *
+	 * @param bagIndex       The index of the bag.
+	 * @param instanceIndex  The index of the instance in the bag.
+	 * @param attributeIndex The index of the attribute.
+	 * @return The value.
+	 */
+	public double value(int bagIndex, int instanceIndex, int attributeIndex) {
+		return values[(bagOffsets[bagIndex] + instanceIndex) * numAttributes + attributeIndex];
+	}
+
+	/**
+	 * Gets the packed values. The array is not copied, so it must not be
+	 * modified.
+	 *
+	 * @return The values of all instances stored row-major.
+	 */
+	public double[] getValues() {
+		return values;
+	}
+
+	/**
+	 * Gets the offsets (in instances) of the bags. The array is not copied, so it
+	 * must not be modified.
+	 *
+	 * @return The offsets with numBags+1 elements.
+	 */
+	public int[] getBagOffsets() {
+		return bagOffsets;
+	}
+
+	/**
+	 * Returns whether the packed values contain missing values.
+	 *
+	 * @return True if there are missing values.
+	 */
+	public boolean hasMissingValues() {
+		return missingValues;
+	}
+
+	/**
+	 * Gets a view of a bag. The view can be moved to other bags with
+	 * {@link BagView#setBag(int)} so that iterating over the dataset does not
+	 * allocate any object per bag.
+	 *
+	 * @param bagIndex The index of the bag.
+	 * @return A view of the bag.
+	 */
+	public BagView getBagView(int bagIndex) {
+		return new BagView(bagIndex);
+	}
+
+	/**
+	 * Read-only view of a bag of a {@link PackedBags}.
+	 */
+	public class BagView {
+
+		/** Index of the bag. */
+		protected int bagIndex;
+
+		/** Position of the first value of the bag. */
+		protected int offset;
+
+		/** Number of instances of the bag. */
+		protected int numInstances;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param bagIndex The index of the bag.
+		 */
+		protected BagView(int bagIndex) {
+			setBag(bagIndex);
+		}
+
+		/**
+		 * Moves the view to other bag.
+		 *
+		 * @param bagIndex The index of the bag.
+		 * @return This view.
+		 */
+		public BagView setBag(int bagIndex) {
+			this.bagIndex = bagIndex;
+			this.offset = bagOffsets[bagIndex] * numAttributes;
+			this.numInstances = bagOffsets[bagIndex + 1] - bagOffsets[bagIndex];
+			return this;
+		}
+
+		/**
+		 * Gets the index of the bag.
+		 *
+		 * @return The index of the bag.
+		 */
+		public int getBagIndex() {
+			return bagIndex;
+		}
+
+		/**
+		 * Gets the number of instances of the bag.
+		 *
+		 * @return The number of instances.
+		 */
+		public int getNumInstances() {
+			return numInstances;
+		}
+
+		/**
+		 * Gets the number of attributes per instance.
+		 *
+		 * @return The number of attributes.
+		 */
+		public int getNumAttributes() {
+			return numAttributes;
+		}
+
+		/**
+		 * Gets a value of an instance of the bag.
+		 *
+		 * @param instanceIndex  The index of the instance in the bag.
+		 * @param attributeIndex The index of the attribute.
+		 * @return The value.
+		 */
+		public double value(int instanceIndex, int attributeIndex) {
+			return values[offset + instanceIndex * numAttributes + attributeIndex];
+		}
+
+		/**
+		 * Gets the position in {@link #getValues()} of the first value of the bag.
+		 *
+		 * @return The position of the first value.
+		 */
+		public int getOffset() {
+			return offset;
+		}
+
+		/**
+		 * Gets the packed array the view reads from.
+		 *
+		 * @return The packed values.
+		 */
+		public double[] getValues() {
+			return values;
+		}
+	}
+}
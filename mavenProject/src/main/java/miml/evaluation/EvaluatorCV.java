@@ -18,6 +18,12 @@ package miml.evaluation;
 import java.io.File;
 import java.util.Date;
 import java.util.Random;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.configuration2.Configuration;
@@ -25,6 +31,7 @@ import org.apache.commons.configuration2.Configuration;
 import miml.classifiers.miml.IMIMLClassifier;
 import miml.core.ConfigParameters;
 import miml.core.IConfiguration;
+import miml.data.DatasetCache;
 import miml.data.MIMLInstances;
 import mulan.data.InvalidDataFormatException;
 import mulan.evaluation.Evaluation;
@@ -37,6 +44,12 @@ import weka.core.Instances;
  * with random partitioning. This class uses weka.core.Instances.trainCV and
  * weka.core.Instances.testCV so there is not guarantee of having examples of
  * all labels in the partitioned data.
+ * <p>
+ * Folds can be run in parallel with a fixed number of threads. Partitions and
+ * copies of the classifier are prepared before running the folds, and results
+ * are stored by fold, so they do not depend on the scheduling of the threads.
+ * The train and test times of each fold are measured by the thread that runs
+ * it.
  * 
  * @author Alvaro A. Belmonte
  * @author Eva Gibaja
@@ -63,6 +76,9 @@ public class EvaluatorCV implements IConfiguration, IEvaluator<MultipleEvaluatio
 	/** Test time in milliseconds. */
 	protected long testTime[];
 
+	/** Number of folds run in parallel. */
+	protected int numThreads = 1;
+
 	/**
 	 * Instantiates a new CV evaluator.
 	 *
@@ -97,39 +113,44 @@ public class EvaluatorCV implements IConfiguration, IEvaluator<MultipleEvaluatio
 		Instances workingSet = new Instances(data.getDataSet());
 		workingSet.randomize(new Random(seed));
 
-		for (int i = 0; i < numFolds; i++)
-			try {
+		int threads = numThreads > 0 ? numThreads : Runtime.getRuntime().availableProcessors();
+		threads = Math.min(threads, numFolds);
 
+		if (threads <= 1) {
+			for (int i = 0; i < numFolds; i++) {
 				System.out.println("Fold " + (i + 1) + "/" + numFolds);
+				runFold(classifier.makeCopy(), workingSet, i, Evaluations);
+			}
+		} else {
+			// Copies are made before starting so the classifier is not shared
+			IMIMLClassifier[] clones = new IMIMLClassifier[numFolds];
+			for (int i = 0; i < numFolds; i++)
+				clones[i] = classifier.makeCopy();
 
-				// gets train and test sets
-				Instances train = workingSet.trainCV(numFolds, i);
-				Instances test = workingSet.testCV(numFolds, i);
-				MIMLInstances mlTrain = new MIMLInstances(train, data.getLabelsMetaData());
-				MIMLInstances mlTest = new MIMLInstances(test, data.getLabelsMetaData());
-
-				// train step and gets the train time
-				IMIMLClassifier clone = classifier.makeCopy();
-				clone.setDebug(true);
-				long time_ini = System.nanoTime();
-				clone.build(mlTrain);
-				long time_fin = System.nanoTime();
-				TimeUnit.NANOSECONDS.toMillis(time_fin - time_ini);
-				trainTime[i] = TimeUnit.NANOSECONDS.toMillis(time_fin - time_ini);
-
-				// test step and gets the test time
-				Evaluator eval = new Evaluator();
-				time_ini = System.nanoTime();
-				Evaluations[i] = eval.evaluate(clone, mlTest, mlTrain);
-
-				time_fin = System.nanoTime();
-				TimeUnit.NANOSECONDS.toMillis(time_fin - time_ini);
-				testTime[i] = TimeUnit.NANOSECONDS.toMillis(time_fin - time_ini);
-
-			} catch (Exception e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
+			ExecutorService executor = Executors.newFixedThreadPool(threads);
+			try {
+				List<Future<?>> futures = new ArrayList<Future<?>>(numFolds);
+				for (int i = 0; i < numFolds; i++) {
+					final int fold = i;
+					futures.add(executor.submit(() -> {
+						runFold(clones[fold], workingSet, fold, Evaluations);
+						return null;
+					}));
+				}
+				// Progress is reported by this thread, in the order of the folds
+				for (int i = 0; i < numFolds; i++) {
+					try {
+						futures.get(i).get();
+					} catch (ExecutionException e) {
+						throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+					}
+					System.out.println("Fold " + (i + 1) + "/" + numFolds);
+				}
+			} finally {
+				// The rest of folds are cancelled if one has failed
+				executor.shutdownNow();
 			}
+		}
 
 		multipleEvaluation = new MultipleEvaluation(Evaluations, data);
 		try {
@@ -144,6 +165,40 @@ public class EvaluatorCV implements IConfiguration, IEvaluator<MultipleEvaluatio
 
 	}
 
+	/**
+	 * Trains and evaluates a copy of the classifier in a fold.
+	 *
+	 * @param clone       A copy of the classifier.
+	 * @param workingSet  The randomized data.
+	 * @param i           The index of the fold.
+	 * @param evaluations The evaluations of all folds.
+	 * @throws Exception if the classifier cannot be built or evaluated.
+	 */
+	protected void runFold(IMIMLClassifier clone, Instances workingSet, int i, Evaluation[] evaluations)
+			throws Exception {
+
+		// gets train and test sets
+		Instances train = workingSet.trainCV(numFolds, i);
+		Instances test = workingSet.testCV(numFolds, i);
+		MIMLInstances mlTrain = new MIMLInstances(train, data.getLabelsMetaData());
+		MIMLInstances mlTest = new MIMLInstances(test, data.getLabelsMetaData());
+
+		// train step and gets the train time
+		clone.setDebug(true);
+		long time_ini = System.nanoTime();
+		clone.build(mlTrain);
+		long time_fin = System.nanoTime();
+		trainTime[i] = TimeUnit.NANOSECONDS.toMillis(time_fin - time_ini);
+
+		// test step and gets the test time
+		Evaluator eval = new Evaluator();
+		time_ini = System.nanoTime();
+		evaluations[i] = eval.evaluate(clone, mlTest, mlTrain);
+
+		time_fin = System.nanoTime();
+		testTime[i] = TimeUnit.NANOSECONDS.toMillis(time_fin - time_ini);
+	}
+
 	/**
 	 * Calculate the mean of given array.
 	 *
@@ -208,6 +263,26 @@ public class EvaluatorCV implements IConfiguration, IEvaluator<MultipleEvaluatio
 		this.numFolds = numFolds;
 	}
 
+	/**
+	 * Gets the number of folds run in parallel.
+	 *
+	 * @return The number of threads.
+	 */
+	public int getNumThreads() {
+		return numThreads;
+	}
+
+	/**
+	 * Sets the number of folds run in parallel. If it is not positive, the number
+	 * of available processors is used. The classifier must not share mutable
+	 * state between copies when more than one thread is used.
+	 *
+	 * @param numThreads The number of threads.
+	 */
+	public void setNumThreads(int numThreads) {
+		this.numThreads = numThreads;
+	}
+
 	/**
 	 * Gets the seed used in the experiment.
 	 *
@@ -292,12 +367,13 @@ public class EvaluatorCV implements IConfiguration, IEvaluator<MultipleEvaluatio
 
 		numFolds = configuration.getInt("numFolds", 5);
 		seed = configuration.getInt("seed", 1);
+		numThreads = configuration.getInt("numThreads", 1);
 
 		String arffFile = configuration.subset("data").getString("file");
 		String xmlFileName = configuration.subset("data").getString("xmlFile");
 
 		try {
-			data = new MIMLInstances(arffFile, xmlFileName);
+			data = DatasetCache.getInstance().load(arffFile, xmlFileName);
 		} catch (InvalidDataFormatException e) {
 			e.printStackTrace();
 		}
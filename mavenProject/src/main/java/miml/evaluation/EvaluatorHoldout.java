@@ -20,6 +20,7 @@ import miml.classifiers.miml.mimlTOml.MIMLClassifierToML;
 import miml.classifiers.ml.RFPCT;
 import miml.core.ConfigParameters;
 import miml.core.IConfiguration;
+import miml.data.DatasetCache;
 import miml.data.MIMLInstances;
 import mulan.classifier.MultiLabelOutput;
 import mulan.data.InvalidDataFormatException;
@@ -271,7 +272,7 @@ public class EvaluatorHoldout implements IConfiguration, IEvaluator<Evaluation>
 			double percentageTrain = configuration.getDouble("percentageTrain", 80);
             List<MIMLInstances> list;
             try {
-                list = MIMLInstances.splitData(new MIMLInstances(arffFileTrain, xmlFileName), percentageTrain, seed, method);
+                list = MIMLInstances.splitData(DatasetCache.getInstance().load(arffFileTrain, xmlFileName), percentageTrain, seed, method);
             } catch (Exception e) {
                 throw new RuntimeException(e);
             }
@@ -279,8 +280,8 @@ public class EvaluatorHoldout implements IConfiguration, IEvaluator<Evaluation>
 			this.testData = list.get(1);
 		} else {
             try {
-                trainData = new MIMLInstances(arffFileTrain, xmlFileName);
-				testData = new MIMLInstances(arffFileTest, xmlFileName);
+                trainData = DatasetCache.getInstance().load(arffFileTrain, xmlFileName);
+				testData = DatasetCache.getInstance().load(arffFileTest, xmlFileName);
             } catch (InvalidDataFormatException e) {
                 throw new RuntimeException(e);
             }
@@ -9,12 +9,7 @@ import mulan.evaluation.measure.MacroAverageMeasure;
 import mulan.evaluation.measure.Measure;
 import org.json.simple.JSONObject;
 
-import java.io.File;
 import java.io.FileWriter;
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
 import java.util.Date;
 import java.util.List;
 
@@ -31,20 +26,10 @@ public class ExperimentReport extends BaseMIMLReport {
             return "ERROR: evaluator not supported";
         }
 
-        File file = new File(filename);
-        if (!file.getParentFile().mkdirs()) {
-            return "ERROR: unable to create report file";
-        }
-        boolean writeHeader;
-        try {
-            writeHeader = file.createNewFile();
-        } catch (IOException e) {
-            throw new RuntimeException();
-        }
-
         Evaluation evaluationHoldout = (Evaluation) evaluator.getEvaluation();
         MIMLInstances data = ((EvaluatorHoldout) evaluator).getData();
 
+        StringBuilder header = new StringBuilder();
         StringBuilder result = new StringBuilder();
 
         // All evaluator measures
@@ -53,28 +38,25 @@ public class ExperimentReport extends BaseMIMLReport {
         if (this.measures != null)
             measures = filterMeasures(measures);
 
-        if (writeHeader) {
-            if (ConfigParameters.getIsTransformation()) {
-                // Write header
-                result.append("Algorithm," + "Classifier," + "Transform method," + "Dataset," + "ConfigurationFile," + "Train_time_ms," + "Test_time_ms,");
-            } else {
-                // Write header
-                result.append("Algorithm," + "Dataset," + "ConfigurationFile," + "Train_time_ms," + "Test_time_ms,");
-            }
-            // Write measure's names
-            for (Measure m : measures) {
-                String measureName = m.getName();
-                result.append(measureName).append(",");
+        // The header is written only if the file is empty
+        if (ConfigParameters.getIsTransformation()) {
+            header.append("Algorithm," + "Classifier," + "Transform method," + "Dataset," + "ConfigurationFile," + "Train_time_ms," + "Test_time_ms,");
+        } else {
+            header.append("Algorithm," + "Dataset," + "ConfigurationFile," + "Train_time_ms," + "Test_time_ms,");
+        }
+        // Write measure's names
+        for (Measure m : measures) {
+            String measureName = m.getName();
+            header.append(measureName).append(",");
 
-                if (m instanceof MacroAverageMeasure && this.labels) {
+            if (m instanceof MacroAverageMeasure && this.labels) {
 
-                    for (int i = 0; i < data.getNumLabels(); i++) {
-                        result.append(measureName).append("-").append(data.getDataSet().attribute(data.getLabelIndices()[i]).name()).append(",");
-                    }
+                for (int i = 0; i < data.getNumLabels(); i++) {
+                    header.append(measureName).append("-").append(data.getDataSet().attribute(data.getLabelIndices()[i]).name()).append(",");
                 }
             }
-            result.append(System.lineSeparator());
         }
+        header.append(System.lineSeparator());
 
         if(ConfigParameters.getIsTransformation()) {
             result.append(ConfigParameters.getAlgorithmName()).append(",").append(ConfigParameters.getClassifierName()).append(",").append(ConfigParameters.getTransformationMethod()).append(",").append(ConfigParameters.getDataFileName()).append(",").append(ConfigParameters.getConfigFileName()).append(",").append(((EvaluatorHoldout) evaluator).getTrainTime()).append(",").append(((EvaluatorHoldout) evaluator).getTestTime()).append(",");
@@ -93,10 +75,10 @@ public class ExperimentReport extends BaseMIMLReport {
         }
         result.append(System.lineSeparator());
 
-        Files.write(Paths.get(filename), result.toString().getBytes(), StandardOpenOption.APPEND);
+        String written = appendToFile(filename, header.toString(), result.toString());
         System.out.println(new Date() + ": " + "Experiment results saved in " + filename);
 
-        return result.toString();
+        return written;
     }
 
     public String toJson(IEvaluator evaluator) throws Exception {
@@ -18,12 +18,14 @@ package miml.report;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 import miml.core.IConfiguration;
 import mulan.evaluation.measure.Measure;
@@ -53,6 +55,9 @@ public abstract class MIMLReport implements IReport, IConfiguration {
 	/** If the header is going to be printed. */
 	protected boolean header;
 
+	/** Locks of the files written by the reports of this process. */
+	private static final ConcurrentHashMap<String, Object> fileLocks = new ConcurrentHashMap<String, Object>();
+
 	/**
 	 * Basic constructor to initialize the report.
 	 *
@@ -106,19 +111,47 @@ public abstract class MIMLReport implements IReport, IConfiguration {
 	 */
 	@Override
 	public void saveReport(String report) throws FileNotFoundException {
-		File file = new File(filename);
-		if (file.getParentFile() != null) {
-			file.getParentFile().mkdirs();
-		}
 		try {
-			file.createNewFile();
-			Files.write(Paths.get(filename), report.getBytes(), StandardOpenOption.APPEND);
+			appendToFile(filename, null, report);
 			System.out.println(new Date() + ": " + "Experiment results saved in " + filename);
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
 	}
 
+	/**
+	 * Appends a text to a file, creating it if needed. Writes to the same file
+	 * from several threads or processes are serialized, so that the lines of
+	 * different experiments are not interleaved.
+	 *
+	 * @param filename The file.
+	 * @param header   Text written before the text only if the file is empty, or
+	 *                 null.
+	 * @param text     The text.
+	 * @return The text written, including the header if it was written.
+	 * @throws IOException To be handled in an upper level.
+	 */
+	protected static String appendToFile(String filename, String header, String text) throws IOException {
+		File file = new File(filename).getAbsoluteFile();
+		file.getParentFile().mkdirs();
+		Object lock = fileLocks.computeIfAbsent(file.getCanonicalPath(), k -> new Object());
+		synchronized (lock) {
+			try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+					StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+				FileLock fileLock = channel.lock();
+				try {
+					String written = header != null && channel.size() == 0 ? header + text : text;
+					ByteBuffer buffer = ByteBuffer.wrap(written.getBytes());
+					while (buffer.hasRemaining())
+						channel.write(buffer);
+					return written;
+				} finally {
+					fileLock.release();
+				}
+			}
+		}
+	}
+
 	/**
 	 * Gets the measures shown in the report.
 	 *
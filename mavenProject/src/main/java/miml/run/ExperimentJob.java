@@ -0,0 +1,213 @@
+/*    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package miml.run;
+
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.configuration2.Configuration;
+
+import miml.classifiers.miml.IMIMLClassifier;
+import miml.core.ConfigLoader;
+import miml.core.ConfigParameters;
+import miml.evaluation.IEvaluator;
+import miml.report.IReport;
+
+/**
+ * An experiment of a grid: a configuration file together with the properties
+ * that override it, e.g. the data files of a fold.
+ *
+ * @author agent
+ * @version 20261018
+ */
+public class ExperimentJob implements Serializable {
+
+	/** For serialization */
+	private static final long serialVersionUID = -3177418045263551306L;
+
+	/** Identifier of the experiment in the grid. */
+	protected String id;
+
+	/** Path of the configuration file. */
+	protected String configFile;
+
+	/** Properties of the configuration overridden by the experiment. */
+	protected LinkedHashMap<String, String> properties = new LinkedHashMap<String, String>();
+
+	/**
+	 * Whether the report is saved with {@link IReport#saveReport(String)}, for
+	 * reports whose toCSV does not write the file.
+	 */
+	protected boolean saveReport;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param id         Identifier of the experiment in the grid.
+	 * @param configFile Path of the configuration file.
+	 * @param saveReport Whether the report is saved after being generated.
+	 */
+	public ExperimentJob(String id, String configFile, boolean saveReport) {
+		this.id = id;
+		this.configFile = configFile;
+		this.saveReport = saveReport;
+	}
+
+	/**
+	 * Overrides a property of the configuration.
+	 *
+	 * @param key   The key of the property.
+	 * @param value The value.
+	 * @return This experiment.
+	 */
+	public ExperimentJob setProperty(String key, String value) {
+		properties.put(key, value);
+		return this;
+	}
+
+	/**
+	 * Runs the experiment in the current thread.
+	 *
+	 * @return The report in CSV format.
+	 * @throws Exception To be handled in an upper level.
+	 */
+	public String run() throws Exception {
+		ConfigParameters.reset();
+		ConfigLoader loader = new ConfigLoader(configFile);
+
+		Configuration configuration = loader.getConfiguration();
+		if (configuration == null)
+			throw new Exception("The configuration could not be loaded from " + configFile);
+		for (Map.Entry<String, String> property : properties.entrySet())
+			configuration.setProperty(property.getKey(), property.getValue());
+
+		IMIMLClassifier classifier = loader.loadClassifier();
+		IEvaluator<?> evaluator = loader.loadEvaluator();
+		evaluator.runExperiment(classifier);
+		IReport report = loader.loadReport();
+		String csv = report.toCSV(evaluator);
+		if (saveReport)
+			report.saveReport(csv);
+		return csv;
+	}
+
+	/**
+	 * Encodes the experiment in a single line of tab-separated fields.
+	 *
+	 * @return The line.
+	 */
+	public String toLine() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(escape(id)).append('\t').append(escape(configFile)).append('\t').append(saveReport);
+		for (Map.Entry<String, String> property : properties.entrySet())
+			sb.append('\t').append(escape(property.getKey())).append('\t').append(escape(property.getValue()));
+		return sb.toString();
+	}
+
+	/**
+	 * Decodes an experiment encoded with {@link #toLine()}.
+	 *
+	 * @param line The line.
+	 * @return The experiment.
+	 * @throws IllegalArgumentException If the line is not valid.
+	 */
+	public static ExperimentJob fromLine(String line) {
+		String[] fields = line.split("\t", -1);
+		if (fields.length < 3 || fields.length % 2 == 0)
+			throw new IllegalArgumentException("Not valid experiment: " + line);
+		ExperimentJob job = new ExperimentJob(unescape(fields[0]), unescape(fields[1]),
+				Boolean.parseBoolean(fields[2]));
+		for (int i = 3; i < fields.length; i += 2)
+			job.setProperty(unescape(fields[i]), unescape(fields[i + 1]));
+		return job;
+	}
+
+	/**
+	 * Escapes backslashes, tabs and line breaks.
+	 *
+	 * @param s The text.
+	 * @return The escaped text.
+	 */
+	protected static String escape(String s) {
+		return s.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+	}
+
+	/**
+	 * Reverts {@link #escape(String)}.
+	 *
+	 * @param s The escaped text.
+	 * @return The text.
+	 */
+	protected static String unescape(String s) {
+		StringBuilder sb = new StringBuilder(s.length());
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '\\' && i + 1 < s.length()) {
+				c = s.charAt(++i);
+				if (c == 't')
+					c = '\t';
+				else if (c == 'n')
+					c = '\n';
+				else if (c == 'r')
+					c = '\r';
+			}
+			sb.append(c);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Gets the identifier of the experiment in the grid.
+	 *
+	 * @return The identifier.
+	 */
+	public String getId() {
+		return id;
+	}
+
+	/**
+	 * Gets the path of the configuration file.
+	 *
+	 * @return The path.
+	 */
+	public String getConfigFile() {
+		return configFile;
+	}
+
+	/**
+	 * Gets the properties of the configuration overridden by the experiment.
+	 *
+	 * @return The properties.
+	 */
+	public Map<String, String> getProperties() {
+		return properties;
+	}
+
+	/**
+	 * Gets whether the report is saved after being generated.
+	 *
+	 * @return True if the report is saved.
+	 */
+	public boolean isSaveReport() {
+		return saveReport;
+	}
+
+	@Override
+	public String toString() {
+		return id;
+	}
+}
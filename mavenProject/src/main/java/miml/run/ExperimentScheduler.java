@@ -0,0 +1,254 @@
+/*    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package miml.run;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the experiments of a grid concurrently. The number of experiments run
+ * at the same time is limited by a number of threads and by the memory of the
+ * JVM, which is shared by the experiments according to an estimation of the
+ * memory each one needs. If a journal file is given, the identifiers of the
+ * experiments finished are appended to it, so that they are skipped when the
+ * grid is run again with the same journal after an interruption.
+ *
+ * @author agent
+ * @version 20261018
+ */
+public class ExperimentScheduler {
+
+	/** Size of a unit of memory, in bytes. */
+	protected static final long MB = 1024 * 1024;
+
+	/** Maximum number of experiments run at the same time. */
+	protected int numThreads = 1;
+
+	/** Memory needed by each experiment in bytes, 0 to estimate it. */
+	protected long memoryPerJob = 0;
+
+	/** Path of the journal of experiments finished, null to disable it. */
+	protected String journalFile;
+
+	/** Memory available for the experiments, in MB. */
+	protected Semaphore memory;
+
+	/** Number of MB of memory available for the experiments. */
+	protected int totalMemory;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param numThreads   Maximum number of experiments run at the same time. If
+	 *                     it is not positive, the number of available processors
+	 *                     is used.
+	 * @param memoryPerJob Memory needed by each experiment in bytes, 0 to estimate
+	 *                     it from the size of its data files.
+	 * @param journalFile  Path of the journal of experiments finished, null to
+	 *                     disable it.
+	 */
+	public ExperimentScheduler(int numThreads, long memoryPerJob, String journalFile) {
+		this.numThreads = numThreads > 0 ? numThreads : Runtime.getRuntime().availableProcessors();
+		this.memoryPerJob = memoryPerJob;
+		this.journalFile = journalFile;
+	}
+
+	/**
+	 * Runs the experiments not finished yet according to the journal and waits
+	 * for them to end.
+	 *
+	 * @param jobs The experiments of the grid.
+	 * @return The number of experiments that failed.
+	 * @throws Exception To be handled in an upper level.
+	 */
+	public int run(List<ExperimentJob> jobs) throws Exception {
+
+		Set<String> finished = readJournal();
+		List<ExperimentJob> pending = new ArrayList<ExperimentJob>();
+		for (ExperimentJob job : jobs)
+			if (!finished.contains(job.getId()))
+				pending.add(job);
+		if (pending.size() < jobs.size())
+			System.out.println(new Date() + ": Skipping " + (jobs.size() - pending.size())
+					+ " experiments already finished in " + journalFile);
+
+		totalMemory = (int) Math.max(1, availableMemory() / MB);
+		memory = new Semaphore(totalMemory, true);
+		AtomicInteger failures = new AtomicInteger();
+
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(numThreads, pending.size())));
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			for (ExperimentJob job : pending) {
+				futures.add(pool.submit(() -> {
+					if (!runJob(job))
+						failures.incrementAndGet();
+					return null;
+				}));
+			}
+			for (Future<?> future : futures)
+				future.get();
+		} finally {
+			pool.shutdownNow();
+		}
+		return failures.get();
+	}
+
+	/**
+	 * Runs an experiment once there is enough memory for it, and records it in
+	 * the journal if it ends successfully.
+	 *
+	 * @param job The experiment.
+	 * @return True if the experiment ended successfully.
+	 * @throws InterruptedException If the thread is interrupted while waiting for
+	 *                              memory.
+	 */
+	protected boolean runJob(ExperimentJob job) throws InterruptedException {
+		int needed = (int) Math.min(totalMemory, Math.max(1, estimateMemory(job) / MB));
+		memory.acquire(needed);
+		try {
+			System.out.println(new Date() + ": Starting experiment " + job.getId());
+			execute(job);
+			writeJournal(job);
+			System.out.println(new Date() + ": Ending experiment " + job.getId());
+			return true;
+		} catch (Exception e) {
+			System.err.println(new Date() + ": Experiment " + job.getId() + " failed");
+			e.printStackTrace();
+			return false;
+		} finally {
+			memory.release(needed);
+		}
+	}
+
+	/**
+	 * Executes an experiment.
+	 *
+	 * @param job The experiment.
+	 * @throws Exception To be handled in an upper level.
+	 */
+	protected void execute(ExperimentJob job) throws Exception {
+		job.run();
+	}
+
+	/**
+	 * Gets the memory that experiments can use.
+	 *
+	 * @return The memory in bytes.
+	 */
+	protected long availableMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		// Memory already used by the grid itself is not available
+		return runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+	}
+
+	/**
+	 * Estimates the memory needed by an experiment. Unless a fixed amount has
+	 * been set, it is proportional to the size of the files referenced by the
+	 * properties of the experiment, which are the data files in the grids of
+	 * {@link RunExperiment}.
+	 *
+	 * @param job The experiment.
+	 * @return The memory in bytes.
+	 */
+	protected long estimateMemory(ExperimentJob job) {
+		if (memoryPerJob > 0)
+			return memoryPerJob;
+		long size = 0;
+		for (String value : job.getProperties().values()) {
+			File file = new File(value);
+			if (file.isFile())
+				size += file.length();
+		}
+		// Parsed datasets take several times the size of the arff files, and
+		// learners build their own copies of the data
+		return Math.max(64 * MB, 20 * size);
+	}
+
+	/**
+	 * Reads the identifiers of the experiments finished.
+	 *
+	 * @return The identifiers.
+	 * @throws IOException If the journal cannot be read.
+	 */
+	protected Set<String> readJournal() throws IOException {
+		Set<String> finished = new HashSet<String>();
+		if (journalFile != null && new File(journalFile).isFile()) {
+			for (String line : Files.readAllLines(new File(journalFile).toPath(), StandardCharsets.UTF_8))
+				if (!line.trim().isEmpty())
+					finished.add(line.trim());
+		}
+		return finished;
+	}
+
+	/**
+	 * Records an experiment as finished in the journal.
+	 *
+	 * @param job The experiment.
+	 * @throws IOException If the journal cannot be written.
+	 */
+	protected synchronized void writeJournal(ExperimentJob job) throws IOException {
+		if (journalFile == null)
+			return;
+		File file = new File(journalFile).getAbsoluteFile();
+		file.getParentFile().mkdirs();
+		try (Writer writer = new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8)) {
+			writer.write(job.getId() + System.lineSeparator());
+		}
+	}
+
+	/**
+	 * Gets the maximum number of experiments run at the same time.
+	 *
+	 * @return The number of threads.
+	 */
+	public int getNumThreads() {
+		return numThreads;
+	}
+
+	/**
+	 * Gets the memory needed by each experiment.
+	 *
+	 * @return The memory in bytes, 0 if it is estimated.
+	 */
+	public long getMemoryPerJob() {
+		return memoryPerJob;
+	}
+
+	/**
+	 * Gets the path of the journal of experiments finished.
+	 *
+	 * @return The path, null if it is disabled.
+	 */
+	public String getJournalFile() {
+		return journalFile;
+	}
+}
@@ -0,0 +1,82 @@
+/*    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package miml.run;
+
+import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Worker process of {@link WorkerPoolScheduler}. It reads experiments encoded
+ * with {@link ExperimentJob#toLine()} from the standard input, one per line,
+ * and runs them in order. For each experiment a line with the result is written
+ * to the standard output: {@link #RESULT} followed by "OK" or "FAIL", the
+ * identifier of the experiment, the time in milliseconds and the report in CSV
+ * format or the error, separated by tabs. Anything else printed by the
+ * experiments goes to the standard error, except what native code writes
+ * directly to the standard output, which is told apart from the results by the
+ * mark.
+ * The worker ends when the standard input is closed or an empty line is read.
+ *
+ * @author agent
+ * @version 20261018
+ */
+public class ExperimentWorker {
+
+	/** Mark at the beginning of the lines with results. */
+	public static final String RESULT = "@@experiment-result\t";
+
+	/** Status of an experiment that ended successfully. */
+	public static final String OK = "OK";
+
+	/** Status of an experiment that failed. */
+	public static final String FAIL = "FAIL";
+
+	/**
+	 * The main method of the worker.
+	 *
+	 * @param args Not used.
+	 * @throws Exception If the standard streams cannot be used.
+	 */
+	public static void main(String[] args) throws Exception {
+
+		// The standard output is reserved to the results
+		PrintStream results = new PrintStream(new FileOutputStream(FileDescriptor.out), true, "UTF-8");
+		System.setOut(System.err);
+
+		BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+		String line;
+		while ((line = in.readLine()) != null && !line.isEmpty()) {
+			ExperimentJob job = ExperimentJob.fromLine(line);
+			long start = System.nanoTime();
+			String status, output;
+			try {
+				output = job.run();
+				status = OK;
+			} catch (Throwable e) {
+				e.printStackTrace();
+				output = e.toString();
+				status = FAIL;
+			}
+			long time = (System.nanoTime() - start) / 1000000;
+			results.println(RESULT + status + "\t" + ExperimentJob.escape(job.getId()) + "\t" + time + "\t"
+					+ ExperimentJob.escape(output == null ? "" : output));
+		}
+	}
+}
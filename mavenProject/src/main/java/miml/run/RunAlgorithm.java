@@ -15,7 +15,9 @@
 
 package miml.run;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 
 import miml.classifiers.miml.IMIMLClassifier;
 import miml.core.ConfigLoader;
@@ -35,7 +37,10 @@ import weka.core.Utils;
 public class RunAlgorithm {
 
 	/**
-	 * The main method to configure and run an algorithm.
+	 * The main method to configure and run an algorithm. With the option -w the
+	 * algorithm is run in a separate worker process whose working directory is
+	 * created in the given one, and several config files separated by commas can
+	 * be run in -t worker processes at the same time.
 	 *
 	 * @param args The argument (route of config file with the option -c).
 	 */
@@ -43,7 +48,15 @@ public class RunAlgorithm {
 
 		try {
 			// example execution => -c configurations/MIMLClassifier/MIMLkNN.config
-			ConfigLoader loader = new ConfigLoader(Utils.getOption("c", args));
+			String configFile = Utils.getOption("c", args);
+			String workersDir = Utils.getOption("w", args);
+			if (!workersDir.isEmpty()) {
+				String numWorkers = Utils.getOption("t", args);
+				runInWorkers(configFile.split(","), numWorkers.isEmpty() ? 1 : Integer.parseInt(numWorkers),
+						workersDir);
+				return;
+			}
+			ConfigLoader loader = new ConfigLoader(configFile);
 
 			System.out.println("" + new Date() + ": " + "Loading classifier");
 			IMIMLClassifier classifier = loader.loadClassifier();
@@ -62,4 +75,21 @@ public class RunAlgorithm {
 
 	}
 
+	/**
+	 * Runs several configurations in a pool of worker processes.
+	 *
+	 * @param configFiles The routes of the config files.
+	 * @param numWorkers  The number of worker processes.
+	 * @param workersDir  The directory where the working directories of the
+	 *                    workers are created.
+	 * @throws Exception To be handled in an upper level.
+	 */
+	protected static void runInWorkers(String[] configFiles, int numWorkers, String workersDir) throws Exception {
+		List<ExperimentJob> jobs = new ArrayList<ExperimentJob>();
+		for (String configFile : configFiles)
+			jobs.add(new ExperimentJob(configFile, configFile, true));
+		int failures = new WorkerPoolScheduler(numWorkers, 0, null, workersDir).run(jobs);
+		System.out.println("" + new Date() + ": " + "Experiments ended, " + failures + " failed");
+	}
+
 }
@@ -15,16 +15,13 @@
 
 package miml.run;
 
-import miml.classifiers.miml.IMIMLClassifier;
-import miml.core.ConfigLoader;
-import miml.evaluation.IEvaluator;
-import miml.report.IReport;
 import org.apache.commons.cli.*;
-import org.apache.commons.configuration2.Configuration;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 
 public class RunExperiment {
 
@@ -111,6 +108,21 @@ public class RunExperiment {
 		Option foldStartArg = new Option("f", true, "fold to start from");
 		options.addOption(foldStartArg);
 
+		Option threadsArg = new Option("t", true, "number of experiments run at the same time (0 for one per processor)");
+		options.addOption(threadsArg);
+
+		Option memoryArg = new Option("m", true, "memory in MB needed by each experiment (estimated by default)");
+		options.addOption(memoryArg);
+
+		Option journalArg = new Option("j", true, "journal of finished experiments to resume from (disabled by default)");
+		options.addOption(journalArg);
+
+		Option workersArg = new Option("w", true, "run experiments in worker processes, with working directories in the given one");
+		options.addOption(workersArg);
+
+		Option timeoutArg = new Option("o", true, "timeout in minutes of each experiment run in worker processes (none by default)");
+		options.addOption(timeoutArg);
+
 		Option datasetsArg = new Option("d", "datasets to compute");
 		datasetsArg.setRequired(true);
 		datasetsArg.setArgs(Option.UNLIMITED_VALUES);
@@ -133,32 +145,40 @@ public class RunExperiment {
 		int foldStart = Integer.parseInt(cmd.getOptionValue("f", "1"));
 		String[] datasets = cmd.getOptionValues("d");
 
+		int numThreads = Integer.parseInt(cmd.getOptionValue("t", "1"));
+		long memoryPerJob = Long.parseLong(cmd.getOptionValue("m", "0")) * 1024 * 1024;
+		String journalFile = cmd.getOptionValue("j");
+
+		List<ExperimentJob> jobs = new ArrayList<ExperimentJob>();
 		for (String dataset : datasets) {
 			for (int i = confStart + offset; i < confEnd; ++i) {
 				int jIni = 1;
 				if (i == confStart) jIni = foldStart;
 				for (int j = jIni; j <= 5; ++j) {
-					System.out.println(new Date() + ": Starting experiment " + configFiles[i] + ", dataset " + dataset + ", partition " + j);
-					try {
-						ConfigLoader loader = new ConfigLoader(configPath + configFiles[i]);
-
-						Configuration configuration = loader.getConfiguration();
-						configuration.setProperty("evaluator.data.trainFile", datasetsPath + dataset + "/5-folds/rounds/miml_" + dataset + "_iterative_5_train_" + j + ".arff");
-						configuration.setProperty("evaluator.data.testFile", datasetsPath + dataset + "/5-folds/rounds/miml_" + dataset + "_iterative_5_test_" + j + ".arff");
-						configuration.setProperty("evaluator.data.xmlFile", datasetsPath + dataset + "/5-folds/miml_" + dataset + ".xml");
-						configuration.setProperty("report.fileName", "results2/" + dataset + "-res.csv");
-
-						IMIMLClassifier classifier = loader.loadClassifier();
-						IEvaluator<?> evaluator = loader.loadEvaluator();
-						evaluator.runExperiment(classifier);
-						IReport report = loader.loadReport();
-						report.toCSV(evaluator);
-					} catch (Exception e) {
-						e.printStackTrace();
-					}
-					System.out.println(new Date() + ": Ending Experiment");
+					ExperimentJob job = new ExperimentJob(configFiles[i] + ", dataset " + dataset + ", partition " + j, configPath + configFiles[i], false);
+					job.setProperty("evaluator.data.trainFile", datasetsPath + dataset + "/5-folds/rounds/miml_" + dataset + "_iterative_5_train_" + j + ".arff");
+					job.setProperty("evaluator.data.testFile", datasetsPath + dataset + "/5-folds/rounds/miml_" + dataset + "_iterative_5_test_" + j + ".arff");
+					job.setProperty("evaluator.data.xmlFile", datasetsPath + dataset + "/5-folds/miml_" + dataset + ".xml");
+					job.setProperty("report.fileName", "results2/" + dataset + "-res.csv");
+					jobs.add(job);
 				}
 			}
 		}
+
+		try {
+			ExperimentScheduler scheduler;
+			if (cmd.hasOption("w")) {
+				WorkerPoolScheduler pool = new WorkerPoolScheduler(numThreads, memoryPerJob, journalFile,
+						cmd.getOptionValue("w"));
+				pool.setTimeout(Long.parseLong(cmd.getOptionValue("o", "0")) * 60 * 1000);
+				scheduler = pool;
+			} else
+				scheduler = new ExperimentScheduler(numThreads, memoryPerJob, journalFile);
+			int failures = scheduler.run(jobs);
+			if (failures > 0)
+				System.out.println(new Date() + ": " + failures + " experiments failed");
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
 	}
 }
@@ -0,0 +1,382 @@
+/*    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package miml.run;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.configuration2.Configuration;
+import org.apache.commons.configuration2.builder.fluent.Configurations;
+
+/**
+ * Scheduler that runs each experiment in a pool of worker JVMs instead of a
+ * thread of the current one, so that learners with global state (e.g. static
+ * MATLAB handles or the CLUS working directory) do not interfere. Workers are
+ * {@link ExperimentWorker} processes fed through their standard input, and
+ * each one runs in its own working directory, also used as its temporary
+ * directory and as the CLUS working directory of its experiments, so the paths
+ * of the configuration file and of the files in the configuration are made
+ * absolute before sending an experiment. Results and times are sent back to
+ * this process as the experiments end, in lines of the standard output marked
+ * with {@link ExperimentWorker#RESULT}; other lines are printed by this
+ * process. A worker that dies or exceeds the timeout of an experiment is
+ * replaced and its experiment is counted as failed.
+ *
+ * @author agent
+ * @version 20261018
+ */
+public class WorkerPoolScheduler extends ExperimentScheduler {
+
+	/** Directory where the working directories of the workers are created. */
+	protected String workersDir;
+
+	/**
+	 * Names of the properties of the configurations that are paths of files or
+	 * directories.
+	 */
+	protected static final Set<String> PATH_PROPERTIES = new HashSet<String>(Arrays.asList("file", "trainFile",
+			"testFile", "xmlFile", "fileName", "cacheDirectory", "clusWorkingDir"));
+
+	/** Arguments for the JVM of the workers. */
+	protected List<String> jvmArgs = new ArrayList<String>();
+
+	/** Maximum time of an experiment in milliseconds, 0 for no limit. */
+	protected long timeout = 0;
+
+	/** Kills the workers that exceed the timeout. */
+	protected ScheduledExecutorService watchdog;
+
+	/** Workers waiting for an experiment. */
+	protected BlockingQueue<Worker> idle;
+
+	/** All the workers started. */
+	protected List<Worker> workers;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param numWorkers   Number of worker processes. If it is not positive, the
+	 *                     number of available processors is used.
+	 * @param memoryPerJob Maximum heap of each worker in bytes, 0 to use the
+	 *                     default of the JVM.
+	 * @param journalFile  Path of the journal of experiments finished, null to
+	 *                     disable it.
+	 * @param workersDir   Directory where the working directories of the workers
+	 *                     are created.
+	 */
+	public WorkerPoolScheduler(int numWorkers, long memoryPerJob, String journalFile, String workersDir) {
+		super(numWorkers, memoryPerJob, journalFile);
+		this.workersDir = workersDir;
+		if (memoryPerJob > 0)
+			jvmArgs.add("-Xmx" + memoryPerJob / MB + "m");
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see miml.run.ExperimentScheduler#run(java.util.List)
+	 */
+	@Override
+	public int run(List<ExperimentJob> jobs) throws Exception {
+		idle = new LinkedBlockingQueue<Worker>();
+		workers = new ArrayList<Worker>();
+		watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "worker-watchdog");
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			for (int i = 0; i < Math.max(1, Math.min(numThreads, jobs.size())); i++)
+				idle.add(startWorker(i));
+			return super.run(jobs);
+		} finally {
+			synchronized (this) {
+				for (Worker worker : workers)
+					worker.stop();
+			}
+			watchdog.shutdownNow();
+		}
+	}
+
+	/**
+	 * Runs an experiment in the first worker available. A worker that died is
+	 * replaced before running the experiment, and it is kept in the pool if it
+	 * cannot be replaced, so that the next experiment tries again.
+	 *
+	 * @param job The experiment.
+	 * @throws Exception If the experiment failed or the worker died.
+	 */
+	@Override
+	protected void execute(ExperimentJob job) throws Exception {
+		Worker worker = idle.take();
+		try {
+			if (!worker.isAlive())
+				worker = startWorker(worker.index);
+			worker.execute(absolutePaths(job), timeout, watchdog);
+		} finally {
+			idle.put(worker);
+		}
+	}
+
+	/**
+	 * Copies an experiment for a worker, with absolute paths of the
+	 * configuration file and of the files in the configuration, which are
+	 * resolved from the working directory of this process.
+	 *
+	 * @param job The experiment.
+	 * @return The copy.
+	 * @throws Exception If the configuration cannot be read.
+	 */
+	protected ExperimentJob absolutePaths(ExperimentJob job) throws Exception {
+		String configFile = new File(job.getConfigFile()).getAbsolutePath();
+		ExperimentJob workerJob = new ExperimentJob(job.getId(), configFile, job.isSaveReport());
+
+		Configuration configuration = new Configurations().xml(configFile);
+		for (Iterator<String> keys = configuration.getKeys(); keys.hasNext();) {
+			String key = keys.next();
+			if (isPathProperty(key) && !job.getProperties().containsKey(key)) {
+				String value = configuration.getString(key);
+				if (value != null && !value.isEmpty())
+					workerJob.setProperty(key, new File(value).getAbsolutePath());
+			}
+		}
+		for (Map.Entry<String, String> property : job.getProperties().entrySet()) {
+			String value = property.getValue();
+			if (isPathProperty(property.getKey()) && value != null && !value.isEmpty())
+				value = new File(value).getAbsolutePath();
+			workerJob.setProperty(property.getKey(), value);
+		}
+		return workerJob;
+	}
+
+	/**
+	 * Checks whether a property of a configuration is a path.
+	 *
+	 * @param key The key of the property.
+	 * @return True if its name is one of {@link #PATH_PROPERTIES}.
+	 */
+	protected static boolean isPathProperty(String key) {
+		return PATH_PROPERTIES.contains(key.substring(key.lastIndexOf('.') + 1));
+	}
+
+	/**
+	 * Starts a worker process.
+	 *
+	 * @param index The index of the worker.
+	 * @return The worker.
+	 * @throws IOException If the process cannot be started.
+	 */
+	protected synchronized Worker startWorker(int index) throws IOException {
+		File dir = new File(workersDir, "worker-" + index).getAbsoluteFile();
+		File tmpDir = new File(dir, "tmp");
+		tmpDir.mkdirs();
+
+		List<String> command = new ArrayList<String>();
+		command.add(new File(System.getProperty("java.home"), "bin" + File.separator + "java").getPath());
+		command.addAll(jvmArgs);
+		command.add("-Djava.io.tmpdir=" + tmpDir.getPath());
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(ExperimentWorker.class.getName());
+
+		Process process = new ProcessBuilder(command).directory(dir).redirectError(ProcessBuilder.Redirect.INHERIT)
+				.start();
+		Worker worker = new Worker(index, dir, process);
+		workers.add(worker);
+		return worker;
+	}
+
+	/**
+	 * Gets the memory that the workers can use.
+	 *
+	 * @return The free physical memory in bytes if it is known, the maximum memory
+	 *         of this JVM otherwise.
+	 */
+	@Override
+	protected long availableMemory() {
+		OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+		if (os instanceof com.sun.management.OperatingSystemMXBean)
+			return ((com.sun.management.OperatingSystemMXBean) os).getFreePhysicalMemorySize();
+		return super.availableMemory();
+	}
+
+	/**
+	 * Gets the arguments for the JVM of the workers.
+	 *
+	 * @return The arguments, which can be modified before running the
+	 *         experiments.
+	 */
+	public List<String> getJvmArgs() {
+		return jvmArgs;
+	}
+
+	/**
+	 * Gets the maximum time of an experiment.
+	 *
+	 * @return The time in milliseconds, 0 for no limit.
+	 */
+	public long getTimeout() {
+		return timeout;
+	}
+
+	/**
+	 * Sets the maximum time of an experiment. A worker that exceeds it is killed
+	 * and replaced, and its experiment is counted as failed.
+	 *
+	 * @param timeout The time in milliseconds, 0 for no limit.
+	 */
+	public void setTimeout(long timeout) {
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Gets the directory where the working directories of the workers are
+	 * created.
+	 *
+	 * @return The directory.
+	 */
+	public String getWorkersDir() {
+		return workersDir;
+	}
+
+	/**
+	 * A worker process.
+	 */
+	protected static class Worker {
+
+		/** The index of the worker. */
+		protected int index;
+
+		/** The working directory of the worker. */
+		protected File dir;
+
+		/** The process. */
+		protected Process process;
+
+		/** The standard input of the process. */
+		protected Writer in;
+
+		/** The standard output of the process. */
+		protected BufferedReader out;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param index   The index of the worker.
+		 * @param dir     The working directory of the worker.
+		 * @param process The process.
+		 */
+		protected Worker(int index, File dir, Process process) {
+			this.index = index;
+			this.dir = dir;
+			this.process = process;
+			in = new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8);
+			out = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+		}
+
+		/**
+		 * Runs an experiment in the worker and waits for its result.
+		 *
+		 * @param job      The experiment, with absolute paths.
+		 * @param timeout  Maximum time of the experiment in milliseconds, 0 for no
+		 *                 limit.
+		 * @param watchdog Executor used to kill the process after the timeout.
+		 * @return The report in CSV format.
+		 * @throws Exception If the experiment failed or the worker died.
+		 */
+		protected String execute(ExperimentJob job, long timeout, ScheduledExecutorService watchdog)
+				throws Exception {
+			job.setProperty("evaluator.clusWorkingDir", new File(dir, "clusFolder").getPath());
+
+			in.write(job.toLine() + "\n");
+			in.flush();
+
+			ScheduledFuture<?> kill = timeout > 0
+					? watchdog.schedule(() -> process.destroyForcibly(), timeout, TimeUnit.MILLISECONDS)
+					: null;
+			String line;
+			try {
+				// Lines printed to the standard output by native code are not results
+				while ((line = out.readLine()) != null && !line.startsWith(ExperimentWorker.RESULT))
+					System.out.println(line);
+			} finally {
+				if (kill != null)
+					kill.cancel(false);
+			}
+
+			String[] fields = line == null ? null : line.substring(ExperimentWorker.RESULT.length()).split("\t", -1);
+			if (fields == null || fields.length != 4) {
+				// The worker cannot be used anymore
+				process.destroyForcibly().waitFor();
+				if (line == null && kill != null && kill.isDone() && !kill.isCancelled())
+					throw new IOException("Worker " + index + " exceeded the timeout of " + timeout
+							+ " ms running experiment " + job.getId());
+				if (line == null)
+					throw new IOException("Worker " + index + " exited running experiment " + job.getId());
+				throw new IOException("Not valid result from worker " + index + ": " + line);
+			}
+			String output = ExperimentJob.unescape(fields[3]);
+			if (ExperimentWorker.FAIL.equals(fields[0]))
+				throw new Exception("Worker " + index + ": " + output);
+			System.out.println(new Date() + ": Experiment " + job.getId() + " finished by worker " + index + " in "
+					+ fields[2] + " ms");
+			return output;
+		}
+
+		/**
+		 * Checks whether the process is running.
+		 *
+		 * @return True if it is running.
+		 */
+		protected boolean isAlive() {
+			return process.isAlive();
+		}
+
+		/**
+		 * Asks the process to end and kills it if it does not end.
+		 */
+		protected void stop() {
+			try {
+				in.close();
+				process.waitFor(10, TimeUnit.SECONDS);
+			} catch (IOException | InterruptedException e) {
+				// The process is killed anyway
+			}
+			process.destroyForcibly();
+		}
+	}
+}
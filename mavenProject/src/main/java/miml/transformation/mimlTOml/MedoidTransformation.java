@@ -18,7 +18,7 @@ import java.util.ArrayList;
 
 import miml.clusterers.KMedoids;
 import miml.core.distance.IDistance;
-import miml.core.distance.MaximalHausdorff;
+import miml.core.distance.PackedMaximalHausdorff;
 import miml.data.MIMLBag;
 import miml.data.MIMLInstances;
 import mulan.data.MultiLabelInstances;
@@ -54,6 +54,11 @@ public class MedoidTransformation extends MIMLtoML {
 
     private IDistance distanceMetric;
 
+    /**
+     * Directory where the distance matrix of k-medoids is cached, or null to disable it.
+     */
+    private String cacheDirectory = null;
+
     /**
      * True if the resulting transformed dataset will be normalized to (0,1) with min-max normalization. By default,
      * False. If a learning algorithm that uses a NormalizableDistance is going to be used after transformation,
@@ -105,18 +110,18 @@ public class MedoidTransformation extends MIMLtoML {
     }
 
     public MedoidTransformation(float percentClusters) throws Exception {
-        this(percentClusters, false, new MaximalHausdorff());
+        this(percentClusters, false, new PackedMaximalHausdorff());
     }
 
     public MedoidTransformation(int numClusters) throws Exception {
-        this(numClusters, false, new MaximalHausdorff());
+        this(numClusters, false, new PackedMaximalHausdorff());
     }
 
     /**
      * Constructor.
      */
     public MedoidTransformation() throws Exception {
-        this(0.2F, false, new MaximalHausdorff());
+        this(0.2F, false, new PackedMaximalHausdorff());
     }
 
     protected void clusteringStep() throws Exception {
@@ -319,6 +324,7 @@ public class MedoidTransformation extends MIMLtoML {
             System.out.println("Number of clusters by percentaje (" + this.percentClusters + "): " + this.numClusters);
         }
         this.kmedoids = new KMedoids(this.numClusters, 100, this.distanceMetric);
+        this.kmedoids.setCacheDirectory(this.cacheDirectory);
     }
 
     /**
@@ -386,4 +392,23 @@ public class MedoidTransformation extends MIMLtoML {
     public void setDistanceFunction(IDistance distanceFunction) {
         this.distanceMetric = distanceFunction;
     }
+
+    /**
+     * Returns the directory where the distance matrix of k-medoids is cached.
+     *
+     * @return The directory or null if the cache is disabled.
+     */
+    public String getCacheDirectory() {
+        return this.cacheDirectory;
+    }
+
+    /**
+     * Sets the directory where the distance matrix of k-medoids is cached. This
+     * method must be called before clustering.
+     *
+     * @param cacheDirectory The directory or null to disable the cache.
+     */
+    public void setCacheDirectory(String cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+    }
 }
@@ -0,0 +1,87 @@
+package miml;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import miml.data.MIMLInstances;
+import mulan.data.LabelNodeImpl;
+import mulan.data.LabelsMetaDataImpl;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+
+/**
+ * Random multi-instance multi-label data sets for the tests.
+ */
+public class TestData {
+
+	/**
+	 * Generates a data set with numeric attributes. The last attribute is constant
+	 * so the distances have to deal with an empty range.
+	 *
+	 * @param numBags       Number of bags.
+	 * @param numAttributes Number of attributes of the instances.
+	 * @param numLabels     Number of labels.
+	 * @param seed          Seed of the random numbers.
+	 * @return The data set.
+	 */
+	public static Instances bags(int numBags, int numAttributes, int numLabels, long seed) {
+
+		Random random = new Random(seed);
+
+		ArrayList<Attribute> inner = new ArrayList<Attribute>();
+		for (int k = 0; k < numAttributes; ++k)
+			inner.add(new Attribute("f" + k));
+		Instances header = new Instances("bag", inner, 0);
+
+		ArrayList<String> ids = new ArrayList<String>();
+		for (int i = 0; i < numBags; ++i)
+			ids.add("b" + i);
+		ArrayList<Attribute> attributes = new ArrayList<Attribute>();
+		attributes.add(new Attribute("id", ids));
+		attributes.add(new Attribute("bag", header));
+		for (int l = 0; l < numLabels; ++l)
+			attributes.add(new Attribute("label" + l, Arrays.asList("0", "1")));
+
+		Instances data = new Instances("test", attributes, numBags);
+		for (int i = 0; i < numBags; ++i) {
+			Instances bag = new Instances(header, 0);
+			int numInstances = 1 + random.nextInt(6);
+			for (int j = 0; j < numInstances; ++j) {
+				double[] values = new double[numAttributes];
+				for (int k = 0; k < numAttributes - 1; ++k)
+					values[k] = random.nextGaussian() * (k + 1);
+				values[numAttributes - 1] = 5.0;
+				bag.add(new DenseInstance(1.0, values));
+			}
+			double[] values = new double[attributes.size()];
+			values[0] = i;
+			values[1] = data.attribute(1).addRelation(bag);
+			for (int l = 0; l < numLabels; ++l)
+				values[2 + l] = random.nextInt(2);
+			data.add(new DenseInstance(1.0, values));
+		}
+
+		return data;
+	}
+
+	/**
+	 * Generates a MIML data set with numeric attributes.
+	 *
+	 * @param numBags       Number of bags.
+	 * @param numAttributes Number of attributes of the instances.
+	 * @param numLabels     Number of labels.
+	 * @param seed          Seed of the random numbers.
+	 * @return The data set.
+	 * @throws Exception if the labels do not match the data set.
+	 */
+	public static MIMLInstances miml(int numBags, int numAttributes, int numLabels, long seed) throws Exception {
+
+		LabelsMetaDataImpl labels = new LabelsMetaDataImpl();
+		for (int l = 0; l < numLabels; ++l)
+			labels.addRootNode(new LabelNodeImpl("label" + l));
+
+		return new MIMLInstances(bags(numBags, numAttributes, numLabels, seed), labels);
+	}
+}
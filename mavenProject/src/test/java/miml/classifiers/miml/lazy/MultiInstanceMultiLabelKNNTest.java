@@ -0,0 +1,102 @@
+package miml.classifiers.miml.lazy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import miml.TestData;
+import miml.classifiers.miml.IMIMLPredictor;
+import miml.core.distance.MaximalHausdorff;
+import miml.data.MIMLInstances;
+import mulan.classifier.MultiLabelOutput;
+
+/**
+ * Checks that the Mulan k-nearest neighbours classifiers predict the same with
+ * the metric index as with the linear search, and with a predictor shared by
+ * several threads.
+ */
+public class MultiInstanceMultiLabelKNNTest extends TestCase {
+
+	public MultiInstanceMultiLabelKNNTest(String testName) {
+		super(testName);
+	}
+
+	public static Test suite() {
+		return new TestSuite(MultiInstanceMultiLabelKNNTest.class);
+	}
+
+	public void testMetricIndex() throws Exception {
+		MIMLInstances data = TestData.miml(300, 2, 3, 1);
+
+		MultiInstanceMultiLabelKNN[] linear = classifiers();
+		MultiInstanceMultiLabelKNN[] indexed = classifiers();
+		for (int c = 0; c < linear.length; c++) {
+			linear[c].build(data);
+			indexed[c].setMetricIndex(true);
+			indexed[c].build(data);
+
+			MIMLDistanceFunction linearMetric = (MIMLDistanceFunction) linear[c].getMetric();
+			MIMLDistanceFunction indexedMetric = (MIMLDistanceFunction) indexed[c].getMetric();
+			linearMetric.resetCounters();
+			indexedMetric.resetCounters();
+
+			// Training bags are inside the ranges of the metric, so the linear search
+			// does not change them either
+			for (int i = 0; i < data.getNumBags(); i++)
+				check(linear[c].makePrediction(data.getBag(i)), indexed[c].makePrediction(data.getBag(i)));
+			assertTrue(indexedMetric.getNumEvaluations() < linearMetric.getNumEvaluations());
+		}
+	}
+
+	public void testFreeze() throws Exception {
+		MIMLInstances data = TestData.miml(120, 4, 3, 2);
+
+		for (MultiInstanceMultiLabelKNN classifier : classifiers()) {
+			classifier.build(data);
+			MultiLabelOutput[] expected = new MultiLabelOutput[data.getNumBags()];
+			for (int i = 0; i < expected.length; i++)
+				expected[i] = classifier.makePrediction(data.getBag(i));
+
+			// Each thread predicts all the bags with the same predictor
+			IMIMLPredictor predictor = classifier.freeze();
+			ExecutorService executor = Executors.newFixedThreadPool(4);
+			try {
+				List<Future<MultiLabelOutput[]>> futures = new ArrayList<Future<MultiLabelOutput[]>>();
+				for (int t = 0; t < 4; t++) {
+					futures.add(executor.submit(() -> {
+						MultiLabelOutput[] predictions = new MultiLabelOutput[expected.length];
+						for (int i = 0; i < predictions.length; i++)
+							predictions[i] = predictor.makePrediction(data.getBag(i));
+						return predictions;
+					}));
+				}
+				for (Future<MultiLabelOutput[]> future : futures) {
+					MultiLabelOutput[] predictions = future.get();
+					for (int i = 0; i < expected.length; i++)
+						check(expected[i], predictions[i]);
+				}
+			} finally {
+				executor.shutdown();
+			}
+		}
+	}
+
+	private MultiInstanceMultiLabelKNN[] classifiers() {
+		return new MultiInstanceMultiLabelKNN[] {
+				new MIMLMAPkNN(5, new MIMLDistanceFunction(new MaximalHausdorff())),
+				new DMIMLkNN(5, new MIMLDistanceFunction(new MaximalHausdorff())),
+				new MIMLBRkNN(new MIMLDistanceFunction(new MaximalHausdorff()), 5),
+				new MIMLIBLR(5, new MIMLDistanceFunction(new MaximalHausdorff())) };
+	}
+
+	private void check(MultiLabelOutput expected, MultiLabelOutput actual) {
+		assertTrue(Arrays.equals(expected.getBipartition(), actual.getBipartition()));
+		assertTrue(Arrays.equals(expected.getConfidences(), actual.getConfidences()));
+	}
+}
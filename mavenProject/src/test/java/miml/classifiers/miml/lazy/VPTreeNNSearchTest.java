@@ -0,0 +1,86 @@
+package miml.classifiers.miml.lazy;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import miml.TestData;
+import miml.core.distance.HausdorffDistance;
+import miml.core.distance.PackedMaximalHausdorff;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.neighboursearch.LinearNNSearch;
+
+/**
+ * Checks that the vantage-point tree finds the neighbours of a linear scan with
+ * a metric distance.
+ */
+public class VPTreeNNSearchTest extends TestCase {
+
+	public VPTreeNNSearchTest(String testName) {
+		super(testName);
+	}
+
+	public static Test suite() {
+		return new TestSuite(VPTreeNNSearchTest.class);
+	}
+
+	public void testSameNeighbours() throws Exception {
+		Instances train = TestData.bags(120, 4, 2, 1);
+		Instances test = TestData.bags(20, 4, 2, 2);
+		HausdorffDistance metric = new PackedMaximalHausdorff();
+		metric.setInstances(train);
+
+		MIMLDistanceFunction dfun = new MIMLDistanceFunction(metric);
+		LinearNNSearch linear = search(new LinearNNSearch(), dfun, train);
+		VPTreeNNSearch tree = (VPTreeNNSearch) search(new VPTreeNNSearch(), dfun, train);
+
+		for (int k : new int[] { 1, 5, 10 }) {
+			for (int i = 0; i < train.numInstances(); ++i)
+				check(linear, tree, train.instance(i), k);
+			for (int i = 0; i < test.numInstances(); ++i)
+				check(linear, tree, test.instance(i), k);
+		}
+	}
+
+	public void testUpdatedRanges() throws Exception {
+		Instances train = TestData.bags(120, 4, 2, 1);
+		Instances test = TestData.bags(20, 4, 2, 2);
+		HausdorffDistance metric = new PackedMaximalHausdorff();
+		metric.setInstances(train);
+
+		MIMLDistanceFunction dfun = new MIMLDistanceFunction(metric);
+		LinearNNSearch linear = search(new LinearNNSearch(), dfun, train);
+		VPTreeNNSearch tree = (VPTreeNNSearch) search(new VPTreeNNSearch(), dfun, train);
+		check(linear, tree, test.instance(0), 5);
+
+		// A bag out of the ranges changes the normalized distances
+		Instance outlier = test.instance(1);
+		Instances relational = outlier.relationalValue(1);
+		for (int j = 0; j < relational.numInstances(); ++j)
+			for (int k = 0; k < relational.numAttributes(); ++k)
+				relational.instance(j).setValue(k, relational.instance(j).value(k) * 20);
+		metric.update(outlier);
+
+		for (int i = 0; i < test.numInstances(); ++i)
+			check(linear, tree, test.instance(i), 5);
+	}
+
+	private LinearNNSearch search(LinearNNSearch search, MIMLDistanceFunction dfun, Instances train)
+			throws Exception {
+		search.setDistanceFunction(dfun);
+		search.setMeasurePerformance(false);
+		search.setInstances(train);
+		return search;
+	}
+
+	private void check(LinearNNSearch linear, VPTreeNNSearch tree, Instance target, int k) throws Exception {
+		Instances expected = linear.kNearestNeighbours(target, k);
+		double[] expectedDistances = linear.getDistances();
+		Instances actual = tree.kNearestNeighbours(target, k);
+		double[] actualDistances = tree.getDistances();
+
+		assertEquals(expected.numInstances(), actual.numInstances());
+		for (int i = 0; i < expectedDistances.length; ++i)
+			assertEquals(expectedDistances[i], actualDistances[i], 1e-12);
+	}
+}
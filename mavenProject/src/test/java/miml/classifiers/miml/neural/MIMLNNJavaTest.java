@@ -0,0 +1,54 @@
+package miml.classifiers.miml.neural;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import miml.TestData;
+import miml.clusterers.KMedoids;
+import miml.core.distance.IDistance;
+import miml.core.distance.MaximalHausdorff;
+import miml.core.distance.PackedMaximalHausdorff;
+import miml.data.MIMLInstances;
+import weka.core.Instances;
+
+/**
+ * Checks that the hidden layer of a training bag in prediction is the one used
+ * to train the linear layer with the directed maximal Hausdorff metrics.
+ */
+public class MIMLNNJavaTest extends TestCase {
+
+	public MIMLNNJavaTest(String testName) {
+		super(testName);
+	}
+
+	public static Test suite() {
+		return new TestSuite(MIMLNNJavaTest.class);
+	}
+
+	public void testHiddenLayer() throws Exception {
+		check(new PackedMaximalHausdorff());
+		check(new MaximalHausdorff());
+	}
+
+	private void check(IDistance metric) throws Exception {
+		MIMLInstances data = TestData.miml(40, 4, 2, 1);
+		Instances bags = data.getDataSet();
+		MIMLNNJava classifier = new MIMLNNJava(0.2, 1);
+		classifier.setMetric(metric);
+		classifier.build(data);
+
+		KMedoids kmedoids = classifier.cluster(bags);
+		int[] medoidIndices = kmedoids.getMedoidIndices();
+		assertEquals(medoidIndices.length, classifier.medoids.length);
+		for (int k = 0; k < medoidIndices.length; k++)
+			assertSame(bags.instance(medoidIndices[k]).relationalValue(1), classifier.medoids[k]);
+
+		double[] hidden = new double[medoidIndices.length];
+		for (int i = 0; i < bags.numInstances(); i++) {
+			double[] phi = kmedoids.distanceToMedoids(i);
+			classifier.computeHidden(bags.instance(i), hidden);
+			for (int k = 0; k < hidden.length; k++)
+				assertEquals(Double.doubleToLongBits(phi[k]), Double.doubleToLongBits(hidden[k]));
+		}
+	}
+}
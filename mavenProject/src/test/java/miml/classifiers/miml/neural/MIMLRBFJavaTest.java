@@ -0,0 +1,65 @@
+package miml.classifiers.miml.neural;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import miml.TestData;
+import miml.core.distance.DistanceMatrix;
+import miml.core.distance.DistanceMatrixBuilder;
+import miml.core.distance.IDistance;
+import miml.core.distance.MaximalHausdorff;
+import miml.core.distance.PackedMaximalHausdorff;
+import miml.data.MIMLInstances;
+import weka.core.Instances;
+
+/**
+ * Checks that the activations of a training bag in prediction are the ones used
+ * to train the output layer with the directed maximal Hausdorff metrics.
+ */
+public class MIMLRBFJavaTest extends TestCase {
+
+	public MIMLRBFJavaTest(String testName) {
+		super(testName);
+	}
+
+	public static Test suite() {
+		return new TestSuite(MIMLRBFJavaTest.class);
+	}
+
+	public void testHiddenLayer() throws Exception {
+		check(new PackedMaximalHausdorff());
+		check(new MaximalHausdorff());
+	}
+
+	private void check(IDistance metric) throws Exception {
+		MIMLInstances data = TestData.miml(40, 4, 2, 1);
+		Instances bags = data.getDataSet();
+		MIMLRBFJava classifier = new MIMLRBFJava(0.2, 0.6);
+		classifier.setMetric(metric);
+		classifier.build(data);
+
+		// The matrix of the training bags, from which phi is computed
+		DistanceMatrixBuilder builder = new DistanceMatrixBuilder();
+		builder.setSymmetrize(true);
+		DistanceMatrix distances = builder.compute(metric, bags);
+
+		int numCentroids = classifier.getNumCentroids();
+		int[] centroidIndices = new int[numCentroids];
+		for (int k = 0; k < numCentroids; k++) {
+			centroidIndices[k] = -1;
+			for (int i = 0; i < bags.numInstances(); i++)
+				if (bags.instance(i).relationalValue(1) == classifier.centroids[k])
+					centroidIndices[k] = i;
+			assertTrue(centroidIndices[k] >= 0);
+		}
+
+		double[] hidden = new double[numCentroids];
+		for (int i = 0; i < bags.numInstances(); i++) {
+			classifier.computeOutputs(bags.instance(i), hidden, new double[data.getNumLabels()]);
+			for (int k = 0; k < numCentroids; k++) {
+				double phi = classifier.activation(distances.get(i, centroidIndices[k]));
+				assertEquals(Double.doubleToLongBits(phi), Double.doubleToLongBits(hidden[k]));
+			}
+		}
+	}
+}
@@ -0,0 +1,55 @@
+package miml.classifiers.miml.optimization;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import miml.TestData;
+import miml.clusterers.KMedoids;
+import miml.core.distance.IDistance;
+import miml.core.distance.MaximalHausdorff;
+import miml.core.distance.PackedMaximalHausdorff;
+import miml.data.MIMLInstances;
+import weka.core.Instances;
+
+/**
+ * Checks that the embedding of a training bag in prediction is the one used to
+ * train the SVMs with the directed maximal Hausdorff metrics.
+ */
+public class MIMLSVMJavaTest extends TestCase {
+
+	public MIMLSVMJavaTest(String testName) {
+		super(testName);
+	}
+
+	public static Test suite() {
+		return new TestSuite(MIMLSVMJavaTest.class);
+	}
+
+	public void testEmbedding() throws Exception {
+		check(new PackedMaximalHausdorff());
+		check(new MaximalHausdorff());
+	}
+
+	private void check(IDistance metric) throws Exception {
+		MIMLInstances data = TestData.miml(40, 4, 2, 1);
+		Instances bags = data.getDataSet();
+		MIMLSVMJava classifier = new MIMLSVMJava();
+		classifier.setRatio(0.2);
+		classifier.setMetric(metric);
+		classifier.build(data);
+
+		KMedoids kmedoids = classifier.cluster(bags);
+		int[] medoidIndices = kmedoids.getMedoidIndices();
+		assertEquals(medoidIndices.length, classifier.medoids.length);
+		for (int k = 0; k < medoidIndices.length; k++)
+			assertSame(bags.instance(medoidIndices[k]).relationalValue(1), classifier.medoids[k]);
+
+		double[] embedded = new double[medoidIndices.length];
+		for (int i = 0; i < bags.numInstances(); i++) {
+			double[] expected = kmedoids.distanceToMedoids(i);
+			classifier.embed(bags.instance(i), embedded);
+			for (int k = 0; k < embedded.length; k++)
+				assertEquals(Double.doubleToLongBits(expected[k]), Double.doubleToLongBits(embedded[k]));
+		}
+	}
+}
@@ -0,0 +1,52 @@
+package miml.core;
+
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Checks that the packed kernel matrix gives the values of the full one.
+ */
+public class KernelMatrixTest extends TestCase {
+
+	public KernelMatrixTest(String testName) {
+		super(testName);
+	}
+
+	public static Test suite() {
+		return new TestSuite(KernelMatrixTest.class);
+	}
+
+	public void testValues() {
+		for (int size : new int[] { 1, 2, 7 }) {
+			double[][] full = full(size, size);
+			KernelMatrix kernel = new KernelMatrix(size);
+			for (int i = 0; i < size; i++)
+				for (int j = i; j < size; j++)
+					kernel.set(j, i, full[i][j]);
+
+			double[] row = new double[size];
+			for (int i = 0; i < size; i++) {
+				kernel.getRow(i, row);
+				for (int j = 0; j < size; j++) {
+					assertEquals(full[i][j], kernel.get(i, j), 0.0);
+					assertEquals(full[i][j], row[j], 0.0);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Generates a random symmetric matrix.
+	 */
+	private double[][] full(int size, long seed) {
+		Random random = new Random(seed);
+		double[][] full = new double[size][size];
+		for (int i = 0; i < size; i++)
+			for (int j = i; j < size; j++)
+				full[i][j] = full[j][i] = random.nextGaussian();
+		return full;
+	}
+}
@@ -0,0 +1,73 @@
+package miml.core;
+
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Checks the least squares solutions of the output layer without
+ * regularization.
+ */
+public class LeastSquaresTest extends TestCase {
+
+	public LeastSquaresTest(String testName) {
+		super(testName);
+	}
+
+	public static Test suite() {
+		return new TestSuite(LeastSquaresTest.class);
+	}
+
+	public void testIllConditioned() throws Exception {
+		// Columns that differ by 1e-7 give a condition number about 1e7, which
+		// would be about 1e14 in the normal equations
+		Random random = new Random(1);
+		int n = 50;
+		double[] expected = { 1, -2, 0.5 };
+		double[][] phi = new double[n][];
+		double[][] targets = new double[n][1];
+		for (int i = 0; i < n; i++) {
+			double x = random.nextDouble();
+			phi[i] = new double[] { x, x + 1e-7 * random.nextGaussian(), 1 };
+			for (int k = 0; k < expected.length; k++)
+				targets[i][0] += expected[k] * phi[i][k];
+		}
+
+		double[][] weights = LeastSquares.solve(phi, targets, 0, 1);
+		for (int k = 0; k < expected.length; k++)
+			assertEquals(expected[k], weights[0][k], 1e-6);
+	}
+
+	public void testMinimumNorm() throws Exception {
+		// Repeated hidden units share the weight of the unit
+		double[][] phi = { { 1, 1, 0 }, { 2, 2, 1 }, { 3, 3, 1 }, { 0, 0, 1 } };
+		double[][] targets = new double[phi.length][2];
+		for (int i = 0; i < phi.length; i++) {
+			targets[i][0] = 4 * phi[i][0] - phi[i][2];
+			targets[i][1] = phi[i][2];
+		}
+
+		double[][] weights = LeastSquares.solve(phi, targets, 0, 1);
+		assertEquals(2, weights[0][0], 1e-12);
+		assertEquals(2, weights[0][1], 1e-12);
+		assertEquals(-1, weights[0][2], 1e-12);
+		assertEquals(0, weights[1][0], 1e-12);
+		assertEquals(0, weights[1][1], 1e-12);
+		assertEquals(1, weights[1][2], 1e-12);
+	}
+
+	public void testMoreUnitsThanExamples() throws Exception {
+		double[][] phi = { { 1, 0, 2, 1 }, { 0, 1, 1, 1 } };
+		double[][] targets = { { 3 }, { -1 } };
+
+		double[][] weights = LeastSquares.solve(phi, targets, 0, 1);
+		for (int i = 0; i < phi.length; i++) {
+			double output = 0;
+			for (int k = 0; k < phi[i].length; k++)
+				output += phi[i][k] * weights[0][k];
+			assertEquals(targets[i][0], output, 1e-12);
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package miml.core.distance;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import miml.TestData;
+import miml.data.MIMLInstances;
+import weka.core.Instances;
+
+/**
+ * Checks that the packed Hausdorff distances give the values of the plain ones.
+ */
+public class PackedHausdorffTest extends TestCase {
+
+	public PackedHausdorffTest(String testName) {
+		super(testName);
+	}
+
+	public static Test suite() {
+		return new TestSuite(PackedHausdorffTest.class);
+	}
+
+	public void testMaximal() throws Exception {
+		check(new MaximalHausdorff(), new PackedMaximalHausdorff());
+	}
+
+	public void testMinimal() throws Exception {
+		check(new MinimalHausdorff(), new PackedMinimalHausdorff());
+	}
+
+	public void testAverage() throws Exception {
+		check(new AverageHausdorff(), new PackedAverageHausdorff());
+	}
+
+	public void testSymmetry() {
+		assertFalse(new PackedMaximalHausdorff().isSymmetric());
+		assertTrue(new PackedMinimalHausdorff().isSymmetric());
+		assertTrue(new PackedAverageHausdorff().isSymmetric());
+	}
+
+	public void testMatrices() throws Exception {
+		HausdorffDistance[] metrics = new HausdorffDistance[3];
+		metrics[HausdorffMatrixBuilder.MAXIMAL] = new PackedMaximalHausdorff();
+		metrics[HausdorffMatrixBuilder.AVERAGE] = new PackedAverageHausdorff();
+		metrics[HausdorffMatrixBuilder.MINIMAL] = new PackedMinimalHausdorff();
+		Instances bags = TestData.bags(40, 4, 2, 1);
+		for (HausdorffDistance metric : metrics)
+			metric.setInstances(bags);
+
+		DistanceMatrix[] matrices = new HausdorffMatrixBuilder(2, false).compute(metrics, bags);
+		DistanceMatrixBuilder builder = new DistanceMatrixBuilder();
+		builder.setSymmetrize(true);
+		for (int m = 0; m < metrics.length; m++) {
+			DistanceMatrix expected = builder.compute(metrics[m], bags);
+			for (int i = 0; i < bags.numInstances(); ++i)
+				for (int j = i + 1; j < bags.numInstances(); ++j)
+					checkBits(expected.get(i, j), matrices[m].get(i, j));
+		}
+
+		// The Hausdorff distance is the maximum of both directions
+		for (int i = 0; i < bags.numInstances(); ++i)
+			for (int j = i + 1; j < bags.numInstances(); ++j)
+				checkBits(Math.max(metrics[0].distance(bags.instance(i), bags.instance(j)),
+						metrics[0].distance(bags.instance(j), bags.instance(i))), matrices[0].get(i, j));
+	}
+
+	private void check(HausdorffDistance plain, PackedHausdorffDistance packed) throws Exception {
+
+		MIMLInstances data = TestData.miml(40, 4, 2, 1);
+		plain.setInstances(data);
+		packed.setInstances(data);
+		Instances bags = data.getDataSet();
+
+		for (int i = 0; i < data.getNumBags(); ++i) {
+			for (int j = 0; j < data.getNumBags(); ++j) {
+				// Bags of the data set are read from the packed arrays
+				Instances first = bags.instance(i).relationalValue(1);
+				Instances second = bags.instance(j).relationalValue(1);
+				assertTrue(packed.getNormalizedBags().indexOf(first) >= 0);
+				double expected = plain.distance(first, second);
+				checkBits(expected, packed.distance(first, second));
+				checkBits(expected, packed.distance(bags.instance(i), bags.instance(j)));
+				checkCutOff(packed, first, second, expected);
+
+				// Copies of the bags are normalized as queries
+				first = new Instances(first);
+				second = new Instances(second);
+				assertEquals(-1, packed.getNormalizedBags().indexOf(first));
+				checkBits(plain.distance(first, second), packed.distance(first, second));
+				checkCutOff(packed, first, second, expected);
+			}
+		}
+	}
+
+	private void checkBits(double expected, double actual) {
+		assertEquals(Double.doubleToLongBits(expected), Double.doubleToLongBits(actual));
+	}
+
+	private void checkCutOff(PackedHausdorffDistance packed, Instances first, Instances second, double expected)
+			throws Exception {
+		assertTrue(packed.lowerBound(first, second) <= expected);
+		// A cut off below the distance discards the pair, at the distance it does not
+		if (expected > 0)
+			assertEquals(Double.POSITIVE_INFINITY, packed.distance(first, second, Math.nextDown(expected * 0.9)));
+		checkBits(expected, packed.distance(first, second, expected));
+	}
+}
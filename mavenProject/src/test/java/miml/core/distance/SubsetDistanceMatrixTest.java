@@ -0,0 +1,72 @@
+package miml.core.distance;
+
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Checks that the positions of the upper triangle of a subset are mapped to the
+ * bags of the other matrix.
+ */
+public class SubsetDistanceMatrixTest extends TestCase {
+
+	public SubsetDistanceMatrixTest(String testName) {
+		super(testName);
+	}
+
+	public static Test suite() {
+		return new TestSuite(SubsetDistanceMatrixTest.class);
+	}
+
+	public void testValues() {
+		Random random = new Random(1);
+		DistanceMatrix matrix = DistanceMatrix.create(30, false);
+		for (int i = 0; i < matrix.size(); i++)
+			for (int j = i + 1; j < matrix.size(); j++)
+				matrix.set(i, j, random.nextDouble());
+
+		int[][] subsets = { { 7 }, { 3, 1 }, { 29, 0, 14, 2, 8, 21, 5 } };
+		for (int[] indices : subsets) {
+			SubsetDistanceMatrix subset = new SubsetDistanceMatrix(matrix, indices);
+			int size = indices.length;
+			double[] row = new double[size];
+			for (int i = 0; i < size; i++) {
+				subset.getRow(i, row);
+				for (int j = 0; j < size; j++) {
+					double expected = i == j ? 0 : matrix.get(indices[i], indices[j]);
+					assertEquals(expected, subset.get(i, j), 0.0);
+					assertEquals(expected, row[j], 0.0);
+					if (i < j)
+						assertEquals(expected, subset.getValue(subset.index(i, j)), 0.0);
+				}
+			}
+
+			// Values set through the positions of the subset are the ones of the
+			// other matrix
+			for (int i = 0; i < size; i++) {
+				for (int j = i + 1; j < size; j++) {
+					subset.setValue(subset.index(i, j), i * size + j);
+					assertEquals(i * size + j, matrix.get(indices[j], indices[i]), 0.0);
+				}
+			}
+		}
+	}
+
+	public void testRows() {
+		// Large sizes check the rounding of the square root
+		for (int size : new int[] { 2, 3, 100, 70000 }) {
+			SubsetDistanceMatrix subset = new SubsetDistanceMatrix(new DoubleDistanceMatrix(2), new int[size]);
+			for (int i : new int[] { 0, 1, size / 2, size - 3, size - 2 }) {
+				if (i < 0 || i > size - 2)
+					continue;
+				for (int j : new int[] { i + 1, size - 1 }) {
+					long index = subset.index(i, j);
+					assertEquals(i, subset.row(index));
+					assertEquals(j, subset.column(index, i));
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package miml.data;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import miml.TestData;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+import weka.core.Utils;
+
+/**
+ * Checks that the bags read by the streaming reader, and the binary files
+ * converted with it, have the values read by Weka.
+ */
+public class ArffBagReaderTest extends TestCase {
+
+	public ArffBagReaderTest(String testName) {
+		super(testName);
+	}
+
+	public static Test suite() {
+		return new TestSuite(ArffBagReaderTest.class);
+	}
+
+	public void testNumericValues() throws Exception {
+		check(TestData.bags(30, 4, 3, 1));
+	}
+
+	public void testQuotedValues() throws Exception {
+		check(nominalBags(30, 1));
+	}
+
+	public void testConversion() throws Exception {
+		MIMLInstances data = new MIMLInstances(nominalBags(30, 2), TestData.miml(1, 2, 2, 1).getLabelsMetaData());
+		File arff = save(data.getDataSet());
+		File binary = File.createTempFile("bags", ".bmiml");
+		binary.deleteOnExit();
+
+		MIMLBinaryFile.write(arff.getPath(), data.getLabelsMetaData(), binary.getPath(), false);
+		Instances actual = new MIMLBinaryFile(binary.getPath()).toMIMLInstances().getDataSet();
+
+		assertEquals(data.getNumBags(), actual.numInstances());
+		for (int i = 0; i < data.getNumBags(); ++i) {
+			assertEquals(data.getDataSet().instance(i).toString(), actual.instance(i).toString());
+		}
+	}
+
+	/**
+	 * Generates a dataset whose bags have a nominal attribute with values that
+	 * need to be quoted.
+	 */
+	private Instances nominalBags(int numBags, long seed) {
+		Random random = new Random(seed);
+		ArrayList<Attribute> inner = new ArrayList<Attribute>();
+		inner.add(new Attribute("f0"));
+		inner.add(new Attribute("colour", Arrays.asList("red, dark", "light blue", "it's", "?", "plain")));
+		Instances header = new Instances("bag", inner, 0);
+
+		ArrayList<String> ids = new ArrayList<String>();
+		for (int i = 0; i < numBags; ++i)
+			ids.add("b" + i);
+		ArrayList<Attribute> attributes = new ArrayList<Attribute>();
+		attributes.add(new Attribute("id", ids));
+		attributes.add(new Attribute("bag", header));
+		attributes.add(new Attribute("label0", Arrays.asList("0", "1")));
+		attributes.add(new Attribute("label1", Arrays.asList("0", "1")));
+
+		Instances data = new Instances("test", attributes, numBags);
+		for (int i = 0; i < numBags; ++i) {
+			Instances bag = new Instances(header, 0);
+			for (int j = 1 + random.nextInt(4); j > 0; --j)
+				bag.add(new DenseInstance(1.0, new double[] { random.nextGaussian(),
+						random.nextInt(10) == 0 ? Utils.missingValue() : random.nextInt(5) }));
+			data.add(new DenseInstance(1.0,
+					new double[] { i, data.attribute(1).addRelation(bag), random.nextInt(2), random.nextInt(2) }));
+		}
+		return data;
+	}
+
+	private File save(Instances data) throws Exception {
+		File arff = File.createTempFile("bags", ".arff");
+		arff.deleteOnExit();
+		MLSave.saveArff(data, arff.getPath());
+		return arff;
+	}
+
+	private void check(Instances data) throws Exception {
+		File arff = save(data);
+		Instances expected;
+		try (Reader in = new FileReader(arff)) {
+			expected = new Instances(in);
+		}
+
+		try (ArffBagReader reader = new ArffBagReader(arff.getPath())) {
+			assertEquals(1, reader.getBagAttribute());
+			for (int i = 0; i < expected.numInstances(); ++i) {
+				assertTrue(reader.next());
+				Instances bag = expected.instance(i).relationalValue(1);
+				assertEquals(bag.numInstances(), reader.getNumInstances());
+				for (int j = 0; j < bag.numInstances(); ++j)
+					for (int k = 0; k < bag.numAttributes(); ++k)
+						assertEquals(bag.instance(j).value(k), reader.value(j, k), 0.0);
+				for (int a = 0; a < expected.numAttributes(); ++a)
+					if (a != 1)
+						assertEquals(expected.instance(i).value(a), reader.getAttributeValue(a), 0.0);
+			}
+			assertFalse(reader.next());
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package miml.data;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import miml.TestData;
+import weka.core.Instances;
+import weka.filters.Filter;
+import weka.filters.unsupervised.instance.Resample;
+
+/**
+ * Checks that the bags drawn are the ones of Weka's Resample filter.
+ */
+public class BagSampleTest extends TestCase {
+
+	public BagSampleTest(String testName) {
+		super(testName);
+	}
+
+	public static Test suite() {
+		return new TestSuite(BagSampleTest.class);
+	}
+
+	public void testWithReplacement() throws Exception {
+		for (int seed = 1; seed <= 5; ++seed) {
+			check(100, true, seed);
+			check(70, true, seed);
+		}
+	}
+
+	public void testWithoutReplacement() throws Exception {
+		for (int seed = 1; seed <= 5; ++seed) {
+			check(100, false, seed);
+			check(70, false, seed);
+		}
+	}
+
+	public void testWeighted() throws Exception {
+		Instances data = TestData.bags(50, 3, 2, 1);
+		BagSample sample = BagSample.resample(data.numInstances(), 100, true, 1);
+		Instances weighted = sample.toWeightedInstances(data);
+
+		assertEquals(sample.getNumDistinct(), weighted.numInstances());
+		assertEquals((double) sample.size(), weighted.sumOfWeights(), 1e-12);
+		// Bags are shared with the original dataset
+		assertSame(data.instance((int) weighted.instance(0).value(0)).relationalValue(1),
+				weighted.instance(0).relationalValue(1));
+	}
+
+	private void check(double percentage, boolean sampleWithReplacement, int seed) throws Exception {
+		Instances data = TestData.bags(50, 3, 2, 1);
+
+		Resample filter = new Resample();
+		filter.setRandomSeed(seed);
+		filter.setSampleSizePercent(percentage);
+		filter.setNoReplacement(!sampleWithReplacement);
+		filter.setInputFormat(data);
+		Instances expected = Filter.useFilter(data, filter);
+
+		Instances actual = BagSample.resample(data.numInstances(), percentage, sampleWithReplacement, seed)
+				.toInstances(data);
+
+		assertEquals(expected.numInstances(), actual.numInstances());
+		for (int i = 0; i < expected.numInstances(); ++i)
+			assertEquals(expected.instance(i).value(0), actual.instance(i).value(0));
+	}
+}
@@ -0,0 +1,140 @@
+package miml.data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import miml.TestData;
+import mulan.data.LabelNodeImpl;
+import mulan.data.LabelsMetaData;
+import mulan.data.LabelsMetaDataImpl;
+import weka.core.Instances;
+
+/**
+ * Checks that the datasets written to binary files are read back.
+ */
+public class MIMLBinaryFileTest extends TestCase {
+
+	public MIMLBinaryFileTest(String testName) {
+		super(testName);
+	}
+
+	public static Test suite() {
+		return new TestSuite(MIMLBinaryFileTest.class);
+	}
+
+	public void testDoublePrecision() throws Exception {
+		MIMLInstances data = TestData.miml(40, 4, 3, 1);
+		data.getDataSet().instance(3).setWeight(2.5);
+		MIMLBinaryFile file = write(data, false);
+
+		assertFalse(file.isSinglePrecision());
+		assertEquals(data.getNumBags(), file.getNumBags());
+		assertEquals(data.getLabelsMetaData().getLabelNames(), file.getLabelsMetaData().getLabelNames());
+
+		Instances expected = data.getDataSet();
+		Instances actual = file.toMIMLInstances().getDataSet();
+		for (int i = 0; i < expected.numInstances(); ++i) {
+			assertEquals(expected.instance(i).toString(), actual.instance(i).toString());
+			assertEquals(expected.instance(i).weight(), actual.instance(i).weight(), 0.0);
+		}
+
+		PackedBags packed = data.getPackedBags();
+		assertTrue(Arrays.equals(packed.getValues(), file.getPackedBags().getValues()));
+		assertTrue(Arrays.equals(packed.getBagOffsets(), file.getPackedBags().getBagOffsets()));
+
+		double[] values = new double[file.getNumInstances(5) * file.getNumAttributes()];
+		file.copyBag(5, values, 0);
+		assertTrue(Arrays.equals(Arrays.copyOfRange(packed.getValues(), packed.getOffset(5),
+				packed.getOffset(5) + values.length), values));
+	}
+
+	public void testSinglePrecision() throws Exception {
+		MIMLInstances data = TestData.miml(40, 4, 3, 2);
+		MIMLBinaryFile file = write(data, true);
+
+		assertTrue(file.isSinglePrecision());
+		for (int i = 0; i < data.getNumBags(); ++i) {
+			Instances bag = data.getBag(i).getBagAsInstances();
+			assertEquals(bag.numInstances(), file.getNumInstances(i));
+			for (int j = 0; j < bag.numInstances(); ++j)
+				for (int k = 0; k < bag.numAttributes(); ++k)
+					assertEquals((float) bag.instance(j).value(k), file.value(i, j, k), 0.0);
+			for (int a = 2; a < data.getDataSet().numAttributes(); ++a)
+				assertEquals(data.getDataSet().instance(i).value(a), file.getAttributeValue(i, a), 0.0);
+		}
+	}
+
+	public void testLabels() throws Exception {
+		LabelsMetaDataImpl labels = new LabelsMetaDataImpl();
+		LabelNodeImpl animal = new LabelNodeImpl("animal");
+		LabelNodeImpl bird = new LabelNodeImpl("bird");
+		bird.addChildNode(new LabelNodeImpl("ping\u00fcino"));
+		animal.addChildNode(bird);
+		animal.addChildNode(new LabelNodeImpl("fish"));
+		labels.addRootNode(animal);
+		labels.addRootNode(new LabelNodeImpl("plant"));
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			MIMLBinaryFile.writeLabels(out, labels);
+		}
+		LabelsMetaData read = MIMLBinaryFile.readLabels(ByteBuffer.wrap(bytes.toByteArray()));
+
+		assertEquals(labels.getLabelNames(), read.getLabelNames());
+		assertTrue(read.isHierarchy());
+		assertEquals(2, read.getRootLabels().size());
+		assertEquals("bird", read.getLabelNode("ping\u00fcino").getParent().getName());
+		assertEquals("animal", read.getLabelNode("fish").getParent().getName());
+		assertFalse(read.getLabelNode("plant").hasParent());
+
+		// A negative number of labels is rejected
+		ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+		buffer.putInt(0, -1);
+		try {
+			MIMLBinaryFile.readLabels(buffer);
+			fail();
+		} catch (IOException e) {
+			// Expected
+		}
+
+		// So is a name repeated at another level of the hierarchy
+		bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeInt(1);
+			MIMLBinaryFile.writeString(out, "animal");
+			out.writeInt(1);
+			MIMLBinaryFile.writeString(out, "bird");
+			out.writeInt(1);
+			MIMLBinaryFile.writeString(out, "animal");
+			out.writeInt(0);
+		}
+		try {
+			MIMLBinaryFile.readLabels(ByteBuffer.wrap(bytes.toByteArray()));
+			fail();
+		} catch (IOException e) {
+			// Expected
+		}
+	}
+
+	public void testNotBinary() throws Exception {
+		File file = File.createTempFile("bags", ".arff");
+		file.deleteOnExit();
+		MLSave.saveArff(TestData.bags(3, 2, 1, 1), file.getPath());
+		assertFalse(MIMLBinaryFile.isBinaryFile(file.getPath()));
+	}
+
+	private MIMLBinaryFile write(MIMLInstances data, boolean singlePrecision) throws Exception {
+		File file = File.createTempFile("bags", ".bmiml");
+		file.deleteOnExit();
+		MIMLBinaryFile.write(data, file.getPath(), singlePrecision);
+		assertTrue(MIMLBinaryFile.isBinaryFile(file.getPath()));
+		return new MIMLBinaryFile(file.getPath());
+	}
+}
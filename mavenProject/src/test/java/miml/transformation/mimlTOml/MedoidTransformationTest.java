@@ -0,0 +1,150 @@
+package miml.transformation.mimlTOml;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import miml.TestData;
+import miml.clusterers.KMedoids;
+import miml.core.distance.AverageHausdorff;
+import miml.core.distance.DistanceMatrix;
+import miml.core.distance.DistanceMatrixBuilder;
+import miml.core.distance.HausdorffDistance;
+import miml.core.distance.PackedMaximalHausdorff;
+import miml.data.MIMLInstances;
+import weka.core.Instances;
+
+/**
+ * Checks that the medoids, and thus the transformed data sets, are the ones of
+ * the original k-medoids algorithm, which assigned all the instances again for
+ * each candidate swap.
+ */
+public class MedoidTransformationTest extends TestCase {
+
+	public MedoidTransformationTest(String testName) {
+		super(testName);
+	}
+
+	public static Test suite() {
+		return new TestSuite(MedoidTransformationTest.class);
+	}
+
+	public void testTransformation() throws Exception {
+		check(TestData.miml(60, 4, 2, 1), new PackedMaximalHausdorff());
+		check(TestData.miml(60, 4, 2, 2), new AverageHausdorff());
+	}
+
+	public void testTies() throws Exception {
+		check(withDuplicates(TestData.miml(40, 4, 2, 3)), new AverageHausdorff());
+	}
+
+	public void testStrictImprovement() throws Exception {
+		MIMLInstances data = withDuplicates(TestData.miml(40, 4, 2, 3));
+
+		KMedoids original = new KMedoids(8, 100, new AverageHausdorff());
+		original.buildClusterer(data.getDataSet());
+		KMedoids strict = new KMedoids(8, 100, new AverageHausdorff());
+		strict.setStrictImprovement(true);
+		strict.buildClusterer(data.getDataSet());
+
+		// Swaps between duplicated bags keep the original loop running
+		assertEquals(100.0, original.getNumIterations());
+		assertTrue(strict.getNumIterations() < 100);
+
+		// The cost is the one of the final medoids and each bag is assigned to the
+		// nearest one
+		double cost = 0;
+		for (int i = 0; i < data.getNumBags(); i++) {
+			double[] distances = strict.distanceToMedoids(i);
+			int assigned = strict.getAssignment()[i];
+			for (double distance : distances)
+				assertTrue(distances[assigned] <= distance);
+			cost += distances[assigned];
+		}
+		assertEquals(cost, strict.getConfigurationCost(), 1e-9 * cost);
+	}
+
+	private void check(MIMLInstances data, HausdorffDistance metric) throws Exception {
+		MedoidTransformation transformation = new MedoidTransformation(0.2F, false, metric);
+		Instances transformed = transformation.transformDataset(data).getDataSet();
+
+		metric.setInstances(data.getDataSet());
+		DistanceMatrix distances = new DistanceMatrixBuilder().compute(metric, data.getDataSet());
+		int[] medoids = originalMedoids(distances, (int) (data.getNumBags() * 0.2F), 100, 1);
+
+		assertEquals(data.getNumBags(), transformed.numInstances());
+		assertEquals(medoids.length + 1 + data.getNumLabels(), transformed.numAttributes());
+		for (int i = 0; i < data.getNumBags(); i++)
+			for (int k = 0; k < medoids.length; k++)
+				assertEquals(distances.get(i, medoids[k]), transformed.instance(i).value(k + 1), 0.0);
+	}
+
+	/**
+	 * Adds a copy of every other bag, so that several swaps have the same cost.
+	 */
+	private MIMLInstances withDuplicates(MIMLInstances data) throws Exception {
+		Instances bags = new Instances(data.getDataSet());
+		int numBags = bags.numInstances();
+		for (int i = 0; i < numBags; i += 2)
+			bags.add(bags.instance(i));
+		return new MIMLInstances(bags, data.getLabelsMetaData());
+	}
+
+	/**
+	 * The original k-medoids algorithm with random initialization.
+	 */
+	private int[] originalMedoids(DistanceMatrix distances, int numClusters, int maxIterations, int seed) {
+		int n = distances.size();
+		int[] medoids = new int[numClusters];
+		Arrays.fill(medoids, -1);
+		Random random = new Random(seed);
+		for (int k = 0; k < numClusters; k++) {
+			int candidate = random.nextInt(n);
+			while (indexOf(medoids, candidate) >= 0)
+				candidate = random.nextInt(n);
+			medoids[k] = candidate;
+		}
+
+		double cost = cost(distances, medoids);
+		boolean change = true;
+		for (int count = 0; change && count < maxIterations; count++) {
+			change = false;
+			for (int k = 0; k < numClusters; k++) {
+				int oldMedoid = medoids[k];
+				for (int i = 0; i < n; i++) {
+					if (indexOf(medoids, i) < 0) {
+						medoids[k] = i;
+						double candidateCost = cost(distances, medoids);
+						if (candidateCost <= cost) {
+							cost = candidateCost;
+							change = true;
+						} else {
+							medoids[k] = oldMedoid;
+						}
+					}
+				}
+			}
+		}
+		return medoids;
+	}
+
+	private double cost(DistanceMatrix distances, int[] medoids) {
+		double cost = 0;
+		for (int i = 0; i < distances.size(); i++) {
+			double best = Double.POSITIVE_INFINITY;
+			for (int medoid : medoids)
+				best = Math.min(best, distances.get(i, medoid));
+			cost += best;
+		}
+		return cost;
+	}
+
+	private int indexOf(int[] medoids, int i) {
+		for (int k = 0; k < medoids.length; k++)
+			if (medoids[k] == i)
+				return k;
+		return -1;
+	}
+}